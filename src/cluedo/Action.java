@@ -0,0 +1,78 @@
+package cluedo;
+
+/**
+ * Represents one of the things a player can do on his/her turn.
+ */
+public enum Action {
+	NORTH,
+	SOUTH,
+	WEST,
+	EAST,
+	EXIT,
+	SUGGEST,
+	ACCUSE,
+	END,
+	HAND,
+	GUIDE,
+	UNDO,
+	REDO;
+
+	/**
+	 * Return the Action of moving in the given BoardTopology direction.
+	 *
+	 * @param direction
+	 * @return
+	 */
+	public static Action move(int direction) {
+		switch (direction) {
+		case BoardTopology.NORTH:
+			return NORTH;
+		case BoardTopology.SOUTH:
+			return SOUTH;
+		case BoardTopology.WEST:
+			return WEST;
+		case BoardTopology.EAST:
+			return EAST;
+		default:
+			throw new GameError("Invalid direction: " + direction);
+		}
+	}
+
+	/**
+	 * Return the BoardTopology direction of a move action.
+	 *
+	 * @return
+	 */
+	public int direction() {
+		switch (this) {
+		case NORTH:
+			return BoardTopology.NORTH;
+		case SOUTH:
+			return BoardTopology.SOUTH;
+		case WEST:
+			return BoardTopology.WEST;
+		case EAST:
+			return BoardTopology.EAST;
+		default:
+			throw new GameError(this + " is not a move.");
+		}
+	}
+
+	/**
+	 * true if the action moves the player one step.
+	 *
+	 * @return
+	 */
+	public boolean isMove() {
+		return this == NORTH || this == SOUTH || this == WEST || this == EAST;
+	}
+
+	/**
+	 * Return the lower case keyword of the action, as used in text commands.
+	 *
+	 * @return
+	 */
+	public String keyword() {
+		return name().toLowerCase();
+	}
+}
@@ -1,12 +1,10 @@
 package cluedo;
 
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Scanner;
-import java.util.Set;
+import java.util.Random;
+
+import cluedo.metrics.GameEvents;
+import cluedo.metrics.Metrics;
 
 /**
  * Contains the current state of the game, specifically, stores what and where
@@ -23,102 +21,114 @@ public class Board {
 	 * Represents the state where only one player is still alive after an
 	 * accusation.
 	 */
-	private static final int ONE_PLAYER_LEFT = 0;
+	public static final int ONE_PLAYER_LEFT = 0;
 
 	/**
 	 * Represents the accusation does not match the solution.
 	 */
-	private static final int WRONG_ANSWER = 1;
+	public static final int WRONG_ANSWER = 1;
 
 	/**
 	 * Represents the accusation matches the solution.
 	 */
-	private static final int RIGHT_ANSWER = 2;
+	public static final int RIGHT_ANSWER = 2;
 
 	/**
-	 * Represents the height of the board.
+	 * The map of the board, shared by every game on the same board file.
 	 */
-	private int height;
+	private final BoardTopology topology;
 
 	/**
-	 * Represents the width of the board.
+	 * The players round the table and which of them are still in the game,
+	 * that is, did not loose because of a false accusation.
 	 */
-	private int width;
+	private final TurnOrder turnOrder;
 
 	/**
-	 * A list of Positions that forms a board
+	 * Represents a list of weapons in the game.
 	 */
-	private List<Position> board;
+	private List<Weapon> weapons;
 
 	/**
-	 * A list of the rooms on the board.
+	 * The solution to the game.
 	 */
-	private List<Room> roomsList;
+	private Card[] solution;
 
 	/**
-	 * Represents the current players in the game. That is, the player joined
-	 * the game when the game starts, and did not loose because of a false
-	 * accusation.
+	 * Told about every change made to the board.
 	 */
-	private List<Player> alivePlayers;
+	private GameListener listener;
 
 	/**
-	 * Represents a list of weapons in the game.
+	 * Chooses where tokens land in rooms.
 	 */
-	private List<Weapon> weapons;
+	private Random random;
 
 	/**
-	 * The solution to the game.
+	 * The id of the game, see CluedoGame.getId.
 	 */
-	private Card[] solution;
+	private final long gameId;
+
+	/**
+	 * Chooses the card shown to refute a suggestion, null to show the first
+	 * one the refuter holds.
+	 */
+	private RefutationChooser refutationChooser;
 
 	/**
 	 * A Cluedo game board is created by a CluedoGame and a board file which
-	 * must be a txt file.
+	 * must be a txt file. The map is compiled once per board file and shared,
+	 * see BoardTopology.cached; the board itself only keeps the tokens and the
+	 * state of the game.
 	 *
 	 * @param game
 	 * @param boardFile
 	 */
 	public Board(CluedoGame game, String boardFile) {
-		alivePlayers = game.getAlivePlayers();
+		turnOrder = new TurnOrder(game.getPlayers());
 		weapons = game.getWeapons();
-		board = new ArrayList<Position>();
-		roomsList = new ArrayList<Room>();
 		solution = game.getSolution();
-
-		// read the board file and initialise the board one char each time
-		Scanner scanner = null;
-		try {
-			scanner = new Scanner(new File(boardFile));
-			for (height = 0; scanner.hasNextLine(); height++) {
-				char[] lineArray = scanner.nextLine().toCharArray();
-				for (width = 0; width < lineArray.length; width++) {
-					Position pos;
-					// if it's a digit, make it as the initial position of the
-					// corresponding character, also make the board consider the
-					// position as a blank space
-					if (Character.isDigit(lineArray[width])) {
-						for (Player p : alivePlayers) {
-							if (p.getUid() == Character
-									.getNumericValue(lineArray[width])) {
-								p.setX(height);
-								p.setY(width);
-							}
-						}
-						pos = new Position(height, width, ' ');
-					} else {
-						pos = new Position(height, width, lineArray[width]);
-					}
-					board.add(pos);
-				}
+		listener = game.getListener();
+		random = game.getRandom();
+		gameId = game.getId();
+		topology = BoardTopology.cached(boardFile);
+
+		// put each player on his/her start position
+		for (Player p : game.getPlayers()) {
+			int start = topology.startCell(p.getUid());
+			if (start >= 0) {
+				p.setX(topology.xOf(start));
+				p.setY(topology.yOf(start));
 			}
-		} catch (IOException ex) {
-			System.out.println("Error processing file: " + ex);
-		} finally {
-			scanner.close();
 		}
+	}
+
+	/**
+	 * Return the map of the board.
+	 *
+	 * @return
+	 */
+	public BoardTopology getTopology() {
+		return topology;
+	}
 
-		creatRooms();
+	/**
+	 * Set what chooses the card shown to refute a suggestion, null to show
+	 * the first card of the suggestion the refuter holds.
+	 *
+	 * @param refutationChooser
+	 */
+	public void setRefutationChooser(RefutationChooser refutationChooser) {
+		this.refutationChooser = refutationChooser;
+	}
+
+	/**
+	 * Return the id of the game the board belongs to.
+	 *
+	 * @return
+	 */
+	public long getGameId() {
+		return gameId;
 	}
 
 	/**
@@ -129,12 +139,7 @@ public class Board {
 	 * @return
 	 */
 	public Room getRoomByPosition(Position pos) {
-		for (Room r : roomsList) {
-			if (r.contains(pos)) {
-				return r;
-			}
-		}
-		return null;
+		return roomAt(pos.getX(), pos.getY());
 	}
 
 	/**
@@ -143,21 +148,11 @@ public class Board {
 	 * @param player
 	 */
 	public Room getRoomByToken(Token token) {
-		if (!inRoom(token)) {
+		Room room = roomAt(token.getX(), token.getY());
+		if (room == null) {
 			throw new GameError("Given token is not in a room:" + token);
 		}
-
-		int x = token.getX();
-		int y = token.getY();
-		for (Position pos : board) {
-			if (pos.getX() == x && pos.getY() == y
-					&& Character.isUpperCase(pos.type)) {
-				return getRoomByPosition(pos);
-			}
-		}
-
-		// should not happen
-		throw new GameError("Given token is not in a room:" + token);
+		return room;
 	}
 
 	/**
@@ -167,15 +162,7 @@ public class Board {
 	 * @return
 	 */
 	public boolean inRoom(Token token) {
-		int x = token.getX();
-		int y = token.getY();
-		for (Position pos : board) {
-			if (pos.getX() == x && pos.getY() == y
-					&& Character.isUpperCase(pos.type)) {
-				return true;
-			}
-		}
-		return false;
+		return roomAt(token.getX(), token.getY()) != null;
 	}
 
 	/**
@@ -185,55 +172,18 @@ public class Board {
 	 * @return
 	 */
 	public Room inWhichRoom(Token token) {
-		if (inRoom(token)) {
-			int x = token.getX();
-			int y = token.getY();
-			for (Position pos : board) {
-				if (pos.getX() == x && pos.getY() == y
-						&& Character.isUpperCase(pos.type)) {
-					for (Room room : roomsList) {
-						if (room.getShortName() == pos.type) {
-							return room;
-						}
-					}
-				}
-			}
-		}
-		// if the token is not in a room, return null
-		return null;
+		return roomAt(token.getX(), token.getY());
 	}
 
 	/**
-	 * true if the given player is able to move to north, false otherwise.
+	 * true if the given player is able to move to north, false otherwise. A
+	 * player in a room can only exit or take the stairwell.
 	 *
 	 * @param player
 	 * @return
 	 */
 	public boolean canGoNorth(Player player) {
-		// can only exit or go to stairwell if in room
-		if (inRoom(player)) {
-			return false;
-		}
-
-		// cannot go north if at northest on board
-		if (player.getX() - 1 < 0) {
-			return false;
-		}
-
-		// cannot go north if north is room or invalid place
-		// or it is an entrance which the direction is not north
-		int x = player.getX();
-		int y = player.getY();
-		for (Position pos : board) {
-			if (pos.getX() == x - 1
-					&& pos.getY() == y
-					&& (Character.isUpperCase(pos.type) || pos.type == 'x'
-							|| pos.type == 'e' || pos.type == 's' || pos.type == 'w')) {
-				return false;
-			}
-		}
-
-		return true;
+		return canGo(player, BoardTopology.NORTH);
 	}
 
 	/**
@@ -243,30 +193,7 @@ public class Board {
 	 * @return
 	 */
 	public boolean canGoSouth(Player player) {
-		// can only exit or go to stairwell if in room
-		if (inRoom(player)) {
-			return false;
-		}
-
-		// cannot go south if at southest on board
-		if (player.getX() + 1 >= height) {
-			return false;
-		}
-
-		// cannot go south if south is room or invalid place
-		// or it is an entrance which the direction is not south
-		int x = player.getX();
-		int y = player.getY();
-		for (Position pos : board) {
-			if (pos.getX() == x + 1
-					&& pos.getY() == y
-					&& (Character.isUpperCase(pos.type) || pos.type == 'x'
-							|| pos.type == 'n' || pos.type == 'e' || pos.type == 'w')) {
-				return false;
-			}
-		}
-
-		return true;
+		return canGo(player, BoardTopology.SOUTH);
 	}
 
 	/**
@@ -276,30 +203,7 @@ public class Board {
 	 * @return
 	 */
 	public boolean canGoWest(Player player) {
-		// can only exit or go to stairwell if in room
-		if (inRoom(player)) {
-			return false;
-		}
-
-		// cannot go west if at westest on board
-		if (player.getY() - 1 < 0) {
-			return false;
-		}
-
-		// cannot go west if west is room or invalid place
-		// or it is an entrance which the direction is not west
-		int x = player.getX();
-		int y = player.getY();
-		for (Position pos : board) {
-			if (pos.getX() == x
-					&& pos.getY() == y - 1
-					&& (Character.isUpperCase(pos.type) || pos.type == 'x'
-							|| pos.type == 'n' || pos.type == 's' || pos.type == 'e')) {
-				return false;
-			}
-		}
-
-		return true;
+		return canGo(player, BoardTopology.WEST);
 	}
 
 	/**
@@ -309,30 +213,7 @@ public class Board {
 	 * @return
 	 */
 	public boolean canGoEast(Player player) {
-		// can only exit or go to stairwell if in room
-		if (inRoom(player)) {
-			return false;
-		}
-
-		// cannot go east if at eastest on board
-		if (player.getY() + 1 >= width) {
-			return false;
-		}
-
-		// cannot go east if east is room or invalid place
-		// or it is an entrance which the direction is not east
-		int x = player.getX();
-		int y = player.getY();
-		for (Position pos : board) {
-			if (pos.getX() == x
-					&& pos.getY() == y + 1
-					&& (Character.isUpperCase(pos.type) || pos.type == 'x'
-							|| pos.type == 'n' || pos.type == 's' || pos.type == 'w')) {
-				return false;
-			}
-		}
-
-		return true;
+		return canGo(player, BoardTopology.EAST);
 	}
 
 	/**
@@ -344,6 +225,8 @@ public class Board {
 	 * @param player
 	 */
 	public void moveNorth(Player player) {
+		long start = Metrics.MOVE.start();
+		GameEvents.Move event = GameEvents.beginMove();
 		if (player.getStepsRemain() <= 0) {
 			throw new GameError("Player has run out the steps.");
 		}
@@ -360,14 +243,19 @@ public class Board {
 
 		// every time a player has made a move, suggested field should be reset.
 		player.resetSuggeted();
+		listener.stepped(player, BoardTopology.NORTH);
 
 		// if player is at an entrance of a room, put the player in the room
 		if (isAtEntranceOf(player) != null) {
 			Room room = isAtEntranceOf(player);
-			Position randomPositionInRoom = room.getRandomPosition();
+			Position randomPositionInRoom = room.getRandomPosition(random);
 			player.setX(randomPositionInRoom.getX());
 			player.setY(randomPositionInRoom.getY());
+			listener.enteredRoom(player, room);
+			Metrics.ROOM_ENTRY.mark();
 		}
+		GameEvents.commit(event, this, player, BoardTopology.NORTH);
+		Metrics.MOVE.end(start);
 	}
 
 	/**
@@ -379,6 +267,8 @@ public class Board {
 	 * @param player
 	 */
 	public void moveSouth(Player player) {
+		long start = Metrics.MOVE.start();
+		GameEvents.Move event = GameEvents.beginMove();
 		if (player.getStepsRemain() <= 0) {
 			throw new GameError("Player has run out the steps.");
 		}
@@ -395,14 +285,19 @@ public class Board {
 
 		// every time a player has made a move, suggested field should be reset.
 		player.resetSuggeted();
+		listener.stepped(player, BoardTopology.SOUTH);
 
 		// if player is at an entrance of a room, put the player in the room
 		if (isAtEntranceOf(player) != null) {
 			Room room = isAtEntranceOf(player);
-			Position randomPositionInRoom = room.getRandomPosition();
+			Position randomPositionInRoom = room.getRandomPosition(random);
 			player.setX(randomPositionInRoom.getX());
 			player.setY(randomPositionInRoom.getY());
+			listener.enteredRoom(player, room);
+			Metrics.ROOM_ENTRY.mark();
 		}
+		GameEvents.commit(event, this, player, BoardTopology.SOUTH);
+		Metrics.MOVE.end(start);
 	}
 
 	/**
@@ -414,6 +309,8 @@ public class Board {
 	 * @param player
 	 */
 	public void moveWest(Player player) {
+		long start = Metrics.MOVE.start();
+		GameEvents.Move event = GameEvents.beginMove();
 		if (player.getStepsRemain() <= 0) {
 			throw new GameError("Player has run out the steps.");
 		}
@@ -430,14 +327,19 @@ public class Board {
 
 		// every time a player has made a move, suggested field should be reset.
 		player.resetSuggeted();
+		listener.stepped(player, BoardTopology.WEST);
 
 		// if player is at an entrance of a room, put the player in the room
 		if (isAtEntranceOf(player) != null) {
 			Room room = isAtEntranceOf(player);
-			Position randomPositionInRoom = room.getRandomPosition();
+			Position randomPositionInRoom = room.getRandomPosition(random);
 			player.setX(randomPositionInRoom.getX());
 			player.setY(randomPositionInRoom.getY());
+			listener.enteredRoom(player, room);
+			Metrics.ROOM_ENTRY.mark();
 		}
+		GameEvents.commit(event, this, player, BoardTopology.WEST);
+		Metrics.MOVE.end(start);
 	}
 
 	/**
@@ -449,6 +351,8 @@ public class Board {
 	 * @param player
 	 */
 	public void moveEast(Player player) {
+		long start = Metrics.MOVE.start();
+		GameEvents.Move event = GameEvents.beginMove();
 		if (player.getStepsRemain() <= 0) {
 			throw new GameError("Player has run out the steps.");
 		}
@@ -465,14 +369,19 @@ public class Board {
 
 		// every time a player has made a move, suggested field should be reset.
 		player.resetSuggeted();
+		listener.stepped(player, BoardTopology.EAST);
 
 		// if player is at an entrance of a room, put the player in the room
 		if (isAtEntranceOf(player) != null) {
 			Room room = isAtEntranceOf(player);
-			Position randomPositionInRoom = room.getRandomPosition();
+			Position randomPositionInRoom = room.getRandomPosition(random);
 			player.setX(randomPositionInRoom.getX());
 			player.setY(randomPositionInRoom.getY());
+			listener.enteredRoom(player, room);
+			Metrics.ROOM_ENTRY.mark();
 		}
+		GameEvents.commit(event, this, player, BoardTopology.EAST);
+		Metrics.MOVE.end(start);
 	}
 
 	/**
@@ -491,9 +400,18 @@ public class Board {
 			throw new GameError("Cannot exit a room if there if no steps remainning.");
 		}
 
+		Room from = inWhichRoom(player);
 		player.setX(pos.getX());
 		player.setY(pos.getY());
 		player.resetSuggeted();
+
+		// a position in another room can only be reached by its stairwell
+		Room to = inWhichRoom(player);
+		if (to != null) {
+			listener.tookStairwell(player, from, to);
+		} else {
+			listener.exitedRoom(player, from);
+		}
 	}
 
 	/**
@@ -507,6 +425,8 @@ public class Board {
 	 * @return
 	 */
 	public Card makeSuggestion(Player player, Card[] suggestion) {
+		long start = Metrics.SUGGEST.start();
+		GameEvents.Suggestion event = GameEvents.beginSuggestion();
 		if (!inRoom(player)) {
 			throw new GameError(
 					"Cannot make a suggestion if plyer not in a room.");
@@ -516,11 +436,33 @@ public class Board {
 			throw new GameError(player.getName() + " has already suggested.");
 		}
 
+		// the card shown is chosen before anything moves, so a bad choice
+		// leaves the board as it was
+		Player refuter = findRefuter(player, suggestion);
+		Card refutedCard = null;
+		if (refuter != null && refutationChooser != null) {
+			refutedCard = refutationChooser.chooseCard(refuter, player,
+					suggestion);
+			if (refutedCard == null || !refuter.hasCard(refutedCard)
+					|| !contains(suggestion, refutedCard)) {
+				throw new GameError(refuter.getName() + " cannot show "
+						+ refutedCard + ".");
+			}
+		} else if (refuter != null) {
+			for (Card card : suggestion) {
+				if (refuter.hasCard(card)) {
+					refutedCard = card;
+					break;
+				}
+			}
+		}
+
 		dragSuspectIn(player, suggestion);
 		dragWeaponIn(player, suggestion);
 		player.setSuggested();
-
-		Card refutedCard = checkSuggestion(player, suggestion);
+		listener.suggested(player, suggestion, refuter, refutedCard);
+		GameEvents.commit(event, gameId, player, suggestion, refuter);
+		Metrics.SUGGEST.end(start);
 
 		return refutedCard;
 	}
@@ -537,40 +479,49 @@ public class Board {
 	 * @return
 	 */
 	public int makeAccusation(Player player, Card[] accusation) {
-		for (Card accuCard : accusation) {
-			for (Card solCard : solution) {
-				if (!accuCard.equals(solCard)) {
-					// if it's wrong, kill the player
-					// create a new list of alive players as .remove method
-					// cause problems
-					List<Player> temp = new ArrayList<Player>();
-					for (Player p : alivePlayers) {
-						if (p != player) {
-							temp.add(p);
-						}
-					}
-					alivePlayers = temp;
-
-					// if only one player left, we have a winner
-					if (alivePlayers.size() == 1) {
-						return ONE_PLAYER_LEFT;
-					}
-
-					return WRONG_ANSWER;
-				}
+		long start = Metrics.ACCUSE.start();
+		GameEvents.Accusation event = GameEvents.beginAccusation();
+		// each card must match the solution card of the same type
+		for (int i = 0; i < solution.length; i++) {
+			if (!accusation[i].equals(solution[i])) {
+				// if it's wrong, kill the player
+				turnOrder.eliminate(player);
+
+				// if only one player left, we have a winner
+				int result = turnOrder.aliveCount() == 1 ? ONE_PLAYER_LEFT
+						: WRONG_ANSWER;
+				listener.accused(player, accusation, result);
+				listener.eliminated(player);
+				GameEvents.commit(event, gameId, player, result);
+				Metrics.ACCUSE.end(start);
+				return result;
 			}
 		}
+		listener.accused(player, accusation, RIGHT_ANSWER);
+		GameEvents.commit(event, gameId, player, RIGHT_ANSWER);
+		Metrics.ACCUSE.end(start);
 		return RIGHT_ANSWER;
 
 	}
 
 	/**
-	 * Return all the players that are still in the game.
+	 * Return all the players that are still in the game, in uid order. The
+	 * list cannot be changed, see TurnOrder.aliveList.
 	 *
 	 * @return
 	 */
 	public List<Player> getAlivePlayers() {
-		return alivePlayers;
+		return turnOrder.aliveList();
+	}
+
+	/**
+	 * Return the players round the table and which of them are still in the
+	 * game.
+	 *
+	 * @return
+	 */
+	public TurnOrder getTurnOrder() {
+		return turnOrder;
 	}
 
 	/**
@@ -581,216 +532,101 @@ public class Board {
 		return weapons;
 	}
 
-	@Override
-	public String toString() {
-		// create the board as a string first
-		StringBuffer sb = new StringBuffer();
-		for (int i = 0; i < board.size(); i++) {
-			if (i % width == 0) {
-				sb.append("\n");
-			}
-			sb.append(board.get(i).type);
-		}
-		String boardString = sb.toString().substring(0, sb.length());
-
-		boardString = boardString.replace("\n", "");
-
-		// make the string a 2d char array so we can manipulate with it more
-		// easily
-		char[][] board2dArray = stringTo2dArray(boardString, width, height);
-
-		// put all alive players on board
-		for (Player p : alivePlayers) {
-			int x = p.getX();
-			int y = p.getY();
-			board2dArray[x][y] = Character.forDigit(p.getUid(), 10);
-		}
-
-		// put the weapon on board if they are put in a room
-		for (Weapon w : weapons) {
-			if (inRoom(w)) {
-				int x = w.getX();
-				int y = w.getY();
-				board2dArray[x][y] = w.getShortName();
-			}
-		}
-
-		sb = new StringBuffer();
-		for (int i = 0; i < height; i++) {
-			for (int j = 0; j < width; j++) {
-				sb.append(board2dArray[i][j]);
-			}
-			sb.append("\n");
-		}
-		return sb.toString();
-	}
-
-	/*
-	 * ============================================================ Below are
-	 * some useful helper methods
-	 * ============================================================
-	 */
-
 	/**
-	 * Convert a rectangle-liked string to a 2d array of chars so we can
-	 * manipulate with it more easily.
+	 * Return the width of the board.
 	 *
-	 * @param args
-	 * @param width
 	 * @return
 	 */
-	private char[][] stringTo2dArray(String string, int width, int height) {
-		char[] stringArray = string.toCharArray();
-		char[][] matrix = new char[height][width];
-		for (int i = 0; i < height; i++) {
-			for (int j = 0; j < width; j++) {
-				matrix[i][j] = stringArray[i * width + j];
-			}
-		}
-		return matrix;
+	public int getWidth() {
+		return topology.getWidth();
 	}
 
 	/**
-	 * Create Room objects by the given board. A group of adjacent CAPITAL
-	 * letters form a Room.
+	 * Return the height of the board.
+	 *
+	 * @return
 	 */
-	private void creatRooms() {
-		// put all CAPITAL chars on the board in a set
-		Set<Character> charSet = new HashSet<Character>();
-		for (Position pos : board) {
-			char c = pos.type;
-			if (Character.isUpperCase(c)) {
-				charSet.add(c);
-			}
-		}
-
-		// for each CAPITAL char creat a room
-		for (Character shortName : charSet) {
-			Room room = new Room(shortName);
-			roomsList.add(room);
-		}
+	public int getHeight() {
+		return topology.getHeight();
+	}
 
-		addPositionToRooms();
-		addEntranceToRooms();
-		addStairwells();
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(topology.getCellCount()
+				+ topology.getHeight());
+		render(sb);
+		return sb.toString();
 	}
 
 	/**
-	 * If a position belongs to a room, add it to the room's position list.
-	 */
-	private void addPositionToRooms() {
-		// add positions to the corresponding rooms
-		for (Position pos : board) {
-			char c = pos.type;
-			if (Character.isUpperCase(c)) {
-				for (Room r : roomsList) {
-					if (r.getShortName() == c) {
-						r.addPosition(pos);
-					}
-				}
+	 * Append the board as text, one line for each row, to the given builder.
+	 * Nothing else is allocated, so a client that keeps its builder can draw
+	 * the board every move for free.
+	 *
+	 * @param sb
+	 */
+	public void render(StringBuilder sb) {
+		long start = Metrics.RENDER.start();
+		GameEvents.Render event = GameEvents.beginRender();
+		int width = topology.getWidth();
+		int first = sb.length();
+		for (int cell = 0; cell < topology.getCellCount(); cell++) {
+			sb.append(topology.typeOf(cell));
+			if ((cell + 1) % width == 0) {
+				sb.append('\n');
 			}
 		}
-	}
 
-	/**
-	 * If an entrance belongs to a room, add it to the room's entrance list.
-	 */
-	private void addEntranceToRooms() {
-		// add entrances to the corresponding rooms
-		for (Position pos : board) {
-			char c = pos.type;
-			if (isEntrance(c)) {
-				Room room = getRoomByEntrance(pos);
-				for (Room r : roomsList) {
-					if (room.equals(r)) {
-						r.addEntrance(new Entrance(pos, c, room));
-					}
-				}
-			}
+		// put all alive players on board
+		for (Player p : turnOrder.aliveList()) {
+			sb.setCharAt(first + p.getX() * (width + 1) + p.getY(),
+					Character.forDigit(p.getUid(), 10));
 		}
-	}
 
-	/**
-	 * If a room has a stairwell, add it to the both two rooms.
-	 */
-	private void addStairwells() {
-		// add stairwells to the corresponding rooms
-		for (Position pos : board) {
-			char c = pos.type;
-			if (Character.isUpperCase(c)) {
-				// find the current room that this position represents to
-				Room curRoom = null;
-				for (Room r : roomsList) {
-					if (r.getShortName() == c) {
-						curRoom = r;
-					}
-				}
-				// set each other's stairwellToRoom if there are adjacent
-				// different rooms
-				Room adjRoom = getAdjacentRoom(pos);
-				if (adjRoom != null && !curRoom.equals(adjRoom)) {
-					adjRoom.setStairwellTo(curRoom);
-					curRoom.setStairwellTo(adjRoom);
-				}
+		// put the weapon on board if they are put in a room
+		for (Weapon w : weapons) {
+			if (inRoom(w)) {
+				sb.setCharAt(first + w.getX() * (width + 1) + w.getY(),
+						w.getShortName());
 			}
 		}
+		GameEvents.commit(event, gameId, sb.length() - first);
+		Metrics.RENDER.end(start);
 	}
 
-	/**
-	 * Get the room that the given entrance belongs to.
-	 *
-	 * @param pos
-	 * @return
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
 	 */
-	private Room getRoomByEntrance(Position pos) {
-		for (Room r : roomsList) {
-			if (r.contains(new Position(pos.getX() - 1, pos.getY(), r
-					.getShortName()))
-					|| r.contains(new Position(pos.getX() + 1, pos.getY(), r
-							.getShortName()))
-					|| r.contains(new Position(pos.getX(), pos.getY() - 1, r
-							.getShortName()))
-					|| r.contains(new Position(pos.getX(), pos.getY() + 1, r
-							.getShortName()))) {
-				return r;
-			}
-		}
-		// this method should only be called when the given position is an
-		// entrance
-		throw new GameError("This given position " + pos.toString()
-				+ " is not an entrance.");
-	}
 
 	/**
-	 * Get the room that the given position is adjacent to.
+	 * Return the room at the given coordinates, null if there is none or the
+	 * coordinates are off the board.
 	 *
-	 * @param pos
+	 * @param x
+	 * @param y
 	 * @return
 	 */
-	private Room getAdjacentRoom(Position pos) {
-		for (Room r : roomsList) {
-			if (r.contains(new Position(pos.getX() - 1, pos.getY(), r
-					.getShortName()))
-					|| r.contains(new Position(pos.getX() + 1, pos.getY(), r
-							.getShortName()))
-					|| r.contains(new Position(pos.getX(), pos.getY() - 1, r
-							.getShortName()))
-					|| r.contains(new Position(pos.getX(), pos.getY() + 1, r
-							.getShortName()))) {
-				return r;
-			}
+	private Room roomAt(int x, int y) {
+		if (x < 0 || x >= topology.getHeight() || y < 0
+				|| y >= topology.getWidth()) {
+			return null;
 		}
-		return null;
+		int room = topology.roomOf(topology.cellAt(x, y));
+		return room == BoardTopology.NO_ROOM ? null : topology.getRoom(room);
 	}
 
 	/**
-	 * Check if the char represents an entrance
+	 * true if the given player can take one step in the given direction.
 	 *
-	 * @param c
+	 * @param player
+	 * @param direction
 	 * @return
 	 */
-	private boolean isEntrance(char c) {
-		return c == 'n' || c == 's' || c == 'w' || c == 'e';
+	private boolean canGo(Player player, int direction) {
+		int cell = topology.cellAt(player.getX(), player.getY());
+		return (topology.moveMask(cell) & 1 << direction) != 0;
 	}
 
 	/**
@@ -801,14 +637,9 @@ public class Board {
 	 * @return
 	 */
 	private Room isAtEntranceOf(Player player) {
-		for (Room room : roomsList) {
-			for (Entrance en : room.getEntrances()) {
-				if (en.getX() == player.getX() && en.getY() == player.getY()) {
-					return room;
-				}
-			}
-		}
-		return null;
+		int room = topology.doorOf(topology.cellAt(player.getX(),
+				player.getY()));
+		return room == BoardTopology.NO_ROOM ? null : topology.getRoom(room);
 	}
 
 	/**
@@ -822,9 +653,11 @@ public class Board {
 		String weaponName = weaponCard.toString();
 		for (Weapon weapon : weapons) {
 			if (weapon.getName().equals(weaponName)) {
-				Position newPos = inWhichRoom(player).getRandomPosition();
+				Room room = inWhichRoom(player);
+				Position newPos = room.getRandomPosition(random);
 				weapon.setX(newPos.getX());
 				weapon.setY(newPos.getY());
+				listener.summoned(weapon, room);
 			}
 		}
 	}
@@ -840,46 +673,43 @@ public class Board {
 		Card suspectCard = suggestion[0];
 		String suspectName = suspectCard.toString();
 		// check if the suspect is in the game, if so, drag him/her in the room
-		for (Player p : alivePlayers) {
+		for (Player p : turnOrder.aliveList()) {
 			if (p.getName().equals(suspectName)) {
-				Position newPos = inWhichRoom(player).getRandomPosition();
+				Room room = inWhichRoom(player);
+				Position newPos = room.getRandomPosition(random);
 				p.setX(newPos.getX());
 				p.setY(newPos.getY());
+				listener.summoned(p, room);
 			}
 		}
 	}
 
+	private static boolean contains(Card[] cards, Card card) {
+		for (Card c : cards) {
+			if (c == card) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Once a player has made a suggestion, should check each player's hand see
 	 * if the suggestion could be refuted. Each player should respond in a
 	 * clock-wise fashion. i.e. if the player who made the suggestion has a uid
 	 * of 1, should check in the order of 2, 3, 4, 5, 6. if the player who made
 	 * the suggestion has a uid of 2, should check in the order of 3, 4, 5, 6,
-	 * 1. Return the refuted card if can refute the suggestion, otherwise return
+	 * 1. Return the player who can refute the suggestion, otherwise return
 	 * null.
 	 *
 	 * @return
 	 */
-	private Card checkSuggestion(Player player, Card[] suggestion) {
-		// check the players whose uid is greater than the suggestion maker's
-		// uid first
-		for (Player p : alivePlayers) {
-			if (player.getUid() > p.getUid()) {
-				for (Card card : suggestion) {
-					if (p.hasCard(card)) {
-						return card;
-					}
-				}
-			}
-		}
-
-		// then check whose uid is smaller than the suggestion maker's uid
-		for (Player p : alivePlayers) {
-			if (player.getUid() < p.getUid()) {
-				for (Card card : suggestion) {
-					if (p.hasCard(card)) {
-						return card;
-					}
+	private Player findRefuter(Player player, Card[] suggestion) {
+		for (Player p = turnOrder.next(player); p != player; p = turnOrder
+				.next(p)) {
+			for (Card card : suggestion) {
+				if (p.hasCard(card)) {
+					return p;
 				}
 			}
 		}
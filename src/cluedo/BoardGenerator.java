@@ -0,0 +1,225 @@
+package cluedo;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes boards of any size in the format of gameBoard.txt, for testing how
+ * the game scales. The board is cut into square blocks; each block holds one
+ * rectangular room with corridors around it and a door on one of its sides,
+ * and rooms take the letters of the first few rooms in turn. Rooms whose
+ * letters are paired (KITCHEN with BALL ROOM, CONSERVATORY with BILLIARD
+ * ROOM and so on) get a stairwell: a corner cell of the other room's letter,
+ * as on gameBoard.txt. The start digits are spread along the top row.
+ *
+ * The size of each room, the side its door is on and where along the side
+ * all follow from the seed and the block alone, so any row can be made
+ * without the rest of the board and a board of any size is written a row at
+ * a time. Every board made passes the BoardValidator. With fewer than nine
+ * rooms some room cards have no room on the board.
+ *
+ * Usage: java cluedo.BoardGenerator width height [rooms] [seed] [file]
+ */
+public class BoardGenerator {
+
+	/**
+	 * The width and height of a block.
+	 */
+	public static final int BLOCK = 8;
+
+	private final int width;
+	private final int height;
+	private final int rooms;
+	private final long seed;
+
+	/**
+	 * The number of whole blocks across and down the board.
+	 */
+	private final int blocksAcross;
+	private final int blocksDown;
+
+	/**
+	 * Construct a generator of boards of the given size with up to the given
+	 * number of different rooms.
+	 *
+	 * @param width
+	 * @param height
+	 * @param rooms
+	 * @param seed
+	 */
+	public BoardGenerator(int width, int height, int rooms, long seed) {
+		if (rooms < 1 || rooms > BoardValidator.ROOM_LETTERS.length()) {
+			throw new GameError("Invalid number of rooms: " + rooms);
+		}
+		blocksAcross = width / BLOCK;
+		blocksDown = height / BLOCK;
+		if (blocksAcross * blocksDown < rooms) {
+			throw new GameError("A board of " + width + "x" + height
+					+ " has room for only " + blocksAcross * blocksDown
+					+ " rooms.");
+		}
+		this.width = width;
+		this.height = height;
+		this.rooms = rooms;
+		this.seed = seed;
+	}
+
+	/**
+	 * Return row x of the board.
+	 *
+	 * @param x
+	 * @return
+	 */
+	public String row(int x) {
+		char[] row = new char[width];
+		for (int y = 0; y < width; y++) {
+			row[y] = ' ';
+		}
+		int block = x / BLOCK;
+		if (block < blocksDown) {
+			for (int across = 0; across < blocksAcross; across++) {
+				drawRoom(row, x, block, across);
+			}
+		}
+		if (x == 0) {
+			for (int uid = 1; uid <= BoardTopology.MAX_PLAYERS; uid++) {
+				row[(int) ((long) uid * width / (BoardTopology.MAX_PLAYERS + 1))] = Character
+						.forDigit(uid, 10);
+			}
+		}
+		return new String(row);
+	}
+
+	/**
+	 * Return every row of the board. Only for boards that fit in memory, see
+	 * write.
+	 *
+	 * @return
+	 */
+	public List<String> rows() {
+		List<String> rows = new ArrayList<String>(height);
+		for (int x = 0; x < height; x++) {
+			rows.add(row(x));
+		}
+		return rows;
+	}
+
+	/**
+	 * Write the board a row at a time.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(Writer out) throws IOException {
+		for (int x = 0; x < height; x++) {
+			out.write(row(x));
+			out.write('\n');
+		}
+		out.flush();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java cluedo.BoardGenerator width height [rooms] [seed] [file]");
+			System.exit(1);
+		}
+		int width = Integer.parseInt(args[0]);
+		int height = Integer.parseInt(args[1]);
+		int rooms = args.length > 2 ? Integer.parseInt(args[2]) : 9;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+		BoardGenerator generator = new BoardGenerator(width, height, rooms,
+				seed);
+		try (Writer out = new BufferedWriter(args.length > 4 ? new FileWriter(
+				args[4]) : new OutputStreamWriter(System.out), 1 << 16)) {
+			generator.write(out);
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Draw the part of the room of the given block that is on row x.
+	 */
+	private void drawRoom(char[] row, int x, int down, int across) {
+		int index = down * blocksAcross + across;
+		long bits = mix(seed + index * 0x9E3779B97F4A7C15L);
+		// the room fills the block less a corridor of one cell around it and
+		// up to one more cell on each side
+		int top = down * BLOCK + 1 + (int) (bits & 1);
+		int bottom = (down + 1) * BLOCK - 2 - (int) (bits >>> 1 & 1);
+		int left = across * BLOCK + 1 + (int) (bits >>> 2 & 1);
+		int right = (across + 1) * BLOCK - 2 - (int) (bits >>> 3 & 1);
+		if (x < top || x > bottom) {
+			return;
+		}
+		int letter = index % rooms;
+		char room = BoardValidator.ROOM_LETTERS.charAt(letter);
+		for (int y = left; y <= right; y++) {
+			row[y] = room;
+		}
+
+		// the door, away from the corners if the side is long enough
+		int side = (int) (bits >>> 4 & 3);
+		boolean horizontal = side == BoardTopology.NORTH
+				|| side == BoardTopology.SOUTH;
+		int length = horizontal ? right - left + 1 : bottom - top + 1;
+		int offset = length < 3 ? 0 : 1 + (int) ((bits >>> 8 & 0xFFFF)
+				% (length - 2));
+		int doorX;
+		int doorY;
+		char door;
+		switch (side) {
+		case BoardTopology.NORTH:
+			doorX = top;
+			doorY = left + offset;
+			door = 's';
+			break;
+		case BoardTopology.SOUTH:
+			doorX = bottom;
+			doorY = left + offset;
+			door = 'n';
+			break;
+		case BoardTopology.WEST:
+			doorX = top + offset;
+			doorY = left;
+			door = 'e';
+			break;
+		default:
+			doorX = top + offset;
+			doorY = right;
+			door = 'w';
+			break;
+		}
+		if (x == doorX) {
+			row[doorY] = door;
+		}
+
+		// the stairwell, in the corner furthest from the door
+		int partner = letter ^ 1;
+		if (partner < rooms) {
+			int stairX = doorX - top < (bottom - top + 1) / 2 ? bottom : top;
+			int stairY = doorY - left < (right - left + 1) / 2 ? right : left;
+			if (x == stairX) {
+				row[stairY] = BoardValidator.ROOM_LETTERS.charAt(partner);
+			}
+		}
+	}
+
+	/**
+	 * Scramble the bits of the given value, the finaliser of SplitMix64.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,710 @@
+package cluedo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cluedo.metrics.GameEvents;
+import cluedo.metrics.Metrics;
+
+/**
+ * The static part of a board compiled into flat primitive arrays. Cells are
+ * addressed by a single index (x * width + y). For every cell the topology
+ * knows its type, which room it belongs to, which room it is a door of and a
+ * precomputed movement mask telling in which directions a token standing on
+ * that cell may step. A topology never changes once created, so it can be
+ * shared by any number of games. The rooms it hands out cannot be changed
+ * either: their lists are read-only and only the topology adds to them.
+ */
+public final class BoardTopology {
+
+	/**
+	 * Direction indexes, also used as bit positions in the movement masks.
+	 */
+	public static final int NORTH = 0;
+	public static final int SOUTH = 1;
+	public static final int WEST = 2;
+	public static final int EAST = 3;
+
+	/**
+	 * Represents "no room" in the room and door arrays.
+	 */
+	public static final int NO_ROOM = -1;
+
+	/**
+	 * The largest player uid a board may place a start digit for.
+	 */
+	public static final int MAX_PLAYERS = 6;
+
+	/**
+	 * The topologies loaded by cached, by canonical path of the board file.
+	 */
+	private static final Map<String, Cached> CACHE = new ConcurrentHashMap<String, Cached>();
+
+	private final int width;
+	private final int height;
+
+	/**
+	 * The rows the topology was compiled from.
+	 */
+	private final List<String> rows;
+
+	/**
+	 * The type char of each cell. Start digits are stored as blank spaces.
+	 */
+	private final char[] cells;
+
+	/**
+	 * The index of the room each cell belongs to, NO_ROOM for any non room
+	 * cell.
+	 */
+	private final byte[] roomOf;
+
+	/**
+	 * The index of the room each cell is an entrance of, NO_ROOM if the cell
+	 * is not an entrance.
+	 */
+	private final byte[] doorOf;
+
+	/**
+	 * For each cell, bit d is set when a token on the cell may move one step in
+	 * direction d.
+	 */
+	private final byte[] moveMask;
+
+	/**
+	 * The cell index of each player's start position, indexed by uid - 1, -1
+	 * if the board has no start digit for the uid.
+	 */
+	private final int[] startCells;
+
+	/**
+	 * The rooms on the board, indexed the same way as roomOf.
+	 */
+	private final Room[] rooms;
+
+	/**
+	 * The cells of each room.
+	 */
+	private final int[][] roomCells;
+
+	/**
+	 * The entrance cells of each room, in the same order as
+	 * Room.getEntrances().
+	 */
+	private final int[][] roomDoors;
+
+	/**
+	 * The room index each room is connected to by a stairwell, NO_ROOM if
+	 * there is none.
+	 */
+	private final int[] stairwells;
+
+	/**
+	 * The card index (see CluedoGame.indexOf) of each room.
+	 */
+	private final int[] roomCards;
+
+	/**
+	 * Compile a topology from the rows of a board file. All rows must have the
+	 * same length.
+	 *
+	 * @param rows
+	 */
+	public BoardTopology(List<String> rows) {
+		if (rows.isEmpty()) {
+			throw new GameError("A board must have at least one row.");
+		}
+		this.rows = Collections.unmodifiableList(new ArrayList<String>(rows));
+		height = rows.size();
+		width = rows.get(0).length();
+		cells = new char[width * height];
+		startCells = new int[MAX_PLAYERS];
+		for (int i = 0; i < startCells.length; i++) {
+			startCells[i] = -1;
+		}
+
+		// read the cells, a digit is the start position of a player and is
+		// otherwise a blank space
+		for (int x = 0; x < height; x++) {
+			String row = rows.get(x);
+			if (row.length() != width) {
+				throw new GameError("Row " + x + " has " + row.length()
+						+ " cells, expected " + width + ".");
+			}
+			for (int y = 0; y < width; y++) {
+				char c = row.charAt(y);
+				int cell = x * width + y;
+				if (Character.isDigit(c)) {
+					int uid = Character.getNumericValue(c);
+					if (uid >= 1 && uid <= MAX_PLAYERS) {
+						startCells[uid - 1] = cell;
+					}
+					c = ' ';
+				}
+				cells[cell] = c;
+			}
+		}
+
+		// one room for each distinct CAPITAL letter, in alphabetical order
+		List<Room> roomList = new ArrayList<Room>();
+		byte[] roomByLetter = new byte[26];
+		for (int i = 0; i < roomByLetter.length; i++) {
+			roomByLetter[i] = NO_ROOM;
+		}
+		boolean[] present = new boolean[26];
+		for (char c : cells) {
+			if (isRoomChar(c)) {
+				present[c - 'A'] = true;
+			}
+		}
+		for (int i = 0; i < present.length; i++) {
+			if (present[i]) {
+				roomByLetter[i] = (byte) roomList.size();
+				roomList.add(new Room((char) ('A' + i)));
+			}
+		}
+		rooms = roomList.toArray(new Room[roomList.size()]);
+
+		roomOf = new byte[cells.length];
+		doorOf = new byte[cells.length];
+		int[] roomSizes = new int[rooms.length];
+		for (int cell = 0; cell < cells.length; cell++) {
+			char c = cells[cell];
+			roomOf[cell] = isRoomChar(c) ? roomByLetter[c - 'A'] : NO_ROOM;
+			if (roomOf[cell] != NO_ROOM) {
+				roomSizes[roomOf[cell]]++;
+			}
+		}
+
+		// room cells and positions
+		roomCells = new int[rooms.length][];
+		for (int r = 0; r < rooms.length; r++) {
+			roomCells[r] = new int[roomSizes[r]];
+			roomSizes[r] = 0;
+		}
+		for (int cell = 0; cell < cells.length; cell++) {
+			int r = roomOf[cell];
+			if (r != NO_ROOM) {
+				roomCells[r][roomSizes[r]++] = cell;
+				rooms[r].addPosition(positionOf(cell));
+			}
+		}
+
+		// entrances belong to the first room adjacent to them
+		List<List<Integer>> doors = new ArrayList<List<Integer>>();
+		for (int r = 0; r < rooms.length; r++) {
+			doors.add(new ArrayList<Integer>());
+		}
+		for (int cell = 0; cell < cells.length; cell++) {
+			doorOf[cell] = NO_ROOM;
+			char c = cells[cell];
+			if (isDoorChar(c)) {
+				int r = firstAdjacentRoom(cell);
+				if (r == NO_ROOM) {
+					throw new GameError("This given position "
+							+ positionOf(cell) + " is not an entrance.");
+				}
+				doorOf[cell] = (byte) r;
+				doors.get(r).add(cell);
+				rooms[r].addEntrance(new Entrance(positionOf(cell), c, rooms[r]));
+			}
+		}
+		roomDoors = new int[rooms.length][];
+		for (int r = 0; r < rooms.length; r++) {
+			List<Integer> list = doors.get(r);
+			roomDoors[r] = new int[list.size()];
+			for (int i = 0; i < list.size(); i++) {
+				roomDoors[r][i] = list.get(i);
+			}
+		}
+
+		// a room cell next to a different room forms a stairwell between them
+		stairwells = new int[rooms.length];
+		for (int r = 0; r < rooms.length; r++) {
+			stairwells[r] = NO_ROOM;
+		}
+		for (int cell = 0; cell < cells.length; cell++) {
+			int cur = roomOf[cell];
+			if (cur != NO_ROOM) {
+				int adj = firstAdjacentRoom(cell);
+				if (adj != NO_ROOM && adj != cur) {
+					stairwells[adj] = cur;
+					stairwells[cur] = adj;
+				}
+			}
+		}
+		for (int r = 0; r < rooms.length; r++) {
+			if (stairwells[r] != NO_ROOM) {
+				rooms[r].setStairwellTo(rooms[stairwells[r]]);
+			}
+		}
+
+		roomCards = new int[rooms.length];
+		for (int r = 0; r < rooms.length; r++) {
+			roomCards[r] = CluedoGame.indexOf(rooms[r].getRoomCard());
+		}
+
+		moveMask = new byte[cells.length];
+		for (int cell = 0; cell < cells.length; cell++) {
+			moveMask[cell] = computeMoveMask(cell);
+		}
+	}
+
+	/**
+	 * Read and compile the given board file.
+	 *
+	 * @param boardFile
+	 * @return
+	 */
+	public static BoardTopology load(String boardFile) {
+		long start = Metrics.BOARD_LOAD.start();
+		GameEvents.BoardLoad event = GameEvents.beginBoardLoad();
+		BoardTopology topology = new BoardTopology(readRows(boardFile));
+		GameEvents.commit(event, boardFile, topology.getCellCount(), false);
+		Metrics.BOARD_LOAD.end(start);
+		return topology;
+	}
+
+	/**
+	 * Return the topology of the given board file, loading it only if it has
+	 * not been loaded before or the file has changed since. Every game on the
+	 * same board shares the one topology. If a changed file cannot be used,
+	 * the topology it was last loaded as is kept.
+	 *
+	 * @param boardFile
+	 * @return
+	 */
+	public static BoardTopology cached(String boardFile) {
+		File file = new File(boardFile);
+		Cached cached = CACHE.get(key(file));
+		if (cached != null && cached.modified == file.lastModified()
+				&& cached.length == file.length()) {
+			return cached.topology;
+		}
+		try {
+			return reload(boardFile);
+		} catch (GameError e) {
+			if (cached == null) {
+				throw e;
+			}
+			return cached.topology;
+		}
+	}
+
+	/**
+	 * Read the given board file again and, if it can be used, make it the
+	 * topology cached returns from now on. Games already created keep the
+	 * topology they were created with. If the rows have not changed, the
+	 * cached topology is kept rather than compiled again; otherwise they must
+	 * pass the BoardValidator. Return the topology now cached, or throw a
+	 * GameError if the file cannot be used, in which case the cached
+	 * topology is kept and the file is not read again until it changes.
+	 *
+	 * @param boardFile
+	 * @return
+	 */
+	public static BoardTopology reload(String boardFile) {
+		long start = Metrics.BOARD_LOAD.start();
+		GameEvents.BoardLoad event = GameEvents.beginBoardLoad();
+		File file = new File(boardFile);
+		String key = key(file);
+		// take the version before reading, so a write during the read is
+		// seen as another change
+		long modified = file.lastModified();
+		long length = file.length();
+		Cached cached = CACHE.get(key);
+		BoardTopology topology;
+		try {
+			List<String> rows = readRows(boardFile);
+			if (cached != null && cached.topology.rows.equals(rows)) {
+				topology = cached.topology;
+			} else {
+				List<BoardValidator.Problem> problems = BoardValidator
+						.validate(rows);
+				if (!problems.isEmpty()) {
+					throw new GameError(problems.get(0)
+							+ (problems.size() > 1 ? " (and "
+									+ (problems.size() - 1) + " more problems)"
+									: ""));
+				}
+				topology = new BoardTopology(rows);
+			}
+		} catch (GameError e) {
+			if (cached != null) {
+				CACHE.put(key, new Cached(cached.topology, modified, length));
+			}
+			throw e;
+		}
+		CACHE.put(key, new Cached(topology, modified, length));
+		GameEvents.commit(event, boardFile, topology.getCellCount(),
+				cached != null && topology == cached.topology);
+		Metrics.BOARD_LOAD.end(start);
+		return topology;
+	}
+
+	/**
+	 * Return the rows the topology was compiled from, as a read-only list.
+	 *
+	 * @return
+	 */
+	public List<String> getRows() {
+		return rows;
+	}
+
+	/**
+	 * Return the width of the board.
+	 *
+	 * @return
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Return the height of the board.
+	 *
+	 * @return
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Return the number of cells on the board.
+	 *
+	 * @return
+	 */
+	public int getCellCount() {
+		return cells.length;
+	}
+
+	/**
+	 * Return the cell index of the given coordinates.
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int cellAt(int x, int y) {
+		return x * width + y;
+	}
+
+	/**
+	 * Return the x coordinate (row) of the given cell.
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public int xOf(int cell) {
+		return cell / width;
+	}
+
+	/**
+	 * Return the y coordinate (column) of the given cell.
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public int yOf(int cell) {
+		return cell % width;
+	}
+
+	/**
+	 * Return the type char of the given cell.
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public char typeOf(int cell) {
+		return cells[cell];
+	}
+
+	/**
+	 * Return the index of the room the cell belongs to, NO_ROOM if it is not a
+	 * room cell.
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public int roomOf(int cell) {
+		return roomOf[cell];
+	}
+
+	/**
+	 * Return the index of the room the cell is an entrance of, NO_ROOM if it
+	 * is not an entrance.
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public int doorOf(int cell) {
+		return doorOf[cell];
+	}
+
+	/**
+	 * Return the movement mask of the cell, bit d is set if a token on the
+	 * cell can move in direction d.
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public int moveMask(int cell) {
+		return moveMask[cell];
+	}
+
+	/**
+	 * Return the cell one step from the given cell in the given direction. The
+	 * result is only meaningful if the move is allowed by the movement mask.
+	 *
+	 * @param cell
+	 * @param direction
+	 * @return
+	 */
+	public int step(int cell, int direction) {
+		switch (direction) {
+		case NORTH:
+			return cell - width;
+		case SOUTH:
+			return cell + width;
+		case WEST:
+			return cell - 1;
+		case EAST:
+			return cell + 1;
+		default:
+			throw new GameError("Invalid direction: " + direction);
+		}
+	}
+
+	/**
+	 * Return the start cell of the player with the given uid, -1 if the board
+	 * does not define one.
+	 *
+	 * @param uid
+	 * @return
+	 */
+	public int startCell(int uid) {
+		return startCells[uid - 1];
+	}
+
+	/**
+	 * Return the number of rooms on the board.
+	 *
+	 * @return
+	 */
+	public int getRoomCount() {
+		return rooms.length;
+	}
+
+	/**
+	 * Return the room with the given index.
+	 *
+	 * @param room
+	 * @return
+	 */
+	public Room getRoom(int room) {
+		return rooms[room];
+	}
+
+	/**
+	 * Return the cells of the given room. The array must not be modified.
+	 *
+	 * @param room
+	 * @return
+	 */
+	public int[] roomCells(int room) {
+		return roomCells[room];
+	}
+
+	/**
+	 * Return the entrance cells of the given room. The array must not be
+	 * modified.
+	 *
+	 * @param room
+	 * @return
+	 */
+	public int[] roomDoors(int room) {
+		return roomDoors[room];
+	}
+
+	/**
+	 * Return the room the given room is connected to by a stairwell, NO_ROOM
+	 * if there is none.
+	 *
+	 * @param room
+	 * @return
+	 */
+	public int stairwellOf(int room) {
+		return stairwells[room];
+	}
+
+	/**
+	 * Return the card index of the given room.
+	 *
+	 * @param room
+	 * @return
+	 */
+	public int roomCard(int room) {
+		return roomCards[room];
+	}
+
+	/**
+	 * Return a new Position for the given cell.
+	 *
+	 * @param cell
+	 * @return
+	 */
+	public Position positionOf(int cell) {
+		return new Position(xOf(cell), yOf(cell), cells[cell]);
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Compute which directions a token on the given cell can move to. A token
+	 * in a room cannot make an ordinary move. A token cannot move off the
+	 * board, into a room, onto an invalid place, or onto an entrance from any
+	 * direction other than the entrance's own.
+	 *
+	 * @param cell
+	 * @return
+	 */
+	private byte computeMoveMask(int cell) {
+		if (isRoomChar(cells[cell])) {
+			return 0;
+		}
+		int x = xOf(cell);
+		int y = yOf(cell);
+		int mask = 0;
+		if (x - 1 >= 0 && canEnter(cells[cell - width], 'n')) {
+			mask |= 1 << NORTH;
+		}
+		if (x + 1 < height && canEnter(cells[cell + width], 's')) {
+			mask |= 1 << SOUTH;
+		}
+		if (y - 1 >= 0 && canEnter(cells[cell - 1], 'w')) {
+			mask |= 1 << WEST;
+		}
+		if (y + 1 < width && canEnter(cells[cell + 1], 'e')) {
+			mask |= 1 << EAST;
+		}
+		return (byte) mask;
+	}
+
+	/**
+	 * true if a cell of the given type can be entered by a move in the
+	 * direction represented by the given door char.
+	 *
+	 * @param type
+	 * @param direction
+	 * @return
+	 */
+	private static boolean canEnter(char type, char direction) {
+		if (isRoomChar(type) || type == 'x') {
+			return false;
+		}
+		return !isDoorChar(type) || type == direction;
+	}
+
+	/**
+	 * Get the first room (by index) that has a cell next to the given cell.
+	 *
+	 * @param cell
+	 * @return
+	 */
+	private int firstAdjacentRoom(int cell) {
+		int x = xOf(cell);
+		int y = yOf(cell);
+		int best = NO_ROOM;
+		if (x - 1 >= 0) {
+			best = lower(best, roomOf[cell - width]);
+		}
+		if (x + 1 < height) {
+			best = lower(best, roomOf[cell + width]);
+		}
+		if (y - 1 >= 0) {
+			best = lower(best, roomOf[cell - 1]);
+		}
+		if (y + 1 < width) {
+			best = lower(best, roomOf[cell + 1]);
+		}
+		return best;
+	}
+
+	private static int lower(int a, int b) {
+		if (a == NO_ROOM) {
+			return b;
+		}
+		if (b == NO_ROOM) {
+			return a;
+		}
+		return Math.min(a, b);
+	}
+
+	/**
+	 * Check if the char represents a room.
+	 *
+	 * @param c
+	 * @return
+	 */
+	public static boolean isRoomChar(char c) {
+		return c >= 'A' && c <= 'Z';
+	}
+
+	/**
+	 * Check if the char represents an entrance.
+	 *
+	 * @param c
+	 * @return
+	 */
+	public static boolean isDoorChar(char c) {
+		return c == 'n' || c == 's' || c == 'w' || c == 'e';
+	}
+
+	private static List<String> readRows(String boardFile) {
+		List<String> rows = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(
+				boardFile))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				rows.add(line);
+			}
+		} catch (IOException ex) {
+			throw new GameError("Error processing file: " + ex);
+		}
+		return rows;
+	}
+
+	private static String key(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	/**
+	 * A loaded topology and the version of the file it was loaded from.
+	 */
+	private static final class Cached {
+		final BoardTopology topology;
+		final long modified;
+		final long length;
+
+		Cached(BoardTopology topology, long modified, long length) {
+			this.topology = topology;
+			this.modified = modified;
+			this.length = length;
+		}
+	}
+}
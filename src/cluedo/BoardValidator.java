@@ -0,0 +1,395 @@
+package cluedo;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that a board file describes a board a game can be played on, and
+ * reports every problem it finds with its position rather than stopping at
+ * the first. The rules are:
+ *
+ * - every row has the same number of cells
+ *
+ * - every cell is a blank space, an x, a door (n, s, w or e), a start digit
+ * 1-6 or the letter of one of the nine rooms
+ *
+ * - every start digit appears exactly once
+ *
+ * - every door is next to exactly one room and points into it, and the cell
+ * a player steps onto it from is on the board and can be walked on
+ *
+ * - a room touches at most one other room, the one its stairwell leads to
+ *
+ * - every room can be reached from the start positions, through its doors or
+ * its stairwell
+ *
+ * The validator works on the characters alone in a few passes over the
+ * cells, so it is cheap enough to check generated boards by the thousand.
+ *
+ * Usage: java cluedo.BoardValidator board.txt...
+ */
+public class BoardValidator {
+
+	/**
+	 * The letters of the rooms, see Room.
+	 */
+	public static final String ROOM_LETTERS = "KBCILSHON";
+
+	/**
+	 * One problem with a board. The position is -1, -1 for a problem with
+	 * the whole board, and the column is -1 for a problem with a whole row.
+	 */
+	public static class Problem {
+		private final int x;
+		private final int y;
+		private final String message;
+
+		public Problem(int x, int y, String message) {
+			this.x = x;
+			this.y = y;
+			this.message = message;
+		}
+
+		/**
+		 * Return the row of the problem.
+		 *
+		 * @return
+		 */
+		public int getX() {
+			return x;
+		}
+
+		/**
+		 * Return the column of the problem.
+		 *
+		 * @return
+		 */
+		public int getY() {
+			return y;
+		}
+
+		/**
+		 * Return what the problem is.
+		 *
+		 * @return
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			if (x < 0) {
+				return message;
+			}
+			if (y < 0) {
+				return "row " + x + ": " + message;
+			}
+			return "[" + x + ", " + y + "] " + message;
+		}
+	}
+
+	/**
+	 * Check the given board file. An empty list means the board is fine.
+	 *
+	 * @param boardFile
+	 * @return
+	 */
+	public static List<Problem> validate(String boardFile) {
+		List<String> rows = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(
+				boardFile))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				rows.add(line);
+			}
+		} catch (IOException ex) {
+			List<Problem> problems = new ArrayList<Problem>();
+			problems.add(new Problem(-1, -1, "Error processing file: " + ex));
+			return problems;
+		}
+		return validate(rows);
+	}
+
+	/**
+	 * Check the given rows of a board. An empty list means the board is fine.
+	 *
+	 * @param rows
+	 * @return
+	 */
+	public static List<Problem> validate(List<String> rows) {
+		List<Problem> problems = new ArrayList<Problem>();
+		if (rows.isEmpty() || rows.get(0).isEmpty()) {
+			problems.add(new Problem(-1, -1, "The board is empty."));
+			return problems;
+		}
+		int height = rows.size();
+		int width = rows.get(0).length();
+
+		// the cells, with missing cells of short rows as x so the rest of
+		// the board can still be checked
+		char[] cells = new char[width * height];
+		for (int x = 0; x < height; x++) {
+			String row = rows.get(x);
+			if (row.length() != width) {
+				problems.add(new Problem(x, -1, "has " + row.length()
+						+ " cells, expected " + width + "."));
+			}
+			for (int y = 0; y < width; y++) {
+				cells[x * width + y] = y < row.length() ? row.charAt(y) : 'x';
+			}
+		}
+
+		// what each cell is: the room index for room cells, -1 otherwise
+		int rooms = ROOM_LETTERS.length();
+		int[] roomOf = new int[cells.length];
+		int[] starts = new int[BoardTopology.MAX_PLAYERS];
+		int[] doorCount = new int[rooms];
+		boolean[] present = new boolean[rooms];
+		for (int i = 0; i < starts.length; i++) {
+			starts[i] = -1;
+		}
+		for (int cell = 0; cell < cells.length; cell++) {
+			char c = cells[cell];
+			roomOf[cell] = BoardTopology.isRoomChar(c) ? ROOM_LETTERS
+					.indexOf(c) : -1;
+			if (roomOf[cell] >= 0) {
+				present[roomOf[cell]] = true;
+			} else if (c >= '1' && c <= '0' + BoardTopology.MAX_PLAYERS) {
+				if (starts[c - '1'] >= 0) {
+					problems.add(problem(cell, width, "start " + c
+							+ " appears again."));
+				} else {
+					starts[c - '1'] = cell;
+				}
+				cells[cell] = ' ';
+			} else if (c != ' ' && c != 'x' && !BoardTopology.isDoorChar(c)) {
+				problems.add(problem(cell, width, "unknown cell '" + c + "'."));
+			}
+		}
+		for (int i = 0; i < starts.length; i++) {
+			if (starts[i] < 0) {
+				problems.add(new Problem(-1, -1, "No start position for player "
+						+ (i + 1) + "."));
+			}
+		}
+
+		// doors and the rooms that touch each other
+		int[] doorRoom = new int[cells.length];
+		boolean[][] touching = new boolean[rooms][rooms];
+		for (int cell = 0; cell < cells.length; cell++) {
+			doorRoom[cell] = -1;
+			char c = cells[cell];
+			int x = cell / width;
+			int y = cell % width;
+			if (roomOf[cell] >= 0) {
+				int r = roomOf[cell];
+				if (x + 1 < height && roomOf[cell + width] >= 0
+						&& roomOf[cell + width] != r) {
+					touch(touching, r, roomOf[cell + width]);
+				}
+				if (y + 1 < width && roomOf[cell + 1] >= 0
+						&& roomOf[cell + 1] != r) {
+					touch(touching, r, roomOf[cell + 1]);
+				}
+			} else if (BoardTopology.isDoorChar(c)) {
+				int room = -1;
+				for (int d = 0; d < 4; d++) {
+					int next = neighbour(cell, d, width, height);
+					if (next >= 0 && roomOf[next] >= 0 && roomOf[next] != room) {
+						if (room >= 0) {
+							problems.add(problem(cell, width, "door is next to both the "
+									+ name(room) + " and the "
+									+ name(roomOf[next]) + "."));
+						}
+						room = roomOf[next];
+					}
+				}
+				if (room < 0) {
+					problems.add(problem(cell, width,
+							"door is not next to any room."));
+					continue;
+				}
+				doorRoom[cell] = room;
+				doorCount[room]++;
+				// an n door leads into the room north of it
+				int into = neighbour(cell, facing(c), width, height);
+				if (into < 0 || roomOf[into] != room) {
+					problems.add(problem(cell, width, "door '" + c
+							+ "' of the " + name(room)
+							+ " does not point into the room."));
+				}
+				// a player steps onto an n door by moving north, so from the
+				// cell south of it
+				int from = neighbour(cell, opposite(c), width, height);
+				if (from < 0 || roomOf[from] >= 0 || cells[from] == 'x') {
+					problems.add(problem(cell, width, "door '" + c
+							+ "' of the " + name(room)
+							+ " cannot be stepped onto."));
+				}
+			}
+		}
+		int[] stairwell = new int[rooms];
+		for (int r = 0; r < rooms; r++) {
+			stairwell[r] = -1;
+			for (int other = 0; other < rooms; other++) {
+				if (touching[r][other]) {
+					if (stairwell[r] >= 0) {
+						problems.add(new Problem(-1, -1, "The " + name(r)
+								+ " touches both the " + name(stairwell[r])
+								+ " and the " + name(other)
+								+ ", a room can only have one stairwell."));
+					} else {
+						stairwell[r] = other;
+					}
+				}
+			}
+		}
+
+		// walk from the start positions, entering every room whose door is
+		// reached and leaving it by all its doors and its stairwell
+		int[][] doors = new int[rooms][];
+		for (int r = 0; r < rooms; r++) {
+			doors[r] = new int[doorCount[r]];
+			doorCount[r] = 0;
+		}
+		for (int cell = 0; cell < cells.length; cell++) {
+			if (doorRoom[cell] >= 0) {
+				doors[doorRoom[cell]][doorCount[doorRoom[cell]]++] = cell;
+			}
+		}
+		boolean[] seen = new boolean[cells.length];
+		boolean[] entered = new boolean[rooms];
+		int[] queue = new int[cells.length];
+		int head = 0;
+		int tail = 0;
+		for (int start : starts) {
+			if (start >= 0 && !seen[start]) {
+				seen[start] = true;
+				queue[tail++] = start;
+			}
+		}
+		while (head < tail) {
+			int cell = queue[head++];
+			int room = doorRoom[cell];
+			while (room >= 0 && !entered[room]) {
+				entered[room] = true;
+				for (int door : doors[room]) {
+					if (!seen[door]) {
+						seen[door] = true;
+						queue[tail++] = door;
+					}
+				}
+				room = stairwell[room];
+			}
+			for (int d = 0; d < 4; d++) {
+				int next = neighbour(cell, d, width, height);
+				if (next >= 0 && !seen[next]
+						&& canEnter(cells[next], roomOf[next], d)) {
+					seen[next] = true;
+					queue[tail++] = next;
+				}
+			}
+		}
+		for (int r = 0; r < rooms; r++) {
+			if (present[r] && !entered[r]) {
+				problems.add(new Problem(-1, -1, "The " + name(r)
+						+ " cannot be reached from the start positions."));
+			}
+		}
+		return problems;
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.out.println("Usage: java cluedo.BoardValidator board.txt...");
+			System.exit(1);
+		}
+		boolean ok = true;
+		for (String boardFile : args) {
+			List<Problem> problems = validate(boardFile);
+			for (Problem p : problems) {
+				System.out.println(boardFile + ": " + p);
+			}
+			ok &= problems.isEmpty();
+		}
+		System.exit(ok ? 0 : 1);
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private static Problem problem(int cell, int width, String message) {
+		return new Problem(cell / width, cell % width, message);
+	}
+
+	private static String name(int room) {
+		return new Room(ROOM_LETTERS.charAt(room)).getName();
+	}
+
+	private static void touch(boolean[][] touching, int a, int b) {
+		touching[a][b] = true;
+		touching[b][a] = true;
+	}
+
+	/**
+	 * Return the cell one step from the given cell in the given
+	 * BoardTopology direction, -1 if that is off the board.
+	 */
+	private static int neighbour(int cell, int direction, int width,
+			int height) {
+		int x = cell / width;
+		int y = cell % width;
+		switch (direction) {
+		case BoardTopology.NORTH:
+			return x > 0 ? cell - width : -1;
+		case BoardTopology.SOUTH:
+			return x + 1 < height ? cell + width : -1;
+		case BoardTopology.WEST:
+			return y > 0 ? cell - 1 : -1;
+		default:
+			return y + 1 < width ? cell + 1 : -1;
+		}
+	}
+
+	/**
+	 * Return the direction the given door leads into its room.
+	 */
+	private static int facing(char door) {
+		return "nswe".indexOf(door);
+	}
+
+	/**
+	 * Return the direction a player steps onto the given door from.
+	 */
+	private static int opposite(char door) {
+		switch (door) {
+		case 'n':
+			return BoardTopology.SOUTH;
+		case 's':
+			return BoardTopology.NORTH;
+		case 'w':
+			return BoardTopology.EAST;
+		default:
+			return BoardTopology.WEST;
+		}
+	}
+
+	/**
+	 * true if a cell can be stepped onto by a move in the given direction,
+	 * following the same rules as BoardTopology.
+	 */
+	private static boolean canEnter(char type, int room, int direction) {
+		if (room >= 0 || type == 'x' || BoardTopology.isRoomChar(type)) {
+			return false;
+		}
+		return !BoardTopology.isDoorChar(type)
+				|| type == "nswe".charAt(direction);
+	}
+}
@@ -0,0 +1,158 @@
+package cluedo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads board files as soon as they change, so that map designers can edit
+ * a board while a server is running. Watches the directories of the given
+ * files and calls BoardTopology.reload for each one that changes; games
+ * created afterwards are played on the new board, games already running keep
+ * theirs. A file that cannot be used is reported and the board it was last
+ * loaded as stays in use.
+ *
+ * Editors often write a file in several steps, so a change is only reloaded
+ * once the file has been quiet for QUIET_MILLIS.
+ */
+public class BoardWatcher implements Runnable, Closeable {
+
+	public static final long QUIET_MILLIS = 50;
+
+	private final WatchService service;
+
+	/**
+	 * The watched file names in each watched directory, and the board file
+	 * each was given as.
+	 */
+	private final Map<Path, Map<Path, String>> watched = new HashMap<Path, Map<Path, String>>();
+
+	/**
+	 * The topology each board file was last loaded as.
+	 */
+	private final Map<String, BoardTopology> loaded = new HashMap<String, BoardTopology>();
+
+	private volatile int reloads;
+
+	/**
+	 * Construct a watcher of the given board files. Each file is loaded into
+	 * the BoardTopology cache now, so that later changes are compared with
+	 * it.
+	 *
+	 * @param boardFiles
+	 * @throws IOException
+	 */
+	public BoardWatcher(String... boardFiles) throws IOException {
+		service = FileSystems.getDefault().newWatchService();
+		try {
+			for (String boardFile : boardFiles) {
+				loaded.put(boardFile, BoardTopology.cached(boardFile));
+				Path path = new File(boardFile).getAbsoluteFile().toPath();
+				Path dir = path.getParent();
+				if (!watched.containsKey(dir)) {
+					dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_MODIFY);
+					watched.put(dir, new HashMap<Path, String>());
+				}
+				watched.get(dir).put(path.getFileName(), boardFile);
+			}
+		} catch (IOException | GameError e) {
+			service.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the number of times a board has been reloaded.
+	 *
+	 * @return
+	 */
+	public int getReloads() {
+		return reloads;
+	}
+
+	/**
+	 * Watch until closed.
+	 */
+	@Override
+	public void run() {
+		Set<String> changed = new HashSet<String>();
+		try {
+			while (true) {
+				// wait for a change, then for the files to go quiet
+				collect(service.take(), changed);
+				WatchKey key;
+				while ((key = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					collect(key, changed);
+				}
+				for (String boardFile : changed) {
+					reload(boardFile);
+				}
+				changed.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// closed
+		}
+	}
+
+	/**
+	 * Stop watching.
+	 */
+	@Override
+	public void close() throws IOException {
+		service.close();
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Add the watched board files the events of the given key are about.
+	 */
+	private void collect(WatchKey key, Set<String> changed) {
+		Map<Path, String> files = watched.get(key.watchable());
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				changed.addAll(files.values());
+				continue;
+			}
+			String boardFile = files.get(event.context());
+			if (boardFile != null) {
+				changed.add(boardFile);
+			}
+		}
+		key.reset();
+	}
+
+	private void reload(String boardFile) {
+		long start = System.nanoTime();
+		try {
+			BoardTopology topology = BoardTopology.reload(boardFile);
+			if (topology != loaded.put(boardFile, topology)) {
+				reloads++;
+				System.out.printf("Reloaded %s in %.1f ms%n", boardFile,
+						(System.nanoTime() - start) / 1e6);
+			}
+		} catch (GameError e) {
+			System.out.println("Kept the old " + boardFile + ": "
+					+ e.getMessage());
+		}
+	}
+}
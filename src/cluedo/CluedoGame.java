@@ -4,6 +4,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cluedo.metrics.Metrics;
 
 /**
  * Contains the useful information of a game of Cluedo. In particular, the game holds the
@@ -81,6 +84,12 @@ public class CluedoGame {
 		}
 	}
 
+	/**
+	 * The total number of cards in the game, six characters, six weapons and
+	 * nine rooms.
+	 */
+	public static final int NUM_CARDS = 21;
+
 	/**
 	 * A 2-dimenional array representing the board itself.
 	 */
@@ -110,14 +119,37 @@ public class CluedoGame {
 	private List<Card> unusedCards;
 
 	/**
-	 * All the players that are still alive in the game.
+	 * All the weapons in the game.
 	 */
-	private List<Player> alivePlayers;
+	private List<Weapon> weapons;
 
 	/**
-	 * All the weapons in the game.
+	 * Told about everything that happens in the game.
 	 */
-	private List<Weapon> weapons;
+	private GameListener listener;
+
+	/**
+	 * Every player who started the game, in uid order.
+	 */
+	private List<Player> players;
+
+	/**
+	 * The random numbers of the game: the solution, the deal and where tokens
+	 * land in rooms.
+	 */
+	private GameRandom random;
+
+	/**
+	 * The file the board was loaded from.
+	 */
+	private String boardFile;
+
+	/**
+	 * Numbers the games of the JVM, see getId.
+	 */
+	private static final AtomicLong NEXT_ID = new AtomicLong();
+
+	private final long id = NEXT_ID.incrementAndGet();
 
 	/**
 	 * Construct a game of Cluedo.
@@ -126,16 +158,50 @@ public class CluedoGame {
 	 *            --- the number of players. Decided by the user.
 	 */
 	public CluedoGame(String boardFile, int numPlayers) {
+		this(boardFile, numPlayers, GameAdapter.NONE);
+	}
+
+	/**
+	 * Construct a game of Cluedo that tells the given listener about
+	 * everything that happens in it, from the deal on.
+	 *
+	 * @param boardFile
+	 * @param numPlayers
+	 * @param listener
+	 */
+	public CluedoGame(String boardFile, int numPlayers, GameListener listener) {
+		this(boardFile, numPlayers, listener, new Random().nextLong());
+	}
+
+	/**
+	 * Construct a game of Cluedo whose random numbers all come from the given
+	 * seed, so that the same seed and the same moves always make the same
+	 * game.
+	 *
+	 * @param boardFile
+	 * @param numPlayers
+	 * @param listener
+	 * @param seed
+	 */
+	public CluedoGame(String boardFile, int numPlayers, GameListener listener,
+			long seed) {
 		if (numPlayers < 3 || numPlayers > 6) {
 			throw new GameError("Invalid number of players: " + numPlayers);
 		}
+		long start = Metrics.GAME_NEW.start();
 		this.numPlayers = numPlayers;
-		alivePlayers = initPlayers();
+		this.boardFile = boardFile;
+		this.listener = listener;
+		this.random = new GameRandom(seed);
+		listener.started(numPlayers);
+		players = initPlayers();
 		weapons = initWeapons();
 		solution = initSolution();
+		listener.solutionChosen(solution);
 		gameBoard = new Board(this, boardFile);
 		deck = initDeck();
 		dealCards();
+		Metrics.GAME_NEW.end(start);
 	}
 
 	/**
@@ -152,7 +218,49 @@ public class CluedoGame {
 	 * @return
 	 */
 	public List<Player> getAlivePlayers() {
-		return this.alivePlayers;
+		return gameBoard.getAlivePlayers();
+	}
+
+	/**
+	 * Return every player who started the game, in uid order, including
+	 * those who are out of the game.
+	 * @return
+	 */
+	public List<Player> getPlayers() {
+		return players;
+	}
+
+	/**
+	 * Return the number of the game, unique among the games of the JVM, by
+	 * which recordings and logs tell games apart.
+	 * @return
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Return the file the board was loaded from.
+	 * @return
+	 */
+	public String getBoardFile() {
+		return boardFile;
+	}
+
+	/**
+	 * Return the random numbers of the game.
+	 * @return
+	 */
+	public GameRandom getRandom() {
+		return random;
+	}
+
+	/**
+	 * Return the listener told about everything that happens in the game.
+	 * @return
+	 */
+	public GameListener getListener() {
+		return listener;
 	}
 
 	/**
@@ -180,6 +288,64 @@ public class CluedoGame {
 		return solution;
 	}
 
+	/**
+	 * Return the index of the given card, characters are numbered 0-5, weapons
+	 * 6-11 and rooms 12-20 in the order they are declared. The index can be
+	 * used as a bit position so a set of cards fits in a long.
+	 * @param card
+	 * @return
+	 */
+	public static int indexOf(Card card) {
+		if (card instanceof CharacterEnum) {
+			return ((CharacterEnum) card).ordinal();
+		}
+		if (card instanceof WeaponEnum) {
+			return CharacterEnum.values().length + ((WeaponEnum) card).ordinal();
+		}
+		if (card instanceof RoomEnum) {
+			return CharacterEnum.values().length + WeaponEnum.values().length
+					+ ((RoomEnum) card).ordinal();
+		}
+		throw new GameError("Unknown card: " + card);
+	}
+
+	/**
+	 * Return the card with the given index, see indexOf.
+	 * @param index
+	 * @return
+	 */
+	public static Card cardAt(int index) {
+		if (index < 0 || index >= NUM_CARDS) {
+			throw new GameError("Invalid card index: " + index);
+		}
+		if (index < 6) {
+			return CharacterEnum.values()[index];
+		}
+		if (index < 12) {
+			return WeaponEnum.values()[index - 6];
+		}
+		return RoomEnum.values()[index - 12];
+	}
+
+	/**
+	 * Bits of each card type in a card set, see indexOf.
+	 */
+	public static final long CHARACTER_CARDS = 0x3FL;
+	public static final long WEAPON_CARDS = 0x3FL << 6;
+	public static final long ROOM_CARDS = 0x1FFL << 12;
+
+	/**
+	 * Return whether exactly one card of each type is missing from the given
+	 * set of known cards, so the missing ones must be the solution.
+	 * @param known
+	 * @return
+	 */
+	public static boolean isSolved(long known) {
+		return Long.bitCount(~known & CHARACTER_CARDS) == 1
+				&& Long.bitCount(~known & WEAPON_CARDS) == 1
+				&& Long.bitCount(~known & ROOM_CARDS) == 1;
+	}
+
 	/**
 	 * Initialise all the weapons in the game
 	 * @return
@@ -203,14 +369,18 @@ public class CluedoGame {
 		int numUnusedCards = deck.size() % numPlayers;
 		unusedCards = new ArrayList<Card>();
 		for (int i = 0; i < numUnusedCards; i++) {
-			unusedCards.add(takeOneFromDeck());
+			Card card = takeOneFromDeck();
+			unusedCards.add(card);
+			listener.dealt(null, card);
 		}
 
 		// deal cards to each player evenly
 		int numCardEachPlayer = deck.size() / numPlayers;
-		for (Player player : alivePlayers) {
+		for (Player player : players) {
 			for (int i = 0; i < numCardEachPlayer; i++) {
-				player.addCard(takeOneFromDeck());
+				Card card = takeOneFromDeck();
+				player.addCard(card);
+				listener.dealt(player, card);
 			}
 		}
 	}
@@ -221,7 +391,7 @@ public class CluedoGame {
 	 * @return
 	 */
 	private Card takeOneFromDeck() {
-		Card toBeTaken = deck.get(new Random().nextInt(deck.size()));
+		Card toBeTaken = deck.get(random.nextInt(deck.size()));
 		deck.remove(toBeTaken);
 		return toBeTaken;
 	}
@@ -246,9 +416,9 @@ public class CluedoGame {
 	 */
 	private Card[] initSolution() {
 		solution = new Card[3];
-		solution[0] = CharacterEnum.getRandom();
-		solution[1] = WeaponEnum.getRandom();
-		solution[2] = RoomEnum.getRandom();
+		solution[0] = CharacterEnum.values()[random.nextInt(6)];
+		solution[1] = WeaponEnum.values()[random.nextInt(6)];
+		solution[2] = RoomEnum.values()[random.nextInt(9)];
 		return solution;
 	}
 
@@ -0,0 +1,62 @@
+package cluedo;
+
+/**
+ * A GameListener that ignores everything. Listeners interested in only a few
+ * events can extend it, and a game without a listener uses NONE.
+ */
+public class GameAdapter implements GameListener {
+
+	/**
+	 * The listener of games that nobody listens to.
+	 */
+	public static final GameListener NONE = new GameAdapter();
+
+	@Override
+	public void started(int numPlayers) {
+	}
+
+	@Override
+	public void solutionChosen(Card[] solution) {
+	}
+
+	@Override
+	public void dealt(Player player, Card card) {
+	}
+
+	@Override
+	public void rolled(Player player, int roll) {
+	}
+
+	@Override
+	public void stepped(Player player, int direction) {
+	}
+
+	@Override
+	public void enteredRoom(Player player, Room room) {
+	}
+
+	@Override
+	public void exitedRoom(Player player, Room room) {
+	}
+
+	@Override
+	public void tookStairwell(Player player, Room from, Room to) {
+	}
+
+	@Override
+	public void summoned(Token token, Room room) {
+	}
+
+	@Override
+	public void suggested(Player player, Card[] suggestion, Player refuter,
+			Card shown) {
+	}
+
+	@Override
+	public void accused(Player player, Card[] accusation, int result) {
+	}
+
+	@Override
+	public void eliminated(Player player) {
+	}
+}
@@ -0,0 +1,189 @@
+package cluedo;
+
+import java.util.regex.Pattern;
+
+/**
+ * A player's command in text form, for front ends that are not the menus of
+ * TextClient. One command per line, words separated by spaces:
+ *
+ * - north, south, west, east (or n, s, w, e, or "move n")
+ *
+ * - exit K, leave the room by the K-th exit (see GameController.getExits),
+ * or exit stairwell (or stairs) to take the room's stairwell
+ *
+ * - suggest CHARACTER WEAPON
+ *
+ * - accuse CHARACTER WEAPON ROOM
+ *
+ * - end, hand, guide
+ *
+ * - undo, redo, take back the last action this turn or take it again
+ *
+ * Cards are given either by their name with underscores (MISS_SCARLETT, case
+ * ignored) or by their number in the TextClient menus (1 for MISS_SCARLETT).
+ */
+public class GameCommand {
+
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	private final Action action;
+
+	/**
+	 * The exit number (from 1) of an EXIT command, 0 otherwise.
+	 */
+	private final int exit;
+
+	/**
+	 * The cards of a SUGGEST or ACCUSE command, null otherwise.
+	 */
+	private final Card[] cards;
+
+	public GameCommand(Action action, int exit, Card[] cards) {
+		this.action = action;
+		this.exit = exit;
+		this.cards = cards;
+	}
+
+	/**
+	 * Parse one line of text into a command.
+	 *
+	 * @param line
+	 * @return
+	 */
+	public static GameCommand parse(String line) {
+		String[] words = SPACES.split(line.trim());
+		String word = words[0].toLowerCase();
+		if (word.equals("move") && words.length == 2) {
+			word = words[1].toLowerCase();
+			words = new String[] { word };
+		}
+		switch (word) {
+		case "n":
+		case "north":
+			return simple(Action.NORTH, words);
+		case "s":
+		case "south":
+			return simple(Action.SOUTH, words);
+		case "w":
+		case "west":
+			return simple(Action.WEST, words);
+		case "e":
+		case "east":
+			return simple(Action.EAST, words);
+		case "end":
+			return simple(Action.END, words);
+		case "hand":
+			return simple(Action.HAND, words);
+		case "guide":
+			return simple(Action.GUIDE, words);
+		case "undo":
+			return simple(Action.UNDO, words);
+		case "redo":
+			return simple(Action.REDO, words);
+		case "exit":
+			if (words.length != 2) {
+				throw new GameError("Usage: exit K");
+			}
+			if (words[1].equalsIgnoreCase("stairwell")
+					|| words[1].equalsIgnoreCase("stairs")) {
+				return new GameCommand(Action.EXIT, GameController.STAIRWELL,
+						null);
+			}
+			return new GameCommand(Action.EXIT, parseNumber(words[1]), null);
+		case "suggest":
+			if (words.length != 3) {
+				throw new GameError("Usage: suggest CHARACTER WEAPON");
+			}
+			return new GameCommand(Action.SUGGEST, 0, new Card[] {
+					parseCard(words[1], CluedoGame.CharacterEnum.values()),
+					parseCard(words[2], CluedoGame.WeaponEnum.values()) });
+		case "accuse":
+			if (words.length != 4) {
+				throw new GameError("Usage: accuse CHARACTER WEAPON ROOM");
+			}
+			return new GameCommand(Action.ACCUSE, 0, new Card[] {
+					parseCard(words[1], CluedoGame.CharacterEnum.values()),
+					parseCard(words[2], CluedoGame.WeaponEnum.values()),
+					parseCard(words[3], CluedoGame.RoomEnum.values()) });
+		default:
+			throw new GameError("Unknown command: " + line);
+		}
+	}
+
+	/**
+	 * Return the action of the command.
+	 *
+	 * @return
+	 */
+	public Action getAction() {
+		return action;
+	}
+
+	/**
+	 * Return the exit number (from 1) of an EXIT command, or
+	 * GameController.STAIRWELL.
+	 *
+	 * @return
+	 */
+	public int getExit() {
+		return exit;
+	}
+
+	/**
+	 * Return the cards of a SUGGEST or ACCUSE command.
+	 *
+	 * @return
+	 */
+	public Card[] getCards() {
+		return cards;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(action.keyword());
+		if (action == Action.EXIT) {
+			if (exit == GameController.STAIRWELL) {
+				sb.append(" stairwell");
+			} else {
+				sb.append(' ').append(exit);
+			}
+		}
+		if (cards != null) {
+			for (Card card : cards) {
+				sb.append(' ').append(((Enum<?>) card).name());
+			}
+		}
+		return sb.toString();
+	}
+
+	private static GameCommand simple(Action action, String[] words) {
+		if (words.length != 1) {
+			throw new GameError("Usage: " + action.keyword());
+		}
+		return new GameCommand(action, 0, null);
+	}
+
+	private static int parseNumber(String word) {
+		try {
+			return Integer.parseInt(word);
+		} catch (NumberFormatException e) {
+			throw new GameError("Not a number: " + word);
+		}
+	}
+
+	private static <E extends Enum<E>> Card parseCard(String word, E[] values) {
+		if (Character.isDigit(word.charAt(0))) {
+			int number = parseNumber(word);
+			if (number < 1 || number > values.length) {
+				throw new GameError("No such card: " + word);
+			}
+			return (Card) values[number - 1];
+		}
+		for (E value : values) {
+			if (value.name().equalsIgnoreCase(word)) {
+				return (Card) value;
+			}
+		}
+		throw new GameError("No such card: " + word);
+	}
+}
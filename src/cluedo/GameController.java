@@ -0,0 +1,793 @@
+package cluedo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.metrics.GameEvents;
+
+/**
+ * Runs the turns of a game without any user interface. The controller knows
+ * whose turn it is and what the player has rolled, checks that each action is
+ * allowed at this point of the turn and passes it on to the Board. Front ends
+ * such as game sessions and servers only translate their input into calls on
+ * the controller.
+ */
+public class GameController {
+
+	/**
+	 * Written by writeState instead of a card that does not exist.
+	 */
+	private static final int NO_CARD = 0xFF;
+
+	/**
+	 * By default this many actions can be undone.
+	 */
+	public static final int DEFAULT_UNDO_LIMIT = 64;
+
+	/**
+	 * The exit number that means the stairwell of the room, whichever number
+	 * it has in getExits.
+	 */
+	public static final int STAIRWELL = -1;
+
+	private final CluedoGame game;
+	private final Board board;
+
+	/**
+	 * The die rolled at the start of each turn.
+	 */
+	private final Random die;
+
+	/**
+	 * The players round the table, who take their turns clockwise.
+	 */
+	private final TurnOrder order;
+
+	/**
+	 * The state of the current player's turn and the actions he/she can
+	 * take.
+	 */
+	private final TurnEngine engine;
+
+	/**
+	 * The player whose turn it is.
+	 */
+	private Player current;
+
+	/**
+	 * What the current player rolled at the start of the turn.
+	 */
+	private int roll;
+
+	/**
+	 * The number of turns started so far, counting the current one.
+	 */
+	private int turnNumber;
+
+	/**
+	 * The winner of the game, null until the game is over.
+	 */
+	private Player winner;
+
+	/**
+	 * The player who refuted the last suggestion, null if nobody could.
+	 */
+	private Player lastRefuter;
+
+	/**
+	 * The last suggestion made and who made it, null if none has been made.
+	 */
+	private Card[] lastSuggestion;
+	private Player lastSuggester;
+
+	/**
+	 * The number of suggestions made so far.
+	 */
+	private int suggestionCount;
+
+	/**
+	 * Counts the changes made to the game so far. Anything derived from the
+	 * state of the game, such as a rendered board, stays valid for as long as
+	 * the version does not change.
+	 */
+	private long version;
+
+	/**
+	 * Every action taken, null if the game is not being recorded.
+	 */
+	private GameRecord record;
+
+	/**
+	 * The actions that can be undone and redone.
+	 */
+	private GameHistory history = new GameHistory(DEFAULT_UNDO_LIMIT);
+
+	/**
+	 * true while an action is being redone.
+	 */
+	private boolean redoing;
+
+	/**
+	 * The flight recorder event of the current turn, null while turns are
+	 * not being recorded.
+	 */
+	private GameEvents.Turn turnEvent;
+
+	/**
+	 * Construct a controller for the given game that rolls the game's own
+	 * GameRandom, and start the first turn. Everything that happens in such a
+	 * game follows from its seed and its actions, so it can be recorded and
+	 * replayed.
+	 *
+	 * @param game
+	 */
+	public GameController(CluedoGame game) {
+		this(game, game.getRandom());
+	}
+
+	/**
+	 * Construct a controller for the given game and start the first turn.
+	 * Actions can only be undone, and the game saved with writeState, if the
+	 * die is the game's own random numbers or another GameRandom.
+	 *
+	 * @param game
+	 * @param die
+	 */
+	public GameController(CluedoGame game, Random die) {
+		this.game = game;
+		this.board = game.getBoard();
+		this.die = die;
+		this.order = board.getTurnOrder();
+		this.engine = new TurnEngine(board);
+		startTurn(order.first());
+	}
+
+	/**
+	 * Return the game being played.
+	 *
+	 * @return
+	 */
+	public CluedoGame getGame() {
+		return game;
+	}
+
+	/**
+	 * Return the board of the game being played.
+	 *
+	 * @return
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Return the player whose turn it is.
+	 *
+	 * @return
+	 */
+	public Player getCurrentPlayer() {
+		return current;
+	}
+
+	/**
+	 * Return what the current player rolled at the start of the turn.
+	 *
+	 * @return
+	 */
+	public int getRoll() {
+		return roll;
+	}
+
+	/**
+	 * Return the number of turns started so far.
+	 *
+	 * @return
+	 */
+	public int getTurnNumber() {
+		return turnNumber;
+	}
+
+	/**
+	 * Return the version of the game state, which changes whenever the game
+	 * changes.
+	 *
+	 * @return
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Record every action taken from now on in the given record, or stop
+	 * recording if it is null.
+	 *
+	 * @param record
+	 */
+	public void setRecord(GameRecord record) {
+		this.record = record;
+	}
+
+	/**
+	 * Return the record of the game, null if it is not being recorded.
+	 *
+	 * @return
+	 */
+	public GameRecord getRecord() {
+		return record;
+	}
+
+	/**
+	 * true if somebody has won the game.
+	 *
+	 * @return
+	 */
+	public boolean isFinished() {
+		return winner != null;
+	}
+
+	/**
+	 * Return the winner of the game, null if the game is not over.
+	 *
+	 * @return
+	 */
+	public Player getWinner() {
+		return winner;
+	}
+
+	/**
+	 * Return the player who refuted the last suggestion, null if no one could.
+	 *
+	 * @return
+	 */
+	public Player getLastRefuter() {
+		return lastRefuter;
+	}
+
+	/**
+	 * Return the character, weapon and room of the last suggestion, null if
+	 * none has been made.
+	 *
+	 * @return
+	 */
+	public Card[] getLastSuggestion() {
+		return lastSuggestion;
+	}
+
+	/**
+	 * Return the player who made the last suggestion, null if none has been
+	 * made.
+	 *
+	 * @return
+	 */
+	public Player getLastSuggester() {
+		return lastSuggester;
+	}
+
+	/**
+	 * Return the number of suggestions made so far.
+	 *
+	 * @return
+	 */
+	public int getSuggestionCount() {
+		return suggestionCount;
+	}
+
+	/**
+	 * Return the actions the current player can take right now. Follows the
+	 * rules of the TurnEngine, to which a player may take back his/her own
+	 * actions this turn, except a suggestion, whose answer has already been
+	 * seen.
+	 *
+	 * @return
+	 */
+	public EnumSet<Action> legalActions() {
+		return TurnEngine.actions(getLegalMask());
+	}
+
+	/**
+	 * Return the actions the current player can take right now as a mask,
+	 * bit Action.ordinal() for each, see legalActions.
+	 *
+	 * @return
+	 */
+	public int getLegalMask() {
+		if (isFinished()) {
+			return 0;
+		}
+		int mask = engine.getLegalMask();
+		if (canUndoThisTurn()) {
+			mask |= TurnEngine.bit(Action.UNDO);
+		}
+		if (canRedoThisTurn()) {
+			mask |= TurnEngine.bit(Action.REDO);
+		}
+		return mask;
+	}
+
+	/**
+	 * true if the current player can take the given action right now. Costs
+	 * a bit test for every action but UNDO and REDO.
+	 *
+	 * @param action
+	 * @return
+	 */
+	public boolean isLegal(Action action) {
+		if (isFinished()) {
+			return false;
+		}
+		switch (action) {
+		case UNDO:
+			return canUndoThisTurn();
+		case REDO:
+			return canRedoThisTurn();
+		default:
+			return engine.isLegal(action);
+		}
+	}
+
+	/**
+	 * Return the state of the current player's turn.
+	 *
+	 * @return
+	 */
+	public TurnEngine.State getTurnState() {
+		return engine.getState();
+	}
+
+	/**
+	 * Move the current player one step in the given BoardTopology direction.
+	 *
+	 * @param direction
+	 */
+	public void move(int direction) {
+		checkRunning();
+		Action move = Action.move(direction);
+		engine.check(move);
+		remember();
+		engine.move(move);
+		done(GameRecord.move(direction));
+	}
+
+	/**
+	 * Return the exits of the room the current player is in: the positions of
+	 * the room's entrances followed, if the room has one, by a position in the
+	 * room at the other end of the stairwell. Taking the stairwell lands the
+	 * player on a random position of that room, not necessarily this one.
+	 *
+	 * @return
+	 */
+	public List<Position> getExits() {
+		Room room = board.inWhichRoom(current);
+		if (room == null) {
+			throw new GameError("Cannot exit a room if not in a room.");
+		}
+		List<Position> exits = new ArrayList<Position>(
+				room.getEntrancesPositions());
+		if (room.getStairellTo() != null) {
+			exits.add(room.getStairellTo().getPositions().get(0));
+		}
+		return exits;
+	}
+
+	/**
+	 * Move the current player out of the room by the given exit, numbered
+	 * from 1 in the order of getExits, or by the stairwell if the exit is
+	 * STAIRWELL.
+	 *
+	 * @param exit
+	 */
+	public void exitRoom(int exit) {
+		checkRunning();
+		List<Position> exits = getExits();
+		if (exit == STAIRWELL) {
+			if (board.inWhichRoom(current).getStairellTo() == null) {
+				throw new GameError("There is no stairwell in this room.");
+			}
+			exit = exits.size();
+		}
+		if (exit < 1 || exit > exits.size()) {
+			throw new GameError("No such exit: " + exit);
+		}
+		engine.check(Action.EXIT);
+		remember();
+		Position to = exits.get(exit - 1);
+		Room stairwell = board.inWhichRoom(current).getStairellTo();
+		if (stairwell != null && exit == exits.size()) {
+			to = stairwell.getRandomPosition(game.getRandom());
+		}
+		engine.exitRoom(to);
+		done(GameRecord.exit(exit));
+	}
+
+	/**
+	 * The current player suggests the given character and weapon in the room
+	 * he/she is in. Return the card shown by the refuting player, null if no
+	 * one could refute the suggestion.
+	 *
+	 * @param character
+	 * @param weapon
+	 * @return
+	 */
+	public Card suggest(Card character, Card weapon) {
+		checkRunning();
+		if (!board.inRoom(current)) {
+			throw new GameError(
+					"Cannot make a suggestion if plyer not in a room.");
+		}
+		engine.check(Action.SUGGEST);
+		Card[] suggestion = new Card[] { character, weapon,
+				board.getRoomByToken(current).getRoomCard() };
+		GameHistory.Entry e = remember();
+		for (Player p : board.getAlivePlayers()) {
+			if (p.getCard() == character) {
+				e.suspect = p;
+				e.suspectX = p.getX();
+				e.suspectY = p.getY();
+			}
+		}
+		for (Weapon w : board.getWeapons()) {
+			if (w.getCard() == weapon) {
+				e.weapon = w;
+				e.weaponX = w.getX();
+				e.weaponY = w.getY();
+			}
+		}
+		Card refuted = engine.suggest(suggestion);
+		lastSuggestion = suggestion;
+		lastSuggester = current;
+		suggestionCount++;
+		lastRefuter = null;
+		if (refuted != null) {
+			for (Player p : board.getAlivePlayers()) {
+				if (p != current && p.hasCard(refuted)) {
+					lastRefuter = p;
+				}
+			}
+		}
+		done(GameRecord.suggest(character, weapon));
+		return refuted;
+	}
+
+	/**
+	 * The current player accuses the given cards. A right accusation wins the
+	 * game, a wrong one kicks the player out of the game and passes the turn
+	 * on. Return the result as one of the Board accusation results.
+	 *
+	 * @param character
+	 * @param weapon
+	 * @param room
+	 * @return
+	 */
+	public int accuse(Card character, Card weapon, Card room) {
+		checkRunning();
+		Player accuser = current;
+		engine.check(Action.ACCUSE);
+		remember();
+		int result = engine.accuse(new Card[] { character, weapon, room });
+		switch (result) {
+		case Board.RIGHT_ANSWER:
+			winner = accuser;
+			endTurnEvent();
+			break;
+		case Board.ONE_PLAYER_LEFT:
+			winner = order.first();
+			endTurnEvent();
+			break;
+		case Board.WRONG_ANSWER:
+			startTurn(order.next(accuser));
+			break;
+		default:
+			throw new GameError("Unrecognised accusation result.");
+		}
+		done(GameRecord.accuse(character, weapon, room));
+		return result;
+	}
+
+	/**
+	 * End the current player's turn and start the next player's.
+	 */
+	public void endTurn() {
+		checkRunning();
+		if (!engine.isLegal(Action.END)) {
+			throw new GameError(current.getName()
+					+ " still has moves to make.");
+		}
+		remember();
+		startTurn(order.next(current));
+		done(GameRecord.end());
+	}
+
+	/**
+	 * Set how many actions can be undone. Forgets every action taken so far.
+	 *
+	 * @param limit
+	 */
+	public void setUndoLimit(int limit) {
+		history = new GameHistory(limit);
+	}
+
+	/**
+	 * true if there is an action to undo.
+	 *
+	 * @return
+	 */
+	public boolean canUndo() {
+		return history.canUndo();
+	}
+
+	/**
+	 * true if there is an undone action to take again.
+	 *
+	 * @return
+	 */
+	public boolean canRedo() {
+		return history.canRedo();
+	}
+
+	/**
+	 * Undo the last action, whoever took it, putting back everything it
+	 * changed including the random numbers, so that taking it again gives
+	 * the same result. Listeners are not told, and a recorded game forgets
+	 * the action. Costs the same whatever the action was.
+	 */
+	public void undo() {
+		if (!history.canUndo()) {
+			throw new GameError("Nothing to undo.");
+		}
+		if (die != game.getRandom() && !(die instanceof GameRandom)) {
+			throw new GameError("Cannot restore the state of this die.");
+		}
+		GameHistory.Entry e = history.undo();
+		game.getRandom().setState(e.random);
+		if (die != game.getRandom()) {
+			((GameRandom) die).setState(e.die);
+		}
+		turnNumber = e.turnNumber;
+		roll = e.roll;
+		e.next.setStepsRemain(e.nextSteps);
+		if (e.suspect != null) {
+			e.suspect.setX(e.suspectX);
+			e.suspect.setY(e.suspectY);
+		}
+		if (e.weapon != null) {
+			e.weapon.setX(e.weaponX);
+			e.weapon.setY(e.weaponY);
+		}
+		current = e.current;
+		current.setX(e.x);
+		current.setY(e.y);
+		current.setStepsRemain(e.steps);
+		if (e.suggested) {
+			current.setSuggested();
+		} else {
+			current.resetSuggeted();
+		}
+		lastSuggestion = e.lastSuggestion;
+		lastSuggester = e.lastSuggester;
+		lastRefuter = e.lastRefuter;
+		suggestionCount = e.suggestionCount;
+		winner = e.winner;
+		order.setAliveMask(e.alive);
+		resumeTurn();
+		if (record != null) {
+			record.removeLast();
+		}
+		version++;
+	}
+
+	/**
+	 * Take the last undone action again.
+	 */
+	public void redo() {
+		if (!history.canRedo()) {
+			throw new GameError("Nothing to redo.");
+		}
+		redoing = true;
+		try {
+			GameRecord.apply(this, history.next().action);
+		} finally {
+			redoing = false;
+		}
+	}
+
+	/**
+	 * Write everything about the game that changes as it is played: the
+	 * state of the random numbers, the turn, the last suggestion, who is
+	 * still in the game and where every token is. The cards never change
+	 * once dealt, so they are not written. A game set up the same way can be
+	 * brought to the same point with readState.
+	 *
+	 * @param out
+	 */
+	public void writeState(ByteBuffer out) {
+		out.putLong(game.getRandom().getState());
+		if (die == game.getRandom()) {
+			out.put((byte) 0);
+		} else if (die instanceof GameRandom) {
+			out.put((byte) 1).putLong(((GameRandom) die).getState());
+		} else {
+			throw new GameError("Cannot save the state of this die.");
+		}
+		out.putLong(version);
+		out.putInt(turnNumber);
+		out.putInt(order.getAliveMask()).put((byte) roll)
+				.put((byte) current.getUid());
+		out.put(uid(winner)).put(uid(lastRefuter)).put(uid(lastSuggester));
+		out.putInt(suggestionCount);
+		for (int i = 0; i < 3; i++) {
+			out.put((byte) (lastSuggestion == null ? NO_CARD : CluedoGame
+					.indexOf(lastSuggestion[i])));
+		}
+		for (Player p : game.getPlayers()) {
+			out.putShort((short) p.getX()).putShort((short) p.getY());
+			out.put((byte) p.getStepsRemain())
+					.put((byte) (p.hasSuggested() ? 1 : 0));
+		}
+		for (Weapon w : board.getWeapons()) {
+			out.putShort((short) w.getX()).putShort((short) w.getY());
+		}
+	}
+
+	/**
+	 * Bring the game to the point written by writeState. The game must have
+	 * been set up the same way as the one written, with the same board,
+	 * players and cards.
+	 *
+	 * @param in
+	 */
+	public void readState(ByteBuffer in) {
+		game.getRandom().setState(in.getLong());
+		if (in.get() != 0) {
+			if (!(die instanceof GameRandom) || die == game.getRandom()) {
+				throw new GameError("Cannot restore the state of this die.");
+			}
+			((GameRandom) die).setState(in.getLong());
+		}
+		version = in.getLong();
+		turnNumber = in.getInt();
+		order.setAliveMask(in.getInt());
+		roll = in.get();
+		List<Player> players = game.getPlayers();
+		current = player(players, in.get());
+		winner = player(players, in.get());
+		lastRefuter = player(players, in.get());
+		lastSuggester = player(players, in.get());
+		suggestionCount = in.getInt();
+		Card[] suggestion = new Card[3];
+		for (int i = 0; i < 3; i++) {
+			int card = in.get() & 0xFF;
+			suggestion[i] = card == NO_CARD ? null : CluedoGame.cardAt(card);
+		}
+		lastSuggestion = suggestion[0] == null ? null : suggestion;
+		for (Player p : players) {
+			p.setX(in.getShort());
+			p.setY(in.getShort());
+			p.setStepsRemain(in.get());
+			if (in.get() != 0) {
+				p.setSuggested();
+			} else {
+				p.resetSuggeted();
+			}
+		}
+		for (Weapon w : board.getWeapons()) {
+			w.setX(in.getShort());
+			w.setY(in.getShort());
+		}
+		resumeTurn();
+		history.clear();
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Give the turn to the given player and roll the die for him/her.
+	 */
+	private void startTurn(Player player) {
+		endTurnEvent();
+		current = player;
+		roll = die.nextInt(6) + 1;
+		current.setStepsRemain(roll);
+		engine.startTurn(current, roll);
+		game.getListener().rolled(current, roll);
+		turnNumber++;
+		turnEvent = GameEvents.beginTurn();
+	}
+
+	/**
+	 * Bring the turn engine back to the current player's turn as it now is,
+	 * after an undo or a restore.
+	 */
+	private void resumeTurn() {
+		engine.startTurn(current, roll);
+		if (isFinished()) {
+			engine.finish();
+		}
+	}
+
+	/**
+	 * true if the last action can be undone by the current player, that is
+	 * if he/she took it this turn and it was not a suggestion.
+	 */
+	private boolean canUndoThisTurn() {
+		GameHistory.Entry last = history.last();
+		return last != null && last.turnNumber == turnNumber
+				&& (last.action & 0xF) != GameRecord.SUGGEST;
+	}
+
+	/**
+	 * true if the next action to redo was taken this turn.
+	 */
+	private boolean canRedoThisTurn() {
+		return history.canRedo() && history.next().turnNumber == turnNumber;
+	}
+
+	/**
+	 * Commit the flight recorder event of the turn that is ending.
+	 */
+	private void endTurnEvent() {
+		GameEvents.commit(turnEvent, game.getId(), current, turnNumber, roll);
+		turnEvent = null;
+	}
+
+	/**
+	 * Fill in the history entry of the action about to be taken with
+	 * everything it could change.
+	 */
+	private GameHistory.Entry remember() {
+		GameHistory.Entry e = history.begin();
+		e.random = game.getRandom().getState();
+		if (die != game.getRandom() && die instanceof GameRandom) {
+			e.die = ((GameRandom) die).getState();
+		}
+		e.turnNumber = turnNumber;
+		e.roll = roll;
+		e.current = current;
+		e.x = current.getX();
+		e.y = current.getY();
+		e.steps = current.getStepsRemain();
+		e.suggested = current.hasSuggested();
+		e.next = order.next(current);
+		e.nextSteps = e.next.getStepsRemain();
+		e.suspect = null;
+		e.weapon = null;
+		e.lastSuggestion = lastSuggestion;
+		e.lastSuggester = lastSuggester;
+		e.lastRefuter = lastRefuter;
+		e.suggestionCount = suggestionCount;
+		e.winner = winner;
+		e.alive = order.getAliveMask();
+		return e;
+	}
+
+	/**
+	 * Finish an action: count the change and remember and record it.
+	 */
+	private void done(int action) {
+		version++;
+		history.commit(action, redoing);
+		if (record != null) {
+			record.add(action);
+		}
+	}
+
+	private static byte uid(Player player) {
+		return (byte) (player == null ? 0 : player.getUid());
+	}
+
+	private static Player player(List<Player> players, int uid) {
+		return uid == 0 ? null : players.get(uid - 1);
+	}
+
+	private void checkRunning() {
+		if (isFinished()) {
+			throw new GameError("The game is over.");
+		}
+	}
+}
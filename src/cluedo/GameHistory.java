@@ -0,0 +1,162 @@
+package cluedo;
+
+/**
+ * The actions of a game that can be undone and redone. Each action taken
+ * through a GameController is kept as an Entry: the action packed as in
+ * GameRecord, to redo it, and the few things it could change as they were
+ * before, to undo it. Entries live in a ring of at most limit entries and are
+ * reused, so remembering an action allocates nothing once the ring is full
+ * and undoing one only copies those fields back. When the ring is full the
+ * oldest action can no longer be undone.
+ */
+class GameHistory {
+
+	/**
+	 * One action and what it could change, as it was before.
+	 */
+	static class Entry {
+		int action;
+		long random;
+
+		/**
+		 * The state of the die, if the controller rolls one of its own.
+		 */
+		long die;
+		int turnNumber;
+		int roll;
+		Player current;
+		int x;
+		int y;
+		int steps;
+		boolean suggested;
+
+		/**
+		 * The player whose turn would start next and his/her steps.
+		 */
+		Player next;
+		int nextSteps;
+
+		/**
+		 * The tokens a suggestion drags into the room, null for other
+		 * actions or if the suspect is not in the game.
+		 */
+		Player suspect;
+		int suspectX;
+		int suspectY;
+		Weapon weapon;
+		int weaponX;
+		int weaponY;
+
+		Card[] lastSuggestion;
+		Player lastSuggester;
+		Player lastRefuter;
+		int suggestionCount;
+		Player winner;
+
+		/**
+		 * Who was still in the game, as TurnOrder.getAliveMask.
+		 */
+		int alive;
+	}
+
+	private final Entry[] entries;
+
+	/**
+	 * Where the next action goes.
+	 */
+	private int head;
+
+	/**
+	 * The number of actions that can be undone, before head, and redone,
+	 * from head on.
+	 */
+	private int undoable;
+	private int redoable;
+
+	/**
+	 * Construct a history that can undo up to limit actions.
+	 *
+	 * @param limit
+	 */
+	GameHistory(int limit) {
+		if (limit < 1) {
+			throw new GameError("Invalid undo limit: " + limit);
+		}
+		entries = new Entry[limit];
+	}
+
+	/**
+	 * Return the entry for the next action, to be filled in before the
+	 * action is taken. The action is only remembered once commit is called.
+	 *
+	 * @return
+	 */
+	Entry begin() {
+		Entry e = entries[head];
+		if (e == null) {
+			e = entries[head] = new Entry();
+		}
+		return e;
+	}
+
+	/**
+	 * Remember the action whose entry was returned by begin. Anything that
+	 * could be redone is forgotten, unless this action is the one redone.
+	 *
+	 * @param action
+	 * @param redoing
+	 */
+	void commit(int action, boolean redoing) {
+		entries[head].action = action;
+		head = (head + 1) % entries.length;
+		undoable = Math.min(undoable + 1, entries.length);
+		redoable = redoing ? redoable - 1 : 0;
+	}
+
+	boolean canUndo() {
+		return undoable > 0;
+	}
+
+	boolean canRedo() {
+		return redoable > 0;
+	}
+
+	/**
+	 * Return the entry of the last action, null if there is none.
+	 *
+	 * @return
+	 */
+	Entry last() {
+		return undoable == 0 ? null : entries[(head + entries.length - 1)
+				% entries.length];
+	}
+
+	/**
+	 * Forget the last action as done and return its entry.
+	 *
+	 * @return
+	 */
+	Entry undo() {
+		head = (head + entries.length - 1) % entries.length;
+		undoable--;
+		redoable++;
+		return entries[head];
+	}
+
+	/**
+	 * Return the entry of the action redo would take again.
+	 *
+	 * @return
+	 */
+	Entry next() {
+		return entries[head];
+	}
+
+	/**
+	 * Forget every action.
+	 */
+	void clear() {
+		undoable = 0;
+		redoable = 0;
+	}
+}
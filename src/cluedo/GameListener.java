@@ -0,0 +1,113 @@
+package cluedo;
+
+/**
+ * Told about everything that happens in a game, in the order it happens. A
+ * listener is given to a CluedoGame when it is created and is called by the
+ * game, its Board and whatever runs the turns. Listeners are called on the
+ * thread making the change and should return quickly.
+ */
+public interface GameListener {
+
+	/**
+	 * A game for the given number of players is being set up.
+	 *
+	 * @param numPlayers
+	 */
+	public void started(int numPlayers);
+
+	/**
+	 * The given cards were chosen as the solution, character, weapon and room.
+	 *
+	 * @param solution
+	 */
+	public void solutionChosen(Card[] solution);
+
+	/**
+	 * The given card was dealt to the given player, or set aside as unused if
+	 * the player is null.
+	 *
+	 * @param player
+	 * @param card
+	 */
+	public void dealt(Player player, Card card);
+
+	/**
+	 * The given player rolled the die at the start of his/her turn.
+	 *
+	 * @param player
+	 * @param roll
+	 */
+	public void rolled(Player player, int roll);
+
+	/**
+	 * The given player took one step in the given BoardTopology direction.
+	 * The player is at the new position already.
+	 *
+	 * @param player
+	 * @param direction
+	 */
+	public void stepped(Player player, int direction);
+
+	/**
+	 * The given player stepped through a door and was put in the given room.
+	 *
+	 * @param player
+	 * @param room
+	 */
+	public void enteredRoom(Player player, Room room);
+
+	/**
+	 * The given player left the given room through one of its doors.
+	 *
+	 * @param player
+	 * @param room
+	 */
+	public void exitedRoom(Player player, Room room);
+
+	/**
+	 * The given player took the stairwell from one room to the other.
+	 *
+	 * @param player
+	 * @param from
+	 * @param to
+	 */
+	public void tookStairwell(Player player, Room from, Room to);
+
+	/**
+	 * The given token was moved into the given room by a suggestion.
+	 *
+	 * @param token
+	 * @param room
+	 */
+	public void summoned(Token token, Room room);
+
+	/**
+	 * The given player suggested the given cards. The refuter is the player
+	 * who showed a card and shown the card, both null if no one could refute
+	 * the suggestion.
+	 *
+	 * @param player
+	 * @param suggestion
+	 * @param refuter
+	 * @param shown
+	 */
+	public void suggested(Player player, Card[] suggestion, Player refuter,
+			Card shown);
+
+	/**
+	 * The given player accused the given cards with the given result, one of
+	 * the Board accusation results.
+	 *
+	 * @param player
+	 * @param accusation
+	 * @param result
+	 */
+	public void accused(Player player, Card[] accusation, int result);
+
+	/**
+	 * The given player is out of the game after a wrong accusation.
+	 *
+	 * @param player
+	 */
+	public void eliminated(Player player);
+}
@@ -0,0 +1,64 @@
+package cluedo;
+
+import java.util.Random;
+
+/**
+ * The random numbers of a game. Gives exactly the same numbers as
+ * java.util.Random with the same seed, but its state can be read and set, so
+ * a game can be saved part way through and carry on with the same numbers
+ * when it is restored. Not thread safe, unlike Random; a game is only ever
+ * played by one thread at a time.
+ */
+public class GameRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	/**
+	 * The 48 bits of state. Set by setSeed, which the Random constructor
+	 * calls, so it must not have an initialiser.
+	 */
+	private long state;
+
+	/**
+	 * Construct a generator with the given seed.
+	 *
+	 * @param seed
+	 */
+	public GameRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	/**
+	 * Return the state of the generator.
+	 *
+	 * @return
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Set the state of the generator to one returned by getState.
+	 *
+	 * @param state
+	 */
+	public void setState(long state) {
+		this.state = state & MASK;
+	}
+
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+}
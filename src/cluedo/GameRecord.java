@@ -0,0 +1,262 @@
+package cluedo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Everything needed to play a game again exactly as it was played: the
+ * board, the number of players, the seed of the game's GameRandom and every
+ * action taken through its GameController, in order. Each action is packed
+ * into an int: the low four bits are the kind of action and the rest are its
+ * arguments, directions as BoardTopology directions and cards as their
+ * CluedoGame.indexOf index.
+ */
+public class GameRecord {
+
+	public static final int MOVE = 1;
+	public static final int EXIT = 2;
+	public static final int SUGGEST = 3;
+	public static final int ACCUSE = 4;
+	public static final int END = 5;
+
+	/**
+	 * Written at the start of a saved record.
+	 */
+	public static final int MAGIC = 0x434C4752;
+	public static final int FORMAT_VERSION = 1;
+
+	private final String boardFile;
+	private final int numPlayers;
+	private final long seed;
+	private int[] actions = new int[64];
+	private int size;
+
+	/**
+	 * Construct an empty record of a game.
+	 *
+	 * @param boardFile
+	 * @param numPlayers
+	 * @param seed
+	 */
+	public GameRecord(String boardFile, int numPlayers, long seed) {
+		this.boardFile = boardFile;
+		this.numPlayers = numPlayers;
+		this.seed = seed;
+	}
+
+	/**
+	 * Return the board file the game is played on.
+	 *
+	 * @return
+	 */
+	public String getBoardFile() {
+		return boardFile;
+	}
+
+	/**
+	 * Return the number of players the game started with.
+	 *
+	 * @return
+	 */
+	public int getNumPlayers() {
+		return numPlayers;
+	}
+
+	/**
+	 * Return the seed of the game.
+	 *
+	 * @return
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Return the number of actions recorded.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the action with the given index.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int get(int index) {
+		if (index < 0 || index >= size) {
+			throw new GameError("No action " + index + " in a record of "
+					+ size);
+		}
+		return actions[index];
+	}
+
+	/**
+	 * Append an action packed by one of the static methods.
+	 *
+	 * @param action
+	 */
+	public void add(int action) {
+		if (size == actions.length) {
+			actions = Arrays.copyOf(actions, size * 2);
+		}
+		actions[size++] = action;
+	}
+
+	/**
+	 * Forget the last action, when it is undone.
+	 */
+	public void removeLast() {
+		if (size == 0) {
+			throw new GameError("No action to remove.");
+		}
+		size--;
+	}
+
+	/**
+	 * Create a new game set up exactly as the recorded one was, with a
+	 * controller at the start of the first turn.
+	 *
+	 * @param listener
+	 * @return
+	 */
+	public GameController newGame(GameListener listener) {
+		return new GameController(new CluedoGame(boardFile, numPlayers,
+				listener, seed));
+	}
+
+	/**
+	 * Take the given action through the given controller.
+	 *
+	 * @param controller
+	 * @param action
+	 */
+	public static void apply(GameController controller, int action) {
+		switch (action & 0xF) {
+		case MOVE:
+			controller.move(action >>> 4 & 0x3);
+			break;
+		case EXIT:
+			controller.exitRoom(action >>> 4 & 0xFF);
+			break;
+		case SUGGEST:
+			controller.suggest(CluedoGame.cardAt(action >>> 4 & 0x1F),
+					CluedoGame.cardAt(action >>> 9 & 0x1F));
+			break;
+		case ACCUSE:
+			controller.accuse(CluedoGame.cardAt(action >>> 4 & 0x1F),
+					CluedoGame.cardAt(action >>> 9 & 0x1F),
+					CluedoGame.cardAt(action >>> 14 & 0x1F));
+			break;
+		case END:
+			controller.endTurn();
+			break;
+		default:
+			throw new GameError("Invalid recorded action: " + action);
+		}
+	}
+
+	/**
+	 * Pack a step in the given direction.
+	 *
+	 * @param direction
+	 * @return
+	 */
+	public static int move(int direction) {
+		return MOVE | direction << 4;
+	}
+
+	/**
+	 * Pack leaving a room by the given exit, numbered from 1.
+	 *
+	 * @param exit
+	 * @return
+	 */
+	public static int exit(int exit) {
+		return EXIT | exit << 4;
+	}
+
+	/**
+	 * Pack a suggestion.
+	 *
+	 * @param character
+	 * @param weapon
+	 * @return
+	 */
+	public static int suggest(Card character, Card weapon) {
+		return SUGGEST | CluedoGame.indexOf(character) << 4
+				| CluedoGame.indexOf(weapon) << 9;
+	}
+
+	/**
+	 * Pack an accusation.
+	 *
+	 * @param character
+	 * @param weapon
+	 * @param room
+	 * @return
+	 */
+	public static int accuse(Card character, Card weapon, Card room) {
+		return ACCUSE | CluedoGame.indexOf(character) << 4
+				| CluedoGame.indexOf(weapon) << 9
+				| CluedoGame.indexOf(room) << 14;
+	}
+
+	/**
+	 * Pack ending the turn.
+	 *
+	 * @return
+	 */
+	public static int end() {
+		return END;
+	}
+
+	/**
+	 * Write the record.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(FORMAT_VERSION);
+		out.writeUTF(boardFile);
+		out.writeByte(numPlayers);
+		out.writeLong(seed);
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeInt(actions[i]);
+		}
+	}
+
+	/**
+	 * Read a record written by write.
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static GameRecord read(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a game record.");
+		}
+		int version = in.readShort();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported game record format " + version);
+		}
+		GameRecord record = new GameRecord(in.readUTF(), in.readByte(),
+				in.readLong());
+		int size = in.readInt();
+		record.actions = new int[Math.max(size, 64)];
+		for (int i = 0; i < size; i++) {
+			record.actions[i] = in.readInt();
+		}
+		record.size = size;
+		return record;
+	}
+}
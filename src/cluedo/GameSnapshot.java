@@ -0,0 +1,195 @@
+package cluedo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Saves a game part way through and brings it back. A snapshot holds
+ * everything a game needs to carry on as if it had never stopped: the board
+ * file, the cards, and the state written by GameController.writeState, which
+ * includes the state of the game's random numbers.
+ *
+ * A snapshot is:
+ *
+ * - i32 MAGIC, u16 FORMAT_VERSION, u16 length of the rest up to the checksum
+ *
+ * - the board file in UTF-8, u16 length first, and u8 players
+ *
+ * - the solution as three u8 cards, u8 number of unused cards then the
+ * cards, and for each player in uid order u8 size of the hand then the cards
+ *
+ * - the controller state
+ *
+ * - i32 CRC32 of everything before it
+ *
+ * Cards are written as their CluedoGame.indexOf index.
+ */
+public class GameSnapshot {
+
+	public static final int MAGIC = 0x434C5331;
+	public static final int FORMAT_VERSION = 2;
+
+	/**
+	 * Big enough for a snapshot of any game on a board with a file name of
+	 * up to MAX_BOARD_NAME bytes.
+	 */
+	public static final int MAX_SIZE = 512;
+	public static final int MAX_BOARD_NAME = 200;
+
+	private static final int HEADER_SIZE = 8;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Write a snapshot of the game of the given controller at the position of
+	 * the buffer, and return its size.
+	 *
+	 * @param controller
+	 * @param out
+	 * @return
+	 */
+	public static int write(GameController controller, ByteBuffer out) {
+		CluedoGame game = controller.getGame();
+		int start = out.position();
+		out.putInt(MAGIC).putShort((short) FORMAT_VERSION).putShort((short) 0);
+		byte[] board = utf(game.getBoardFile());
+		out.putShort((short) board.length).put(board);
+		out.put((byte) game.getPlayers().size());
+		for (Card card : game.getSolution()) {
+			out.put((byte) CluedoGame.indexOf(card));
+		}
+		putCards(out, game.getUnusedCards());
+		for (Player p : game.getPlayers()) {
+			putCards(out, p.getHand());
+		}
+		controller.writeState(out);
+		out.putShort(start + 6, (short) (out.position() - start - HEADER_SIZE));
+		out.putInt((int) checksum(out, start, out.position()));
+		return out.position() - start;
+	}
+
+	/**
+	 * Read a snapshot and return a controller for a new game brought to the
+	 * point it was saved at. The new game has no listener.
+	 *
+	 * @param in
+	 * @return
+	 */
+	public static GameController read(ByteBuffer in) {
+		int start = check(in);
+		in.position(start + HEADER_SIZE);
+		byte[] board = new byte[in.getShort() & 0xFFFF];
+		in.get(board);
+		int numPlayers = in.get();
+		GameController controller = new GameController(new CluedoGame(
+				new String(board, UTF8), numPlayers, GameAdapter.NONE, 0));
+		readGame(controller, in);
+		return controller;
+	}
+
+	/**
+	 * Read a snapshot into the game of the given controller, which must be
+	 * on the same board with the same number of players. Much faster than
+	 * read as the board is not loaded again.
+	 *
+	 * @param controller
+	 * @param in
+	 */
+	public static void read(GameController controller, ByteBuffer in) {
+		int start = check(in);
+		in.position(start + HEADER_SIZE);
+		CluedoGame game = controller.getGame();
+		byte[] board = new byte[in.getShort() & 0xFFFF];
+		in.get(board);
+		int numPlayers = in.get();
+		if (!game.getBoardFile().equals(new String(board, UTF8))
+				|| numPlayers != game.getPlayers().size()) {
+			throw new GameError("The snapshot is of a game with "
+					+ numPlayers + " players on " + new String(board, UTF8));
+		}
+		readGame(controller, in);
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private static byte[] utf(String s) {
+		byte[] bytes = s.getBytes(UTF8);
+		if (bytes.length > MAX_BOARD_NAME) {
+			throw new GameError("Board file name too long for a snapshot: " + s);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Check the header and checksum of the snapshot at the position of the
+	 * buffer, return where it starts and leave the position after it.
+	 */
+	private static int check(ByteBuffer in) {
+		int start = in.position();
+		if (in.remaining() < HEADER_SIZE + 4 || in.getInt(start) != MAGIC) {
+			throw new GameError("Not a game snapshot.");
+		}
+		int version = in.getShort(start + 4);
+		if (version != FORMAT_VERSION) {
+			throw new GameError("Unsupported snapshot format " + version);
+		}
+		int end = start + HEADER_SIZE + (in.getShort(start + 6) & 0xFFFF);
+		if (end + 4 > in.limit()) {
+			throw new GameError("Truncated game snapshot.");
+		}
+		if (in.getInt(end) != (int) checksum(in, start, end)) {
+			throw new GameError("Corrupt game snapshot.");
+		}
+		in.position(end + 4);
+		return start;
+	}
+
+	private static void readGame(GameController controller, ByteBuffer in) {
+		CluedoGame game = controller.getGame();
+		Card[] solution = game.getSolution();
+		for (int i = 0; i < solution.length; i++) {
+			solution[i] = CluedoGame.cardAt(in.get());
+		}
+		getCards(in, game.getUnusedCards());
+		for (Player p : game.getPlayers()) {
+			getCards(in, p.getHand());
+		}
+		controller.readState(in);
+		// skip the checksum
+		in.getInt();
+	}
+
+	private static void putCards(ByteBuffer out, List<Card> cards) {
+		out.put((byte) cards.size());
+		for (Card card : cards) {
+			out.put((byte) CluedoGame.indexOf(card));
+		}
+	}
+
+	private static void getCards(ByteBuffer in, List<Card> cards) {
+		cards.clear();
+		for (int n = in.get(); n > 0; n--) {
+			cards.add(CluedoGame.cardAt(in.get()));
+		}
+	}
+
+	private static long checksum(ByteBuffer buffer, int from, int to) {
+		CRC32 crc = new CRC32();
+		if (buffer.hasArray()) {
+			crc.update(buffer.array(), buffer.arrayOffset() + from, to - from);
+		} else {
+			byte[] bytes = new byte[to - from];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = buffer.get(from + i);
+			}
+			crc.update(bytes);
+		}
+		return crc.getValue();
+	}
+}
@@ -12,12 +12,12 @@ public class Position {
 	/**
 	 * Represents the x coordinate, ie row number.
 	 */
-	private int x;
+	private final int x;
 
 	/**
 	 * Represents the y coordinate, ie column number.
 	 */
-	private int y;
+	private final int y;
 
 	/**
 	 * Represents the type of the position, can be a blank space, room or invalid place.
@@ -31,22 +31,6 @@ public class Position {
 		this.type = type;
 	}
 
-	/**
-	 * Set the x coordinate of the Position.
-	 * @param x
-	 */
-	public void setX(int x) {
-		this.x = x;
-	}
-
-	/**
-	 * Set the y coordinate of the Position.
-	 * @param y
-	 */
-	public void setY(int y) {
-		this.y = y;
-	}
-
 	/**
 	 * Return the x coordinate of the Position.
 	 * @return
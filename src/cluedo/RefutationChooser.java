@@ -0,0 +1,20 @@
+package cluedo;
+
+/**
+ * Chooses which card a player shows to refute a suggestion when he/she holds
+ * more than one of the suggested cards. Without one the Board shows the
+ * first card of the suggestion the refuter holds.
+ */
+public interface RefutationChooser {
+
+	/**
+	 * Return the card the given refuter shows the given suggester, one of
+	 * the cards of the suggestion that the refuter holds.
+	 *
+	 * @param refuter
+	 * @param suggester
+	 * @param suggestion
+	 * @return
+	 */
+	public Card chooseCard(Player refuter, Player suggester, Card[] suggestion);
+}
@@ -1,13 +1,16 @@
 package cluedo;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
 /**
  * Represent a room on a board. When a player in a game, he/she can
  * make suggestions. A Room may have one or more entrances. A Room may
- * be connected to another Room if there is a stairwell.
+ * be connected to another Room if there is a stairwell. A Room is built by
+ * the BoardTopology it belongs to and cannot be changed from outside the
+ * package, so one can be shared by every game on that topology.
  *
  * @author Shenbo Xuan 300259386
  *
@@ -22,12 +25,19 @@ public class Room {
 	/**
 	 * Represent all the Positions the room contains.
 	 */
-	private List<Position> positions;
+	private final List<Position> positions;
 
 	/**
 	 * Represent all the Entrances the room has.
 	 */
-	private List<Entrance> entrances;
+	private final List<Entrance> entrances;
+
+	/**
+	 * Read-only views of the positions and entrances, handed out instead of
+	 * the lists themselves.
+	 */
+	private final List<Position> positionsView;
+	private final List<Entrance> entrancesView;
 
 	/**
 	 * Represent a full name of a room.
@@ -47,6 +57,8 @@ public class Room {
 		this.shortName = shortName;
 		positions = new ArrayList<Position>();
 		entrances = new ArrayList<Entrance>();
+		positionsView = Collections.unmodifiableList(positions);
+		entrancesView = Collections.unmodifiableList(entrances);
 		setName();
 	}
 
@@ -104,11 +116,12 @@ public class Room {
 	}
 
 	/**
-	 * Return the list of all Positions contained in the room.
+	 * Return the list of all Positions contained in the room, which cannot be
+	 * modified.
 	 * @return
 	 */
 	public List<Position> getPositions() {
-		return positions;
+		return positionsView;
 	}
 
 	/**
@@ -124,7 +137,7 @@ public class Room {
 	 * Add a Position to the Room.
 	 * @param pos
 	 */
-	public void addPosition(Position pos) {
+	void addPosition(Position pos) {
 		positions.add(pos);
 	}
 
@@ -132,16 +145,16 @@ public class Room {
 	 * Add an entrance to the Room.
 	 * @param entrance
 	 */
-	public void addEntrance(Entrance entrance) {
+	void addEntrance(Entrance entrance) {
 		entrances.add(entrance);
 	}
 
 	/**
-	 * Return a list of all entrances in the room.
+	 * Return a list of all entrances in the room, which cannot be modified.
 	 * @return
 	 */
 	public List<Entrance> getEntrances() {
-		return entrances;
+		return entrancesView;
 	}
 
 	/**
@@ -160,7 +173,7 @@ public class Room {
 	 * Set the Room connected to this Room by the stairwell.
 	 * @param stairwellTo
 	 */
-	public void setStairwellTo(Room stairwellTo) {
+	void setStairwellTo(Room stairwellTo) {
 		this.stairwellTo = stairwellTo;
 	}
 
@@ -210,7 +223,15 @@ public class Room {
 	 * @return
 	 */
 	public Position getRandomPosition() {
-		Random random = new Random();
+		return getRandomPosition(new Random());
+	}
+
+	/**
+	 * Get a random position in a room, chosen with the given random numbers.
+	 * @param random
+	 * @return
+	 */
+	public Position getRandomPosition(Random random) {
 		int index = random.nextInt(positions.size());
 		return positions.get(index);
 	}
@@ -0,0 +1,109 @@
+package cluedo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A screen of console output built up in memory and written with a single
+ * write when it is flushed, rather than line by line, so that a screen costs
+ * one system call however many lines it has. The text and byte buffers are
+ * kept and reused from screen to screen, so a steady game allocates nothing
+ * to print.
+ *
+ * Not thread-safe, a screen belongs to the one thread that draws on it.
+ */
+public class Screen {
+
+	private final StringBuilder text = new StringBuilder(4096);
+	private final OutputStream out;
+	private final CharsetEncoder encoder;
+	private ByteBuffer bytes = ByteBuffer.allocate(4096);
+
+	/**
+	 * Construct a screen written to the given stream in the default charset.
+	 *
+	 * @param out
+	 */
+	public Screen(OutputStream out) {
+		this.out = out;
+		this.encoder = Charset.defaultCharset().newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	public Screen print(String s) {
+		text.append(s);
+		return this;
+	}
+
+	public Screen print(long i) {
+		text.append(i);
+		return this;
+	}
+
+	public Screen println(String s) {
+		text.append(s).append('\n');
+		return this;
+	}
+
+	public Screen println() {
+		text.append('\n');
+		return this;
+	}
+
+	/**
+	 * Return the text of the screen so far, to which a board can be rendered
+	 * directly.
+	 *
+	 * @return
+	 */
+	public StringBuilder text() {
+		return text;
+	}
+
+	/**
+	 * Write the screen out in one write and start a new one.
+	 */
+	public void flush() {
+		if (text.length() == 0) {
+			return;
+		}
+		CharBuffer chars = CharBuffer.wrap(text);
+		encoder.reset();
+		bytes.clear();
+		while (encoder.encode(chars, bytes, true).isOverflow()) {
+			grow();
+		}
+		while (encoder.flush(bytes).isOverflow()) {
+			grow();
+		}
+		text.setLength(0);
+		try {
+			out.write(bytes.array(), 0, bytes.position());
+			out.flush();
+		} catch (IOException e) {
+			throw new GameError("Cannot write to the console: " + e);
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Double the byte buffer, keeping what has been encoded so far.
+	 */
+	private void grow() {
+		ByteBuffer bigger = ByteBuffer.allocate(bytes.capacity() * 2);
+		bytes.flip();
+		bigger.put(bytes);
+		bytes = bigger;
+	}
+}
@@ -0,0 +1,232 @@
+package cluedo;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Random;
+
+/**
+ * Plays games from scripts of named commands instead of the TextClient menus,
+ * for regression runs over recorded sessions. A script is read a line at a
+ * time, one GameCommand per line (move n, exit 2, exit stairwell, suggest
+ * MISS_SCARLETT ROPE, accuse ..., end), each played by whoever's turn it is.
+ * Blank lines and lines starting with # are skipped, and a script may start
+ * with
+ *
+ * <pre>
+ * players N
+ * seed S
+ * </pre>
+ *
+ * to set the number of players (3 by default) and the seed of the game, so
+ * that the same script always plays the same game. The board is never
+ * printed, instead the results are written one line each as key=value pairs:
+ *
+ * <pre>
+ * event=suggested script=a.txt line=7 player=1 refuter=3 card=ROPE
+ * event=accused script=a.txt line=9 player=2 result=wrong
+ * event=error script=a.txt line=12 message="You cannot north now."
+ * event=result script=a.txt seed=42 players=3 commands=80 errors=1 turns=21 finished=true winner=1
+ * </pre>
+ *
+ * A command that is not allowed is reported and skipped. Run as
+ *
+ * <pre>
+ * java cluedo.TextClient -script boardName.txt script...
+ * </pre>
+ *
+ * where a script of - is read from standard input.
+ */
+public class ScriptRunner {
+
+	/**
+	 * The screen is written out whenever it holds this many characters.
+	 */
+	private static final int FLUSH_AT = 1 << 16;
+
+	private final String boardFile;
+	private final Screen out;
+
+	/**
+	 * Construct a runner that plays on the given board and writes its results
+	 * to the given screen.
+	 *
+	 * @param boardFile
+	 * @param out
+	 */
+	public ScriptRunner(String boardFile, Screen out) {
+		this.boardFile = boardFile;
+		this.out = out;
+	}
+
+	/**
+	 * Play the script of the given name from the given reader and report the
+	 * result. Return the controller of the game played, null if the script
+	 * has no commands.
+	 *
+	 * @param name
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public GameController run(String name, BufferedReader in)
+			throws IOException {
+		int players = 3;
+		long seed = new Random().nextLong();
+		GameController controller = null;
+		int commands = 0;
+		int errors = 0;
+		int lineNumber = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.charAt(0) == '#') {
+				continue;
+			}
+			try {
+				if (controller == null) {
+					if (line.startsWith("players ")) {
+						players = number(line);
+						continue;
+					}
+					if (line.startsWith("seed ")) {
+						seed = Long.parseLong(line.substring(5).trim());
+						continue;
+					}
+					controller = new GameController(new CluedoGame(boardFile,
+							players, GameAdapter.NONE, seed));
+				}
+				commands++;
+				execute(controller, GameCommand.parse(line), name, lineNumber);
+			} catch (GameError | NumberFormatException e) {
+				errors++;
+				out.print("event=error script=").print(name).print(" line=")
+						.print(lineNumber).print(" message=\"")
+						.print(e.getMessage()).println("\"");
+			}
+			if (out.text().length() >= FLUSH_AT) {
+				out.flush();
+			}
+		}
+		out.print("event=result script=").print(name).print(" seed=")
+				.print(seed).print(" players=").print(players)
+				.print(" commands=").print(commands).print(" errors=")
+				.print(errors);
+		if (controller != null) {
+			out.print(" turns=").print(controller.getTurnNumber())
+					.print(" finished=")
+					.print(String.valueOf(controller.isFinished()));
+			if (controller.isFinished()) {
+				out.print(" winner=").print(controller.getWinner().getUid());
+			}
+		}
+		out.println();
+		return controller;
+	}
+
+	/**
+	 * Play each of the given scripts on the given board, writing the results
+	 * to standard output.
+	 *
+	 * @param boardFile
+	 * @param scripts
+	 * @throws IOException
+	 */
+	public static void runAll(String boardFile, String[] scripts)
+			throws IOException {
+		Screen screen = new Screen(System.out);
+		ScriptRunner runner = new ScriptRunner(boardFile, screen);
+		for (String script : scripts) {
+			InputStream in = script.equals("-") ? System.in
+					: new FileInputStream(script);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					in), FLUSH_AT);
+			try {
+				runner.run(script, reader);
+			} finally {
+				if (in != System.in) {
+					reader.close();
+				}
+			}
+		}
+		screen.flush();
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Play one command by whoever's turn it is and report what the others
+	 * would need to know.
+	 */
+	private void execute(GameController controller, GameCommand command,
+			String name, int lineNumber) {
+		Action action = command.getAction();
+		if (!controller.isLegal(action)) {
+			throw new GameError("You cannot " + action.keyword() + " now.");
+		}
+		Player player = controller.getCurrentPlayer();
+		switch (action) {
+		case NORTH:
+		case SOUTH:
+		case WEST:
+		case EAST:
+			controller.move(action.direction());
+			break;
+		case EXIT:
+			controller.exitRoom(command.getExit());
+			break;
+		case SUGGEST:
+			Card refuted = controller.suggest(command.getCards()[0],
+					command.getCards()[1]);
+			report("suggested", name, lineNumber, player);
+			if (refuted == null) {
+				out.println(" refuter=0");
+			} else {
+				out.print(" refuter=")
+						.print(controller.getLastRefuter().getUid())
+						.print(" card=").println(((Enum<?>) refuted).name());
+			}
+			break;
+		case ACCUSE:
+			Card[] cards = command.getCards();
+			int result = controller.accuse(cards[0], cards[1], cards[2]);
+			report("accused", name, lineNumber, player);
+			out.print(" result=").println(
+					result == Board.RIGHT_ANSWER ? "right" : "wrong");
+			break;
+		case END:
+			controller.endTurn();
+			break;
+		case HAND:
+		case GUIDE:
+			// there is nobody to show them to
+			break;
+		case UNDO:
+			controller.undo();
+			break;
+		case REDO:
+			controller.redo();
+			break;
+		default:
+			throw new GameError("Invalid option: " + action);
+		}
+	}
+
+	private void report(String event, String name, int lineNumber,
+			Player player) {
+		out.print("event=").print(event).print(" script=").print(name)
+				.print(" line=").print(lineNumber).print(" player=")
+				.print(player.getUid());
+	}
+
+	private static int number(String line) {
+		return Integer.parseInt(line.substring(line.indexOf(' ') + 1).trim());
+	}
+}
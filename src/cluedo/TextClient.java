@@ -1,11 +1,15 @@
 package cluedo;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Scanner;
 
+import cluedo.journal.AsyncGameLog;
+import cluedo.metrics.GameEvents;
+
 /**
  * Contains the code for interfacing with the Cluedo game. It also contains much
  * of the game logic for controlling how the user can interact.
@@ -18,6 +22,35 @@ public class TextClient {
 	private static final int WRONG_ANSWER = 1;
 	private static final int RIGHT_ANSWER = 2;
 
+	/**
+	 * Everything the client prints goes on this screen, which is written out
+	 * in one go when the client waits for input or the game ends.
+	 */
+	private static final Screen SCREEN = new Screen(System.out);
+
+	private static final Card[] CHARACTERS = CluedoGame.CharacterEnum.values();
+	private static final Card[] WEAPONS = CluedoGame.WeaponEnum.values();
+	private static final Card[] ROOMS = CluedoGame.RoomEnum.values();
+
+	/**
+	 * The menus and the guide never change, so they are drawn once.
+	 */
+	private static final String CHARACTER_MENU = cardMenu("Character",
+			CHARACTERS);
+	private static final String WEAPON_MENU = cardMenu("Weapon", WEAPONS);
+	private static final String ROOM_MENU = cardMenu("Room", ROOMS);
+	private static final String BOARD_NOTATION_GUIDE = drawBoardNotationGuide();
+
+	/**
+	 * The menu option of each action, by Action.ordinal().
+	 */
+	private static final Action[] ACTIONS = Action.values();
+	private static final String[] OPTIONS = { "Move North.", "Move South.",
+			"Move West.", "Move East.",
+			"Exit Room(Multiple options including use stairwell).",
+			"Make a suggestion.", "Make an accusation.", "End this turn.",
+			"Look at hand.", "Print board notation guide.", "Undo.", "Redo." };
+
 	/**
 	 * Input a number from the keyboard. The number must be between the min and
 	 * max parameters.
@@ -29,6 +62,7 @@ public class TextClient {
 	 */
 	private static int inputNumber(int min, int max, Scanner scanner) {
 		while (true) {
+			SCREEN.flush();
 			String x = scanner.nextLine();
 			try {
 				int answer = Integer.parseInt(x);
@@ -37,91 +71,92 @@ public class TextClient {
 				}
 			} catch (NumberFormatException e) {
 			}
-			System.out.println("Invalid input!");
+			SCREEN.println("Invalid input!");
 		}
 	}
 
 	/**
 	 * Allow player to make a choice from the available options.
 	 *
-	 * @param player
-	 * @param game
+	 * @param engine
+	 * @param scanner
 	 */
-	private static String playerMakeChoice(Player player, Board board,
-			Scanner scanner) {
-		// System.out.println(board.toString());
-		System.out.println();
-		System.out.println("Dear " + player.getName() + "(uid: "
-				+ player.getUid() + "):");
-		System.out.println("You have " + player.getStepsRemain()
-				+ " move(s) left.");
-		System.out.println("Please make your choice: ");
-		System.out.println();
+	private static Action playerMakeChoice(TurnEngine engine, Scanner scanner) {
+		Player player = engine.getPlayer();
+		SCREEN.println();
+		SCREEN.print("Dear ").print(player.getName()).print("(uid: ")
+				.print(player.getUid()).println("):");
+		SCREEN.print("You have ").print(player.getStepsRemain())
+				.println(" move(s) left.");
+		SCREEN.println("Please make your choice: ");
+		SCREEN.println();
 
 		// print out the available options for the player
-		for (int i = 0; i < optionsList(player, board).size(); i++) {
-			System.out
-					.println(i + 1 + ") " + optionsList(player, board).get(i));
+		int mask = engine.getLegalMask();
+		int count = 0;
+		for (int m = mask; m != 0; m &= m - 1) {
+			SCREEN.print(++count).print(") ").println(
+					OPTIONS[Integer.numberOfTrailingZeros(m)]);
 		}
 
-		// return the corresponding String of the player's decision
-		return optionsList(player, board)
-				.get((inputNumber(1, optionsList(player, board).size(), scanner)) - 1);
+		// return the action of the player's decision, the answer-th bit set
+		int answer = inputNumber(1, count, scanner);
+		for (int i = 1; i < answer; i++) {
+			mask &= mask - 1;
+		}
+		return ACTIONS[Integer.numberOfTrailingZeros(mask)];
 	}
 
 	/**
-	 * Update the game status after player's decision he/she just made
+	 * Update the game status after player's decision he/she just made, until
+	 * his/her turn is finished.
 	 *
-	 * @param player
-	 * @param game
+	 * @param engine
+	 * @param board
+	 * @param random
+	 * @param scanner
 	 */
-	private static void executePlayerDecision(Player player, Board board,
-			Scanner scanner) {
-		while (true) {
-			String decision = playerMakeChoice(player, board, scanner);
+	private static void executePlayerDecision(TurnEngine engine, Board board,
+			Random random, Scanner scanner) {
+		Player player = engine.getPlayer();
+		while (engine.getState() != TurnEngine.State.FINISHED) {
+			Action decision = playerMakeChoice(engine, scanner);
 			switch (decision) {
-			case "Move North.":
-				board.moveNorth(player);
-				System.out.println(board.toString());
-				break;
-			case "Move South.":
-				board.moveSouth(player);
-				System.out.println(board.toString());
-				break;
-			case "Move West.":
-				board.moveWest(player);
-				System.out.println(board.toString());
+			case NORTH:
+			case SOUTH:
+			case WEST:
+			case EAST:
+				engine.move(decision);
+				board.render(SCREEN.text());
 				break;
-			case "Move East.":
-				board.moveEast(player);
-				System.out.println(board.toString());
-				break;
-			case "Make a suggestion.":
+			case SUGGEST:
 				Card[] suggestion = makeSuggestion(player, board, scanner);
-				Card refutedCard = board.makeSuggestion(player, suggestion);
+				Card refutedCard = engine.suggest(suggestion);
 				checkSuggestion(refutedCard, board);
 				break;
-			case "Make an accusation.":
+			case ACCUSE:
 				Card[] accusation = makeAccusation(player, board, scanner);
-				int result = board.makeAccusation(player, accusation);
+				int result = engine.accuse(accusation);
 				if (anounceResult(result, board)) {
 					// Game Over!!!
+					SCREEN.flush();
 					scanner.close();
 					System.exit(0);
 				}
-				return;
-			case "End this turn.":
-				return;
-			case "Look at hand.":
-				System.out.println(player.handToString());
 				break;
-			case "Print board notation guide.":
+			case END:
+				engine.end();
+				break;
+			case HAND:
+				SCREEN.println(player.handToString());
+				break;
+			case GUIDE:
 				printBoardNotationGuide();
 				break;
-			case "Exit Room(Multiple options including use stairwell).":
-				Position exitPos = exitRoom(player, board, scanner);
-				board.exitRoom(player, exitPos);
-				System.out.println(board.toString());
+			case EXIT:
+				Position exitPos = exitRoom(player, board, random, scanner);
+				engine.exitRoom(exitPos);
+				board.render(SCREEN.text());
 				break;
 			default:
 				throw new GameError("Invalid option: " + decision);
@@ -129,26 +164,38 @@ public class TextClient {
 		}
 	}
 
-	private static Position exitRoom(Player player, Board board, Scanner scanner) {
-		List<String> optionsList = new ArrayList<String>();
+	/**
+	 * Ask the player which way to leave the room he/she is in, listing the
+	 * exits in the order of GameController.getExits: the entrances, then the
+	 * stairwell if the room has one. Taking the stairwell lands the player on
+	 * a position of the other room chosen with the given random numbers.
+	 *
+	 * @param player
+	 * @param board
+	 * @param random
+	 * @param scanner
+	 * @return
+	 */
+	private static Position exitRoom(Player player, Board board,
+			Random random, Scanner scanner) {
 		Room room = board.inWhichRoom(player);
-		for (Position pos : room.getEntrancesPositions()) {
-			optionsList.add("Exit to " + pos.toString());
+		List<Position> entrances = room.getEntrancesPositions();
+		for (int i = 0; i < entrances.size(); i++) {
+			SCREEN.print(i + 1).print(") Exit to ").println(
+					entrances.get(i).toString());
 		}
-		if (room.getStairellTo() != null) {
-			optionsList.add("Go to " + room.getStairellTo().getName() + " by stairwell.");
+		Room stairwell = room.getStairellTo();
+		int exits = entrances.size();
+		if (stairwell != null) {
+			SCREEN.print(++exits).print(") Go to ").print(stairwell.getName())
+					.println(" by stairwell.");
 		}
-		for (int i = 0; i < optionsList.size(); i++) {
-			System.out.println(i + 1 + ") " + optionsList.get(i));
-		}
-		int answer;
-		answer = inputNumber(1, optionsList.size(), scanner);
 
-		if (optionsList.get(answer - 1).startsWith("Exit")) {
-			return room.getEntrancesPositions().get(answer - 1);
-		} else {
-			return room.getStairellTo().getRandomPosition();
+		int answer = inputNumber(1, exits, scanner);
+		if (answer <= entrances.size()) {
+			return entrances.get(answer - 1);
 		}
+		return stairwell.getRandomPosition(random);
 	}
 
 	/**
@@ -162,15 +209,15 @@ public class TextClient {
 	private static boolean anounceResult(int result, Board board) {
 		switch (result) {
 		case ONE_PLAYER_LEFT:
-			System.out.println("Wrong answer! Only one player left!!!");
-			System.out.println(board.getAlivePlayers().get(0).getName()
-					+ " WON!!!");
+			SCREEN.println("Wrong answer! Only one player left!!!");
+			SCREEN.print(board.getTurnOrder().first().getName()).println(
+					" WON!!!");
 			return true;
 		case WRONG_ANSWER:
-			System.out.println("Wrong answer! YOU ARE OUT!!!");
+			SCREEN.println("Wrong answer! YOU ARE OUT!!!");
 			return false;
 		case RIGHT_ANSWER:
-			System.out.println("RIGHT ANSWER! YOU WON!!!");
+			SCREEN.println("RIGHT ANSWER! YOU WON!!!");
 			return true;
 		default:
 			throw new GameError("Unrecognised accusation result.");
@@ -180,71 +227,21 @@ public class TextClient {
 	private static Card[] makeAccusation(Player player, Board board,
 			Scanner scanner) {
 		Card[] accusation = new Card[3];
-		List<Card> optionList;
-		int answer;
-
-		// ask player to choose a Character
-		optionList = new ArrayList<Card>();
-		System.out.println("Choose a Character:");
-		for (CluedoGame.CharacterEnum c : CluedoGame.CharacterEnum.values()) {
-			optionList.add(c);
-		}
-		// print out the available options for the player
-		for (int i = 0; i < optionList.size(); i++) {
-			System.out.println(i + 1 + ") " + optionList.get(i).toString());
-		}
-
-		// get the answer and put it as the first element of the accusation
-		// array
-		answer = inputNumber(1, optionList.size(), scanner);
-		accusation[0] = optionList.get(answer - 1);
-
-		// ask player to choose a Weapon
-		optionList.clear();
-		;
-		System.out.println("Choose a Weapon:");
-		for (CluedoGame.WeaponEnum w : CluedoGame.WeaponEnum.values()) {
-			optionList.add(w);
-		}
-		// print out the available options for the player
-		for (int i = 0; i < optionList.size(); i++) {
-			System.out.println(i + 1 + ") " + optionList.get(i).toString());
-		}
-
-		// get the answer and put it as the second element of the accusation
-		// array
-		answer = inputNumber(1, optionList.size(), scanner);
-		accusation[1] = optionList.get(answer - 1);
-
-		// ask player to choose a Room
-		optionList.clear();
-
-		System.out.println("Choose a Room:");
-		for (CluedoGame.RoomEnum r : CluedoGame.RoomEnum.values()) {
-			optionList.add(r);
-		}
-		// print out the available options for the player
-		for (int i = 0; i < optionList.size(); i++) {
-			System.out.println(i + 1 + ") " + optionList.get(i).toString());
-		}
-
-		// get the answer and put it as the third element of the accusation
-		// array
-		answer = inputNumber(1, optionList.size(), scanner);
-		accusation[2] = optionList.get(answer - 1);
-
+		accusation[0] = chooseCard(CHARACTER_MENU, CHARACTERS, scanner);
+		accusation[1] = chooseCard(WEAPON_MENU, WEAPONS, scanner);
+		accusation[2] = chooseCard(ROOM_MENU, ROOMS, scanner);
 		return accusation;
 	}
 
 	private static void checkSuggestion(Card refutedCard, Board board) {
 		if (refutedCard == null) {
-			System.out.println("No one can refuse the suggestion!!!");
+			SCREEN.println("No one can refuse the suggestion!!!");
 			return;
 		} else {
 			for (Player p : board.getAlivePlayers()) {
 				if (p.hasCard(refutedCard)) {
-					System.out.println(p.getName() + " has the card "
-							+ refutedCard.toString());
+					SCREEN.print(p.getName()).print(" has the card ").println(
+							refutedCard.toString());
 					return;
 				}
 			}
@@ -256,41 +253,8 @@ public class TextClient {
 	private static Card[] makeSuggestion(Player player, Board board,
 			Scanner scanner) {
 		Card[] suggestion = new Card[3];
-		List<Card> optionList;
-		int answer;
-
-		// ask player to choose a Character
-		optionList = new ArrayList<Card>();
-		System.out.println("Choose a Character:");
-		for (CluedoGame.CharacterEnum c : CluedoGame.CharacterEnum.values()) {
-			optionList.add(c);
-		}
-		// print out the available options for the player
-		for (int i = 0; i < optionList.size(); i++) {
-			System.out.println(i + 1 + ") " + optionList.get(i).toString());
-		}
-
-		// get the answer and put it as the first element of the suggestion
-		// array
-		answer = inputNumber(1, optionList.size(), scanner);
-		suggestion[0] = optionList.get(answer - 1);
-
-		// ask player to choose a Weapon
-		optionList.clear();
-		;
-		System.out.println("Choose a Weapon:");
-		for (CluedoGame.WeaponEnum w : CluedoGame.WeaponEnum.values()) {
-			optionList.add(w);
-		}
-		// print out the available options for the player
-		for (int i = 0; i < optionList.size(); i++) {
-			System.out.println(i + 1 + ") " + optionList.get(i).toString());
-		}
-
-		// get the answer and put it as the second element of the suggestion
-		// array
-		answer = inputNumber(1, optionList.size(), scanner);
-		suggestion[1] = optionList.get(answer - 1);
+		suggestion[0] = chooseCard(CHARACTER_MENU, CHARACTERS, scanner);
+		suggestion[1] = chooseCard(WEAPON_MENU, WEAPONS, scanner);
 
 		// set the player's current room as the Room
 		suggestion[2] = board.getRoomByToken(player).getRoomCard();
@@ -299,99 +263,148 @@ public class TextClient {
 	}
 
 	/**
-	 * Create a list of options that the player currently has.
+	 * Show the given menu of the given cards and return the card the player
+	 * chooses.
 	 *
-	 * @param player
+	 * @param menu
+	 * @param cards
+	 * @param scanner
 	 * @return
 	 */
-	private static List<String> optionsList(Player player, Board board) {
-		List<String> optionsList = new ArrayList<String>();
-		if (player.getStepsRemain() > 0) {
-			if (board.canGoNorth(player)) {
-				optionsList.add("Move North.");
-			}
-			if (board.canGoSouth(player)) {
-				optionsList.add("Move South.");
-			}
-			if (board.canGoWest(player)) {
-				optionsList.add("Move West.");
-			}
-			if (board.canGoEast(player)) {
-				optionsList.add("Move East.");
-			}
-		}
-		if (board.inRoom(player)) {
-			if (player.getStepsRemain() > 0) {
-				optionsList.add("Exit Room(Multiple options including use stairwell).");
-			}
-			if (!player.hasSuggested()) {
-				optionsList.add("Make a suggestion.");
-			}
-		}
-		optionsList.add("Make an accusation.");
-		if (player.getStepsRemain() == 0) {
-			optionsList.add("End this turn.");
-		}
-		optionsList.add("Look at hand.");
-		optionsList.add("Print board notation guide.");
-		return optionsList;
+	private static Card chooseCard(String menu, Card[] cards, Scanner scanner) {
+		SCREEN.print(menu);
+		return cards[inputNumber(1, cards.length, scanner) - 1];
+	}
+
+	/**
+	 * Return the board notation guide.
+	 *
+	 * @return
+	 */
+	public static String boardNotationGuide() {
+		return BOARD_NOTATION_GUIDE;
 	}
 
 	/**
 	 * Print out the board notation guide.
 	 */
 	private static void printBoardNotationGuide() {
-		System.out
-				.println("------------------------------------------------------");
-		System.out.println("digits represent players' tokens by UIDs");
-		System.out.println();
-		System.out.println("'x' represents an invalid place, "
-				+ "no players can go to an invalid place");
-		System.out.println();
-		System.out.println("'n', 's', 'w' and 'e' represent a door to a room"
-				+ ", where: ");
-		System.out
-				.println("- 'n' means only a \"Move North\" can enter the room");
-		System.out
-				.println("- 's' means only a \"Move South\" can enter the room");
-		System.out
-				.println("- 'w' means only a \"Move West\" can enter the room");
-		System.out
-				.println("- 'e' means only a \"Move East\" can enter the room");
-		System.out.println();
-		System.out.println("CAPITAL LETTERS represent a room, where: ");
-		System.out.println("- 'K' represents (K)itchen");
-		System.out.println("- 'B' represents (B)all Room");
-		System.out.println("- 'C' represents (C)onservatory");
-		System.out.println("- 'I' represents B(I)lliard Room");
-		System.out.println("- 'L' represents (L)ibrary");
-		System.out.println("- 'S' represents (S)tudy");
-		System.out.println("- 'H' represents (H)all");
-		System.out.println("- 'O' represents L(O)unge");
-		System.out.println("- 'N' represents Di(N)ing Room");
-		System.out.println();
-		System.out.println("operators represents a weapon, where: ");
-		System.out.println("- '+' represents Candlestick");
-		System.out.println("- '-' represents Dagger");
-		System.out.println("- '*' represents Lead Pipe");
-		System.out.println("- '/' represents Revolver");
-		System.out.println("- '=' represents Rope");
-		System.out.println("- '?' represents Spanner");
-		System.out.println("Note weapons are only shown when they are in rooms.");
-		System.out.println();
-		System.out.println("Note that a door is in a room.");
-		System.out.println("Note that a CAPITAL LETTER appears in a corner of "
-				+ "another room is a stairwell. For example: ");
-		System.out.println("- an 'S' in a (K)itchen is a stairwell to (S)tudy");
-		System.out
-				.println("------------------------------------------------------");
-		System.out.println();
+		SCREEN.print(BOARD_NOTATION_GUIDE);
 	}
 
-	public static void main(String[] args) {
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private static String drawBoardNotationGuide() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("------------------------------------------------------\n");
+		sb.append("digits represent players' tokens by UIDs\n");
+		sb.append("\n");
+		sb.append("'x' represents an invalid place, "
+				+ "no players can go to an invalid place\n");
+		sb.append("\n");
+		sb.append("'n', 's', 'w' and 'e' represent a door to a room"
+				+ ", where: \n");
+		sb.append("- 'n' means only a \"Move North\" can enter the room\n");
+		sb.append("- 's' means only a \"Move South\" can enter the room\n");
+		sb.append("- 'w' means only a \"Move West\" can enter the room\n");
+		sb.append("- 'e' means only a \"Move East\" can enter the room\n");
+		sb.append("\n");
+		sb.append("CAPITAL LETTERS represent a room, where: \n");
+		sb.append("- 'K' represents (K)itchen\n");
+		sb.append("- 'B' represents (B)all Room\n");
+		sb.append("- 'C' represents (C)onservatory\n");
+		sb.append("- 'I' represents B(I)lliard Room\n");
+		sb.append("- 'L' represents (L)ibrary\n");
+		sb.append("- 'S' represents (S)tudy\n");
+		sb.append("- 'H' represents (H)all\n");
+		sb.append("- 'O' represents L(O)unge\n");
+		sb.append("- 'N' represents Di(N)ing Room\n");
+		sb.append("\n");
+		sb.append("operators represents a weapon, where: \n");
+		sb.append("- '+' represents Candlestick\n");
+		sb.append("- '-' represents Dagger\n");
+		sb.append("- '*' represents Lead Pipe\n");
+		sb.append("- '/' represents Revolver\n");
+		sb.append("- '=' represents Rope\n");
+		sb.append("- '?' represents Spanner\n");
+		sb.append("Note weapons are only shown when they are in rooms.\n");
+		sb.append("\n");
+		sb.append("Note that a door is in a room.\n");
+		sb.append("Note that a CAPITAL LETTER appears in a corner of "
+				+ "another room is a stairwell. For example: \n");
+		sb.append("- an 'S' in a (K)itchen is a stairwell to (S)tudy\n");
+		sb.append("------------------------------------------------------\n");
+		sb.append("\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Draw the menu that asks for one of the given cards of the given type.
+	 *
+	 * @param type
+	 * @param cards
+	 * @return
+	 */
+	private static String cardMenu(String type, Card[] cards) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Choose a ").append(type).append(":\n");
+		for (int i = 0; i < cards.length; i++) {
+			sb.append(i + 1).append(") ").append(cards[i].toString())
+					.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Return a log of the game if one is asked for with -Dcluedo.log=file (or
+	 * - for standard output) and optionally -Dcluedo.log.policy=block, drop
+	 * or sample, otherwise GameAdapter.NONE. The log is written in the
+	 * background and closed when the program exits.
+	 *
+	 * @return
+	 */
+	private static GameListener openLog() {
+		String file = System.getProperty("cluedo.log");
+		if (file == null) {
+			return GameAdapter.NONE;
+		}
+		try {
+			final AsyncGameLog log = AsyncGameLog.open(file,
+					System.getProperty("cluedo.log.policy", "block"));
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					try {
+						log.close();
+					} catch (IOException e) {
+						System.err.println("Error writing the game log: " + e);
+					}
+				}
+			});
+			return log;
+		} catch (IOException e) {
+			SCREEN.println("Cannot open the game log: " + e);
+			return GameAdapter.NONE;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		// play scripts instead of asking the players
+		if (args.length >= 3 && args[0].equals("-script")) {
+			ScriptRunner.runAll(args[1],
+					Arrays.copyOfRange(args, 2, args.length));
+			return;
+		}
+
 		// check number of arguments
 		if (args.length != 1) {
 			System.out.println("Usage: java TextClient boardName.txt");
+			System.out.println("   or: java TextClient -script boardName.txt "
+					+ "script...");
 			System.exit(1);
 		}
 
@@ -411,35 +424,41 @@ public class TextClient {
 		}
 
 		Scanner scanner = new Scanner(System.in);
-		System.out.println("WELCOME TO THE CLUEDO GAME!!!");
-		System.out.println("Please enter the number of players(3-6):");
+		SCREEN.println("WELCOME TO THE CLUEDO GAME!!!");
+		SCREEN.println("Please enter the number of players(3-6):");
 		int nbOfPlayer = inputNumber(3, 6, scanner);
-		CluedoGame game = new CluedoGame(boardName, nbOfPlayer);
+		CluedoGame game = new CluedoGame(boardName, nbOfPlayer, openLog());
 		Board board = game.getBoard();
 
 		// now, game starts
-		System.out.println("Cards have been dealt!!!");
-		System.out.println("You can look your hand at your turn!!!");
+		SCREEN.println("Cards have been dealt!!!");
+		SCREEN.println("You can look your hand at your turn!!!");
 		if (!game.getUnusedCards().isEmpty()) {
-			System.out.println();
-			System.out.println("!!!NOTE THERE ARE UNUSED CARDS IN THIS GAME:");
+			SCREEN.println();
+			SCREEN.println("!!!NOTE THERE ARE UNUSED CARDS IN THIS GAME:");
 			for (Card card : game.getUnusedCards()) {
-				System.out.println(card.toString());
+				SCREEN.println(card.toString());
 			}
 		}
-		System.out.println();
+		SCREEN.println();
 
 		Random die = new Random();
-		while (true) {
-			for (Player player : board.getAlivePlayers()) {
-				int roll = die.nextInt(6) + 1;
-				player.setStepsRemain(roll);
-				System.out.println(board.toString());
-				System.out
-						.println(player.getName() + "(uid: " + player.getUid()
-								+ "" + ")" + " rolls a " + roll + ".");
-				executePlayerDecision(player, board, scanner);
-			}
+		int turnNumber = 0;
+		TurnOrder order = board.getTurnOrder();
+		TurnEngine engine = new TurnEngine(board);
+		for (Player player = order.first();; player = order.next(player)) {
+			GameEvents.Turn turn = GameEvents.beginTurn();
+			turnNumber++;
+			int roll = die.nextInt(6) + 1;
+			player.setStepsRemain(roll);
+			game.getListener().rolled(player, roll);
+			board.render(SCREEN.text());
+			SCREEN.print(player.getName()).print("(uid: ")
+					.print(player.getUid()).print(") rolls a ").print(roll)
+					.println(".");
+			engine.startTurn(player, roll);
+			executePlayerDecision(engine, board, game.getRandom(), scanner);
+			GameEvents.commit(turn, game.getId(), player, turnNumber, roll);
 		}
 	}
 }
@@ -0,0 +1,291 @@
+package cluedo;
+
+import java.util.EnumSet;
+
+/**
+ * Plays the turns of a game on a Board, one player's turn at a time, as a
+ * state machine. A turn starts ROLLED, or IN_ROOM if the player starts it in
+ * a room; steps make it MOVING, entering a room makes it IN_ROOM and a
+ * suggestion there SUGGESTED; ending the turn or accusing makes it FINISHED.
+ * The actions the player can take are worked out once each time the state
+ * changes and kept as a bit mask, bit Action.ordinal() for each, so asking
+ * whether an action is allowed, as a menu or a bot does for every choice,
+ * costs one bit test. Changes made to the board other than through the
+ * engine, such as an undo, must be followed by update.
+ */
+public class TurnEngine {
+
+	/**
+	 * Where the player whose turn it is has got to in his/her turn.
+	 */
+	public enum State {
+		ROLLED,
+		MOVING,
+		IN_ROOM,
+		SUGGESTED,
+		FINISHED
+	}
+
+	/**
+	 * The actions that change the game, as opposed to looking at it.
+	 */
+	public static final int PLAY = bit(Action.NORTH) | bit(Action.SOUTH)
+			| bit(Action.WEST) | bit(Action.EAST) | bit(Action.EXIT)
+			| bit(Action.SUGGEST) | bit(Action.ACCUSE) | bit(Action.END);
+
+	/**
+	 * The actions that take the player somewhere.
+	 */
+	private static final int MOVES = bit(Action.NORTH) | bit(Action.SOUTH)
+			| bit(Action.WEST) | bit(Action.EAST) | bit(Action.EXIT);
+
+	private static final Action[] ACTIONS = Action.values();
+
+	private final Board board;
+	private Player player;
+	private int roll;
+	private State state = State.FINISHED;
+
+	/**
+	 * The actions the player can take in the current state.
+	 */
+	private int legal;
+
+	/**
+	 * Construct an engine for turns on the given board.
+	 *
+	 * @param board
+	 */
+	public TurnEngine(Board board) {
+		this.board = board;
+	}
+
+	/**
+	 * Start the turn of the given player, who has rolled the given number
+	 * and has that many steps to make. Also used to go back to the middle of
+	 * a turn, when an action is undone or a saved game restored.
+	 *
+	 * @param player
+	 * @param roll
+	 */
+	public void startTurn(Player player, int roll) {
+		this.player = player;
+		this.roll = roll;
+		this.state = State.ROLLED;
+		update();
+	}
+
+	/**
+	 * Work the state and the allowed actions out again from where the player
+	 * is on the board. A FINISHED turn stays finished.
+	 */
+	public void update() {
+		if (state == State.FINISHED) {
+			legal = 0;
+			return;
+		}
+		boolean inRoom = board.inRoom(player);
+		int steps = player.getStepsRemain();
+		if (inRoom) {
+			state = player.hasSuggested() ? State.SUGGESTED : State.IN_ROOM;
+		} else {
+			state = steps == roll ? State.ROLLED : State.MOVING;
+		}
+
+		int actions = 0;
+		if (steps > 0) {
+			if (board.canGoNorth(player)) {
+				actions |= bit(Action.NORTH);
+			}
+			if (board.canGoSouth(player)) {
+				actions |= bit(Action.SOUTH);
+			}
+			if (board.canGoWest(player)) {
+				actions |= bit(Action.WEST);
+			}
+			if (board.canGoEast(player)) {
+				actions |= bit(Action.EAST);
+			}
+			if (inRoom) {
+				actions |= bit(Action.EXIT);
+			}
+		}
+		if (inRoom && !player.hasSuggested()) {
+			actions |= bit(Action.SUGGEST);
+		}
+		actions |= bit(Action.ACCUSE);
+		// a player who cannot move at all may end the turn early
+		if (steps == 0 || (actions & MOVES) == 0) {
+			actions |= bit(Action.END);
+		}
+		legal = actions | bit(Action.HAND) | bit(Action.GUIDE);
+	}
+
+	/**
+	 * Finish the turn, so that no action is allowed until the next one
+	 * starts.
+	 */
+	public void finish() {
+		state = State.FINISHED;
+		legal = 0;
+	}
+
+	/**
+	 * Move the player one step.
+	 *
+	 * @param move
+	 *            NORTH, SOUTH, WEST or EAST
+	 */
+	public void move(Action move) {
+		check(move);
+		switch (move) {
+		case NORTH:
+			board.moveNorth(player);
+			break;
+		case SOUTH:
+			board.moveSouth(player);
+			break;
+		case WEST:
+			board.moveWest(player);
+			break;
+		case EAST:
+			board.moveEast(player);
+			break;
+		default:
+			throw new GameError(move + " is not a move.");
+		}
+		update();
+	}
+
+	/**
+	 * Move the player out of the room he/she is in to the given position,
+	 * an entrance of the room or a position in the room at the other end of
+	 * its stairwell.
+	 *
+	 * @param to
+	 */
+	public void exitRoom(Position to) {
+		check(Action.EXIT);
+		board.exitRoom(player, to);
+		update();
+	}
+
+	/**
+	 * The player suggests the given cards, see Board.makeSuggestion. Return
+	 * the card shown, null if no one could refute the suggestion.
+	 *
+	 * @param suggestion
+	 * @return
+	 */
+	public Card suggest(Card[] suggestion) {
+		check(Action.SUGGEST);
+		Card card = board.makeSuggestion(player, suggestion);
+		update();
+		return card;
+	}
+
+	/**
+	 * The player accuses the given cards, which finishes the turn whatever
+	 * the result. Return the result as one of the Board accusation results.
+	 *
+	 * @param accusation
+	 * @return
+	 */
+	public int accuse(Card[] accusation) {
+		check(Action.ACCUSE);
+		int result = board.makeAccusation(player, accusation);
+		finish();
+		return result;
+	}
+
+	/**
+	 * The player ends his/her turn.
+	 */
+	public void end() {
+		check(Action.END);
+		finish();
+	}
+
+	/**
+	 * Throw a GameError if the player cannot take the given action now.
+	 *
+	 * @param action
+	 */
+	public void check(Action action) {
+		if ((legal & bit(action)) == 0) {
+			throw new GameError(state == State.FINISHED ? "The turn is over."
+					: "You cannot " + action.keyword() + " now.");
+		}
+	}
+
+	/**
+	 * Return the player whose turn it is.
+	 *
+	 * @return
+	 */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Return the state of the turn.
+	 *
+	 * @return
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * Return the actions the player can take now, bit Action.ordinal() for
+	 * each.
+	 *
+	 * @return
+	 */
+	public int getLegalMask() {
+		return legal;
+	}
+
+	/**
+	 * true if the player can take the given action now.
+	 *
+	 * @param action
+	 * @return
+	 */
+	public boolean isLegal(Action action) {
+		return (legal & bit(action)) != 0;
+	}
+
+	/**
+	 * Return the actions the player can take now.
+	 *
+	 * @return
+	 */
+	public EnumSet<Action> legalActions() {
+		return actions(legal);
+	}
+
+	/**
+	 * Return the bit of the given action in a mask of actions.
+	 *
+	 * @param action
+	 * @return
+	 */
+	public static int bit(Action action) {
+		return 1 << action.ordinal();
+	}
+
+	/**
+	 * Return the actions of the given mask.
+	 *
+	 * @param mask
+	 * @return
+	 */
+	public static EnumSet<Action> actions(int mask) {
+		EnumSet<Action> actions = EnumSet.noneOf(Action.class);
+		for (int m = mask; m != 0; m &= m - 1) {
+			actions.add(ACTIONS[Integer.numberOfTrailingZeros(m)]);
+		}
+		return actions;
+	}
+}
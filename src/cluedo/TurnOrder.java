@@ -0,0 +1,178 @@
+package cluedo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The order of play round the table: every player who started the game keeps
+ * his/her seat, by uid, and a bit mask tells who is still in the game, bit
+ * uid - 1 for each player. Play and refutation go clockwise, that is to the
+ * next higher uid still in the game, wrapping round to the lowest. Finding
+ * the next player and putting a player out are a few bit operations and
+ * allocate nothing, and since seats never move a loop such as
+ *
+ * <pre>
+ * for (Player p = order.next(suggester); p != suggester; p = order.next(p))
+ * </pre>
+ *
+ * or a game loop going from player to next player stays right while players
+ * are put out, even the player it is at.
+ */
+public class TurnOrder {
+
+	/**
+	 * Every player who started the game, by uid - 1.
+	 */
+	private final Player[] seats;
+
+	/**
+	 * Bit uid - 1 is set for every player still in the game.
+	 */
+	private int alive;
+
+	/**
+	 * The players still in the game as a list, and the mask it was made
+	 * for. Only made again when somebody is put out.
+	 */
+	private List<Player> aliveList;
+	private int aliveListMask;
+
+	/**
+	 * Construct the order of the given players, who must have the uids 1 to
+	 * the number of players, all of them in the game.
+	 *
+	 * @param players
+	 */
+	public TurnOrder(List<Player> players) {
+		if (players.size() > 31) {
+			throw new GameError("Too many players: " + players.size());
+		}
+		seats = new Player[players.size()];
+		for (Player p : players) {
+			if (p.getUid() < 1 || p.getUid() > seats.length
+					|| seats[p.getUid() - 1] != null) {
+				throw new GameError("Invalid uid: " + p.getUid());
+			}
+			seats[p.getUid() - 1] = p;
+		}
+		alive = (1 << seats.length) - 1;
+	}
+
+	/**
+	 * Return the number of players who started the game.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return seats.length;
+	}
+
+	/**
+	 * Return the player with the given uid, in the game or not.
+	 *
+	 * @param uid
+	 * @return
+	 */
+	public Player get(int uid) {
+		return seats[uid - 1];
+	}
+
+	/**
+	 * true if the given player is still in the game.
+	 *
+	 * @param player
+	 * @return
+	 */
+	public boolean isAlive(Player player) {
+		return (alive & 1 << player.getUid() - 1) != 0;
+	}
+
+	/**
+	 * Return the number of players still in the game.
+	 *
+	 * @return
+	 */
+	public int aliveCount() {
+		return Integer.bitCount(alive);
+	}
+
+	/**
+	 * Return the mask of the players still in the game, bit uid - 1 for each.
+	 *
+	 * @return
+	 */
+	public int getAliveMask() {
+		return alive;
+	}
+
+	/**
+	 * Set who is still in the game, from a mask given by getAliveMask, when
+	 * an action is undone or a saved game restored.
+	 *
+	 * @param mask
+	 */
+	public void setAliveMask(int mask) {
+		if (mask == 0 || (mask & ~((1 << seats.length) - 1)) != 0) {
+			throw new GameError("Invalid players mask: " + mask);
+		}
+		alive = mask;
+	}
+
+	/**
+	 * Put the given player out of the game. A player who has no seat in this
+	 * game is ignored.
+	 *
+	 * @param player
+	 */
+	public void eliminate(Player player) {
+		int seat = player.getUid() - 1;
+		if (seat >= 0 && seat < seats.length && seats[seat] == player) {
+			alive &= ~(1 << seat);
+		}
+	}
+
+	/**
+	 * Return the first player still in the game clockwise from the given
+	 * player, who may be in the game or not. Return the player himself/
+	 * herself if he/she is the only one in the game.
+	 *
+	 * @param player
+	 * @return
+	 */
+	public Player next(Player player) {
+		int after = alive & -(1 << player.getUid());
+		if (after == 0) {
+			after = alive;
+		}
+		return seats[Integer.numberOfTrailingZeros(after)];
+	}
+
+	/**
+	 * Return the player still in the game with the lowest uid, who starts.
+	 *
+	 * @return
+	 */
+	public Player first() {
+		return seats[Integer.numberOfTrailingZeros(alive)];
+	}
+
+	/**
+	 * Return the players still in the game in uid order. The list cannot be
+	 * changed and is only made again after somebody is put out; a list kept
+	 * from before still has him/her in it.
+	 *
+	 * @return
+	 */
+	public List<Player> aliveList() {
+		if (aliveList == null || aliveListMask != alive) {
+			List<Player> list = new ArrayList<Player>(Integer.bitCount(alive));
+			for (int m = alive; m != 0; m &= m - 1) {
+				list.add(seats[Integer.numberOfTrailingZeros(m)]);
+			}
+			aliveList = Collections.unmodifiableList(list);
+			aliveListMask = alive;
+		}
+		return aliveList;
+	}
+}
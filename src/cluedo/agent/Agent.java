@@ -0,0 +1,71 @@
+package cluedo.agent;
+
+import java.util.List;
+
+import cluedo.Action;
+import cluedo.Card;
+
+/**
+ * Makes the decisions of one player. An AgentGame asks the agent of the
+ * player whose turn it is what to do, and the agent of a player who must
+ * refute a suggestion which card to show. Each call gets a view of the game
+ * as the player sees it and a deadline, a System.nanoTime by which it should
+ * return. An agent that may miss its deadlines can be wrapped in a
+ * TimeoutAgent, which answers for it when it does.
+ *
+ * One agent plays one player in one game and may keep what it learns between
+ * calls.
+ */
+public interface Agent {
+
+	/**
+	 * Return what to do next, one of the legal actions of the view: a step,
+	 * EXIT, SUGGEST, ACCUSE or END.
+	 *
+	 * @param view
+	 * @param deadline
+	 * @return
+	 */
+	public Action chooseAction(GameView view, long deadline);
+
+	/**
+	 * Return the exit to leave the room by, from 1 to view.getExits().
+	 *
+	 * @param view
+	 * @param deadline
+	 * @return
+	 */
+	public int chooseExit(GameView view, long deadline);
+
+	/**
+	 * Return the character and weapon to suggest in the room the player is
+	 * in.
+	 *
+	 * @param view
+	 * @param deadline
+	 * @return
+	 */
+	public Card[] chooseSuggestion(GameView view, long deadline);
+
+	/**
+	 * Return the character, weapon and room to accuse.
+	 *
+	 * @param view
+	 * @param deadline
+	 * @return
+	 */
+	public Card[] decideAccusation(GameView view, long deadline);
+
+	/**
+	 * Return which of the given cards, those of the given suggestion the
+	 * player holds, to show the player who made the suggestion.
+	 *
+	 * @param view
+	 * @param suggestion
+	 * @param cards
+	 * @param deadline
+	 * @return
+	 */
+	public Card chooseRefutation(GameView view, Card[] suggestion,
+			List<Card> cards, long deadline);
+}
@@ -0,0 +1,247 @@
+package cluedo.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import cluedo.Action;
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.GameController;
+import cluedo.GameError;
+import cluedo.Player;
+import cluedo.RefutationChooser;
+import cluedo.Screen;
+import cluedo.sim.ObjectGameRunner;
+
+/**
+ * Plays a game in which every decision is made by the Agent of the player
+ * concerned, through a GameController. Each decision is given a deadline the
+ * time budget from when it is asked for. A decision that is not allowed, such
+ * as a step into a wall or an accusation of two weapons, is made again by a
+ * RandomAgent of the player's, so a bad agent cannot stop the game, and a
+ * refutation that is not allowed shows the first card that is.
+ */
+public class AgentGame {
+
+	private final GameController controller;
+	private final Agent[] agents;
+	private final Agent[] fallbacks;
+	private final long budgetNanos;
+
+	/**
+	 * The card shown to each player for his/her last suggestion.
+	 */
+	private final Card[] shown;
+
+	private int illegal;
+
+	/**
+	 * Construct a game in which the player with uid u is played by
+	 * agents[u - 1], given the stated number of milliseconds for each
+	 * decision.
+	 *
+	 * @param game
+	 * @param agents
+	 * @param budgetMillis
+	 */
+	public AgentGame(CluedoGame game, Agent[] agents, long budgetMillis) {
+		if (agents.length != game.getPlayers().size()) {
+			throw new GameError("There must be one agent for each player.");
+		}
+		this.agents = agents;
+		this.budgetNanos = budgetMillis * 1000000L;
+		this.shown = new Card[agents.length];
+		this.fallbacks = new Agent[agents.length];
+		Random random = new Random(game.getRandom().getState());
+		for (int i = 0; i < fallbacks.length; i++) {
+			fallbacks[i] = new RandomAgent(new Random(random.nextLong()));
+		}
+		game.getBoard().setRefutationChooser(new RefutationChooser() {
+			@Override
+			public Card chooseCard(Player refuter, Player suggester,
+					Card[] suggestion) {
+				return refute(refuter, suggestion);
+			}
+		});
+		this.controller = new GameController(game);
+	}
+
+	/**
+	 * Play the game to the end, or until ObjectGameRunner.MAX_TURNS turns
+	 * have been played. Return the winner, null if the game was abandoned.
+	 *
+	 * @return
+	 */
+	public Player play() {
+		while (!controller.isFinished()
+				&& controller.getTurnNumber() <= ObjectGameRunner.MAX_TURNS) {
+			step();
+		}
+		return controller.getWinner();
+	}
+
+	/**
+	 * Ask the player whose turn it is for one decision and carry it out.
+	 */
+	public void step() {
+		Player player = controller.getCurrentPlayer();
+		int i = player.getUid() - 1;
+		GameView view = GameView.of(controller, player, shown[i]);
+		Action action = agents[i].chooseAction(view, deadline());
+		if (action == null || !view.getLegalActions().contains(action)) {
+			illegal++;
+			action = fallbacks[i].chooseAction(view, deadline());
+		}
+		switch (action) {
+		case NORTH:
+		case SOUTH:
+		case WEST:
+		case EAST:
+			controller.move(action.direction());
+			break;
+		case EXIT:
+			int exit = agents[i].chooseExit(view, deadline());
+			if (exit < 1 || exit > view.getExits()) {
+				illegal++;
+				exit = fallbacks[i].chooseExit(view, deadline());
+			}
+			controller.exitRoom(exit);
+			break;
+		case SUGGEST:
+			Card[] suggestion = agents[i].chooseSuggestion(view, deadline());
+			if (!isCards(suggestion, 2)) {
+				illegal++;
+				suggestion = fallbacks[i].chooseSuggestion(view, deadline());
+			}
+			shown[i] = controller.suggest(suggestion[0], suggestion[1]);
+			break;
+		case ACCUSE:
+			Card[] accusation = agents[i].decideAccusation(view, deadline());
+			if (!isCards(accusation, 3)) {
+				illegal++;
+				accusation = fallbacks[i].decideAccusation(view, deadline());
+			}
+			controller.accuse(accusation[0], accusation[1], accusation[2]);
+			break;
+		case END:
+			controller.endTurn();
+			break;
+		default:
+			throw new GameError("Invalid option: " + action);
+		}
+	}
+
+	/**
+	 * Return the controller of the game.
+	 *
+	 * @return
+	 */
+	public GameController getController() {
+		return controller;
+	}
+
+	/**
+	 * Return the number of decisions that were not allowed and were made
+	 * again by a RandomAgent.
+	 *
+	 * @return
+	 */
+	public int getIllegal() {
+		return illegal;
+	}
+
+	/**
+	 * Play a game at the console between people and random agents, for
+	 * example
+	 *
+	 * <pre>
+	 * java cluedo.agent.AgentGame -budget 30000 gameBoard.txt human random random
+	 * </pre>
+	 *
+	 * where a person who takes longer than the budget is played for by a
+	 * random agent. Without a budget people may take as long as they like.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		long budget = 0;
+		int first = 0;
+		if (args.length > 1 && args[0].equals("-budget")) {
+			budget = Long.parseLong(args[1]);
+			first = 2;
+		}
+		if (args.length - first < 4) {
+			System.out.println("Usage: java cluedo.agent.AgentGame [-budget MS] "
+					+ "board.txt human|random human|random human|random...");
+			System.exit(1);
+		}
+		int n = args.length - first - 1;
+		CluedoGame game = new CluedoGame(args[first], n);
+		ConsoleInput input = new ConsoleInput(System.in);
+		Screen screen = new Screen(System.out);
+		Random random = new Random();
+		Agent[] agents = new Agent[n];
+		for (int i = 0; i < n; i++) {
+			String kind = args[first + 1 + i];
+			if (kind.equals("human")) {
+				agents[i] = new ConsoleAgent(input, screen);
+			} else if (kind.equals("random")) {
+				agents[i] = new RandomAgent(new Random(random.nextLong()));
+			} else {
+				throw new GameError("Unknown agent: " + kind);
+			}
+		}
+		AgentGame agentGame = new AgentGame(game, agents,
+				budget > 0 ? budget : TimeUnit.DAYS.toMillis(1));
+		Player winner = agentGame.play();
+		screen.println(winner == null ? "Nobody won." : winner.getName()
+				+ " WON!!!");
+		screen.flush();
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Ask the agent of the given refuter which card of the suggestion to
+	 * show.
+	 */
+	private Card refute(Player refuter, Card[] suggestion) {
+		List<Card> cards = new ArrayList<Card>();
+		for (Card card : suggestion) {
+			if (refuter.hasCard(card)) {
+				cards.add(card);
+			}
+		}
+		int i = refuter.getUid() - 1;
+		Card card = agents[i].chooseRefutation(GameView.of(controller,
+				refuter, shown[i]), suggestion.clone(), Collections
+				.unmodifiableList(cards), deadline());
+		if (!cards.contains(card)) {
+			illegal++;
+			card = cards.get(0);
+		}
+		return card;
+	}
+
+	private long deadline() {
+		return System.nanoTime() + budgetNanos;
+	}
+
+	/**
+	 * true if the given cards are a character, a weapon and, if count is 3,
+	 * a room.
+	 */
+	private static boolean isCards(Card[] cards, int count) {
+		return cards != null && cards.length == count
+				&& cards[0] instanceof CluedoGame.CharacterEnum
+				&& cards[1] instanceof CluedoGame.WeaponEnum
+				&& (count == 2 || cards[2] instanceof CluedoGame.RoomEnum);
+	}
+}
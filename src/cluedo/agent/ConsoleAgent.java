@@ -0,0 +1,142 @@
+package cluedo.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cluedo.Action;
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.Screen;
+
+/**
+ * An agent whose decisions are made by a person at the console, with menus
+ * like those of TextClient. The agent draws only what the GameView shows and
+ * waits for an answer until the deadline and no longer. A person who takes
+ * too long gets no answer in: the agent returns none, which AgentGame makes
+ * again with a RandomAgent, and the question is over before the next one is
+ * asked on the same screen and input. Runs on the thread of the game, not in
+ * a TimeoutAgent.
+ */
+public class ConsoleAgent implements Agent {
+
+	private final ConsoleInput input;
+	private final Screen screen;
+
+	/**
+	 * Construct an agent that asks on the given screen and reads the answers
+	 * from the given input.
+	 *
+	 * @param input
+	 * @param screen
+	 */
+	public ConsoleAgent(ConsoleInput input, Screen screen) {
+		this.input = input;
+		this.screen = screen;
+	}
+
+	@Override
+	public Action chooseAction(GameView view, long deadline) {
+		view.render(screen.text());
+		screen.println();
+		if (view.getShown() != null) {
+			screen.print("You were shown ").println(view.getShown().toString());
+		}
+		screen.print("Player ").print(view.getUid()).print(", you have ")
+				.print(view.getStepsRemain()).println(" move(s) left.");
+		screen.print("Your hand:");
+		for (Card card : view.getHand()) {
+			screen.print(" ").print(card.toString());
+		}
+		screen.println();
+		List<Action> actions = new ArrayList<Action>(view.getLegalActions());
+		for (int i = 0; i < actions.size(); i++) {
+			screen.print(i + 1).print(") ").println(actions.get(i).keyword());
+		}
+		int answer = inputNumber(actions.size(), deadline);
+		return answer == 0 ? null : actions.get(answer - 1);
+	}
+
+	@Override
+	public int chooseExit(GameView view, long deadline) {
+		for (int i = 1; i <= view.getExits(); i++) {
+			if (i == view.getExits() && view.hasStairwell()) {
+				screen.print(i).println(") Take the stairwell");
+			} else {
+				screen.print(i).print(") Exit ").println(String.valueOf(i));
+			}
+		}
+		return inputNumber(view.getExits(), deadline);
+	}
+
+	@Override
+	public Card[] chooseSuggestion(GameView view, long deadline) {
+		Card character = choose("Character", CluedoGame.CharacterEnum
+				.values(), deadline);
+		Card weapon = character == null ? null : choose("Weapon",
+				CluedoGame.WeaponEnum.values(), deadline);
+		return weapon == null ? null : new Card[] { character, weapon };
+	}
+
+	@Override
+	public Card[] decideAccusation(GameView view, long deadline) {
+		Card character = choose("Character", CluedoGame.CharacterEnum
+				.values(), deadline);
+		Card weapon = character == null ? null : choose("Weapon",
+				CluedoGame.WeaponEnum.values(), deadline);
+		Card room = weapon == null ? null : choose("Room",
+				CluedoGame.RoomEnum.values(), deadline);
+		return room == null ? null : new Card[] { character, weapon, room };
+	}
+
+	@Override
+	public Card chooseRefutation(GameView view, Card[] suggestion,
+			List<Card> cards, long deadline) {
+		screen.print("Player ").print(view.getUid())
+				.println(", choose a card to show:");
+		return choose("Card", cards.toArray(new Card[cards.size()]), deadline);
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Return the card chosen from the given ones, null if none is chosen by
+	 * the deadline.
+	 */
+	private Card choose(String type, Card[] cards, long deadline) {
+		screen.print("Choose a ").print(type).println(":");
+		for (int i = 0; i < cards.length; i++) {
+			screen.print(i + 1).print(") ").println(cards[i].toString());
+		}
+		int answer = inputNumber(cards.length, deadline);
+		return answer == 0 ? null : cards[answer - 1];
+	}
+
+	/**
+	 * Input a number from 1 to max from the keyboard, 0 if none is typed by
+	 * the deadline. Anything typed before the question is asked is ignored.
+	 */
+	private int inputNumber(int max, long deadline) {
+		input.clear();
+		while (true) {
+			screen.flush();
+			String x = input.readLine(deadline);
+			if (x == null) {
+				screen.println("Time is up!");
+				screen.flush();
+				return 0;
+			}
+			try {
+				int answer = Integer.parseInt(x.trim());
+				if (answer >= 1 && answer <= max) {
+					return answer;
+				}
+			} catch (NumberFormatException e) {
+			}
+			screen.println("Invalid input!");
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package cluedo.agent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import cluedo.GameError;
+
+/**
+ * The lines typed at the console, read by one thread of their own and kept in
+ * a queue, so that a question can wait for its answer only until a deadline.
+ * A thread blocked reading the console cannot be stopped, so every
+ * ConsoleAgent of a game shares the one reader rather than leaving threads
+ * behind that would swallow the next person's answers.
+ */
+public class ConsoleInput {
+
+	/**
+	 * Put in the queue once the console is closed.
+	 */
+	private static final String END = new String();
+
+	private final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+
+	/**
+	 * Construct an input reading lines from the given stream until it ends.
+	 *
+	 * @param in
+	 */
+	public ConsoleInput(InputStream in) {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				in));
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						lines.add(line);
+					}
+				} catch (IOException e) {
+					// treated as the end of the input
+				}
+				lines.add(END);
+			}
+		}, "console");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Return the next line typed, null if none is typed by the given
+	 * deadline, a System.nanoTime.
+	 *
+	 * @param deadline
+	 * @return
+	 */
+	public String readLine(long deadline) {
+		String line;
+		try {
+			line = lines.poll(Math.max(0, deadline - System.nanoTime()),
+					TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		if (line == END) {
+			lines.add(END);
+			throw new GameError("The console was closed.");
+		}
+		return line;
+	}
+
+	/**
+	 * Forget the lines typed before a new question is asked, such as a late
+	 * answer to one that was not waited for.
+	 */
+	public void clear() {
+		boolean ended = lines.contains(END);
+		lines.clear();
+		if (ended) {
+			lines.add(END);
+		}
+	}
+}
@@ -0,0 +1,335 @@
+package cluedo.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import cluedo.Action;
+import cluedo.Board;
+import cluedo.BoardTopology;
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.GameController;
+import cluedo.Player;
+import cluedo.Room;
+import cluedo.TurnEngine;
+import cluedo.Weapon;
+
+/**
+ * What one player can see of a game at the moment an Agent is asked to
+ * decide: the turn, the player's own cards and position, where everybody is,
+ * what the player may do and the last suggestion. A view is a copy, it never
+ * changes and is safe to keep or hand to another thread, and it holds
+ * nothing the player could not know, such as the solution or other hands.
+ * The board is drawn from the view too, never from the live Board, on top of
+ * the shared BoardTopology, which does not change either.
+ */
+public final class GameView {
+
+	private final int uid;
+	private final int turnNumber;
+	private final int currentUid;
+	private final int roll;
+	private final TurnEngine.State turnState;
+	private final int stepsRemain;
+	private final CluedoGame.RoomEnum room;
+	private final Set<Action> legalActions;
+	private final int exits;
+	private final boolean stairwell;
+	private final List<Card> hand;
+	private final List<Card> unusedCards;
+	private final int[] alive;
+	private final int[] xs;
+	private final int[] ys;
+	private final BoardTopology topology;
+
+	/**
+	 * The cells of the weapons in WeaponEnum order, -1 for a weapon not yet
+	 * in a room, and their symbols on the board.
+	 */
+	private final int[] weaponCells;
+	private final char[] weaponSymbols;
+
+	private final Card[] lastSuggestion;
+	private final int lastSuggester;
+	private final int lastRefuter;
+	private final Card shown;
+
+	/**
+	 * Return the view of the given player of the game run by the given
+	 * controller. The card shown to the player for his/her last suggestion,
+	 * null if there was none, is passed in as only the one who ran the
+	 * suggestion knows it.
+	 *
+	 * @param controller
+	 * @param player
+	 * @param shown
+	 * @return
+	 */
+	public static GameView of(GameController controller, Player player,
+			Card shown) {
+		return new GameView(controller, player, shown);
+	}
+
+	private GameView(GameController controller, Player player, Card shown) {
+		CluedoGame game = controller.getGame();
+		Board board = controller.getBoard();
+		Player current = controller.getCurrentPlayer();
+		uid = player.getUid();
+		turnNumber = controller.getTurnNumber();
+		currentUid = current.getUid();
+		roll = controller.getRoll();
+		stepsRemain = player.getStepsRemain();
+		Room in = board.inWhichRoom(player);
+		room = in == null ? null : in.getRoomCard();
+		turnState = controller.getTurnState();
+		// the actions an agent chooses between, the others (hand, guide,
+		// undo, redo) are for people at a console
+		EnumSet<Action> legal = TurnEngine.actions(current == player ? controller
+				.getLegalMask() & TurnEngine.PLAY : 0);
+		legalActions = Collections.unmodifiableSet(legal);
+		exits = legal.contains(Action.EXIT) ? controller.getExits().size() : 0;
+		stairwell = exits > 0 && in.getStairellTo() != null;
+		hand = Collections.unmodifiableList(new ArrayList<Card>(player
+				.getHand()));
+		unusedCards = Collections.unmodifiableList(new ArrayList<Card>(game
+				.getUnusedCards()));
+		List<Player> players = game.getPlayers();
+		alive = new int[board.getAlivePlayers().size()];
+		for (int i = 0; i < alive.length; i++) {
+			alive[i] = board.getAlivePlayers().get(i).getUid();
+		}
+		xs = new int[players.size()];
+		ys = new int[players.size()];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = players.get(i).getX();
+			ys[i] = players.get(i).getY();
+		}
+		topology = board.getTopology();
+		List<Weapon> weapons = board.getWeapons();
+		weaponCells = new int[weapons.size()];
+		weaponSymbols = new char[weapons.size()];
+		for (int i = 0; i < weaponCells.length; i++) {
+			Weapon w = weapons.get(i);
+			weaponCells[i] = board.inRoom(w) ? topology.cellAt(w.getX(), w
+					.getY()) : -1;
+			weaponSymbols[i] = w.getShortName();
+		}
+		Card[] suggestion = controller.getLastSuggestion();
+		lastSuggestion = suggestion == null ? null : suggestion.clone();
+		lastSuggester = uid(controller.getLastSuggester());
+		lastRefuter = uid(controller.getLastRefuter());
+		this.shown = lastSuggester == uid ? shown : null;
+	}
+
+	/**
+	 * Return the uid of the player whose view this is.
+	 *
+	 * @return
+	 */
+	public int getUid() {
+		return uid;
+	}
+
+	public int getTurnNumber() {
+		return turnNumber;
+	}
+
+	/**
+	 * Return the uid of the player whose turn it is.
+	 *
+	 * @return
+	 */
+	public int getCurrentUid() {
+		return currentUid;
+	}
+
+	/**
+	 * Return what the player whose turn it is rolled.
+	 *
+	 * @return
+	 */
+	public int getRoll() {
+		return roll;
+	}
+
+	/**
+	 * Return the state of the turn of the player whose turn it is.
+	 *
+	 * @return
+	 */
+	public TurnEngine.State getTurnState() {
+		return turnState;
+	}
+
+	public int getStepsRemain() {
+		return stepsRemain;
+	}
+
+	/**
+	 * Return the room the player is in, null if he/she is not in a room.
+	 *
+	 * @return
+	 */
+	public CluedoGame.RoomEnum getRoom() {
+		return room;
+	}
+
+	/**
+	 * Return what the player may do now, empty if it is not his/her turn.
+	 *
+	 * @return
+	 */
+	public Set<Action> getLegalActions() {
+		return legalActions;
+	}
+
+	/**
+	 * Return the number of exits the player can leave the room by, see
+	 * GameController.getExits, 0 if he/she cannot exit now.
+	 *
+	 * @return
+	 */
+	public int getExits() {
+		return exits;
+	}
+
+	/**
+	 * true if the last exit is the stairwell of the room.
+	 *
+	 * @return
+	 */
+	public boolean hasStairwell() {
+		return stairwell;
+	}
+
+	public List<Card> getHand() {
+		return hand;
+	}
+
+	public List<Card> getUnusedCards() {
+		return unusedCards;
+	}
+
+	/**
+	 * true if the player with the given uid is still in the game.
+	 *
+	 * @param uid
+	 * @return
+	 */
+	public boolean isAlive(int uid) {
+		for (int a : alive) {
+			if (a == uid) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return the number of players still in the game.
+	 *
+	 * @return
+	 */
+	public int getAliveCount() {
+		return alive.length;
+	}
+
+	/**
+	 * Return the x coordinate of the player with the given uid.
+	 *
+	 * @param uid
+	 * @return
+	 */
+	public int getX(int uid) {
+		return xs[uid - 1];
+	}
+
+	/**
+	 * Return the y coordinate of the player with the given uid.
+	 *
+	 * @param uid
+	 * @return
+	 */
+	public int getY(int uid) {
+		return ys[uid - 1];
+	}
+
+	/**
+	 * Return the character, weapon and room of the last suggestion, null if
+	 * none has been made.
+	 *
+	 * @return
+	 */
+	public Card[] getLastSuggestion() {
+		return lastSuggestion == null ? null : lastSuggestion.clone();
+	}
+
+	/**
+	 * Return the uid of who made the last suggestion, 0 if none was made.
+	 *
+	 * @return
+	 */
+	public int getLastSuggester() {
+		return lastSuggester;
+	}
+
+	/**
+	 * Return the uid of who refuted the last suggestion, 0 if nobody could.
+	 *
+	 * @return
+	 */
+	public int getLastRefuter() {
+		return lastRefuter;
+	}
+
+	/**
+	 * Return the card shown to the player for the last suggestion if he/she
+	 * made it, otherwise null.
+	 *
+	 * @return
+	 */
+	public Card getShown() {
+		return shown;
+	}
+
+	/**
+	 * Append the board as the player sees it, in the same form as
+	 * Board.render, to the given builder.
+	 *
+	 * @param sb
+	 */
+	public void render(StringBuilder sb) {
+		int width = topology.getWidth();
+		int first = sb.length();
+		for (int cell = 0; cell < topology.getCellCount(); cell++) {
+			sb.append(topology.typeOf(cell));
+			if ((cell + 1) % width == 0) {
+				sb.append('\n');
+			}
+		}
+		for (int a : alive) {
+			sb.setCharAt(first + xs[a - 1] * (width + 1) + ys[a - 1],
+					Character.forDigit(a, 10));
+		}
+		for (int i = 0; i < weaponCells.length; i++) {
+			int cell = weaponCells[i];
+			if (cell >= 0) {
+				sb.setCharAt(first + cell / width * (width + 1) + cell
+						% width, weaponSymbols[i]);
+			}
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private static int uid(Player player) {
+		return player == null ? 0 : player.getUid();
+	}
+}
@@ -0,0 +1,113 @@
+package cluedo.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.Action;
+import cluedo.Card;
+import cluedo.CluedoGame;
+
+/**
+ * An agent that moves at random but remembers the cards it has seen: it
+ * suggests cards it has not seen and accuses as soon as only one card of
+ * each type is left unseen. It decides at once, so it is also the fallback
+ * of a TimeoutAgent.
+ */
+public class RandomAgent implements Agent {
+
+	private final Random random;
+
+	/**
+	 * The cards the agent knows are not the solution.
+	 */
+	private long known;
+
+	public RandomAgent(Random random) {
+		this.random = random;
+	}
+
+	@Override
+	public Action chooseAction(GameView view, long deadline) {
+		learn(view);
+		if (CluedoGame.isSolved(known)
+				&& view.getLegalActions().contains(Action.ACCUSE)) {
+			return Action.ACCUSE;
+		}
+		if (view.getLegalActions().contains(Action.SUGGEST)) {
+			return Action.SUGGEST;
+		}
+		List<Action> steps = new ArrayList<Action>();
+		for (Action action : view.getLegalActions()) {
+			if (action.isMove() || action == Action.EXIT) {
+				steps.add(action);
+			}
+		}
+		if (!steps.isEmpty()) {
+			return steps.get(random.nextInt(steps.size()));
+		}
+		return Action.END;
+	}
+
+	@Override
+	public int chooseExit(GameView view, long deadline) {
+		return 1 + random.nextInt(view.getExits());
+	}
+
+	@Override
+	public Card[] chooseSuggestion(GameView view, long deadline) {
+		learn(view);
+		return new Card[] { unknown(CluedoGame.CHARACTER_CARDS),
+				unknown(CluedoGame.WEAPON_CARDS) };
+	}
+
+	@Override
+	public Card[] decideAccusation(GameView view, long deadline) {
+		learn(view);
+		return new Card[] { unknown(CluedoGame.CHARACTER_CARDS),
+				unknown(CluedoGame.WEAPON_CARDS), unknown(CluedoGame.ROOM_CARDS) };
+	}
+
+	@Override
+	public Card chooseRefutation(GameView view, Card[] suggestion,
+			List<Card> cards, long deadline) {
+		return cards.get(random.nextInt(cards.size()));
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Remember the cards of the view the agent now knows about.
+	 */
+	private void learn(GameView view) {
+		for (Card card : view.getHand()) {
+			known |= 1L << CluedoGame.indexOf(card);
+		}
+		for (Card card : view.getUnusedCards()) {
+			known |= 1L << CluedoGame.indexOf(card);
+		}
+		if (view.getShown() != null) {
+			known |= 1L << CluedoGame.indexOf(view.getShown());
+		}
+	}
+
+	/**
+	 * Return a random card of the given type that the agent has not seen, or
+	 * any card of the type if it has seen them all.
+	 */
+	private Card unknown(long type) {
+		long cards = ~known & type;
+		if (cards == 0) {
+			cards = type;
+		}
+		int pick = random.nextInt(Long.bitCount(cards));
+		for (int i = 0; i < pick; i++) {
+			cards &= cards - 1;
+		}
+		return CluedoGame.cardAt(Long.numberOfTrailingZeros(cards));
+	}
+}
@@ -0,0 +1,157 @@
+package cluedo.agent;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import cluedo.Action;
+import cluedo.Card;
+
+/**
+ * Holds an agent to its deadlines. Each decision is made by the agent on a
+ * thread of its own; if it is not made by the deadline, or the agent fails,
+ * the decision of the fallback agent is returned instead and the late one is
+ * thrown away. The agent's decisions are made one at a time in order, so an
+ * agent that is still busy with a late decision answers nothing until it has
+ * finished, and the fallback answers for it meanwhile.
+ */
+public class TimeoutAgent implements Agent {
+
+	private final Agent agent;
+	private final Agent fallback;
+	private final ExecutorService executor;
+	private int timeouts;
+
+	/**
+	 * Construct an agent that asks the given agent and, if it is too slow,
+	 * the given fallback, which should always be quick.
+	 *
+	 * @param agent
+	 * @param fallback
+	 */
+	public TimeoutAgent(Agent agent, Agent fallback) {
+		this.agent = agent;
+		this.fallback = fallback;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "agent");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Return the number of decisions the fallback had to make.
+	 *
+	 * @return
+	 */
+	public int getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * Stop the thread of the agent.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Override
+	public Action chooseAction(final GameView view, final long deadline) {
+		Action action = call(new Callable<Action>() {
+			@Override
+			public Action call() {
+				return agent.chooseAction(view, deadline);
+			}
+		}, deadline);
+		return action != null ? action : fallback.chooseAction(view, deadline);
+	}
+
+	@Override
+	public int chooseExit(final GameView view, final long deadline) {
+		Integer exit = call(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return agent.chooseExit(view, deadline);
+			}
+		}, deadline);
+		return exit != null ? exit : fallback.chooseExit(view, deadline);
+	}
+
+	@Override
+	public Card[] chooseSuggestion(final GameView view, final long deadline) {
+		Card[] cards = call(new Callable<Card[]>() {
+			@Override
+			public Card[] call() {
+				return agent.chooseSuggestion(view, deadline);
+			}
+		}, deadline);
+		return cards != null ? cards : fallback.chooseSuggestion(view,
+				deadline);
+	}
+
+	@Override
+	public Card[] decideAccusation(final GameView view, final long deadline) {
+		Card[] cards = call(new Callable<Card[]>() {
+			@Override
+			public Card[] call() {
+				return agent.decideAccusation(view, deadline);
+			}
+		}, deadline);
+		return cards != null ? cards : fallback.decideAccusation(view,
+				deadline);
+	}
+
+	@Override
+	public Card chooseRefutation(final GameView view, final Card[] suggestion,
+			final List<Card> cards, final long deadline) {
+		Card card = call(new Callable<Card>() {
+			@Override
+			public Card call() {
+				return agent.chooseRefutation(view, suggestion, cards,
+						deadline);
+			}
+		}, deadline);
+		return card != null ? card : fallback.chooseRefutation(view,
+				suggestion, cards, deadline);
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Return the agent's decision, or null if it was not made by the deadline
+	 * or could not be made.
+	 */
+	private <T> T call(Callable<T> decision, long deadline) {
+		Future<T> future = executor.submit(decision);
+		try {
+			T result = future.get(Math.max(0, deadline - System.nanoTime()),
+					TimeUnit.NANOSECONDS);
+			if (result == null) {
+				timeouts++;
+			}
+			return result;
+		} catch (TimeoutException | ExecutionException e) {
+			future.cancel(true);
+			timeouts++;
+			return null;
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			timeouts++;
+			return null;
+		}
+	}
+}
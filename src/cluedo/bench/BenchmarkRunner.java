@@ -0,0 +1,293 @@
+package cluedo.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cluedo.BoardGenerator;
+import cluedo.GameError;
+
+/**
+ * Runs the BoardBenchmarks on each of a list of boards and reports the
+ * average time of one operation with its error, in the manner of JMH: each
+ * benchmark on each board is run in a fresh JVM (a fork) so that the JIT
+ * profile of one cannot slow down another, the number of operations of an
+ * iteration is calibrated to take about the iteration time, and only the
+ * iterations after the warm-up ones are measured. The error is the half-width
+ * of the 99% confidence interval of the mean over every measured iteration of
+ * every fork.
+ *
+ * A board is a board file or gen:N for the board of N by N cells made by the
+ * BoardGenerator with seed 1, so the same boards are measured on every
+ * machine. Results can also be written as CSV, to compare builds.
+ *
+ * Usage: java cluedo.bench.BenchmarkRunner [-f forks] [-wi warmups]
+ * [-i iterations] [-t millis] [-b board,board...] [-o results.csv]
+ * [benchmark...]
+ */
+public class BenchmarkRunner {
+
+	public static final String DEFAULT_BOARDS = "gameBoard.txt,gen:64,gen:256,gen:1024";
+
+	private int forks = 1;
+	private int warmups = 5;
+	private int iterations = 10;
+	private long millis = 200;
+	private List<String> boards = Arrays.asList(DEFAULT_BOARDS.split(","));
+	private String output;
+	private List<String> names = new ArrayList<String>();
+
+	/**
+	 * Print the time of each iteration of the one benchmark named, for the
+	 * JVM that forked this one, rather than a summary.
+	 */
+	private boolean raw;
+
+	/**
+	 * The result of every run, so that nothing a benchmark computes is dead
+	 * code.
+	 */
+	private static volatile long sink;
+
+	public static void main(String[] args) throws IOException {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-f":
+				runner.forks = Integer.parseInt(args[++i]);
+				break;
+			case "-wi":
+				runner.warmups = Integer.parseInt(args[++i]);
+				break;
+			case "-i":
+				runner.iterations = Integer.parseInt(args[++i]);
+				break;
+			case "-t":
+				runner.millis = Long.parseLong(args[++i]);
+				break;
+			case "-b":
+				runner.boards = Arrays.asList(args[++i].split(","));
+				break;
+			case "-o":
+				runner.output = args[++i];
+				break;
+			case "-raw":
+				runner.raw = true;
+				break;
+			default:
+				runner.names.add(args[i]);
+				break;
+			}
+		}
+		if (runner.raw) {
+			for (double score : runner.measure(find(runner.names.get(0)),
+					runner.boards.get(0))) {
+				System.out.println(score);
+			}
+		} else {
+			runner.runAll();
+		}
+	}
+
+	/**
+	 * Run every benchmark whose name contains one of the given names, or
+	 * every benchmark if none are given, on every board.
+	 *
+	 * @throws IOException
+	 */
+	public void runAll() throws IOException {
+		PrintWriter csv = null;
+		if (output != null) {
+			csv = new PrintWriter(new FileWriter(output));
+			csv.println("benchmark,board,iterations,ns_per_op,error_ns");
+		}
+		try {
+			// boards are generated again in case the generator has changed
+			for (String board : boards) {
+				if (board.startsWith("gen:")) {
+					new File(boardFile(board)).delete();
+					boardFile(board);
+				}
+			}
+			System.out.printf("%-16s %-14s %5s %14s %12s%n", "Benchmark",
+					"Board", "Cnt", "ns/op", "Error");
+			for (Microbenchmark benchmark : BoardBenchmarks.all()) {
+				if (!selected(benchmark.getName())) {
+					continue;
+				}
+				for (String board : boards) {
+					List<Double> scores = new ArrayList<Double>();
+					if (forks == 0) {
+						scores.addAll(measure(benchmark, board));
+					}
+					for (int f = 0; f < forks; f++) {
+						scores.addAll(fork(benchmark.getName(), board));
+					}
+					double mean = mean(scores);
+					double error = error(scores, mean);
+					System.out.printf("%-16s %-14s %5d %14.1f +- %9.1f%n",
+							benchmark.getName(), board, scores.size(), mean,
+							error);
+					if (csv != null) {
+						csv.printf("%s,%s,%d,%.3f,%.3f%n", benchmark.getName(),
+								board, scores.size(), mean, error);
+					}
+				}
+			}
+		} finally {
+			if (csv != null) {
+				csv.close();
+			}
+		}
+	}
+
+	/**
+	 * Run the given benchmark on the given board in this JVM, and return the
+	 * time of one operation in ns in each measured iteration.
+	 *
+	 * @param benchmark
+	 * @param board
+	 * @return
+	 */
+	public List<Double> measure(Microbenchmark benchmark, String board) {
+		benchmark.setUp(boardFile(board));
+
+		// double the operations until an iteration takes a tenth of the time,
+		// then scale them up to the whole time
+		int ops = 1;
+		long nanos;
+		while ((nanos = time(benchmark, ops)) < millis * 100000L
+				&& ops < Integer.MAX_VALUE / 2) {
+			ops *= 2;
+		}
+		ops = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (double) ops
+				* millis * 1000000L / Math.max(nanos, 1)));
+
+		for (int i = 0; i < warmups; i++) {
+			time(benchmark, ops);
+		}
+		List<Double> scores = new ArrayList<Double>();
+		for (int i = 0; i < iterations; i++) {
+			scores.add((double) time(benchmark, ops) / ops);
+		}
+		return scores;
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private static long time(Microbenchmark benchmark, int ops) {
+		long start = System.nanoTime();
+		long result = benchmark.run(ops);
+		long nanos = System.nanoTime() - start;
+		sink += result;
+		return nanos;
+	}
+
+	/**
+	 * Run the named benchmark on the given board in a new JVM and return the
+	 * time of one operation in each of its measured iterations.
+	 */
+	private List<Double> fork(String name, String board) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+				System.getProperty("java.class.path"),
+				BenchmarkRunner.class.getName(), "-raw", "-wi", "" + warmups,
+				"-i", "" + iterations, "-t", "" + millis, "-b", board, name);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process process = builder.start();
+		List<Double> scores = new ArrayList<Double>();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+				process.getInputStream()))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				scores.add(Double.parseDouble(line));
+			}
+		}
+		try {
+			if (process.waitFor() != 0) {
+				throw new GameError("Fork of " + name + " on " + board
+						+ " failed.");
+			}
+		} catch (InterruptedException e) {
+			process.destroy();
+			Thread.currentThread().interrupt();
+			throw new GameError("Interrupted.");
+		}
+		return scores;
+	}
+
+	private boolean selected(String name) {
+		if (names.isEmpty()) {
+			return true;
+		}
+		for (String n : names) {
+			if (name.contains(n)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Microbenchmark find(String name) {
+		for (Microbenchmark benchmark : BoardBenchmarks.all()) {
+			if (benchmark.getName().equals(name)) {
+				return benchmark;
+			}
+		}
+		throw new GameError("No such benchmark: " + name);
+	}
+
+	/**
+	 * Return the board file of the given board, writing generated boards to
+	 * the temporary directory the first time.
+	 */
+	public static String boardFile(String board) {
+		if (!board.startsWith("gen:")) {
+			return board;
+		}
+		int size = Integer.parseInt(board.substring(4));
+		File file = new File(System.getProperty("java.io.tmpdir"),
+				"cluedo-gen-" + size + ".txt");
+		if (!file.exists()) {
+			try (FileWriter out = new FileWriter(file)) {
+				new BoardGenerator(size, size, 9, 1).write(out);
+			} catch (IOException e) {
+				throw new GameError("Error writing board: " + e);
+			}
+		}
+		return file.getPath();
+	}
+
+	private static double mean(List<Double> scores) {
+		double sum = 0;
+		for (double s : scores) {
+			sum += s;
+		}
+		return sum / scores.size();
+	}
+
+	/**
+	 * Return the half-width of the 99% confidence interval of the mean.
+	 */
+	private static double error(List<Double> scores, double mean) {
+		if (scores.size() < 2) {
+			return Double.NaN;
+		}
+		double squares = 0;
+		for (double s : scores) {
+			squares += (s - mean) * (s - mean);
+		}
+		return 2.576 * Math.sqrt(squares / (scores.size() - 1) / scores.size());
+	}
+}
@@ -0,0 +1,304 @@
+package cluedo.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.Board;
+import cluedo.BoardTopology;
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.GameAdapter;
+import cluedo.Player;
+import cluedo.Position;
+import cluedo.Room;
+
+/**
+ * The microbenchmarks of the hot paths of Board, Room and CluedoGame. Each
+ * plays on a game of six players with a fixed seed; the benchmarks of a
+ * player's position take the positions from a walk of the board made with a
+ * fixed seed as well, which passes through corridors and rooms alike.
+ */
+public class BoardBenchmarks {
+
+	/**
+	 * The seed of every game and walk.
+	 */
+	public static final long SEED = 42;
+
+	/**
+	 * The number of positions of a walk.
+	 */
+	public static final int WALK = 4096;
+
+	/**
+	 * Return all the benchmarks, in the order they are run.
+	 *
+	 * @return
+	 */
+	public static List<Microbenchmark> all() {
+		List<Microbenchmark> benchmarks = new ArrayList<Microbenchmark>();
+
+		// compiling a board file into its map
+		benchmarks.add(new Microbenchmark("topology.load") {
+			private String boardFile;
+
+			@Override
+			public void setUp(String boardFile) {
+				this.boardFile = boardFile;
+			}
+
+			@Override
+			public long run(int ops) {
+				long result = 0;
+				for (int i = 0; i < ops; i++) {
+					result += BoardTopology.load(boardFile).getCellCount();
+				}
+				return result;
+			}
+		});
+
+		// a new game on a loaded board: players, solution, board and dealing
+		benchmarks.add(new Microbenchmark("game.new") {
+			private String boardFile;
+			private long seed;
+
+			@Override
+			public void setUp(String boardFile) {
+				this.boardFile = boardFile;
+				seed = SEED;
+				BoardTopology.cached(boardFile);
+			}
+
+			@Override
+			public long run(int ops) {
+				long result = 0;
+				for (int i = 0; i < ops; i++) {
+					CluedoGame game = new CluedoGame(boardFile, 6,
+							GameAdapter.NONE, seed++);
+					result += game.getUnusedCards().size()
+							+ CluedoGame.indexOf(game.getSolution()[0]);
+				}
+				return result;
+			}
+		});
+
+		benchmarks.add(new PositionBenchmark("board.canGo") {
+			@Override
+			long at(Board board, Player player) {
+				return (board.canGoNorth(player) ? 1 : 0)
+						+ (board.canGoSouth(player) ? 2 : 0)
+						+ (board.canGoWest(player) ? 4 : 0)
+						+ (board.canGoEast(player) ? 8 : 0);
+			}
+		});
+
+		benchmarks.add(new PositionBenchmark("board.inRoom") {
+			@Override
+			long at(Board board, Player player) {
+				if (!board.inRoom(player)) {
+					return 0;
+				}
+				return board.inWhichRoom(player).getShortName();
+			}
+		});
+
+		// steps of the walk itself, entering and leaving rooms
+		benchmarks.add(new GameBenchmark("board.move") {
+			private Random random;
+
+			@Override
+			void setUp(Board board, Player player) {
+				random = new Random(SEED);
+			}
+
+			@Override
+			public long run(int ops) {
+				long result = 0;
+				for (int i = 0; i < ops; i++) {
+					step(board, player, random);
+					result += player.getX() + player.getY();
+				}
+				return result;
+			}
+		});
+
+		benchmarks.add(new GameBenchmark("board.render") {
+			@Override
+			void setUp(Board board, Player player) {
+			}
+
+			@Override
+			public long run(int ops) {
+				long result = 0;
+				for (int i = 0; i < ops; i++) {
+					result += board.toString().length();
+				}
+				return result;
+			}
+		});
+
+		// suggestions in one room, of every suspect and weapon in turn
+		benchmarks.add(new GameBenchmark("board.suggest") {
+			private Card[] suggestion = new Card[3];
+
+			@Override
+			void setUp(Board board, Player player) {
+				Random random = new Random(SEED);
+				while (!board.inRoom(player)) {
+					step(board, player, random);
+				}
+				suggestion[2] = board.inWhichRoom(player).getRoomCard();
+			}
+
+			@Override
+			public long run(int ops) {
+				long result = 0;
+				for (int i = 0; i < ops; i++) {
+					suggestion[0] = CluedoGame.cardAt(i % 6);
+					suggestion[1] = CluedoGame.cardAt(6 + i / 6 % 6);
+					player.resetSuggeted();
+					Card refuted = board.makeSuggestion(player, suggestion);
+					result += refuted == null ? -1 : CluedoGame.indexOf(refuted);
+				}
+				return result;
+			}
+		});
+
+		// right and wrong accusations in turn; the wrong ones are made by a
+		// player who is not in the game, so that nobody is eliminated
+		benchmarks.add(new GameBenchmark("board.accuse") {
+			private Card[] right;
+			private Card[] wrong;
+			private Player outsider;
+
+			@Override
+			void setUp(Board board, Player player) {
+				right = game.getSolution().clone();
+				wrong = right.clone();
+				wrong[0] = CluedoGame.cardAt((CluedoGame.indexOf(right[0]) + 1) % 6);
+				outsider = new Player(player.getUid());
+			}
+
+			@Override
+			public long run(int ops) {
+				long result = 0;
+				for (int i = 0; i < ops; i++) {
+					result += (i & 1) == 0 ? board.makeAccusation(player, right)
+							: board.makeAccusation(outsider, wrong);
+				}
+				return result;
+			}
+		});
+		return benchmarks;
+	}
+
+	/**
+	 * Take one step of a walk with the given player: out of a room by one of
+	 * its doors, or in a direction the player can go, chosen at random.
+	 *
+	 * @param board
+	 * @param player
+	 * @param random
+	 */
+	static void step(Board board, Player player, Random random) {
+		Room room = board.inWhichRoom(player);
+		if (room != null) {
+			List<Position> exits = room.getEntrancesPositions();
+			board.exitRoom(player, exits.get(random.nextInt(exits.size())));
+			return;
+		}
+		int[] directions = new int[4];
+		int count = 0;
+		if (board.canGoNorth(player)) {
+			directions[count++] = BoardTopology.NORTH;
+		}
+		if (board.canGoSouth(player)) {
+			directions[count++] = BoardTopology.SOUTH;
+		}
+		if (board.canGoWest(player)) {
+			directions[count++] = BoardTopology.WEST;
+		}
+		if (board.canGoEast(player)) {
+			directions[count++] = BoardTopology.EAST;
+		}
+		if (count == 0) {
+			return;
+		}
+		switch (directions[random.nextInt(count)]) {
+		case BoardTopology.NORTH:
+			board.moveNorth(player);
+			break;
+		case BoardTopology.SOUTH:
+			board.moveSouth(player);
+			break;
+		case BoardTopology.WEST:
+			board.moveWest(player);
+			break;
+		default:
+			board.moveEast(player);
+			break;
+		}
+	}
+
+	/**
+	 * A benchmark on a new game, of its first player, who can always move.
+	 */
+	abstract static class GameBenchmark extends Microbenchmark {
+		CluedoGame game;
+		Board board;
+		Player player;
+
+		GameBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		public void setUp(String boardFile) {
+			game = new CluedoGame(boardFile, 6, GameAdapter.NONE, SEED);
+			board = game.getBoard();
+			player = game.getPlayers().get(0);
+			player.setStepsRemain(Integer.MAX_VALUE);
+			setUp(board, player);
+		}
+
+		abstract void setUp(Board board, Player player);
+	}
+
+	/**
+	 * A benchmark of a question about the player's position, asked at every
+	 * position of a walk in turn.
+	 */
+	abstract static class PositionBenchmark extends GameBenchmark {
+		private final int[] xs = new int[WALK];
+		private final int[] ys = new int[WALK];
+
+		PositionBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		void setUp(Board board, Player player) {
+			Random random = new Random(SEED);
+			for (int i = 0; i < WALK; i++) {
+				step(board, player, random);
+				xs[i] = player.getX();
+				ys[i] = player.getY();
+			}
+		}
+
+		@Override
+		public long run(int ops) {
+			long result = 0;
+			for (int i = 0; i < ops; i++) {
+				int at = i & (WALK - 1);
+				player.setX(xs[at]);
+				player.setY(ys[at]);
+				result += at(board, player);
+			}
+			return result;
+		}
+
+		abstract long at(Board board, Player player);
+	}
+}
@@ -0,0 +1,49 @@
+package cluedo.bench;
+
+/**
+ * One operation measured by the BenchmarkRunner, on one board. The runner
+ * calls setUp once, then run many times with a growing or fixed number of
+ * operations and divides the time taken by it.
+ *
+ * Everything a benchmark does must follow from fixed seeds, so that two runs
+ * of the same build measure the same work. run returns a value computed from
+ * the results of the operations, which the runner keeps, so that the JIT
+ * cannot drop operations whose results are never used.
+ */
+public abstract class Microbenchmark {
+
+	private final String name;
+
+	/**
+	 * Construct a benchmark of the given name.
+	 *
+	 * @param name
+	 */
+	protected Microbenchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Return the name of the benchmark.
+	 *
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Prepare to measure the operation on the given board file.
+	 *
+	 * @param boardFile
+	 */
+	public abstract void setUp(String boardFile);
+
+	/**
+	 * Do the operation the given number of times.
+	 *
+	 * @param ops
+	 * @return
+	 */
+	public abstract long run(int ops);
+}
@@ -0,0 +1,185 @@
+package cluedo.bot;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The line connection to one bot, usually another process speaking the
+ * protocol of BotMatch on its standard input and output. Lines to the bot
+ * are buffered until flush, so everything the bot needs for a decision goes
+ * in one write. Lines from the bot are read by a thread of the connection,
+ * so that waiting for a reply can time out.
+ *
+ * A bot that quits or cannot be written to is dead: it is sent nothing more
+ * and never replies.
+ */
+public class BotConnection implements Closeable {
+
+	/**
+	 * Put in the queue of lines when the bot closes its output.
+	 */
+	private static final String END_OF_STREAM = new String("");
+
+	private final String name;
+	private final Process process;
+	private final Writer out;
+	private final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+	private volatile boolean dead;
+
+	/**
+	 * Construct a connection to a bot of the given name that reads what is
+	 * written to toBot and writes to fromBot. The process is destroyed when
+	 * the connection is closed, it may be null for a bot that is not a
+	 * process.
+	 *
+	 * @param name
+	 * @param fromBot
+	 * @param toBot
+	 * @param process
+	 */
+	public BotConnection(String name, InputStream fromBot, OutputStream toBot,
+			Process process) {
+		this.name = name;
+		this.process = process;
+		this.out = new BufferedWriter(new OutputStreamWriter(toBot), 1 << 14);
+		final BufferedReader in = new BufferedReader(new InputStreamReader(
+				fromBot));
+		Thread reader = new Thread("bot-" + name) {
+			@Override
+			public void run() {
+				try {
+					String line;
+					while ((line = in.readLine()) != null) {
+						lines.add(line);
+					}
+				} catch (IOException e) {
+					// the bot is gone either way
+				}
+				lines.add(END_OF_STREAM);
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Start the bot with the given command line, words separated by spaces,
+	 * with its error output going to ours.
+	 *
+	 * @param command
+	 * @return
+	 * @throws IOException
+	 */
+	public static BotConnection start(String command) throws IOException {
+		ProcessBuilder builder = new ProcessBuilder(command.trim().split("\\s+"));
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process process = builder.start();
+		return new BotConnection(command, process.getInputStream(),
+				process.getOutputStream(), process);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * false once the bot has quit or could not be written to.
+	 *
+	 * @return
+	 */
+	public boolean isAlive() {
+		return !dead;
+	}
+
+	/**
+	 * Buffer a line to the bot.
+	 *
+	 * @param line
+	 */
+	public void send(String line) {
+		if (dead) {
+			return;
+		}
+		try {
+			out.write(line);
+			out.write('\n');
+		} catch (IOException e) {
+			dead = true;
+		}
+	}
+
+	/**
+	 * Write the buffered lines to the bot.
+	 */
+	public void flush() {
+		if (dead) {
+			return;
+		}
+		try {
+			out.flush();
+		} catch (IOException e) {
+			dead = true;
+		}
+	}
+
+	/**
+	 * Forget the lines the bot has sent and nobody has read, such as a reply
+	 * that came too late.
+	 */
+	public void discardPending() {
+		String line;
+		while ((line = lines.poll()) != null) {
+			if (line == END_OF_STREAM) {
+				dead = true;
+			}
+		}
+	}
+
+	/**
+	 * Return the next line from the bot, or null if none comes within the
+	 * given number of milliseconds or the bot is dead.
+	 *
+	 * @param timeoutMillis
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public String receive(long timeoutMillis) throws InterruptedException {
+		if (dead) {
+			return null;
+		}
+		String line = lines.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+		if (line == END_OF_STREAM) {
+			dead = true;
+			return null;
+		}
+		return line;
+	}
+
+	/**
+	 * Tell the bot to quit and stop it if it is a process.
+	 */
+	@Override
+	public void close() {
+		send("quit");
+		flush();
+		dead = true;
+		try {
+			out.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+		if (process != null) {
+			process.destroy();
+		}
+	}
+}
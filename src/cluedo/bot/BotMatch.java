@@ -0,0 +1,445 @@
+package cluedo.bot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import cluedo.Action;
+import cluedo.Board;
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.GameAdapter;
+import cluedo.GameCommand;
+import cluedo.GameController;
+import cluedo.GameError;
+import cluedo.Player;
+import cluedo.Room;
+import cluedo.TurnEngine;
+import cluedo.sim.ObjectGameRunner;
+
+/**
+ * Plays a game between bots, each speaking a line protocol on its standard
+ * input and output much as chess engines speak UCI. Cards are written by
+ * their enum names (MISS_SCARLETT) and players by their uids.
+ *
+ * At the start of the game every bot is told
+ *
+ * <pre>
+ * cluedo 1
+ * game players 4 you 2 board gameBoard.txt width 24 height 25
+ * hand ROPE KITCHEN STUDY ...
+ * unused DAGGER ...
+ * </pre>
+ *
+ * and then, as they happen, about every roll, suggestion and accusation:
+ *
+ * <pre>
+ * rolled 3 4
+ * suggested 3 MISS_SCARLETT ROPE KITCHEN refuter 1
+ * shown ROPE                (to the player who suggested only)
+ * accused 3 MRS_WHITE ROPE KITCHEN wrong
+ * gameover winner 2         (0 if the game was abandoned)
+ * quit
+ * </pre>
+ *
+ * When it is a bot's turn to act it is sent the state and asked to go:
+ *
+ * <pre>
+ * turn 17 player 2 roll 4 steps 3 state moving
+ * position 1 7 0
+ * position 2 12 5
+ * room KITCHEN              (or room none)
+ * legal north east exit suggest accuse
+ * exits 2 stairwell         (if exit is legal; the last exit is the stairwell)
+ * go movetime 1000
+ * </pre>
+ *
+ * The bot replies with one line of GameCommand commands separated by
+ * semicolons, such as "north; north; suggest MRS_WHITE ROPE", which are
+ * played in order for as long as it is still the bot's turn, so that several
+ * decisions cost one round trip. If no reply comes within the move time, or
+ * a command is not allowed, the bot is told "timeout" or "error MESSAGE" and
+ * a fallback action is played for it (end the turn if it can, otherwise a
+ * random step), so a slow or broken bot cannot stall the game. A reply that
+ * comes too late is thrown away.
+ */
+public class BotMatch {
+
+	/**
+	 * The move time if none is given.
+	 */
+	public static final long DEFAULT_MOVE_MILLIS = 1000;
+
+	private final CluedoGame game;
+	private final GameController controller;
+	private final BotConnection[] bots;
+	private final long moveMillis;
+	private final Random random;
+	private int timeouts;
+	private int errors;
+
+	/**
+	 * Construct a match of the given game in which the player with uid u is
+	 * played by bots[u - 1], allowed the given time for each reply.
+	 *
+	 * @param game
+	 * @param bots
+	 * @param moveMillis
+	 */
+	public BotMatch(CluedoGame game, BotConnection[] bots, long moveMillis) {
+		if (bots.length != game.getPlayers().size()) {
+			throw new GameError("There must be one bot for each player.");
+		}
+		this.game = game;
+		this.bots = bots;
+		this.moveMillis = moveMillis;
+		this.random = new Random(game.getRandom().getState());
+		this.controller = new GameController(game);
+	}
+
+	/**
+	 * Play the game to the end, or until ObjectGameRunner.MAX_TURNS turns
+	 * have been played. Return the winner, null if the game was abandoned.
+	 *
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public Player play() throws InterruptedException {
+		for (Player p : game.getPlayers()) {
+			introduce(p);
+		}
+		broadcast("rolled " + controller.getCurrentPlayer().getUid() + " "
+				+ controller.getRoll());
+		while (!controller.isFinished()
+				&& controller.getTurnNumber() <= ObjectGameRunner.MAX_TURNS) {
+			Player player = controller.getCurrentPlayer();
+			BotConnection bot = bots[player.getUid() - 1];
+			bot.discardPending();
+			sendState(bot);
+			String reply = bot.receive(moveMillis);
+			if (reply == null) {
+				timeouts++;
+				bot.send("timeout");
+				fallback();
+				continue;
+			}
+			for (String command : reply.split(";")) {
+				if (command.trim().isEmpty()) {
+					continue;
+				}
+				if (controller.isFinished()
+						|| controller.getCurrentPlayer() != player) {
+					break;
+				}
+				try {
+					execute(GameCommand.parse(command));
+				} catch (GameError e) {
+					errors++;
+					bot.send("error " + e.getMessage());
+					fallback();
+					break;
+				}
+			}
+		}
+		Player winner = controller.getWinner();
+		broadcast("gameover winner " + (winner == null ? 0 : winner.getUid()));
+		for (BotConnection b : bots) {
+			b.flush();
+		}
+		return winner;
+	}
+
+	/**
+	 * Return the number of replies that did not come in time.
+	 *
+	 * @return
+	 */
+	public int getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * Return the number of commands that could not be played.
+	 *
+	 * @return
+	 */
+	public int getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Return the controller of the game.
+	 *
+	 * @return
+	 */
+	public GameController getController() {
+		return controller;
+	}
+
+	/**
+	 * Play games between the bots given by their command lines, each game on
+	 * its own bots, and print how often each bot won:
+	 *
+	 * <pre>
+	 * java cluedo.bot.BotMatch [-games N] [-threads T] [-movetime MS] board.txt "bot 1" "bot 2" "bot 3" ...
+	 * </pre>
+	 *
+	 * The bots change seats from game to game.
+	 *
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int games = 1;
+		int threads = 1;
+		long moveMillis = DEFAULT_MOVE_MILLIS;
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); i += 2) {
+			switch (args[i]) {
+			case "-games":
+				games = Integer.parseInt(args[i + 1]);
+				break;
+			case "-threads":
+				threads = Integer.parseInt(args[i + 1]);
+				break;
+			case "-movetime":
+				moveMillis = Long.parseLong(args[i + 1]);
+				break;
+			default:
+				throw new GameError("Unknown option: " + args[i]);
+			}
+		}
+		if (args.length - i < 4) {
+			System.out.println("Usage: java cluedo.bot.BotMatch [-games N] "
+					+ "[-threads T] [-movetime MS] board.txt bot bot bot...");
+			System.exit(1);
+		}
+		final String boardFile = args[i];
+		final String[] commands = new String[args.length - i - 1];
+		System.arraycopy(args, i + 1, commands, 0, commands.length);
+		final long move = moveMillis;
+		final AtomicIntegerArray wins = new AtomicIntegerArray(
+				commands.length + 1);
+		final AtomicInteger timeouts = new AtomicInteger();
+		final AtomicInteger errors = new AtomicInteger();
+		final long seed = new Random().nextLong();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		long start = System.nanoTime();
+		for (int g = 0; g < games; g++) {
+			final int number = g;
+			results.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					int winner;
+					try {
+						winner = playOne(boardFile, commands, number, seed
+								+ number, move, timeouts, errors);
+					} catch (Exception e) {
+						throw new GameError("Game " + number + " failed: " + e);
+					}
+					wins.incrementAndGet(winner + 1);
+				}
+			}));
+		}
+		for (Future<?> f : results) {
+			f.get();
+		}
+		pool.shutdown();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games in %.1f s, %d abandoned, %d timeouts, "
+				+ "%d errors%n", games, seconds, wins.get(0), timeouts.get(),
+				errors.get());
+		for (int b = 0; b < commands.length; b++) {
+			System.out.printf("%5d wins  %s%n", wins.get(b + 1), commands[b]);
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Play game number g, with the bots moved round by g seats, and return
+	 * the index of the winning bot in commands, -1 if nobody won. The
+	 * timeouts and errors of the game are added to the given counts.
+	 */
+	private static int playOne(String boardFile, String[] commands, int g,
+			long seed, long moveMillis, AtomicInteger timeouts,
+			AtomicInteger errors) throws IOException, InterruptedException {
+		int n = commands.length;
+		BotConnection[] bots = new BotConnection[n];
+		try {
+			for (int seat = 0; seat < n; seat++) {
+				bots[seat] = BotConnection.start(commands[(seat + g) % n]);
+			}
+			CluedoGame game = new CluedoGame(boardFile, n, GameAdapter.NONE,
+					seed);
+			BotMatch match = new BotMatch(game, bots, moveMillis);
+			Player winner = match.play();
+			timeouts.addAndGet(match.getTimeouts());
+			errors.addAndGet(match.getErrors());
+			return winner == null ? -1 : (winner.getUid() - 1 + g) % n;
+		} finally {
+			for (BotConnection bot : bots) {
+				if (bot != null) {
+					bot.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tell the bot of the given player about the game and its cards.
+	 */
+	private void introduce(Player player) {
+		Board board = controller.getBoard();
+		BotConnection bot = bots[player.getUid() - 1];
+		bot.send("cluedo 1");
+		bot.send("game players " + game.getPlayers().size() + " you "
+				+ player.getUid() + " board " + game.getBoardFile()
+				+ " width " + board.getWidth() + " height " + board.getHeight());
+		bot.send(cards("hand", player.getHand()));
+		bot.send(cards("unused", game.getUnusedCards()));
+	}
+
+	/**
+	 * Send the state of the game to the bot whose turn it is and ask it to
+	 * go.
+	 */
+	private void sendState(BotConnection bot) {
+		Player player = controller.getCurrentPlayer();
+		Board board = controller.getBoard();
+		bot.send("turn " + controller.getTurnNumber() + " player "
+				+ player.getUid() + " roll " + controller.getRoll()
+				+ " steps " + player.getStepsRemain() + " state "
+				+ controller.getTurnState().name().toLowerCase());
+		for (Player p : board.getAlivePlayers()) {
+			bot.send("position " + p.getUid() + " " + p.getX() + " "
+					+ p.getY());
+		}
+		Room room = board.inWhichRoom(player);
+		bot.send("room "
+				+ (room == null ? "none" : room.getRoomCard().name()));
+		int legal = controller.getLegalMask() & TurnEngine.PLAY;
+		StringBuilder sb = new StringBuilder("legal");
+		for (Action action : TurnEngine.actions(legal)) {
+			sb.append(' ').append(action.keyword());
+		}
+		bot.send(sb.toString());
+		if ((legal & TurnEngine.bit(Action.EXIT)) != 0) {
+			bot.send("exits " + controller.getExits().size()
+					+ (room.getStairellTo() == null ? "" : " stairwell"));
+		}
+		bot.send("go movetime " + moveMillis);
+		bot.flush();
+	}
+
+	/**
+	 * Play one command of the bot whose turn it is and tell every bot what
+	 * it needs to know.
+	 */
+	private void execute(GameCommand command) {
+		Action action = command.getAction();
+		if (!controller.isLegal(action)) {
+			throw new GameError("You cannot " + action.keyword() + " now.");
+		}
+		Player player = controller.getCurrentPlayer();
+		int turn = controller.getTurnNumber();
+		switch (action) {
+		case NORTH:
+		case SOUTH:
+		case WEST:
+		case EAST:
+			controller.move(action.direction());
+			break;
+		case EXIT:
+			controller.exitRoom(command.getExit());
+			break;
+		case SUGGEST:
+			Card shown = controller.suggest(command.getCards()[0],
+					command.getCards()[1]);
+			Player refuter = controller.getLastRefuter();
+			broadcast("suggested " + player.getUid() + " "
+					+ names(controller.getLastSuggestion()) + " refuter "
+					+ (refuter == null ? 0 : refuter.getUid()));
+			if (shown != null) {
+				bots[player.getUid() - 1].send("shown "
+						+ ((Enum<?>) shown).name());
+			}
+			break;
+		case ACCUSE:
+			Card[] cards = command.getCards();
+			int result = controller.accuse(cards[0], cards[1], cards[2]);
+			broadcast("accused " + player.getUid() + " " + names(cards) + " "
+					+ (result == Board.RIGHT_ANSWER ? "right" : "wrong"));
+			break;
+		case END:
+			controller.endTurn();
+			break;
+		default:
+			throw new GameError("You cannot " + action.keyword()
+					+ " in a bot game.");
+		}
+		if (!controller.isFinished() && controller.getTurnNumber() != turn) {
+			broadcast("rolled " + controller.getCurrentPlayer().getUid() + " "
+					+ controller.getRoll());
+		}
+	}
+
+	/**
+	 * Play an action for the bot whose turn it is: end the turn if it can,
+	 * otherwise a random step or exit.
+	 */
+	private void fallback() {
+		EnumSet<Action> legal = controller.legalActions();
+		if (legal.contains(Action.END)) {
+			execute(new GameCommand(Action.END, 0, null));
+			return;
+		}
+		List<Action> steps = new ArrayList<Action>();
+		for (Action action : legal) {
+			if (action.isMove() || action == Action.EXIT) {
+				steps.add(action);
+			}
+		}
+		Action step = steps.get(random.nextInt(steps.size()));
+		int exit = step == Action.EXIT ? 1 + random.nextInt(controller
+				.getExits().size()) : 0;
+		execute(new GameCommand(step, exit, null));
+	}
+
+	private void broadcast(String line) {
+		for (BotConnection bot : bots) {
+			bot.send(line);
+		}
+	}
+
+	private static String cards(String word, List<Card> cards) {
+		StringBuilder sb = new StringBuilder(word);
+		for (Card card : cards) {
+			sb.append(' ').append(((Enum<?>) card).name());
+		}
+		return sb.toString();
+	}
+
+	private static String names(Card[] cards) {
+		StringBuilder sb = new StringBuilder();
+		for (Card card : cards) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(((Enum<?>) card).name());
+		}
+		return sb.toString();
+	}
+}
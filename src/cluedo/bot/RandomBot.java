@@ -0,0 +1,157 @@
+package cluedo.bot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.CluedoGame;
+
+/**
+ * A bot speaking the BotMatch protocol that moves at random but keeps track
+ * of the cards it has seen: it suggests cards it has not seen, and accuses
+ * as soon as only one card of each type is left unseen. Serves as an
+ * example and as an opponent to measure other bots against:
+ *
+ * <pre>
+ * java cluedo.bot.BotMatch board.txt "java -cp bin cluedo.bot.RandomBot" ...
+ * </pre>
+ */
+public class RandomBot {
+
+	private final Random random;
+
+	/**
+	 * The cards the bot knows are not the solution.
+	 */
+	private long known;
+
+	/**
+	 * The actions and the number of exits of the last state.
+	 */
+	private List<String> legal = new ArrayList<String>();
+	private int exits;
+
+	/**
+	 * Construct a bot that makes its random choices from the given random
+	 * numbers.
+	 *
+	 * @param random
+	 */
+	public RandomBot(Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * Play games on the lines read from the given reader, replying to the
+	 * given stream, until told to quit.
+	 *
+	 * @param in
+	 * @param out
+	 * @throws IOException
+	 */
+	public void play(BufferedReader in, PrintStream out) throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] words = line.split(" ");
+			switch (words[0]) {
+			case "game":
+				known = 0;
+				break;
+			case "hand":
+			case "unused":
+			case "shown":
+				for (int i = 1; i < words.length; i++) {
+					known |= 1L << index(words[i]);
+				}
+				break;
+			case "legal":
+				legal.clear();
+				for (int i = 1; i < words.length; i++) {
+					legal.add(words[i]);
+				}
+				break;
+			case "exits":
+				exits = Integer.parseInt(words[1]);
+				break;
+			case "go":
+				out.println(decide());
+				out.flush();
+				break;
+			case "quit":
+				return;
+			default:
+				// nothing this bot needs
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		new RandomBot(new Random()).play(new BufferedReader(
+				new InputStreamReader(System.in)), System.out);
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Return the reply to the last state.
+	 */
+	private String decide() {
+		if (CluedoGame.isSolved(known)) {
+			return "accuse " + unknown(CluedoGame.CHARACTER_CARDS) + " "
+					+ unknown(CluedoGame.WEAPON_CARDS) + " "
+					+ unknown(CluedoGame.ROOM_CARDS);
+		}
+		if (legal.contains("suggest")) {
+			return "suggest " + unknown(CluedoGame.CHARACTER_CARDS) + " "
+					+ unknown(CluedoGame.WEAPON_CARDS);
+		}
+		List<String> steps = new ArrayList<String>();
+		for (String action : legal) {
+			if (action.equals("north") || action.equals("south")
+					|| action.equals("west") || action.equals("east")) {
+				steps.add(action);
+			}
+		}
+		if (legal.contains("exit")) {
+			steps.add("exit " + (1 + random.nextInt(exits)));
+		}
+		if (!steps.isEmpty()) {
+			return steps.get(random.nextInt(steps.size()));
+		}
+		return "end";
+	}
+
+	/**
+	 * Return the name of a random card of the given type that the bot has
+	 * not seen, or of any card of the type if it has seen them all.
+	 */
+	private String unknown(long type) {
+		long cards = ~known & type;
+		if (cards == 0) {
+			cards = type;
+		}
+		int pick = random.nextInt(Long.bitCount(cards));
+		for (int i = 0; i < pick; i++) {
+			cards &= cards - 1;
+		}
+		return ((Enum<?>) CluedoGame.cardAt(Long.numberOfTrailingZeros(cards)))
+				.name();
+	}
+
+	private static int index(String name) {
+		for (int i = 0; i < CluedoGame.NUM_CARDS; i++) {
+			if (((Enum<?>) CluedoGame.cardAt(i)).name().equals(name)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("No such card: " + name);
+	}
+}
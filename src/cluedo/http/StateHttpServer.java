@@ -0,0 +1,488 @@
+package cluedo.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import cluedo.Board;
+import cluedo.BoardWatcher;
+import cluedo.Card;
+import cluedo.GameCommand;
+import cluedo.GameController;
+import cluedo.GameError;
+import cluedo.Player;
+import cluedo.Weapon;
+import cluedo.metrics.Metrics;
+import cluedo.net.GameRegistry;
+import cluedo.net.Table;
+import cluedo.session.SessionHost;
+
+/**
+ * A small HTTP/JSON interface to the games of a GameRegistry, for dashboards
+ * and clients that poll.
+ *
+ * - GET /games/{id}/board, the board as rendered by Board.toString
+ *
+ * - GET /games/{id}/state, JSON with the turn, the players and the weapons
+ *
+ * - POST /games?players=N, create a game
+ *
+ * - POST /games/{id}/join, take the next free seat of a game, answered with
+ * its uid and a token that stands for the seat
+ *
+ * - POST /games/{id}/{command}?token=T&amp;..., where command is move (dir,
+ * one of north, south, west and east), exit (exit), suggest (character,
+ * weapon), accuse (character, weapon, room) or end. The command is played
+ * for the seat of the token. Parameters take the same values as
+ * GameCommand.
+ *
+ * Every GET response carries an ETag made of the game id and the game's
+ * version, and a request whose If-None-Match matches it gets a 304 without
+ * anything being rendered. Unchanged state is also rendered only once for all
+ * pollers.
+ *
+ * Usage: java cluedo.http.StateHttpServer [port] [board.txt]
+ */
+public class StateHttpServer implements HttpHandler {
+
+	private final GameRegistry registry;
+	private final HttpServer server;
+	private final Executor executor;
+
+	/**
+	 * The last JSON state of each game and the version it was made at.
+	 */
+	private final Map<Integer, CachedState> states = new ConcurrentHashMap<Integer, CachedState>();
+
+	/**
+	 * The token of each seat taken at each game, by uid - 1.
+	 */
+	private final Map<Integer, String[]> seats = new ConcurrentHashMap<Integer, String[]>();
+
+	private final SecureRandom tokens = new SecureRandom();
+
+	/**
+	 * Construct a server for the games of the given registry on the given
+	 * address. Requests are handled on virtual threads where the JVM has them,
+	 * otherwise on a pool of platform threads.
+	 *
+	 * @param registry
+	 * @param address
+	 * @throws IOException
+	 */
+	public StateHttpServer(GameRegistry registry, InetSocketAddress address)
+			throws IOException {
+		this.registry = registry;
+		server = HttpServer.create(address, 0);
+		server.createContext("/games", this);
+		final ThreadFactory virtual = SessionHost.virtualThreadFactory();
+		if (virtual != null) {
+			// one new virtual thread per exchange, they are cheap enough
+			executor = new Executor() {
+				@Override
+				public void execute(Runnable command) {
+					virtual.newThread(command).start();
+				}
+			};
+		} else {
+			executor = Executors.newCachedThreadPool();
+		}
+		server.setExecutor(executor);
+	}
+
+	/**
+	 * Start serving requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stop serving requests.
+	 */
+	public void stop() {
+		server.stop(0);
+		if (executor instanceof ExecutorService) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+
+	/**
+	 * Return the port the server is listening on.
+	 *
+	 * @return
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Return the executor running the request handlers.
+	 *
+	 * @return
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			String[] path = exchange.getRequestURI().getPath().split("/");
+			String method = exchange.getRequestMethod();
+			Map<String, String> params = query(exchange.getRequestURI()
+					.getRawQuery());
+			// path[0] is empty and path[1] is "games"
+			if (path.length == 2 && method.equals("POST")) {
+				create(exchange, params);
+				return;
+			}
+			if (path.length != 4) {
+				send(exchange, 404, "text/plain", "Not found.");
+				return;
+			}
+			Table table = registry.get(Integer.parseInt(path[2]));
+			if (table == null) {
+				send(exchange, 404, "text/plain", "No such game.");
+				return;
+			}
+			if (method.equals("GET")) {
+				get(exchange, table, path[3]);
+			} else if (method.equals("POST")) {
+				post(exchange, table, path[3], params);
+			} else {
+				send(exchange, 405, "text/plain", "Method not allowed.");
+			}
+		} catch (NumberFormatException e) {
+			send(exchange, 400, "text/plain", "Bad number: " + e.getMessage());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void create(HttpExchange exchange, Map<String, String> params)
+			throws IOException {
+		String players = params.get("players");
+		int numPlayers = players == null ? 6 : Integer.parseInt(players);
+		try {
+			Table table = registry.create(numPlayers);
+			send(exchange, 201, "application/json", "{\"id\":" + table.getId()
+					+ "}");
+		} catch (GameError e) {
+			send(exchange, 400, "application/json", error(e));
+		}
+	}
+
+	private void get(HttpExchange exchange, Table table, String resource)
+			throws IOException {
+		long version;
+		synchronized (table) {
+			version = table.getController().getVersion();
+		}
+		String etag = "\"" + table.getId() + "-" + version + "\"";
+		exchange.getResponseHeaders().set("ETag", etag);
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+		switch (resource) {
+		case "board":
+			send(exchange, 200, "text/plain", table.renderBoard());
+			break;
+		case "state":
+			send(exchange, 200, "application/json", state(table));
+			break;
+		default:
+			send(exchange, 404, "text/plain", "Not found.");
+		}
+	}
+
+	private void post(HttpExchange exchange, Table table, String resource,
+			Map<String, String> params) throws IOException {
+		if (resource.equals("join")) {
+			join(exchange, table);
+			return;
+		}
+		String line;
+		switch (resource) {
+		case "move":
+			line = params.get("dir");
+			if (line != null && !isDirection(line)) {
+				send(exchange, 400, "text/plain", "Bad direction: " + line);
+				return;
+			}
+			break;
+		case "exit":
+			line = "exit " + params.get("exit");
+			break;
+		case "suggest":
+			line = "suggest " + params.get("character") + " "
+					+ params.get("weapon");
+			break;
+		case "accuse":
+			line = "accuse " + params.get("character") + " "
+					+ params.get("weapon") + " " + params.get("room");
+			break;
+		case "end":
+			line = "end";
+			break;
+		default:
+			send(exchange, 404, "text/plain", "Not found.");
+			return;
+		}
+		String token = params.get("token");
+		if (line == null || token == null) {
+			send(exchange, 400, "text/plain", "Missing parameter.");
+			return;
+		}
+		String result;
+		try {
+			GameCommand command = GameCommand.parse(line);
+			synchronized (table) {
+				int uid = seatOf(table, token);
+				if (uid == 0) {
+					send(exchange, 403, "text/plain", "Not seated.");
+					return;
+				}
+				result = execute(table.getController(), uid, command);
+			}
+		} catch (GameError e) {
+			send(exchange, 409, "application/json", error(e));
+			return;
+		}
+		send(exchange, 200, "application/json", result);
+	}
+
+	/**
+	 * Take the next free seat at the given table and answer with its uid and
+	 * token.
+	 */
+	private void join(HttpExchange exchange, Table table) throws IOException {
+		byte[] bytes = new byte[16];
+		tokens.nextBytes(bytes);
+		StringBuilder token = new StringBuilder();
+		for (byte b : bytes) {
+			token.append(Character.forDigit(b >> 4 & 0xF, 16)).append(
+					Character.forDigit(b & 0xF, 16));
+		}
+		int uid;
+		try {
+			synchronized (table) {
+				uid = table.join();
+				String[] tableSeats = seats.get(table.getId());
+				if (tableSeats == null) {
+					tableSeats = new String[table.getNumPlayers()];
+					seats.put(table.getId(), tableSeats);
+				}
+				tableSeats[uid - 1] = token.toString();
+			}
+		} catch (GameError e) {
+			send(exchange, 409, "application/json", error(e));
+			return;
+		}
+		send(exchange, 201, "application/json", "{\"uid\":" + uid
+				+ ",\"token\":\"" + token + "\"}");
+	}
+
+	/**
+	 * Return the uid of the seat of the given token at the given table, 0 if
+	 * it is not the token of a seat there. The caller must hold the table's
+	 * lock.
+	 */
+	private int seatOf(Table table, String token) {
+		String[] tableSeats = seats.get(table.getId());
+		if (tableSeats != null) {
+			for (int i = 0; i < tableSeats.length; i++) {
+				if (token.equals(tableSeats[i])) {
+					return i + 1;
+				}
+			}
+		}
+		return 0;
+	}
+
+	private static boolean isDirection(String dir) {
+		return dir.equals("north") || dir.equals("south")
+				|| dir.equals("west") || dir.equals("east");
+	}
+
+	/**
+	 * Carry out the command of the given player and describe the outcome in
+	 * JSON. The caller must hold the table's lock.
+	 */
+	private static String execute(GameController controller, int uid,
+			GameCommand command) {
+		if (controller.isFinished()
+				|| controller.getCurrentPlayer().getUid() != uid) {
+			throw new GameError("It is not your turn.");
+		}
+		StringBuilder sb = new StringBuilder("{");
+		switch (command.getAction()) {
+		case NORTH:
+		case SOUTH:
+		case WEST:
+		case EAST:
+			controller.move(command.getAction().direction());
+			break;
+		case EXIT:
+			controller.exitRoom(command.getExit());
+			break;
+		case SUGGEST:
+			Card shown = controller.suggest(command.getCards()[0],
+					command.getCards()[1]);
+			sb.append("\"refutedBy\":");
+			if (shown == null) {
+				sb.append("null,");
+			} else {
+				sb.append(controller.getLastRefuter().getUid()).append(",");
+				sb.append("\"card\":\"").append(shown).append("\",");
+			}
+			break;
+		case ACCUSE:
+			Card[] cards = command.getCards();
+			int result = controller.accuse(cards[0], cards[1], cards[2]);
+			sb.append("\"correct\":")
+					.append(result == Board.RIGHT_ANSWER).append(",");
+			break;
+		case END:
+			controller.endTurn();
+			break;
+		default:
+			throw new GameError("Invalid option: " + command.getAction());
+		}
+		sb.append("\"version\":").append(controller.getVersion()).append("}");
+		return sb.toString();
+	}
+
+	/**
+	 * Return the JSON state of the given table, made again only if the game
+	 * has changed since the last time.
+	 */
+	private String state(Table table) {
+		synchronized (table) {
+			GameController controller = table.getController();
+			CachedState cached = states.get(table.getId());
+			if (cached != null && cached.version == controller.getVersion()) {
+				return cached.json;
+			}
+			String json = stateJson(table);
+			states.put(table.getId(), new CachedState(controller.getVersion(),
+					json));
+			return json;
+		}
+	}
+
+	private static String stateJson(Table table) {
+		GameController controller = table.getController();
+		Board board = controller.getBoard();
+		Player current = controller.getCurrentPlayer();
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"id\":").append(table.getId());
+		sb.append(",\"version\":").append(controller.getVersion());
+		sb.append(",\"turn\":").append(controller.getTurnNumber());
+		sb.append(",\"current\":").append(current.getUid());
+		sb.append(",\"roll\":").append(controller.getRoll());
+		sb.append(",\"stepsRemain\":").append(current.getStepsRemain());
+		sb.append(",\"winner\":").append(
+				controller.isFinished() ? controller.getWinner().getUid()
+						: "null");
+		sb.append(",\"players\":[");
+		List<Player> alive = board.getAlivePlayers();
+		for (int i = 0; i < alive.size(); i++) {
+			Player p = alive.get(i);
+			sb.append(i == 0 ? "{" : ",{");
+			sb.append("\"uid\":").append(p.getUid());
+			sb.append(",\"name\":\"").append(p.getName()).append("\"");
+			sb.append(",\"x\":").append(p.getX());
+			sb.append(",\"y\":").append(p.getY());
+			sb.append("}");
+		}
+		sb.append("],\"weapons\":[");
+		List<Weapon> weapons = board.getWeapons();
+		for (int i = 0; i < weapons.size(); i++) {
+			Weapon w = weapons.get(i);
+			sb.append(i == 0 ? "{" : ",{");
+			sb.append("\"name\":\"").append(w.getName()).append("\"");
+			sb.append(",\"inRoom\":").append(board.inRoom(w));
+			sb.append(",\"x\":").append(w.getX());
+			sb.append(",\"y\":").append(w.getY());
+			sb.append("}");
+		}
+		sb.append("]}");
+		return sb.toString();
+	}
+
+	private static String error(GameError e) {
+		return "{\"error\":\"" + e.getMessage().replace("\\", "\\\\")
+				.replace("\"", "\\\"") + "\"}";
+	}
+
+	private static void send(HttpExchange exchange, int status,
+			String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type",
+				contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static Map<String, String> query(String rawQuery)
+			throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		if (rawQuery == null) {
+			return params;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+						URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * A JSON state and the game version it describes.
+	 */
+	private static class CachedState {
+		final long version;
+		final String json;
+
+		CachedState(long version, String json) {
+			this.version = version;
+			this.json = json;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		String boardFile = args.length > 1 ? args[1] : "gameBoard.txt";
+		StateHttpServer server = new StateHttpServer(new GameRegistry(
+				boardFile), new InetSocketAddress(port));
+		server.start();
+		Thread watcher = new Thread(new BoardWatcher(boardFile), "board-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+		Metrics.register();
+		System.out.println("Cluedo HTTP API listening on port "
+				+ server.getPort());
+	}
+}
@@ -0,0 +1,403 @@
+package cluedo.journal;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import cluedo.CluedoGame;
+import cluedo.GameError;
+
+/**
+ * A structured text log of everything that happens in a game, written by a
+ * background thread so that a slow terminal or disk never holds up the game.
+ * The game thread only copies each event into a slot of a ring buffer
+ * allocated up front, as the fixed-width records of RecordListener: a type,
+ * the uid of the player, five small arguments and a position. The writer
+ * thread takes all the records published since it last looked, formats them
+ * as one line each of key=value pairs, such as
+ *
+ * <pre>
+ * time=1718000000000 event=suggested player=2 character="MISS SCARLETT" weapon="ROPE" room="KITCHEN" refuter=3 shown="ROPE"
+ * </pre>
+ *
+ * and writes the batch with a single write.
+ *
+ * When the writer falls behind and the ring fills up, the policy decides:
+ * BLOCK waits for room, so nothing is lost; DROP throws the new record away;
+ * SAMPLE keeps only one record in sampleEvery once the ring is half full, and
+ * drops the rest when it is full. Dropped records are counted and the count
+ * is written to the log.
+ *
+ * Only one thread may publish to a log; give each game, or each thread
+ * running games, its own.
+ */
+public class AsyncGameLog extends RecordListener implements Closeable {
+
+	public enum Policy {
+		BLOCK, DROP, SAMPLE
+	}
+
+	public static final int DEFAULT_CAPACITY = 4096;
+	public static final int DEFAULT_SAMPLE_EVERY = 8;
+
+	/**
+	 * How long the writer sleeps when there is nothing to write, unless woken
+	 * by the game thread.
+	 */
+	private static final long IDLE_NANOS = 10000000;
+
+	private final OutputStream out;
+	private final Policy policy;
+	private final int sampleEvery;
+
+	/**
+	 * The slots of the ring: the time of each record and its fields packed
+	 * into ints, see record.
+	 */
+	private final int mask;
+	private final long[] times;
+	private final int[] fields;
+
+	/**
+	 * The number of records published and the number written. Each is only
+	 * changed by one thread, with lazySet.
+	 */
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * The game thread's last reading of tail, so that it reads the shared
+	 * value only when the ring looks full.
+	 */
+	private long cachedTail;
+
+	/**
+	 * Counts records while sampling.
+	 */
+	private int sampled;
+
+	private volatile long dropped;
+	private volatile boolean closed;
+	private volatile boolean sleeping;
+
+	private final Thread writer;
+	private IOException error;
+
+	/**
+	 * Construct a log writing to the given stream with the default capacity.
+	 *
+	 * @param out
+	 * @param policy
+	 */
+	public AsyncGameLog(OutputStream out, Policy policy) {
+		this(out, policy, DEFAULT_CAPACITY, DEFAULT_SAMPLE_EVERY);
+	}
+
+	/**
+	 * Construct a log writing to the given stream whose ring holds capacity
+	 * records, rounded up to a power of two.
+	 *
+	 * @param out
+	 * @param policy
+	 * @param capacity
+	 * @param sampleEvery
+	 */
+	public AsyncGameLog(OutputStream out, Policy policy, int capacity,
+			int sampleEvery) {
+		if (capacity < 2 || sampleEvery < 1) {
+			throw new GameError("Invalid log capacity or sampling: "
+					+ capacity + ", " + sampleEvery);
+		}
+		int n = Integer.highestOneBit(capacity - 1) << 1;
+		this.out = out;
+		this.policy = policy;
+		this.sampleEvery = sampleEvery;
+		mask = n - 1;
+		times = new long[n];
+		fields = new int[n * 4];
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "game-log");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Open a log on the given file, or on standard output for "-", with the
+	 * policy of the given name.
+	 *
+	 * @param file
+	 * @param policy
+	 * @return
+	 * @throws IOException
+	 */
+	public static AsyncGameLog open(String file, String policy)
+			throws IOException {
+		Policy p;
+		try {
+			p = Policy.valueOf(policy.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new GameError("Unknown log policy: " + policy);
+		}
+		return new AsyncGameLog(file.equals("-") ? System.out
+				: new FileOutputStream(file, true), p);
+	}
+
+	/**
+	 * Return the number of records dropped so far.
+	 *
+	 * @return
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Write every record published so far and stop the writer. The stream is
+	 * closed unless it is standard output.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (out != System.out) {
+			out.close();
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Copy one record into the next slot, or apply the policy if the ring is
+	 * full. The fields are packed as type, uid, a and b in the first int, c,
+	 * d and e in the second, then x and y.
+	 */
+	@Override
+	void record(byte type, int uid, int a, int b, int c, int d, int e,
+			int x, int y) {
+		long seq = head.get();
+		long used = seq - cachedTail;
+		if (used > mask) {
+			used = seq - (cachedTail = tail.get());
+		}
+		if (policy == Policy.SAMPLE && used > mask / 2
+				&& ++sampled % sampleEvery != 0) {
+			dropped++;
+			return;
+		}
+		if (used > mask) {
+			if (policy != Policy.BLOCK) {
+				dropped++;
+				return;
+			}
+			while (seq - (cachedTail = tail.get()) > mask) {
+				if (closed) {
+					throw new GameError("The game log is closed.");
+				}
+				wake();
+				Thread.yield();
+			}
+		}
+		int slot = (int) seq & mask;
+		times[slot] = System.currentTimeMillis();
+		fields[slot * 4] = type | uid << 8 | (a & 0xFF) << 16 | (b & 0xFF) << 24;
+		fields[slot * 4 + 1] = (c & 0xFF) | (d & 0xFF) << 8 | (e & 0xFF) << 16;
+		fields[slot * 4 + 2] = x;
+		fields[slot * 4 + 3] = y;
+		head.lazySet(seq + 1);
+		wake();
+	}
+
+	private void wake() {
+		if (sleeping) {
+			sleeping = false;
+			LockSupport.unpark(writer);
+		}
+	}
+
+	/**
+	 * The loop of the writer thread.
+	 */
+	private void write() {
+		StringBuilder sb = new StringBuilder(256);
+		byte[] batch = new byte[64 * 1024];
+		long reported = 0;
+		try {
+			while (true) {
+				long from = tail.get();
+				long to = head.get();
+				if (from == to) {
+					out.flush();
+					if (closed && head.get() == from) {
+						return;
+					}
+					sleeping = true;
+					if (head.get() == from && !closed) {
+						LockSupport.parkNanos(IDLE_NANOS);
+					}
+					sleeping = false;
+					continue;
+				}
+				int length = 0;
+				for (long seq = from; seq < to; seq++) {
+					sb.setLength(0);
+					format(sb, (int) seq & mask);
+					if (length + sb.length() > batch.length) {
+						out.write(batch, 0, length);
+						length = 0;
+					}
+					length = copy(sb, batch, length);
+				}
+				tail.lazySet(to);
+				long lost = dropped;
+				if (lost != reported) {
+					sb.setLength(0);
+					sb.append("time=").append(System.currentTimeMillis())
+							.append(" event=dropped count=")
+							.append(lost - reported).append('\n');
+					reported = lost;
+					if (length + sb.length() > batch.length) {
+						out.write(batch, 0, length);
+						length = 0;
+					}
+					length = copy(sb, batch, length);
+				}
+				out.write(batch, 0, length);
+			}
+		} catch (IOException e) {
+			error = e;
+			// keep emptying the ring so that a blocked game can go on
+			while (!closed || tail.get() != head.get()) {
+				tail.lazySet(head.get());
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Format the record in the given slot as one line.
+	 */
+	private void format(StringBuilder sb, int slot) {
+		int w0 = fields[slot * 4];
+		int w1 = fields[slot * 4 + 1];
+		int type = w0 & 0xFF;
+		int uid = w0 >>> 8 & 0xFF;
+		int a = w0 >>> 16 & 0xFF;
+		int b = w0 >>> 24;
+		int c = w1 & 0xFF;
+		int d = w1 >>> 8 & 0xFF;
+		int e = w1 >>> 16 & 0xFF;
+		sb.append("time=").append(times[slot]).append(" event=");
+		switch (type) {
+		case STARTED:
+			sb.append("started players=").append(a);
+			break;
+		case SOLUTION:
+			sb.append("solution");
+			cards(sb, a, b, c);
+			break;
+		case DEALT:
+			sb.append("dealt player=").append(uid);
+			card(sb, " card=", a);
+			break;
+		case ROLLED:
+			sb.append("rolled player=").append(uid).append(" roll=").append(a);
+			break;
+		case STEPPED:
+			sb.append("stepped player=").append(uid).append(" direction=")
+					.append("NSWE".charAt(a & 3));
+			break;
+		case ENTERED:
+			sb.append("entered player=").append(uid);
+			card(sb, " room=", a);
+			break;
+		case EXITED:
+			sb.append("exited player=").append(uid);
+			card(sb, " room=", a);
+			break;
+		case STAIRWELL:
+			sb.append("stairwell player=").append(uid);
+			card(sb, " from=", a);
+			card(sb, " to=", b);
+			break;
+		case SUMMONED:
+			sb.append("summoned");
+			card(sb, " token=", a);
+			card(sb, " room=", b);
+			break;
+		case SUGGESTED:
+			sb.append("suggested player=").append(uid);
+			cards(sb, a, b, c);
+			sb.append(" refuter=").append(d);
+			if (e != NONE) {
+				card(sb, " shown=", e);
+			}
+			break;
+		case ACCUSED:
+			sb.append("accused player=").append(uid);
+			cards(sb, a, b, c);
+			sb.append(" result=").append(d);
+			break;
+		case ELIMINATED:
+			sb.append("eliminated player=").append(uid);
+			break;
+		default:
+			sb.append("unknown type=").append(type);
+			break;
+		}
+		switch (type) {
+		case STEPPED:
+		case ENTERED:
+		case EXITED:
+		case STAIRWELL:
+		case SUMMONED:
+			sb.append(" x=").append(fields[slot * 4 + 2]).append(" y=")
+					.append(fields[slot * 4 + 3]);
+			break;
+		default:
+			break;
+		}
+		sb.append('\n');
+	}
+
+	private static void cards(StringBuilder sb, int character, int weapon,
+			int room) {
+		card(sb, " character=", character);
+		card(sb, " weapon=", weapon);
+		card(sb, " room=", room);
+	}
+
+	private static void card(StringBuilder sb, String key, int index) {
+		sb.append(key).append('"').append(CluedoGame.cardAt(index))
+				.append('"');
+	}
+
+	/**
+	 * Copy the ASCII characters of the line into the batch at the given
+	 * length and return the new length.
+	 */
+	private static int copy(StringBuilder sb, byte[] batch, int length) {
+		for (int i = 0; i < sb.length(); i++) {
+			batch[length++] = (byte) sb.charAt(i);
+		}
+		return length;
+	}
+}
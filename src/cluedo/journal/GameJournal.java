@@ -0,0 +1,238 @@
+package cluedo.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import cluedo.GameError;
+
+/**
+ * An append-only binary journal of everything that happens in games, written
+ * as a GameListener. The file is a header followed by fixed-width records,
+ * one per event, appended to a memory-mapped region of the file so that
+ * recording an event is a handful of stores and no system call. The mapped
+ * region is forced to disk once every syncEvery records and when the journal
+ * is closed, so a crash loses at most the records since the last sync.
+ *
+ * The header is HEADER_SIZE bytes: i32 MAGIC, u16 FORMAT_VERSION, u16
+ * RECORD_SIZE, then zeros. Each record is RECORD_SIZE bytes:
+ *
+ * - i32 sequence number, from 1 in each file; 0 marks the end of the journal
+ *
+ * - u8 type, u8 uid of the player (0 if none)
+ *
+ * - five u8 arguments a to e, u16 x, u16 y and one byte of padding
+ *
+ * The type and arguments of each event are those of RecordListener.
+ *
+ * Not thread safe; give each game, or each thread running games, its own
+ * journal.
+ */
+public class GameJournal extends RecordListener implements Closeable {
+
+	public static final int MAGIC = 0x434C4A31;
+	public static final int FORMAT_VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+	public static final int RECORD_SIZE = 16;
+
+	/**
+	 * The number of records mapped at a time.
+	 */
+	public static final int CHUNK_RECORDS = 64 * 1024;
+
+	/**
+	 * By default the journal is forced to disk once every this many records.
+	 */
+	public static final int DEFAULT_SYNC_EVERY = 4096;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final int syncEvery;
+
+	/**
+	 * The mapped part of the file the next records go to.
+	 */
+	private MappedByteBuffer chunk;
+
+	/**
+	 * The number of records in the journal.
+	 */
+	private long count;
+
+	/**
+	 * The number of records written since the last sync.
+	 */
+	private int unsynced;
+
+	/**
+	 * Open the given journal for appending, creating it if it does not exist.
+	 *
+	 * @param journal
+	 * @throws IOException
+	 */
+	public GameJournal(File journal) throws IOException {
+		this(journal, DEFAULT_SYNC_EVERY);
+	}
+
+	/**
+	 * Open the given journal for appending, creating it if it does not exist,
+	 * and force it to disk once every syncEvery records.
+	 *
+	 * @param journal
+	 * @param syncEvery
+	 * @throws IOException
+	 */
+	public GameJournal(File journal, int syncEvery) throws IOException {
+		this.syncEvery = syncEvery;
+		file = new RandomAccessFile(journal, "rw");
+		channel = file.getChannel();
+		try {
+			if (channel.size() == 0) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putShort((short) FORMAT_VERSION)
+						.putShort((short) RECORD_SIZE).clear();
+				channel.write(header, 0);
+			} else {
+				checkHeader(channel, journal);
+				count = countRecords(channel);
+			}
+			mapChunk();
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the number of records in the journal.
+	 *
+	 * @return
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * Force every record written so far to disk.
+	 *
+	 * @throws IOException
+	 */
+	public void sync() throws IOException {
+		chunk.force();
+		unsynced = 0;
+	}
+
+	/**
+	 * Sync the journal, cut the file down to the records written and close
+	 * it.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			sync();
+			chunk = null;
+			try {
+				channel.truncate(HEADER_SIZE + count * RECORD_SIZE);
+			} catch (IOException e) {
+				// some platforms cannot truncate a mapped file, the zeros at
+				// the end mark the end of the journal anyway
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Append one record. The sequence number is written last so that a
+	 * record is never seen half written.
+	 */
+	@Override
+	void record(byte type, int uid, int a, int b, int c, int d, int e,
+			int x, int y) {
+		if (!chunk.hasRemaining()) {
+			try {
+				chunk.force();
+				mapChunk();
+			} catch (IOException ex) {
+				throw new GameError("Cannot extend the journal: " + ex);
+			}
+		}
+		int at = chunk.position();
+		chunk.put(at + 4, type);
+		chunk.put(at + 5, (byte) uid);
+		chunk.put(at + 6, (byte) a);
+		chunk.put(at + 7, (byte) b);
+		chunk.put(at + 8, (byte) c);
+		chunk.put(at + 9, (byte) d);
+		chunk.put(at + 10, (byte) e);
+		chunk.putShort(at + 11, (short) x);
+		chunk.putShort(at + 13, (short) y);
+		chunk.putInt(at, (int) ++count);
+		chunk.position(at + RECORD_SIZE);
+		if (++unsynced >= syncEvery) {
+			chunk.force();
+			unsynced = 0;
+		}
+	}
+
+	/**
+	 * Map the next CHUNK_RECORDS records of the file, growing it if needed.
+	 */
+	private void mapChunk() throws IOException {
+		chunk = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE
+				+ count * RECORD_SIZE, (long) CHUNK_RECORDS * RECORD_SIZE);
+	}
+
+	/**
+	 * Throw an IOException if the file does not start with a journal header
+	 * this class can read.
+	 */
+	static void checkHeader(FileChannel channel, File journal)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(header, 0);
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+			throw new IOException(journal + " is not a game journal.");
+		}
+		int version = header.getShort();
+		int recordSize = header.getShort();
+		if (version != FORMAT_VERSION || recordSize != RECORD_SIZE) {
+			throw new IOException(journal + " has unsupported format "
+					+ version + " with records of " + recordSize + " bytes.");
+		}
+	}
+
+	/**
+	 * Return the number of records in the journal, ignoring the zeros left
+	 * at the end by a journal that was not closed. Records are only ever
+	 * appended, so the written ones come first and can be found by binary
+	 * search.
+	 */
+	static long countRecords(FileChannel channel) throws IOException {
+		long low = 0;
+		long high = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+		ByteBuffer seq = ByteBuffer.allocate(4);
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			seq.clear();
+			channel.read(seq, HEADER_SIZE + mid * RECORD_SIZE);
+			if (seq.getInt(0) != 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
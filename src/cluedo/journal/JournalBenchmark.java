@@ -0,0 +1,71 @@
+package cluedo.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import cluedo.sim.ObjectGameRunner;
+
+/**
+ * Measures what journaling costs a simulated game: plays the same games with
+ * the ObjectGameRunner once without a listener and once writing every event
+ * to a GameJournal, and reports both rates and the size of the journal.
+ *
+ * Usage: java cluedo.journal.JournalBenchmark [games] [journal] [board.txt]
+ */
+public class JournalBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		File file = args.length > 1 ? new File(args[1]) : File
+				.createTempFile("cluedo", ".journal");
+		String boardFile = args.length > 2 ? args[2] : "gameBoard.txt";
+
+		// warm up both ways before measuring
+		play(boardFile, games / 4, null);
+		file.delete();
+		play(boardFile, games / 4, file);
+		file.delete();
+
+		long start = System.nanoTime();
+		play(boardFile, games, null);
+		double plain = (System.nanoTime() - start) / 1e9;
+
+		start = System.nanoTime();
+		long records = play(boardFile, games, file);
+		double journaled = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("without journal: %8.0f games/s%n", games / plain);
+		System.out.printf("with journal:    %8.0f games/s, %.0f records/s%n",
+				games / journaled, records / journaled);
+		System.out.printf("%d records, %.1f per game, %d bytes, overhead %.1f%%%n",
+				records, records / (double) games, file.length(),
+				(journaled - plain) / plain * 100);
+		if (args.length < 2) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Play the given number of games, journaling them to the given file if
+	 * it is not null. Return the number of records written.
+	 */
+	private static long play(String boardFile, int games, File file)
+			throws IOException {
+		ObjectGameRunner runner = new ObjectGameRunner(boardFile, 6,
+				new Random(42));
+		if (file == null) {
+			for (int i = 0; i < games; i++) {
+				runner.playGame();
+			}
+			return 0;
+		}
+		try (GameJournal journal = new GameJournal(file)) {
+			runner.setListener(journal);
+			for (int i = 0; i < games; i++) {
+				runner.playGame();
+			}
+			return journal.size();
+		}
+	}
+}
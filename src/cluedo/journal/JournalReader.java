@@ -0,0 +1,197 @@
+package cluedo.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import cluedo.CluedoGame;
+
+/**
+ * Reads the records of a GameJournal in order. The journal is mapped read
+ * only, so reading a record costs no more than writing it did. A reader
+ * points at one record at a time; next moves it on and the getters return
+ * the fields of the record it points at.
+ *
+ * Usage: java cluedo.journal.JournalReader journal
+ */
+public class JournalReader implements Closeable {
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer records;
+	private final long count;
+
+	/**
+	 * The offset of the current record, -RECORD_SIZE before the first.
+	 */
+	private int at = -GameJournal.RECORD_SIZE;
+
+	/**
+	 * Open the given journal for reading.
+	 *
+	 * @param journal
+	 * @throws IOException
+	 */
+	public JournalReader(File journal) throws IOException {
+		file = new RandomAccessFile(journal, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			GameJournal.checkHeader(channel, journal);
+			count = GameJournal.countRecords(channel);
+			if (count > Integer.MAX_VALUE / GameJournal.RECORD_SIZE) {
+				throw new IOException(journal + " is too large to map.");
+			}
+			records = channel.map(FileChannel.MapMode.READ_ONLY,
+					GameJournal.HEADER_SIZE, count * GameJournal.RECORD_SIZE);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the number of records in the journal.
+	 *
+	 * @return
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * Move on to the next record. Return false if there are no more.
+	 *
+	 * @return
+	 */
+	public boolean next() {
+		if (at + GameJournal.RECORD_SIZE >= records.limit()) {
+			return false;
+		}
+		at += GameJournal.RECORD_SIZE;
+		return true;
+	}
+
+	/**
+	 * Return the sequence number of the current record.
+	 *
+	 * @return
+	 */
+	public int getSequence() {
+		return records.getInt(at);
+	}
+
+	/**
+	 * Return the type of the current record.
+	 *
+	 * @return
+	 */
+	public int getType() {
+		return records.get(at + 4);
+	}
+
+	/**
+	 * Return the uid of the player of the current record, 0 if none.
+	 *
+	 * @return
+	 */
+	public int getUid() {
+		return records.get(at + 5) & 0xFF;
+	}
+
+	/**
+	 * Return argument i of the current record, a being 0.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public int getArg(int i) {
+		return records.get(at + 6 + i) & 0xFF;
+	}
+
+	/**
+	 * Return the x coordinate of the current record.
+	 *
+	 * @return
+	 */
+	public int getX() {
+		return records.getShort(at + 11) & 0xFFFF;
+	}
+
+	/**
+	 * Return the y coordinate of the current record.
+	 *
+	 * @return
+	 */
+	public int getY() {
+		return records.getShort(at + 13) & 0xFFFF;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Describe the current record in one line.
+	 */
+	@Override
+	public String toString() {
+		String player = "player " + getUid();
+		switch (getType()) {
+		case GameJournal.STARTED:
+			return "started with " + getArg(0) + " players";
+		case GameJournal.SOLUTION:
+			return "solution " + card(0) + ", " + card(1) + ", " + card(2);
+		case GameJournal.DEALT:
+			return (getUid() == 0 ? "set aside" : "dealt to " + player) + ": "
+					+ card(0);
+		case GameJournal.ROLLED:
+			return player + " rolled " + getArg(0);
+		case GameJournal.STEPPED:
+			return player + " stepped to " + position();
+		case GameJournal.ENTERED:
+			return player + " entered " + card(0) + " at " + position();
+		case GameJournal.EXITED:
+			return player + " left " + card(0) + " by " + position();
+		case GameJournal.STAIRWELL:
+			return player + " took the stairwell from " + card(0) + " to "
+					+ card(1) + " at " + position();
+		case GameJournal.SUMMONED:
+			return card(0) + " summoned to " + card(1) + " at " + position();
+		case GameJournal.SUGGESTED:
+			return player + " suggested " + card(0) + ", " + card(1) + ", "
+					+ card(2) + (getArg(3) == 0 ? ", not refuted"
+							: ", refuted by player " + getArg(3) + " with "
+									+ card(4));
+		case GameJournal.ACCUSED:
+			return player + " accused " + card(0) + ", " + card(1) + ", "
+					+ card(2) + ", result " + getArg(3);
+		case GameJournal.ELIMINATED:
+			return player + " is out of the game";
+		default:
+			return "unknown record type " + getType();
+		}
+	}
+
+	private String card(int arg) {
+		return CluedoGame.cardAt(getArg(arg)).toString();
+	}
+
+	private String position() {
+		return "(" + getX() + ", " + getY() + ")";
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: java cluedo.journal.JournalReader journal");
+			System.exit(1);
+		}
+		try (JournalReader reader = new JournalReader(new File(args[0]))) {
+			while (reader.next()) {
+				System.out.println(reader.getSequence() + " " + reader);
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package cluedo.journal;
+
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.GameListener;
+import cluedo.Player;
+import cluedo.Room;
+import cluedo.Token;
+
+/**
+ * A GameListener that turns each event into one fixed-width record: a type,
+ * the uid of the player (0 if none), five small arguments a to e and a
+ * position x, y, all zero when not used. GameJournal writes the records to a
+ * file and AsyncGameLog hands them to its writer thread, so the two share
+ * this one encoding.
+ *
+ * Cards and rooms are written as their CluedoGame.indexOf index (rooms by
+ * their room card) and positions as x and y. The arguments of each type are:
+ *
+ * - STARTED a players
+ *
+ * - SOLUTION a character, b weapon, c room
+ *
+ * - DEALT uid (0 if set aside as unused), a card
+ *
+ * - ROLLED uid, a roll
+ *
+ * - STEPPED uid, a direction, x, y the new position
+ *
+ * - ENTERED uid, a room, x, y the position in the room
+ *
+ * - EXITED uid, a room, x, y the door
+ *
+ * - STAIRWELL uid, a room left, b room entered, x, y the position in it
+ *
+ * - SUMMONED a the card of the token, b room, x, y the position in it
+ *
+ * - SUGGESTED uid, a character, b weapon, c room, d uid of the refuter (0 if
+ * none), e the card shown (NONE if none)
+ *
+ * - ACCUSED uid, a character, b weapon, c room, d Board accusation result
+ *
+ * - ELIMINATED uid
+ */
+public abstract class RecordListener implements GameListener {
+
+	public static final byte STARTED = 1;
+	public static final byte SOLUTION = 2;
+	public static final byte DEALT = 3;
+	public static final byte ROLLED = 4;
+	public static final byte STEPPED = 5;
+	public static final byte ENTERED = 6;
+	public static final byte EXITED = 7;
+	public static final byte STAIRWELL = 8;
+	public static final byte SUMMONED = 9;
+	public static final byte SUGGESTED = 10;
+	public static final byte ACCUSED = 11;
+	public static final byte ELIMINATED = 12;
+
+	/**
+	 * Written instead of a card that does not exist.
+	 */
+	public static final int NONE = 0xFF;
+
+	@Override
+	public void started(int numPlayers) {
+		record(STARTED, 0, numPlayers, 0, 0, 0, 0, 0, 0);
+	}
+
+	@Override
+	public void solutionChosen(Card[] solution) {
+		record(SOLUTION, 0, CluedoGame.indexOf(solution[0]),
+				CluedoGame.indexOf(solution[1]),
+				CluedoGame.indexOf(solution[2]), 0, 0, 0, 0);
+	}
+
+	@Override
+	public void dealt(Player player, Card card) {
+		record(DEALT, player == null ? 0 : player.getUid(),
+				CluedoGame.indexOf(card), 0, 0, 0, 0, 0, 0);
+	}
+
+	@Override
+	public void rolled(Player player, int roll) {
+		record(ROLLED, player.getUid(), roll, 0, 0, 0, 0, 0, 0);
+	}
+
+	@Override
+	public void stepped(Player player, int direction) {
+		record(STEPPED, player.getUid(), direction, 0, 0, 0, 0,
+				player.getX(), player.getY());
+	}
+
+	@Override
+	public void enteredRoom(Player player, Room room) {
+		record(ENTERED, player.getUid(), room(room), 0, 0, 0, 0,
+				player.getX(), player.getY());
+	}
+
+	@Override
+	public void exitedRoom(Player player, Room room) {
+		record(EXITED, player.getUid(), room(room), 0, 0, 0, 0,
+				player.getX(), player.getY());
+	}
+
+	@Override
+	public void tookStairwell(Player player, Room from, Room to) {
+		record(STAIRWELL, player.getUid(), room(from), room(to), 0, 0, 0,
+				player.getX(), player.getY());
+	}
+
+	@Override
+	public void summoned(Token token, Room room) {
+		record(SUMMONED, 0, CluedoGame.indexOf(token.getCard()), room(room),
+				0, 0, 0, token.getX(), token.getY());
+	}
+
+	@Override
+	public void suggested(Player player, Card[] suggestion, Player refuter,
+			Card shown) {
+		record(SUGGESTED, player.getUid(), CluedoGame.indexOf(suggestion[0]),
+				CluedoGame.indexOf(suggestion[1]),
+				CluedoGame.indexOf(suggestion[2]), refuter == null ? 0
+						: refuter.getUid(), shown == null ? NONE
+						: CluedoGame.indexOf(shown), 0, 0);
+	}
+
+	@Override
+	public void accused(Player player, Card[] accusation, int result) {
+		record(ACCUSED, player.getUid(), CluedoGame.indexOf(accusation[0]),
+				CluedoGame.indexOf(accusation[1]),
+				CluedoGame.indexOf(accusation[2]), result, 0, 0, 0);
+	}
+
+	@Override
+	public void eliminated(Player player) {
+		record(ELIMINATED, player.getUid(), 0, 0, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Take one record.
+	 *
+	 * @param type
+	 * @param uid
+	 * @param a
+	 * @param b
+	 * @param c
+	 * @param d
+	 * @param e
+	 * @param x
+	 * @param y
+	 */
+	abstract void record(byte type, int uid, int a, int b, int c, int d,
+			int e, int x, int y);
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private static int room(Room room) {
+		return CluedoGame.indexOf(room.getRoomCard());
+	}
+}
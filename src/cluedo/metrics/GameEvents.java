@@ -0,0 +1,272 @@
+package cluedo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import cluedo.Board;
+import cluedo.Card;
+import cluedo.Player;
+import cluedo.Room;
+
+/**
+ * The JDK Flight Recorder events of the game, so that a slow table can be
+ * matched with GC pauses and CPU use in the same recording, for example
+ *
+ * <pre>
+ * java -XX:StartFlightRecording=filename=cluedo.jfr ... cluedo.net.GameServer
+ * </pre>
+ *
+ * An event is begun with one of the begin methods and committed with the
+ * matching commit method. While no recording has the event enabled begin
+ * returns null without allocating and commit returns at once, so the events
+ * can stay in the code in production. Turns and moves are the most frequent
+ * events, so they are recorded without stack traces.
+ */
+public class GameEvents {
+
+	private static final EventType BOARD_LOAD = EventType
+			.getEventType(BoardLoad.class);
+	private static final EventType TURN = EventType.getEventType(Turn.class);
+	private static final EventType MOVE = EventType.getEventType(Move.class);
+	private static final EventType SUGGESTION = EventType
+			.getEventType(Suggestion.class);
+	private static final EventType ACCUSATION = EventType
+			.getEventType(Accusation.class);
+	private static final EventType RENDER = EventType
+			.getEventType(Render.class);
+
+	@Name("cluedo.BoardLoad")
+	@Label("Board Load")
+	@Category("Cluedo")
+	@Description("A board file read, checked and compiled")
+	public static class BoardLoad extends Event {
+		@Label("Board File")
+		String boardFile;
+
+		@Label("Cells")
+		int cells;
+
+		@Label("Unchanged")
+		@Description("The file had not changed, so the board was not compiled again")
+		boolean unchanged;
+	}
+
+	@Name("cluedo.Turn")
+	@StackTrace(false)
+	@Label("Turn")
+	@Category("Cluedo")
+	@Description("A player's turn, from the roll until the next player's")
+	public static class Turn extends Event {
+		@Label("Game Id")
+		long gameId;
+
+		@Label("Player")
+		int playerUid;
+
+		@Label("Turn Number")
+		int turnNumber;
+
+		@Label("Roll")
+		int roll;
+	}
+
+	@Name("cluedo.Move")
+	@StackTrace(false)
+	@Label("Move")
+	@Category("Cluedo")
+	@Description("One step of a player, into a room or not")
+	public static class Move extends Event {
+		@Label("Game Id")
+		long gameId;
+
+		@Label("Player")
+		int playerUid;
+
+		@Label("Direction")
+		String direction;
+
+		@Label("Entered Room")
+		String enteredRoom;
+	}
+
+	@Name("cluedo.Suggestion")
+	@Label("Suggestion")
+	@Category("Cluedo")
+	@Description("A suggestion and who refuted it")
+	public static class Suggestion extends Event {
+		@Label("Game Id")
+		long gameId;
+
+		@Label("Player")
+		int playerUid;
+
+		@Label("Character")
+		String character;
+
+		@Label("Weapon")
+		String weapon;
+
+		@Label("Room")
+		String room;
+
+		@Label("Refuter")
+		@Description("The uid of the player who refuted the suggestion, 0 if nobody could")
+		int refuterUid;
+	}
+
+	@Name("cluedo.Accusation")
+	@Label("Accusation")
+	@Category("Cluedo")
+	@Description("An accusation and its result")
+	public static class Accusation extends Event {
+		@Label("Game Id")
+		long gameId;
+
+		@Label("Player")
+		int playerUid;
+
+		@Label("Result")
+		String result;
+	}
+
+	@Name("cluedo.Render")
+	@Label("Render")
+	@Category("Cluedo")
+	@Description("The board drawn as text")
+	public static class Render extends Event {
+		@Label("Game Id")
+		long gameId;
+
+		@Label("Characters")
+		int length;
+	}
+
+	public static BoardLoad beginBoardLoad() {
+		return BOARD_LOAD.isEnabled() ? begin(new BoardLoad()) : null;
+	}
+
+	public static void commit(BoardLoad e, String boardFile, int cells,
+			boolean unchanged) {
+		if (e != null && e.shouldCommit()) {
+			e.boardFile = boardFile;
+			e.cells = cells;
+			e.unchanged = unchanged;
+			e.commit();
+		}
+	}
+
+	public static Turn beginTurn() {
+		return TURN.isEnabled() ? begin(new Turn()) : null;
+	}
+
+	public static void commit(Turn e, long gameId, Player player,
+			int turnNumber, int roll) {
+		if (e != null && e.shouldCommit()) {
+			e.gameId = gameId;
+			e.playerUid = player.getUid();
+			e.turnNumber = turnNumber;
+			e.roll = roll;
+			e.commit();
+		}
+	}
+
+	public static Move beginMove() {
+		return MOVE.isEnabled() ? begin(new Move()) : null;
+	}
+
+	/**
+	 * Commit the given move of the given player in the given BoardTopology
+	 * direction.
+	 *
+	 * @param e
+	 * @param board
+	 * @param player
+	 * @param direction
+	 */
+	public static void commit(Move e, Board board, Player player,
+			int direction) {
+		if (e != null && e.shouldCommit()) {
+			e.gameId = board.getGameId();
+			e.playerUid = player.getUid();
+			e.direction = DIRECTIONS[direction];
+			Room room = board.inWhichRoom(player);
+			e.enteredRoom = room == null ? null : room.getName();
+			e.commit();
+		}
+	}
+
+	public static Suggestion beginSuggestion() {
+		return SUGGESTION.isEnabled() ? begin(new Suggestion()) : null;
+	}
+
+	public static void commit(Suggestion e, long gameId, Player player,
+			Card[] suggestion, Player refuter) {
+		if (e != null && e.shouldCommit()) {
+			e.gameId = gameId;
+			e.playerUid = player.getUid();
+			e.character = suggestion[0].toString();
+			e.weapon = suggestion[1].toString();
+			e.room = suggestion[2].toString();
+			e.refuterUid = refuter == null ? 0 : refuter.getUid();
+			e.commit();
+		}
+	}
+
+	public static Accusation beginAccusation() {
+		return ACCUSATION.isEnabled() ? begin(new Accusation()) : null;
+	}
+
+	/**
+	 * Commit the given accusation with its result, one of the Board
+	 * accusation results.
+	 *
+	 * @param e
+	 * @param gameId
+	 * @param player
+	 * @param result
+	 */
+	public static void commit(Accusation e, long gameId, Player player,
+			int result) {
+		if (e != null && e.shouldCommit()) {
+			e.gameId = gameId;
+			e.playerUid = player.getUid();
+			e.result = result == Board.RIGHT_ANSWER ? "right"
+					: result == Board.WRONG_ANSWER ? "wrong" : "one player left";
+			e.commit();
+		}
+	}
+
+	public static Render beginRender() {
+		return RENDER.isEnabled() ? begin(new Render()) : null;
+	}
+
+	public static void commit(Render e, long gameId, int length) {
+		if (e != null && e.shouldCommit()) {
+			e.gameId = gameId;
+			e.length = length;
+			e.commit();
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * The names of the BoardTopology directions.
+	 */
+	private static final String[] DIRECTIONS = { "north", "south", "west",
+			"east" };
+
+	private static <E extends Event> E begin(E e) {
+		e.begin();
+		return e;
+	}
+}
@@ -0,0 +1,125 @@
+package cluedo.metrics;
+
+/**
+ * Counts latencies in buckets whose width grows with the value, in the manner
+ * of HdrHistogram: each power of two is split into SUB_BUCKETS buckets, so a
+ * value is kept to within about 3% whatever its size and a histogram of any
+ * number of values takes a fixed 15 KB. Recording a value is a few
+ * arithmetic instructions and allocates nothing. Not thread-safe; give each
+ * thread its own and add them up at the end.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 5;
+	public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private final long[] counts = new long[(64 - SUB_BITS) * SUB_BUCKETS];
+	private long count;
+	private long sum;
+	private long max;
+
+	/**
+	 * Count the given value, in ns or any other unit.
+	 *
+	 * @param value
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts[indexOf(value)]++;
+		count++;
+		sum += value;
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * Add the values counted by the given histogram to this one.
+	 *
+	 * @param other
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Forget every value.
+	 */
+	public void clear() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		count = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Return the value below which the given percentage of the values fall,
+	 * as the middle of its bucket.
+	 *
+	 * @param percent
+	 * @return
+	 */
+	public long percentile(double percent) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percent / 100 * count);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= Math.max(rank, 1)) {
+				return Math.min(max, lowest(i) + (width(i) - 1) / 2);
+			}
+		}
+		return max;
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS
+				+ (int) (value >>> shift & SUB_BUCKETS - 1);
+	}
+
+	private static long lowest(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+	}
+
+	private static long width(int index) {
+		return index < SUB_BUCKETS ? 1 : 1L << index / SUB_BUCKETS - 1;
+	}
+}
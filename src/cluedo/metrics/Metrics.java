@@ -0,0 +1,137 @@
+package cluedo.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import cluedo.GameError;
+
+/**
+ * The metrics of the operations of the game: how often each is done and how
+ * long it takes, across every game and thread of the JVM. Metrics are off
+ * unless the JVM is started with -Dcluedo.metrics=true, and can be turned on
+ * and off at any time through setEnabled or over JMX, where register puts
+ * the switch under cluedo:type=Metrics and each operation under
+ * cluedo:type=Operation,name=...
+ */
+public class Metrics implements MetricsMBean {
+
+	/**
+	 * Read by every measured operation, see OperationMetrics.start.
+	 */
+	static volatile boolean enabled = Boolean.getBoolean("cluedo.metrics");
+
+	public static final OperationMetrics BOARD_LOAD = new OperationMetrics(
+			"boardLoad");
+	public static final OperationMetrics GAME_NEW = new OperationMetrics(
+			"gameNew");
+	public static final OperationMetrics MOVE = new OperationMetrics("move");
+	public static final OperationMetrics ROOM_ENTRY = new OperationMetrics(
+			"roomEntry");
+	public static final OperationMetrics SUGGEST = new OperationMetrics(
+			"suggest");
+	public static final OperationMetrics ACCUSE = new OperationMetrics(
+			"accuse");
+	public static final OperationMetrics RENDER = new OperationMetrics(
+			"render");
+
+	private static final List<OperationMetrics> ALL = Collections
+			.unmodifiableList(Arrays.asList(BOARD_LOAD, GAME_NEW, MOVE,
+					ROOM_ENTRY, SUGGEST, ACCUSE, RENDER));
+
+	/**
+	 * Return the metrics of every operation.
+	 *
+	 * @return
+	 */
+	public static List<OperationMetrics> all() {
+		return ALL;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		Metrics.enabled = enabled;
+	}
+
+	@Override
+	public void reset() {
+		for (OperationMetrics m : ALL) {
+			m.reset();
+		}
+	}
+
+	/**
+	 * true if metrics are being gathered.
+	 *
+	 * @return
+	 */
+	public static boolean isOn() {
+		return enabled;
+	}
+
+	/**
+	 * Turn metrics on or off for the whole JVM.
+	 *
+	 * @param on
+	 */
+	public static void enable(boolean on) {
+		enabled = on;
+	}
+
+	/**
+	 * Register the switch and every operation with the platform MBean
+	 * server. Registering again does nothing.
+	 */
+	public static void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			register(server, new Metrics(), "cluedo:type=Metrics");
+			for (OperationMetrics m : ALL) {
+				register(server, m, "cluedo:type=Operation,name=" + m.getName());
+			}
+		} catch (JMException e) {
+			throw new GameError("Error registering metrics: " + e);
+		}
+	}
+
+	/**
+	 * Return a table of every operation, times in microseconds.
+	 *
+	 * @return
+	 */
+	public static String report() {
+		StringBuilder sb = new StringBuilder(String.format(
+				"%-12s %10s %10s %10s %10s %10s%n", "operation", "count",
+				"mean us", "p50 us", "p99 us", "max us"));
+		for (OperationMetrics m : ALL) {
+			sb.append(m).append(String.format("%n"));
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private static void register(MBeanServer server, Object bean, String name)
+			throws JMException {
+		try {
+			server.registerMBean(bean, new ObjectName(name));
+		} catch (InstanceAlreadyExistsException e) {
+			// registered before
+		}
+	}
+}
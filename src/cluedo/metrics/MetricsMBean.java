@@ -0,0 +1,13 @@
+package cluedo.metrics;
+
+/**
+ * The switch of the game's metrics, as JMX clients see it.
+ */
+public interface MetricsMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	void reset();
+}
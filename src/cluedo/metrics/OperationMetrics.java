@@ -0,0 +1,176 @@
+package cluedo.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * The count and, for a timed operation, the latencies of one operation of
+ * the game, gathered from every thread. A timed operation is measured as
+ *
+ * <pre>
+ * long start = Metrics.MOVE.start();
+ * ...
+ * Metrics.MOVE.end(start);
+ * </pre>
+ *
+ * and while metrics are disabled start returns NOT_TIMED without reading the
+ * clock and end returns at once, so the cost is a field read and a branch.
+ * Counts are kept in LongAdders and latencies in a LatencyHistogram for each
+ * stripe, one for each processor up to 64 chosen by thread id, so threads on
+ * different stripes never wait for each other.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+	/**
+	 * Returned by start while metrics are disabled.
+	 */
+	public static final long NOT_TIMED = Long.MIN_VALUE;
+
+	private final String name;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder nanos = new LongAdder();
+	private final LatencyHistogram[] histograms;
+
+	/**
+	 * Construct the metrics of the operation of the given name.
+	 *
+	 * @param name
+	 */
+	public OperationMetrics(String name) {
+		this.name = name;
+		int stripes = Math.min(64, Runtime.getRuntime().availableProcessors());
+		histograms = new LatencyHistogram[stripes <= 1 ? 1 : Integer
+				.highestOneBit(stripes - 1) << 1];
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Return the time the operation starts, NOT_TIMED if metrics are
+	 * disabled.
+	 *
+	 * @return
+	 */
+	public long start() {
+		return Metrics.enabled ? System.nanoTime() : NOT_TIMED;
+	}
+
+	/**
+	 * Record the operation started at the given time as done now.
+	 *
+	 * @param start
+	 */
+	public void end(long start) {
+		if (start == NOT_TIMED) {
+			return;
+		}
+		long elapsed = System.nanoTime() - start;
+		count.increment();
+		nanos.add(elapsed);
+		LatencyHistogram h = histograms[stripe(histograms.length - 1)];
+		synchronized (h) {
+			h.record(elapsed);
+		}
+	}
+
+	/**
+	 * Count the operation without timing it.
+	 */
+	public void mark() {
+		if (Metrics.enabled) {
+			count.increment();
+		}
+	}
+
+	/**
+	 * Return the latencies recorded so far in one histogram.
+	 *
+	 * @return
+	 */
+	public LatencyHistogram snapshot() {
+		LatencyHistogram all = new LatencyHistogram();
+		for (LatencyHistogram h : histograms) {
+			synchronized (h) {
+				all.add(h);
+			}
+		}
+		return all;
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public double getTotalMillis() {
+		return nanos.sum() / 1e6;
+	}
+
+	@Override
+	public double getMeanMicros() {
+		long n = count.sum();
+		return n == 0 ? 0 : nanos.sum() / 1e3 / n;
+	}
+
+	@Override
+	public double getP50Micros() {
+		return snapshot().percentile(50) / 1e3;
+	}
+
+	@Override
+	public double getP99Micros() {
+		return snapshot().percentile(99) / 1e3;
+	}
+
+	@Override
+	public double getP999Micros() {
+		return snapshot().percentile(99.9) / 1e3;
+	}
+
+	@Override
+	public double getMaxMicros() {
+		return snapshot().getMax() / 1e3;
+	}
+
+	@Override
+	public void reset() {
+		count.reset();
+		nanos.reset();
+		for (LatencyHistogram h : histograms) {
+			synchronized (h) {
+				h.clear();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		LatencyHistogram h = snapshot();
+		return String.format("%-12s %10d %10.1f %10.1f %10.1f %10.1f", name,
+				getCount(), getMeanMicros(), h.percentile(50) / 1e3,
+				h.percentile(99) / 1e3, h.getMax() / 1e3);
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Return the stripe of the current thread, below mask + 1.
+	 *
+	 * @param mask
+	 * @return
+	 */
+	private static int stripe(int mask) {
+		long id = Thread.currentThread().getId();
+		return (int) (id ^ id >>> 7) & mask;
+	}
+}
@@ -0,0 +1,24 @@
+package cluedo.metrics;
+
+/**
+ * What JMX clients such as jconsole see of one operation. Times are in
+ * microseconds.
+ */
+public interface OperationMetricsMBean {
+
+	long getCount();
+
+	double getTotalMillis();
+
+	double getMeanMicros();
+
+	double getP50Micros();
+
+	double getP99Micros();
+
+	double getP999Micros();
+
+	double getMaxMicros();
+
+	void reset();
+}
@@ -0,0 +1,53 @@
+package cluedo.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct ByteBuffers of one size. Direct buffers are expensive to
+ * allocate and free, so connections borrow them from the pool and give them
+ * back when they close. Not thread safe, each selector thread owns a pool.
+ */
+public class BufferPool {
+
+	private final int bufferSize;
+	private final int maxPooled;
+	private final ArrayDeque<ByteBuffer> free = new ArrayDeque<ByteBuffer>();
+
+	/**
+	 * Construct a pool of buffers of the given size that keeps at most
+	 * maxPooled free buffers.
+	 *
+	 * @param bufferSize
+	 * @param maxPooled
+	 */
+	public BufferPool(int bufferSize, int maxPooled) {
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * Borrow a cleared buffer.
+	 *
+	 * @return
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = free.poll();
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Give a buffer back to the pool.
+	 *
+	 * @param buffer
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer != null && free.size() < maxPooled) {
+			buffer.clear();
+			free.push(buffer);
+		}
+	}
+}
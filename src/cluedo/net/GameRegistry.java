@@ -0,0 +1,194 @@
+package cluedo.net;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import cluedo.GameAdapter;
+import cluedo.GameController;
+import cluedo.GameError;
+import cluedo.GameRecord;
+import cluedo.GameSnapshot;
+
+/**
+ * All the tables hosted by a server, by id. Shared by every front end of the
+ * server so a game created over one protocol can be seen over another.
+ * Tables are kept in an array indexed by id, which only grows, so looking
+ * one up for every message takes no lock and boxes no Integer key.
+ */
+public class GameRegistry {
+
+	private final String boardFile;
+
+	/**
+	 * The table of each id, replaced by a larger copy under the registry lock
+	 * when an id does not fit.
+	 */
+	private volatile AtomicReferenceArray<Table> tables = new AtomicReferenceArray<Table>(
+			16);
+	private volatile int size;
+	private final AtomicInteger nextId = new AtomicInteger(1);
+	private final Random seeds = new Random();
+
+	/**
+	 * Construct a registry of games on the given board.
+	 *
+	 * @param boardFile
+	 */
+	public GameRegistry(String boardFile) {
+		this.boardFile = boardFile;
+	}
+
+	/**
+	 * Create a game for the given number of players and return its table.
+	 * Every action taken at the table is recorded, so the game can be
+	 * replayed.
+	 *
+	 * @param numPlayers
+	 * @return
+	 */
+	public Table create(int numPlayers) {
+		int id = nextId.getAndIncrement();
+		long seed;
+		synchronized (seeds) {
+			seed = seeds.nextLong();
+		}
+		GameRecord record = new GameRecord(boardFile, numPlayers, seed);
+		GameController controller = record.newGame(GameAdapter.NONE);
+		controller.setRecord(record);
+		Table table = new Table(id, controller);
+		put(id, table);
+		return table;
+	}
+
+	/**
+	 * Return the table with the given id, null if there is none.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public Table get(int id) {
+		AtomicReferenceArray<Table> all = tables;
+		if (id < 0 || id >= all.length()) {
+			return null;
+		}
+		return all.get(id);
+	}
+
+	/**
+	 * Remove the table with the given id.
+	 *
+	 * @param id
+	 */
+	public synchronized void remove(int id) {
+		if (id >= 0 && id < tables.length()
+				&& tables.getAndSet(id, null) != null) {
+			size--;
+		}
+	}
+
+	/**
+	 * Return the number of tables.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Write a snapshot of every table, so that a new server can carry on
+	 * their games with readSnapshots. Each table is locked while its
+	 * snapshot is taken.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeSnapshots(DataOutput out) throws IOException {
+		List<Table> all = new ArrayList<Table>(size);
+		AtomicReferenceArray<Table> ids = tables;
+		for (int id = 0; id < ids.length(); id++) {
+			Table table = ids.get(id);
+			if (table != null) {
+				all.add(table);
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(GameSnapshot.MAX_SIZE);
+		out.writeInt(all.size());
+		for (Table table : all) {
+			buffer.clear();
+			synchronized (table) {
+				GameSnapshot.write(table.getController(), buffer);
+			}
+			out.writeInt(table.getId());
+			out.writeShort(buffer.position());
+			out.write(buffer.array(), 0, buffer.position());
+		}
+	}
+
+	/**
+	 * Add the tables written by writeSnapshots, with the same ids. Their
+	 * games carry on where they were saved, but are no longer recorded and
+	 * have no seats taken.
+	 *
+	 * @param in
+	 * @throws IOException
+	 */
+	public void readSnapshots(DataInput in) throws IOException {
+		int count = in.readInt();
+		byte[] bytes = new byte[GameSnapshot.MAX_SIZE];
+		for (int i = 0; i < count; i++) {
+			int id = in.readInt();
+			if (id < 1) {
+				throw new IOException("Invalid table id " + id + ".");
+			}
+			int length = in.readShort() & 0xFFFF;
+			if (length > bytes.length) {
+				throw new IOException("Snapshot of table " + id + " too large.");
+			}
+			in.readFully(bytes, 0, length);
+			GameController controller;
+			try {
+				controller = GameSnapshot.read(ByteBuffer.wrap(bytes, 0, length));
+			} catch (GameError e) {
+				throw new IOException("Cannot restore table " + id + ": "
+						+ e.getMessage());
+			}
+			put(id, new Table(id, controller));
+			while (nextId.get() <= id) {
+				nextId.compareAndSet(nextId.get(), id + 1);
+			}
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Set the table of the given id, growing the array if it is too short.
+	 */
+	private synchronized void put(int id, Table table) {
+		AtomicReferenceArray<Table> all = tables;
+		if (id >= all.length()) {
+			AtomicReferenceArray<Table> grown = new AtomicReferenceArray<Table>(
+					Math.max(id + 1, all.length() * 2));
+			for (int i = 0; i < all.length(); i++) {
+				grown.set(i, all.get(i));
+			}
+			tables = grown;
+			all = grown;
+		}
+		if (all.getAndSet(id, table) == null) {
+			size++;
+		}
+	}
+}
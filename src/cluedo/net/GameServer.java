@@ -0,0 +1,506 @@
+package cluedo.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import cluedo.BoardWatcher;
+import cluedo.metrics.Metrics;
+
+/**
+ * A non-blocking server for the binary Protocol. One thread runs a selector
+ * over every connection; requests are handled as soon as a whole frame has
+ * arrived and responses are written straight back. Each connection borrows
+ * one direct buffer for input and one for output from a BufferPool, and no
+ * objects are created per request by the server itself.
+ *
+ * Connections that send SPECTATE are pushed a snapshot of the table and then
+ * a delta whenever the game changes, whichever front end changed it. Each
+ * frame is encoded once and written to every spectator from a duplicate of
+ * the same read-only buffer, gathered behind the connection's own output. A
+ * spectator still busy with an older frame skips the deltas in between and
+ * gets a fresh snapshot when it is ready, so a slow reader costs one frame of
+ * memory however far behind it falls.
+ *
+ * Usage: java cluedo.net.GameServer [port] [board.txt]
+ */
+public class GameServer implements Runnable {
+
+	/**
+	 * Size of the buffers of a connection, and so the largest frame accepted.
+	 */
+	public static final int BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * How often, in milliseconds, spectated tables are checked for changes
+	 * made by other front ends.
+	 */
+	public static final int PUBLISH_INTERVAL = 20;
+
+	private final GameRegistry registry;
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private final BufferPool buffers = new BufferPool(BUFFER_SIZE, 1024);
+	private volatile boolean running = true;
+
+	/**
+	 * The spectators of each spectated table. Only used by the selector
+	 * thread.
+	 */
+	private final Map<Table, Audience> audiences = new HashMap<Table, Audience>();
+
+	/**
+	 * The number of frames spectators skipped because they were behind.
+	 */
+	private volatile long framesDropped;
+
+	/**
+	 * Construct a server for the games of the given registry listening on the
+	 * given address. Port 0 picks a free port.
+	 *
+	 * @param registry
+	 * @param address
+	 * @throws IOException
+	 */
+	public GameServer(GameRegistry registry, InetSocketAddress address)
+			throws IOException {
+		this.registry = registry;
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.configureBlocking(false);
+		server.bind(address);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Return the port the server is listening on.
+	 *
+	 * @return
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Return the registry of the games served.
+	 *
+	 * @return
+	 */
+	public GameRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * Return the number of frames skipped by spectators that were still
+	 * writing an older frame.
+	 *
+	 * @return
+	 */
+	public long getFramesDropped() {
+		return framesDropped;
+	}
+
+	/**
+	 * Stop the server. The selector thread closes every connection and
+	 * returns from run.
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				selector.select(PUBLISH_INTERVAL);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					Connection connection = (Connection) key.attachment();
+					try {
+						if (key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.write();
+						}
+					} catch (IOException e) {
+						connection.close();
+					}
+				}
+				publish();
+			}
+		} catch (IOException e) {
+			System.out.println("Server stopped: " + e);
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof Connection) {
+					((Connection) key.attachment()).close();
+				}
+			}
+			try {
+				server.close();
+				selector.close();
+			} catch (IOException e) {
+				// nothing more can be done
+			}
+		}
+	}
+
+	/**
+	 * Push a delta to the spectators of every spectated table that has
+	 * changed since its last delta.
+	 */
+	private void publish() {
+		if (audiences.isEmpty()) {
+			return;
+		}
+		// spectators that fail are closed and may take their audience with
+		// them
+		for (Audience audience : audiences.values().toArray(
+				new Audience[audiences.size()])) {
+			if (!audience.update()) {
+				continue;
+			}
+			for (Connection c : audience.spectators.toArray(
+					new Connection[audience.spectators.size()])) {
+				c.offer();
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Connection connection = new Connection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ,
+				connection);
+	}
+
+	/**
+	 * The state of one client connection. Input is kept in write mode between
+	 * reads, output in write mode between writes.
+	 */
+	private class Connection {
+		private final SocketChannel channel;
+		private ByteBuffer in = buffers.acquire();
+		private ByteBuffer out = buffers.acquire();
+		private SelectionKey key;
+
+		/**
+		 * The seats the connection has joined.
+		 */
+		private final Seats seats = new Seats();
+
+		/**
+		 * The table being spectated, null if none.
+		 */
+		private Audience audience;
+
+		/**
+		 * The spectator frame being written, null if there is none.
+		 */
+		private ByteBuffer frame;
+
+		/**
+		 * true if the table has changed since the frame being written.
+		 */
+		private boolean behind;
+
+		/**
+		 * true if the frame is the audience's delta, which is rewritten for
+		 * the next change only once no connection is part way through it.
+		 */
+		private boolean writingDelta;
+
+		/**
+		 * The output and the frame, in the order they are written.
+		 */
+		private final ByteBuffer[] gather = new ByteBuffer[2];
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void read() throws IOException {
+			if (channel.read(in) < 0) {
+				close();
+				return;
+			}
+			handleFrames();
+			write();
+		}
+
+		void write() throws IOException {
+			flush();
+			if (out.position() == 0 && in.position() > 0) {
+				// frames left over because the output was full
+				handleFrames();
+				flush();
+			}
+			updateInterest();
+		}
+
+		private void updateInterest() {
+			if (key.isValid()) {
+				// stop reading while the input is full of frames waiting for
+				// room in the output
+				int ops = 0;
+				if (in.hasRemaining()) {
+					ops |= SelectionKey.OP_READ;
+				}
+				if (out.position() > 0 || frame != null) {
+					ops |= SelectionKey.OP_WRITE;
+				}
+				key.interestOps(ops);
+			}
+		}
+
+		/**
+		 * Write as much of the output and the spectator frame as the channel
+		 * takes.
+		 */
+		private void flush() throws IOException {
+			out.flip();
+			if (frame == null) {
+				channel.write(out);
+			} else {
+				// whichever of the two has been partly written must finish
+				// first or the frames would interleave
+				boolean frameFirst = frame.position() > 0;
+				gather[0] = frameFirst ? frame : out;
+				gather[1] = frameFirst ? out : frame;
+				channel.write(gather);
+				if (!frame.hasRemaining()) {
+					// catch up with the deltas missed meanwhile
+					frame = behind ? audience.snapshot().duplicate() : null;
+					behind = false;
+					writingDelta = false;
+				}
+			}
+			out.compact();
+		}
+
+		/**
+		 * Give the connection the latest delta of the table it spectates. A
+		 * connection with no frame left to write takes the delta; one that has
+		 * not started on its last frame drops it for the latest snapshot; one
+		 * that is part way through finishes it first and then takes the latest
+		 * snapshot.
+		 */
+		void offer() {
+			if (audience == null) {
+				return;
+			}
+			if (frame == null) {
+				frame = audience.delta.duplicate();
+				writingDelta = true;
+			} else if (frame.position() > 0) {
+				if (behind) {
+					framesDropped++;
+				}
+				behind = true;
+				return;
+			} else {
+				framesDropped++;
+				frame = audience.snapshot().duplicate();
+				writingDelta = false;
+			}
+			try {
+				flush();
+				updateInterest();
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Start spectating the given table.
+		 */
+		void spectate(Table table) {
+			unsubscribe();
+			audience = audiences.get(table);
+			if (audience == null) {
+				audience = new Audience(table);
+				audience.update();
+				audiences.put(table, audience);
+			}
+			audience.spectators.add(this);
+			if (frame != null && frame.position() > 0) {
+				behind = true;
+			} else {
+				frame = audience.snapshot().duplicate();
+				writingDelta = false;
+			}
+		}
+
+		private void unsubscribe() {
+			if (audience != null) {
+				audience.spectators.remove(this);
+				if (audience.spectators.isEmpty()) {
+					audiences.remove(audience.table);
+				}
+				audience = null;
+			}
+		}
+
+		/**
+		 * Handle every complete frame in the input buffer for which there is
+		 * room in the output buffer.
+		 */
+		void handleFrames() throws IOException {
+			in.flip();
+			while (in.remaining() >= 2
+					&& out.remaining() >= Protocol.MAX_RESPONSE) {
+				int length = in.getShort(in.position()) & 0xFFFF;
+				if (length + 2 > in.capacity()) {
+					throw new IOException("Frame too large: " + length);
+				}
+				if (in.remaining() < length + 2) {
+					break;
+				}
+				int end = in.position() + 2 + length;
+				int limit = in.limit();
+				in.position(in.position() + 2);
+				in.limit(end);
+				int response = out.position();
+				Protocol.handle(registry, seats, in, out);
+				if (out.get(response + 2) == Protocol.SPECTATE
+						&& out.get(response + 3) == Protocol.OK) {
+					Table table = registry.get(in.getInt(end - length + 1));
+					if (table != null) {
+						spectate(table);
+					}
+				}
+				in.limit(limit);
+				in.position(end);
+			}
+			in.compact();
+		}
+
+		void close() {
+			unsubscribe();
+			if (key != null) {
+				key.cancel();
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// already closed
+			}
+			buffers.release(in);
+			buffers.release(out);
+			in = out = null;
+		}
+	}
+
+	/**
+	 * The spectators of one table, the state last sent to them and the frames
+	 * that bring a spectator up to that state. The delta is encoded into the
+	 * same heap buffer every time, and the snapshot only when a spectator
+	 * needs one, from the same captured state as the delta so the two always
+	 * agree on the version.
+	 */
+	private static class Audience {
+		final Table table;
+		final List<Connection> spectators = new ArrayList<Connection>();
+		TableState state;
+		ByteBuffer delta;
+		private ByteBuffer deltaBuffer = ByteBuffer
+				.allocate(TableState.MAX_DELTA);
+		private ByteBuffer snapshot;
+
+		Audience(Table table) {
+			this.table = table;
+		}
+
+		/**
+		 * Catch up with the game at the table. Return true if it has changed
+		 * since the last time.
+		 */
+		boolean update() {
+			TableState next;
+			synchronized (table) {
+				if (state != null
+						&& state.getVersion() == table.getController()
+								.getVersion()) {
+					return false;
+				}
+				next = TableState.capture(table);
+			}
+			if (state != null) {
+				if (deltaBusy()) {
+					// the old buffer stays with the spectators writing it
+					deltaBuffer = ByteBuffer.allocate(TableState.MAX_DELTA);
+				}
+				deltaBuffer.clear();
+				next.writeDelta(state, deltaBuffer);
+				deltaBuffer.flip();
+				delta = deltaBuffer.asReadOnlyBuffer();
+			}
+			state = next;
+			snapshot = null;
+			return true;
+		}
+
+		/**
+		 * Return the snapshot frame of the state last sent to the
+		 * spectators, encoding it the first time it is asked for.
+		 */
+		ByteBuffer snapshot() {
+			if (snapshot == null) {
+				ByteBuffer frame = ByteBuffer
+						.allocate(TableState.MAX_SNAPSHOT);
+				state.writeSnapshot(frame);
+				frame.flip();
+				snapshot = frame.asReadOnlyBuffer();
+			}
+			return snapshot;
+		}
+
+		private boolean deltaBusy() {
+			for (Connection c : spectators) {
+				if (c.writingDelta && c.frame != null
+						&& c.frame.position() > 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 7700;
+		String boardFile = args.length > 1 ? args[1] : "gameBoard.txt";
+		GameServer server = new GameServer(new GameRegistry(boardFile),
+				new InetSocketAddress(port));
+		Thread watcher = new Thread(new BoardWatcher(boardFile), "board-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+		Metrics.register();
+		System.out.println("Cluedo server listening on port " + server.getPort());
+		server.run();
+	}
+}
@@ -0,0 +1,299 @@
+package cluedo.net;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import cluedo.Board;
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.GameController;
+import cluedo.GameError;
+import cluedo.Player;
+import cluedo.Weapon;
+
+/**
+ * The binary protocol of the GameServer. Every frame, in either direction, is
+ * an unsigned 16 bit length followed by that many bytes of body. All numbers
+ * are big endian.
+ *
+ * A request body is an opcode byte followed by its arguments. A response body
+ * is the opcode of the request, a status byte and, if the status is OK, the
+ * result:
+ *
+ * - CREATE u8 players -> i32 game
+ *
+ * - JOIN i32 game -> u8 uid. The connection takes the seat of that player
+ * and keeps it; joining a game again returns the same seat.
+ *
+ * - MOVE i32 game, u8 uid, u8 direction -> u16 x, u16 y, u8 steps remaining
+ *
+ * - EXIT i32 game, u8 uid, u8 exit (from 1, or STAIRWELL) -> u16 x, u16 y
+ *
+ * - SUGGEST i32 game, u8 uid, u8 character, u8 weapon -> u8 card shown (NONE
+ * if nobody could refute), u8 uid of the refuter (0 if nobody)
+ *
+ * - ACCUSE i32 game, u8 uid, u8 character, u8 weapon, u8 room -> u8 result
+ * (Board.RIGHT_ANSWER etc.), u8 uid of the winner (0 if none yet)
+ *
+ * - END i32 game, u8 uid -> u8 uid of the next player, u8 roll
+ *
+ * - HAND i32 game, u8 uid -> u8 count, count x u8 card
+ *
+ * - STATE i32 game -> the state block written by writeState
+ *
+ * - SPECTATE i32 game -> nothing. The server then pushes a snapshot of the
+ * game, a frame of opcode SPECTATE, status OK, i64 version and the state
+ * block, followed by a DELTA frame (see TableState) whenever the game
+ * changes. A spectator that reads too slowly to take every delta is sent a
+ * new snapshot when it catches up instead.
+ *
+ * The uid of MOVE, EXIT, SUGGEST, ACCUSE, END and HAND is ignored: they act
+ * for, and HAND shows the hand of, the seat the connection took with JOIN,
+ * and a connection that has not joined the game gets NOT_SEATED.
+ *
+ * Cards are sent as their CluedoGame.indexOf index and directions as the
+ * BoardTopology direction constants.
+ */
+public class Protocol {
+
+	public static final byte CREATE = 1;
+	public static final byte JOIN = 2;
+	public static final byte MOVE = 3;
+	public static final byte EXIT = 4;
+	public static final byte SUGGEST = 5;
+	public static final byte ACCUSE = 6;
+	public static final byte END = 7;
+	public static final byte HAND = 8;
+	public static final byte STATE = 9;
+	public static final byte SPECTATE = 10;
+	public static final byte DELTA = 11;
+
+	public static final byte OK = 0;
+	public static final byte BAD_REQUEST = 1;
+	public static final byte NO_SUCH_GAME = 2;
+	public static final byte NOT_YOUR_TURN = 3;
+	public static final byte ILLEGAL = 4;
+	public static final byte NOT_SEATED = 5;
+
+	/**
+	 * The exit that takes the stairwell of the room, whichever number it has.
+	 */
+	public static final int STAIRWELL = 0xFF;
+
+	/**
+	 * Sent instead of a card or position that does not exist.
+	 */
+	public static final int NONE = 0xFF;
+	public static final int NO_POSITION = 0xFFFF;
+
+	/**
+	 * The largest response body the server ever writes, plus its length
+	 * field. A connection only handles a request when its output buffer has
+	 * at least this much room.
+	 */
+	public static final int MAX_RESPONSE = 128;
+
+	/**
+	 * Handle one request of a connection holding the given seats. The request
+	 * body is between the position and the limit of in; the whole response
+	 * frame is appended to out.
+	 *
+	 * @param registry
+	 * @param seats
+	 * @param in
+	 * @param out
+	 */
+	public static void handle(GameRegistry registry, Seats seats,
+			ByteBuffer in, ByteBuffer out) {
+		int start = out.position();
+		out.putShort((short) 0);
+		int opcode = in.hasRemaining() ? in.get() : 0;
+		out.put((byte) opcode);
+		int statusAt = out.position();
+		out.put(OK);
+		byte status;
+		try {
+			status = dispatch(registry, seats, opcode, in, out);
+		} catch (BufferUnderflowException e) {
+			status = BAD_REQUEST;
+		} catch (GameError e) {
+			status = ILLEGAL;
+		}
+		if (status != OK) {
+			out.position(statusAt + 1);
+		}
+		out.put(statusAt, status);
+		out.putShort(start, (short) (out.position() - start - 2));
+	}
+
+	/**
+	 * Write the state of the given table: u8 current uid, u8 roll, u8 steps
+	 * remaining, u8 winner uid (0 if none), u8 players, u8 alive mask (bit
+	 * uid - 1), then u16 x, u16 y of each player by uid (NO_POSITION if out of
+	 * the game) and of each weapon in WeaponEnum order. The caller must hold
+	 * the table's lock.
+	 *
+	 * @param table
+	 * @param out
+	 */
+	public static void writeState(Table table, ByteBuffer out) {
+		GameController controller = table.getController();
+		Board board = controller.getBoard();
+		Player current = controller.getCurrentPlayer();
+		out.put((byte) current.getUid());
+		out.put((byte) controller.getRoll());
+		out.put((byte) current.getStepsRemain());
+		out.put((byte) (controller.isFinished() ? controller.getWinner()
+				.getUid() : 0));
+		out.put((byte) table.getNumPlayers());
+
+		List<Player> alive = board.getAlivePlayers();
+		int mask = 0;
+		for (Player p : alive) {
+			mask |= 1 << p.getUid() - 1;
+		}
+		out.put((byte) mask);
+		int at = out.position();
+		for (int uid = 1; uid <= table.getNumPlayers(); uid++) {
+			out.putShort((short) NO_POSITION).putShort((short) NO_POSITION);
+		}
+		for (Player p : alive) {
+			out.putShort(at + (p.getUid() - 1) * 4, (short) p.getX());
+			out.putShort(at + (p.getUid() - 1) * 4 + 2, (short) p.getY());
+		}
+		for (Weapon w : board.getWeapons()) {
+			out.putShort((short) w.getX()).putShort((short) w.getY());
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private static byte dispatch(GameRegistry registry, Seats seats,
+			int opcode, ByteBuffer in, ByteBuffer out) {
+		if (opcode == CREATE) {
+			int players = in.get();
+			if (players < 3 || players > 6) {
+				return BAD_REQUEST;
+			}
+			out.putInt(registry.create(players).getId());
+			return OK;
+		}
+
+		Table table = registry.get(in.getInt());
+		if (table == null) {
+			return NO_SUCH_GAME;
+		}
+		if (opcode == JOIN) {
+			int seat = seats.uidAt(table.getId());
+			if (seat == 0) {
+				seat = table.join();
+				seats.take(table.getId(), seat);
+			}
+			out.put((byte) seat);
+			return OK;
+		}
+		if (opcode == STATE) {
+			synchronized (table) {
+				writeState(table, out);
+			}
+			return OK;
+		}
+		if (opcode == SPECTATE) {
+			// the server subscribes the connection once it sees the OK
+			return OK;
+		}
+
+		// the uid sent is not trusted, the connection acts for its own seat
+		in.get();
+		int uid = seats.uidAt(table.getId());
+		if (uid == 0) {
+			return NOT_SEATED;
+		}
+		synchronized (table) {
+			GameController controller = table.getController();
+			if (opcode == HAND) {
+				return writeHand(table, uid, out);
+			}
+			if (controller.isFinished()
+					|| controller.getCurrentPlayer().getUid() != uid) {
+				return NOT_YOUR_TURN;
+			}
+			Player player = controller.getCurrentPlayer();
+			switch (opcode) {
+			case MOVE:
+				int direction = in.get();
+				if (direction < 0 || direction > 3) {
+					return BAD_REQUEST;
+				}
+				controller.move(direction);
+				out.putShort((short) player.getX());
+				out.putShort((short) player.getY());
+				out.put((byte) player.getStepsRemain());
+				return OK;
+			case EXIT:
+				int exit = in.get() & 0xFF;
+				controller.exitRoom(exit == STAIRWELL ? GameController.STAIRWELL
+						: exit);
+				out.putShort((short) player.getX());
+				out.putShort((short) player.getY());
+				return OK;
+			case SUGGEST:
+				Card character = card(in.get(), 0, 6);
+				Card weapon = card(in.get(), 6, 6);
+				if (character == null || weapon == null) {
+					return BAD_REQUEST;
+				}
+				Card shown = controller.suggest(character, weapon);
+				out.put((byte) (shown == null ? NONE : CluedoGame
+						.indexOf(shown)));
+				out.put((byte) (shown == null ? 0 : controller
+						.getLastRefuter().getUid()));
+				return OK;
+			case ACCUSE:
+				Card c = card(in.get(), 0, 6);
+				Card w = card(in.get(), 6, 6);
+				Card r = card(in.get(), 12, 9);
+				if (c == null || w == null || r == null) {
+					return BAD_REQUEST;
+				}
+				out.put((byte) controller.accuse(c, w, r));
+				out.put((byte) (controller.isFinished() ? controller
+						.getWinner().getUid() : 0));
+				return OK;
+			case END:
+				controller.endTurn();
+				out.put((byte) controller.getCurrentPlayer().getUid());
+				out.put((byte) controller.getRoll());
+				return OK;
+			default:
+				return BAD_REQUEST;
+			}
+		}
+	}
+
+	private static byte writeHand(Table table, int uid, ByteBuffer out) {
+		List<Card> hand = table.getController().getGame().getPlayers()
+				.get(uid - 1).getHand();
+		out.put((byte) hand.size());
+		for (int i = 0; i < hand.size(); i++) {
+			out.put((byte) CluedoGame.indexOf(hand.get(i)));
+		}
+		return OK;
+	}
+
+	/**
+	 * Return the card with the given index if it is one of the count cards
+	 * starting at from, null otherwise.
+	 */
+	private static Card card(int index, int from, int count) {
+		if (index < from || index >= from + count) {
+			return null;
+		}
+		return CluedoGame.cardAt(index);
+	}
+}
@@ -0,0 +1,272 @@
+package cluedo.net;
+
+import java.nio.ByteBuffer;
+
+import cluedo.BoardTopology;
+import cluedo.CluedoGame.WeaponEnum;
+import cluedo.Weapon;
+
+/**
+ * A spectator's copy of a game hosted by a GameServer. The copy starts from
+ * the snapshot sent after SPECTATE and is kept up to date by applying the
+ * DELTA frames that follow; the board itself comes from the client's own
+ * BoardTopology, so only the tokens ever cross the wire.
+ */
+public class RemoteTable {
+
+	private final BoardTopology topology;
+
+	/**
+	 * The symbols of the weapons on the board, in WeaponEnum order.
+	 */
+	private final char[] weaponSymbols = new char[6];
+
+	/**
+	 * false until the first snapshot, and again after a delta was missed.
+	 */
+	private boolean synced;
+
+	private int version;
+	private int current;
+	private int roll;
+	private int steps;
+	private int winner;
+	private int alive;
+	private final int[] cells = new int[TableState.TOKENS];
+
+	/**
+	 * The suggester, character, weapon, room and refuter of the latest
+	 * suggestion seen, null if none has been seen.
+	 */
+	private int[] lastSuggestion;
+
+	/**
+	 * Construct an empty copy of a game on the given board.
+	 *
+	 * @param topology
+	 */
+	public RemoteTable(BoardTopology topology) {
+		this.topology = topology;
+		WeaponEnum[] weapons = WeaponEnum.values();
+		for (int i = 0; i < weapons.length; i++) {
+			weaponSymbols[i] = new Weapon(weapons[i].toString()).getShortName();
+		}
+	}
+
+	/**
+	 * Apply a frame pushed by the server. The frame body, from the opcode on,
+	 * is between the position and the limit of the buffer. Return false if
+	 * the copy has missed a delta, in which case the client must send
+	 * SPECTATE again to get a new snapshot.
+	 *
+	 * @param frame
+	 * @return
+	 */
+	public boolean apply(ByteBuffer frame) {
+		byte opcode = frame.get();
+		if (frame.get() != Protocol.OK) {
+			return synced;
+		}
+		if (opcode == Protocol.SPECTATE && frame.hasRemaining()) {
+			applySnapshot(frame);
+			return true;
+		}
+		if (opcode == Protocol.DELTA) {
+			return applyDelta(frame);
+		}
+		return synced;
+	}
+
+	/**
+	 * true if the copy is up to date with every frame applied so far.
+	 *
+	 * @return
+	 */
+	public boolean isSynced() {
+		return synced;
+	}
+
+	/**
+	 * Return the version of the game the copy is at, cut to 32 bits.
+	 *
+	 * @return
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Return the uid of the player whose turn it is.
+	 *
+	 * @return
+	 */
+	public int getCurrentPlayer() {
+		return current;
+	}
+
+	/**
+	 * Return what the current player rolled.
+	 *
+	 * @return
+	 */
+	public int getRoll() {
+		return roll;
+	}
+
+	/**
+	 * Return the steps the current player has left.
+	 *
+	 * @return
+	 */
+	public int getStepsRemain() {
+		return steps;
+	}
+
+	/**
+	 * Return the uid of the winner, 0 if the game is not over.
+	 *
+	 * @return
+	 */
+	public int getWinner() {
+		return winner;
+	}
+
+	/**
+	 * true if the player with the given uid is still in the game.
+	 *
+	 * @param uid
+	 * @return
+	 */
+	public boolean isAlive(int uid) {
+		return (alive & 1 << uid - 1) != 0;
+	}
+
+	/**
+	 * Return the cell of the given token, numbered as in TableState, or
+	 * TableState.NO_CELL for a player out of the game.
+	 *
+	 * @param token
+	 * @return
+	 */
+	public int cellOf(int token) {
+		return cells[token];
+	}
+
+	/**
+	 * Return the suggester, character, weapon, room and refuter of the latest
+	 * suggestion seen, null if none has been seen.
+	 *
+	 * @return
+	 */
+	public int[] getLastSuggestion() {
+		return lastSuggestion;
+	}
+
+	/**
+	 * Return the board in the same form as Board.toString.
+	 *
+	 * @return
+	 */
+	public String render() {
+		int width = topology.getWidth();
+		char[] board = new char[topology.getCellCount()];
+		for (int cell = 0; cell < board.length; cell++) {
+			board[cell] = topology.typeOf(cell);
+		}
+		for (int uid = 1; uid <= 6; uid++) {
+			if (isAlive(uid)) {
+				board[cells[uid - 1]] = Character.forDigit(uid, 10);
+			}
+		}
+		for (int i = 0; i < 6; i++) {
+			int cell = cells[6 + i];
+			if (cell != TableState.NO_CELL
+					&& topology.roomOf(cell) != BoardTopology.NO_ROOM) {
+				board[cell] = weaponSymbols[i];
+			}
+		}
+		StringBuilder sb = new StringBuilder(board.length + topology.getHeight());
+		for (int cell = 0; cell < board.length; cell += width) {
+			sb.append(board, cell, width).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private void applySnapshot(ByteBuffer frame) {
+		version = (int) frame.getLong();
+		current = frame.get();
+		roll = frame.get();
+		steps = frame.get();
+		winner = frame.get();
+		int players = frame.get();
+		alive = frame.get() & 0xFF;
+		for (int i = 0; i < TableState.TOKENS; i++) {
+			cells[i] = TableState.NO_CELL;
+		}
+		for (int uid = 1; uid <= players; uid++) {
+			cells[uid - 1] = cell(frame.getShort() & 0xFFFF,
+					frame.getShort() & 0xFFFF);
+		}
+		for (int i = 0; i < 6; i++) {
+			cells[6 + i] = cell(frame.getShort() & 0xFFFF,
+					frame.getShort() & 0xFFFF);
+		}
+		synced = true;
+	}
+
+	private boolean applyDelta(ByteBuffer frame) {
+		int from = frame.getInt();
+		int to = frame.getInt();
+		if (!synced || from != version) {
+			synced = false;
+			return false;
+		}
+		while (frame.hasRemaining()) {
+			switch (frame.get()) {
+			case TableState.TURN:
+				current = frame.get();
+				roll = frame.get();
+				break;
+			case TableState.STEPS:
+				steps = frame.get();
+				break;
+			case TableState.TOKEN:
+				int token = frame.get();
+				cells[token] = cell(frame.getShort() & 0xFFFF,
+						frame.getShort() & 0xFFFF);
+				break;
+			case TableState.ELIMINATED:
+				alive &= ~(1 << frame.get() - 1);
+				break;
+			case TableState.SUGGESTION:
+				lastSuggestion = new int[5];
+				for (int i = 0; i < lastSuggestion.length; i++) {
+					lastSuggestion[i] = frame.get();
+				}
+				break;
+			case TableState.WINNER:
+				winner = frame.get();
+				break;
+			default:
+				// a change this client does not know, the rest is unreadable
+				synced = false;
+				return false;
+			}
+		}
+		version = to;
+		return true;
+	}
+
+	private int cell(int x, int y) {
+		if (x == Protocol.NO_POSITION) {
+			return TableState.NO_CELL;
+		}
+		return topology.cellAt(x, y);
+	}
+}
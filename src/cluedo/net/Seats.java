@@ -0,0 +1,51 @@
+package cluedo.net;
+
+import java.util.Arrays;
+
+/**
+ * The seats a connection of the GameServer has taken with JOIN, one per game
+ * at most. Requests that act for a player are always played for the seat
+ * the connection holds at that game, never for a uid the client names, so a
+ * client can neither play for another player nor see his/her hand. Only
+ * used by the thread of the connection, and a connection sits at few games,
+ * so the seats are two small arrays searched in order.
+ */
+public class Seats {
+
+	private int[] games = new int[4];
+	private int[] uids = new int[4];
+	private int count;
+
+	/**
+	 * Remember that the connection sits at the given game as the player with
+	 * the given uid.
+	 *
+	 * @param game
+	 * @param uid
+	 */
+	public void take(int game, int uid) {
+		if (count == games.length) {
+			games = Arrays.copyOf(games, count * 2);
+			uids = Arrays.copyOf(uids, count * 2);
+		}
+		games[count] = game;
+		uids[count] = uid;
+		count++;
+	}
+
+	/**
+	 * Return the uid of the seat the connection holds at the given game, 0
+	 * if it has not joined the game.
+	 *
+	 * @param game
+	 * @return
+	 */
+	public int uidAt(int game) {
+		for (int i = 0; i < count; i++) {
+			if (games[i] == game) {
+				return uids[i];
+			}
+		}
+		return 0;
+	}
+}
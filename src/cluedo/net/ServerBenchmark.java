@@ -0,0 +1,117 @@
+package cluedo.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import cluedo.BoardTopology;
+
+/**
+ * Measures how many requests per second a GameServer handles over loopback.
+ * The server runs in this JVM on its single selector thread; each client
+ * connection creates a game, joins it as player 1 and then pipelines
+ * batches of STATE, HAND and MOVE requests, waiting for all responses of a batch before sending the
+ * next.
+ *
+ * Usage: java cluedo.net.ServerBenchmark [clients] [seconds] [board.txt]
+ */
+public class ServerBenchmark {
+
+	private static final int BATCH = 64;
+
+	public static void main(String[] args) throws Exception {
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+		final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		String boardFile = args.length > 2 ? args[2] : "gameBoard.txt";
+
+		final GameServer server = new GameServer(new GameRegistry(boardFile),
+				new InetSocketAddress("127.0.0.1", 0));
+		Thread serverThread = new Thread(server, "server");
+		serverThread.start();
+
+		final long[] counts = new long[clients];
+		Thread[] threads = new Thread[clients];
+		for (int i = 0; i < clients; i++) {
+			final int client = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						counts[client] = runClient(server.getPort(), seconds);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		long total = 0;
+		for (int i = 0; i < clients; i++) {
+			threads[i].join();
+			total += counts[i];
+		}
+		server.stop();
+		serverThread.join();
+		System.out.printf("%d clients: %d requests, %.0f requests/s%n",
+				clients, total, total / (double) seconds);
+	}
+
+	private static long runClient(int port, int seconds) throws IOException {
+		SocketChannel channel = SocketChannel.open(new InetSocketAddress(
+				"127.0.0.1", port));
+		channel.socket().setTcpNoDelay(true);
+		ByteBuffer out = ByteBuffer.allocateDirect(GameServer.BUFFER_SIZE);
+		ByteBuffer in = ByteBuffer.allocateDirect(GameServer.BUFFER_SIZE);
+
+		out.putShort((short) 2).put(Protocol.CREATE).put((byte) 6);
+		roundTrip(channel, out, in, 1);
+		int game = in.getInt(5);
+		out.putShort((short) 5).put(Protocol.JOIN).putInt(game);
+		roundTrip(channel, out, in, 1);
+
+		long requests = 0;
+		long end = System.nanoTime() + seconds * 1000000000L;
+		while (System.nanoTime() < end) {
+			for (int i = 0; i < BATCH; i += 4) {
+				out.putShort((short) 5).put(Protocol.STATE).putInt(game);
+				out.putShort((short) 6).put(Protocol.HAND).putInt(game)
+						.put((byte) 1);
+				out.putShort((short) 6).put(Protocol.HAND).putInt(game)
+						.put((byte) 1);
+				out.putShort((short) 7).put(Protocol.MOVE).putInt(game)
+						.put((byte) 1).put((byte) BoardTopology.SOUTH);
+			}
+			roundTrip(channel, out, in, BATCH);
+			requests += BATCH;
+		}
+		channel.close();
+		return requests;
+	}
+
+	/**
+	 * Send everything in out and read until the given number of response
+	 * frames have arrived. The responses are left in in, from position 0.
+	 */
+	private static void roundTrip(SocketChannel channel, ByteBuffer out,
+			ByteBuffer in, int responses) throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+		in.clear();
+		int seen = 0;
+		int at = 0;
+		while (seen < responses) {
+			if (channel.read(in) < 0) {
+				throw new IOException("Server closed the connection.");
+			}
+			while (in.position() - at >= 2
+					&& in.position() - at >= 2 + (in.getShort(at) & 0xFFFF)) {
+				at += 2 + (in.getShort(at) & 0xFFFF);
+				seen++;
+			}
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package cluedo.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.Action;
+import cluedo.BoardTopology;
+import cluedo.GameController;
+
+/**
+ * Measures how a GameServer keeps many spectators of one table up to date.
+ * The server runs in this JVM; the spectators are non-blocking connections
+ * read by one client thread, and a driver thread plays the game as fast as it
+ * can by calling the table's controller directly, as another front end would.
+ * Each spectator keeps a RemoteTable from the frames it receives and asks
+ * for a new snapshot whenever it misses a delta. Reports how many frames the
+ * spectators received and their average size, how many the server dropped
+ * for spectators that fell behind, and checks that every spectator ends with
+ * the same board as the server.
+ *
+ * Usage: java cluedo.net.SpectatorBenchmark [spectators] [seconds]
+ * [board.txt]
+ */
+public class SpectatorBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int spectators = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		String boardFile = args.length > 2 ? args[2] : "gameBoard.txt";
+
+		GameServer server = new GameServer(new GameRegistry(boardFile),
+				new InetSocketAddress("127.0.0.1", 0));
+		Thread serverThread = new Thread(server, "server");
+		serverThread.start();
+		final Table table = server.getRegistry().create(6);
+		BoardTopology topology = BoardTopology.load(boardFile);
+
+		Selector selector = Selector.open();
+		List<Spectator> all = new ArrayList<Spectator>();
+		for (int i = 0; i < spectators; i++) {
+			SocketChannel channel = SocketChannel.open(new InetSocketAddress(
+					"127.0.0.1", server.getPort()));
+			Spectator s = new Spectator(channel, table.getId(), topology);
+			s.spectate();
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ, s);
+			all.add(s);
+		}
+
+		final long end = System.nanoTime() + seconds * 1000000000L;
+		Thread driver = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				play(table, end);
+			}
+		}, "driver");
+		driver.start();
+
+		long bytes = read(selector, end);
+		driver.join();
+		// let the last frames arrive
+		bytes += read(selector, System.nanoTime() + 1000000000L);
+		server.stop();
+		serverThread.join();
+
+		long snapshots = 0;
+		long deltas = 0;
+		int behind = 0;
+		String board = table.renderBoard();
+		for (Spectator s : all) {
+			snapshots += s.snapshots;
+			deltas += s.deltas;
+			if (!board.equals(s.table.render())) {
+				behind++;
+			}
+		}
+		long versions;
+		synchronized (table) {
+			versions = table.getController().getVersion();
+		}
+		long frames = snapshots + deltas;
+		System.out.printf("%d spectators, %d versions published%n",
+				spectators, versions);
+		System.out.printf("%d frames received (%d snapshots), %.0f frames/s, %.1f bytes/frame%n",
+				frames, snapshots, frames / (double) seconds, bytes
+						/ (double) frames);
+		System.out.printf("%d frames dropped for slow spectators, %d spectators out of date%n",
+				server.getFramesDropped(), behind);
+	}
+
+	/**
+	 * Read and apply frames on every spectator until the given time. Return
+	 * the number of bytes read.
+	 */
+	private static long read(Selector selector, long until) throws IOException {
+		long bytes = 0;
+		while (System.nanoTime() < until) {
+			selector.select(100);
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				Spectator s = (Spectator) key.attachment();
+				int n = s.channel.read(s.in);
+				if (n < 0) {
+					throw new IllegalStateException("Server closed a spectator.");
+				}
+				bytes += n;
+				s.parse();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Play random legal actions until the given time, with a short pause
+	 * between them so spectators have something to keep up with.
+	 */
+	private static void play(Table table, long end) {
+		Random random = new Random(1);
+		int[] directions = new int[4];
+		while (System.nanoTime() < end) {
+			synchronized (table) {
+				GameController controller = table.getController();
+				if (controller.isFinished()) {
+					return;
+				}
+				int count = 0;
+				for (Action a : controller.legalActions()) {
+					if (a.isMove()) {
+						directions[count++] = a.direction();
+					}
+				}
+				if (count > 0) {
+					controller.move(directions[random.nextInt(count)]);
+				} else if (controller.isLegal(Action.EXIT)) {
+					controller.exitRoom(1);
+				} else {
+					controller.endTurn();
+				}
+			}
+			try {
+				Thread.sleep(0, 200000);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * One spectator and its copy of the game.
+	 */
+	private static class Spectator {
+		final SocketChannel channel;
+		final int game;
+		final RemoteTable table;
+		final ByteBuffer in = ByteBuffer.allocate(GameServer.BUFFER_SIZE);
+		final ByteBuffer request = ByteBuffer.allocate(7);
+		long snapshots;
+		long deltas;
+
+		Spectator(SocketChannel channel, int game, BoardTopology topology) {
+			this.channel = channel;
+			this.game = game;
+			this.table = new RemoteTable(topology);
+		}
+
+		/**
+		 * Ask for a snapshot and every change after it.
+		 */
+		void spectate() throws IOException {
+			request.clear();
+			request.putShort((short) 5).put(Protocol.SPECTATE).putInt(game)
+					.flip();
+			while (request.hasRemaining()) {
+				channel.write(request);
+			}
+		}
+
+		/**
+		 * Apply the complete frames in the buffer, asking for a snapshot if
+		 * a delta was missed.
+		 */
+		void parse() throws IOException {
+			in.flip();
+			while (in.remaining() >= 2
+					&& in.remaining() >= 2 + (in.getShort(in.position()) & 0xFFFF)) {
+				int length = in.getShort() & 0xFFFF;
+				int next = in.position() + length;
+				int limit = in.limit();
+				byte opcode = in.get(in.position());
+				if (opcode == Protocol.SPECTATE && length > 2) {
+					snapshots++;
+				} else if (opcode == Protocol.DELTA) {
+					deltas++;
+				}
+				in.limit(next);
+				boolean synced = table.apply(in);
+				in.limit(limit);
+				in.position(next);
+				if (!synced && opcode == Protocol.DELTA) {
+					spectate();
+				}
+			}
+			in.compact();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package cluedo.net;
+
+import cluedo.GameController;
+import cluedo.GameError;
+
+/**
+ * A game hosted by a server, together with what the server needs to know
+ * about it beyond the game itself. All access to the controller must hold the
+ * table's lock.
+ */
+public class Table {
+
+	private final int id;
+	private final GameController controller;
+	private final int numPlayers;
+
+	/**
+	 * The number of seats taken so far. Players join in uid order.
+	 */
+	private int joined;
+
+	/**
+	 * The last rendered board and the game version it was rendered at.
+	 */
+	private String renderedBoard;
+	private long renderedVersion = -1;
+
+	/**
+	 * Construct a table with the given id for the given game.
+	 *
+	 * @param id
+	 * @param controller
+	 */
+	public Table(int id, GameController controller) {
+		this.id = id;
+		this.controller = controller;
+		this.numPlayers = controller.getGame().getPlayers().size();
+	}
+
+	/**
+	 * Return the id of the table.
+	 *
+	 * @return
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Return the controller of the game played at the table.
+	 *
+	 * @return
+	 */
+	public GameController getController() {
+		return controller;
+	}
+
+	/**
+	 * Return the number of players the game started with.
+	 *
+	 * @return
+	 */
+	public int getNumPlayers() {
+		return numPlayers;
+	}
+
+	/**
+	 * Take the next free seat. Return the uid of the seat.
+	 *
+	 * @return
+	 */
+	public synchronized int join() {
+		if (joined == numPlayers) {
+			throw new GameError("Table " + id + " is full.");
+		}
+		return ++joined;
+	}
+
+	/**
+	 * Return the board as rendered by Board.toString. The rendering is kept
+	 * until the game changes, so any number of viewers of an unchanged game
+	 * share one rendering.
+	 *
+	 * @return
+	 */
+	public synchronized String renderBoard() {
+		if (renderedVersion != controller.getVersion()) {
+			renderedBoard = controller.getBoard().toString();
+			renderedVersion = controller.getVersion();
+		}
+		return renderedBoard;
+	}
+}
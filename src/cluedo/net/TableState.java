@@ -0,0 +1,224 @@
+package cluedo.net;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import cluedo.Board;
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.GameController;
+import cluedo.Player;
+import cluedo.Weapon;
+
+/**
+ * What a spectator can see of a table at one version of its game, kept in
+ * flat fields so that two versions can be compared cheaply. Tokens are
+ * numbered with the players first, by uid from 0, then the weapons in
+ * WeaponEnum order, and are placed by BoardTopology cell. On the wire a
+ * token is placed by u16 x, u16 y as in the snapshot, so deltas work on
+ * boards of any number of cells.
+ *
+ * The difference between two states is sent to spectators as a DELTA frame:
+ * opcode DELTA, status OK, u32 version it applies to, u32 version it brings
+ * the game to, then any number of changes, each a tag byte and its
+ * arguments:
+ *
+ * - TURN u8 uid, u8 roll, a new turn has started
+ *
+ * - STEPS u8 steps remaining
+ *
+ * - TOKEN u8 token, u16 x, u16 y, a token has moved (NO_POSITION for both
+ * once a player is out of the game)
+ *
+ * - ELIMINATED u8 uid
+ *
+ * - SUGGESTION u8 uid, u8 character, u8 weapon, u8 room, u8 uid of the
+ * refuter (0 if nobody could), the latest suggestion
+ *
+ * - WINNER u8 uid
+ *
+ * A delta only applies to a spectator that is at the version it starts from;
+ * one that is not has missed a frame and must spectate again for a snapshot.
+ */
+public class TableState {
+
+	public static final byte TURN = 1;
+	public static final byte STEPS = 2;
+	public static final byte TOKEN = 3;
+	public static final byte ELIMINATED = 4;
+	public static final byte SUGGESTION = 5;
+	public static final byte WINNER = 6;
+
+	/**
+	 * The number of tokens, six players and six weapons.
+	 */
+	public static final int TOKENS = 12;
+
+	/**
+	 * The cell of a player who is out of the game.
+	 */
+	public static final int NO_CELL = -1;
+
+	/**
+	 * The largest delta frame, with every token moved and every other change.
+	 */
+	public static final int MAX_DELTA = 2 + 2 + 8 + 3 + 2 + TOKENS * 6 + 6 * 2
+			+ 6 + 2;
+
+	/**
+	 * Size of the largest snapshot frame.
+	 */
+	public static final int MAX_SNAPSHOT = 2 + 2 + 8 + 6 + TOKENS * 4;
+
+	private long version;
+	private int numPlayers;
+	private int width;
+	private int turnNumber;
+	private int current;
+	private int roll;
+	private int steps;
+	private int winner;
+	private int alive;
+	private final int[] cells = new int[TOKENS];
+	private int suggestions;
+	private final int[] suggestion = new int[5];
+
+	/**
+	 * Capture the state of the game at the given table. The caller must hold
+	 * the table's lock.
+	 *
+	 * @param table
+	 * @return
+	 */
+	public static TableState capture(Table table) {
+		GameController controller = table.getController();
+		Board board = controller.getBoard();
+		int width = board.getWidth();
+		TableState state = new TableState();
+		state.version = controller.getVersion();
+		state.numPlayers = table.getNumPlayers();
+		state.width = width;
+		state.turnNumber = controller.getTurnNumber();
+		state.current = controller.getCurrentPlayer().getUid();
+		state.roll = controller.getRoll();
+		state.steps = controller.getCurrentPlayer().getStepsRemain();
+		state.winner = controller.isFinished() ? controller.getWinner()
+				.getUid() : 0;
+		for (int i = 0; i < TOKENS; i++) {
+			state.cells[i] = NO_CELL;
+		}
+		for (Player p : board.getAlivePlayers()) {
+			state.alive |= 1 << p.getUid() - 1;
+			state.cells[p.getUid() - 1] = p.getX() * width + p.getY();
+		}
+		List<Weapon> weapons = board.getWeapons();
+		for (int i = 0; i < weapons.size(); i++) {
+			Weapon w = weapons.get(i);
+			state.cells[6 + i] = w.getX() * width + w.getY();
+		}
+		state.suggestions = controller.getSuggestionCount();
+		if (state.suggestions > 0) {
+			Card[] cards = controller.getLastSuggestion();
+			state.suggestion[0] = controller.getLastSuggester().getUid();
+			for (int i = 0; i < 3; i++) {
+				state.suggestion[1 + i] = CluedoGame.indexOf(cards[i]);
+			}
+			state.suggestion[4] = controller.getLastRefuter() == null ? 0
+					: controller.getLastRefuter().getUid();
+		}
+		return state;
+	}
+
+	/**
+	 * Return the version of the game this state was captured at.
+	 *
+	 * @return
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Append the snapshot frame pushed to a new spectator: opcode SPECTATE,
+	 * status OK, i64 version, then the state as Protocol.writeState lays it
+	 * out.
+	 *
+	 * @param out
+	 */
+	public void writeSnapshot(ByteBuffer out) {
+		int start = out.position();
+		out.putShort((short) 0);
+		out.put(Protocol.SPECTATE).put(Protocol.OK);
+		out.putLong(version);
+		out.put((byte) current).put((byte) roll).put((byte) steps);
+		out.put((byte) winner).put((byte) numPlayers).put((byte) alive);
+		for (int i = 0; i < TOKENS; i++) {
+			if (i < numPlayers || i >= 6) {
+				putCell(out, cells[i]);
+			}
+		}
+		out.putShort(start, (short) (out.position() - start - 2));
+	}
+
+	/**
+	 * Append the DELTA frame that brings a spectator from the given earlier
+	 * state to this one.
+	 *
+	 * @param from
+	 * @param out
+	 */
+	public void writeDelta(TableState from, ByteBuffer out) {
+		int start = out.position();
+		out.putShort((short) 0);
+		out.put(Protocol.DELTA).put(Protocol.OK);
+		out.putInt((int) from.version).putInt((int) version);
+		if (turnNumber != from.turnNumber) {
+			out.put(TURN).put((byte) current).put((byte) roll);
+		}
+		if (steps != from.steps) {
+			out.put(STEPS).put((byte) steps);
+		}
+		for (int i = 0; i < TOKENS; i++) {
+			if (cells[i] != from.cells[i]) {
+				out.put(TOKEN).put((byte) i);
+				putCell(out, cells[i]);
+			}
+		}
+		int gone = from.alive & ~alive;
+		for (int uid = 1; gone != 0; uid++, gone >>>= 1) {
+			if ((gone & 1) != 0) {
+				out.put(ELIMINATED).put((byte) uid);
+			}
+		}
+		if (suggestions != from.suggestions) {
+			out.put(SUGGESTION);
+			for (int i = 0; i < suggestion.length; i++) {
+				out.put((byte) suggestion[i]);
+			}
+		}
+		if (winner != from.winner) {
+			out.put(WINNER).put((byte) winner);
+		}
+		out.putShort(start, (short) (out.position() - start - 2));
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Append the u16 x, u16 y of the given cell, NO_POSITION for both if it
+	 * is NO_CELL.
+	 */
+	private void putCell(ByteBuffer out, int cell) {
+		if (cell == NO_CELL) {
+			out.putShort((short) Protocol.NO_POSITION).putShort(
+					(short) Protocol.NO_POSITION);
+		} else {
+			out.putShort((short) (cell / width)).putShort(
+					(short) (cell % width));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package cluedo.replay;
+
+import java.util.Random;
+
+import cluedo.Action;
+import cluedo.CluedoGame;
+import cluedo.GameAdapter;
+import cluedo.GameController;
+import cluedo.GameRecord;
+
+/**
+ * Measures how fast recorded games are replayed: records one long game of
+ * random moves and suggestions, then reports how many actions per second a
+ * straight replay applies, how long building a ReplayEngine takes and the
+ * average time to seek to a random action or turn.
+ *
+ * Usage: java cluedo.replay.ReplayBenchmark [actions] [checkpointEvery]
+ * [board.txt]
+ */
+public class ReplayBenchmark {
+
+	public static void main(String[] args) {
+		int actions = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int every = args.length > 1 ? Integer.parseInt(args[1])
+				: ReplayEngine.DEFAULT_CHECKPOINT_EVERY;
+		String boardFile = args.length > 2 ? args[2] : "gameBoard.txt";
+
+		GameRecord record = record(boardFile, actions);
+
+		// warm up before measuring
+		for (int i = 0; i < 3; i++) {
+			replay(record);
+		}
+		long start = System.nanoTime();
+		replay(record);
+		double straight = (System.nanoTime() - start) / 1e9;
+
+		start = System.nanoTime();
+		ReplayEngine engine = new ReplayEngine(record, every);
+		double build = (System.nanoTime() - start) / 1e9;
+
+		Random random = new Random(7);
+		int seeks = 20000;
+		for (int i = 0; i < seeks; i++) {
+			engine.seek(random.nextInt(actions + 1));
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < seeks; i++) {
+			engine.seek(random.nextInt(actions + 1));
+		}
+		double seek = (System.nanoTime() - start) / 1e3 / seeks;
+		start = System.nanoTime();
+		for (int i = 0; i < seeks; i++) {
+			engine.seekTurn(random.nextInt(engine.getTurnCount()) + 1);
+		}
+		double seekTurn = (System.nanoTime() - start) / 1e3 / seeks;
+
+		System.out.printf("%d actions in %d turns, checkpoint every %d%n",
+				actions, engine.getTurnCount(), every);
+		System.out.printf("straight replay: %.0f actions/s%n", actions
+				/ straight);
+		System.out.printf("engine built in %.1f ms%n", build * 1e3);
+		System.out.printf("seek: %.1f us average, seekTurn: %.1f us average%n",
+				seek, seekTurn);
+	}
+
+	/**
+	 * Record a game of the given number of random actions. Nobody accuses, so
+	 * the game never ends.
+	 */
+	static GameRecord record(String boardFile, int actions) {
+		GameRecord record = new GameRecord(boardFile, 6, 42);
+		GameController controller = record.newGame(GameAdapter.NONE);
+		controller.setRecord(record);
+		Random random = new Random(1);
+		int[] directions = new int[4];
+		while (record.size() < actions) {
+			int count = 0;
+			for (Action a : controller.legalActions()) {
+				if (a.isMove()) {
+					directions[count++] = a.direction();
+				}
+			}
+			if (controller.isLegal(Action.SUGGEST)) {
+				controller.suggest(CluedoGame.cardAt(random.nextInt(6)),
+						CluedoGame.cardAt(6 + random.nextInt(6)));
+			} else if (count > 0) {
+				controller.move(directions[random.nextInt(count)]);
+			} else if (controller.isLegal(Action.EXIT)) {
+				controller.exitRoom(1 + random.nextInt(controller.getExits()
+						.size()));
+			} else {
+				controller.endTurn();
+			}
+		}
+		return record;
+	}
+
+	private static void replay(GameRecord record) {
+		GameController controller = record.newGame(GameAdapter.NONE);
+		for (int i = 0; i < record.size(); i++) {
+			GameRecord.apply(controller, record.get(i));
+		}
+	}
+}
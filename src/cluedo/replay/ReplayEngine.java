@@ -0,0 +1,194 @@
+package cluedo.replay;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import cluedo.GameAdapter;
+import cluedo.GameController;
+import cluedo.GameError;
+import cluedo.GameRecord;
+
+/**
+ * Plays a recorded game again and moves around in it. Building the engine
+ * plays the whole record once, keeping a checkpoint of the game state every
+ * checkpointEvery actions and the action each turn starts at. Seeking then
+ * restores the nearest checkpoint at or before the target and plays forward
+ * from it, so any point of the game is reached by at most checkpointEvery
+ * actions, while playing straight on never restores anything.
+ */
+public class ReplayEngine {
+
+	public static final int DEFAULT_CHECKPOINT_EVERY = 256;
+
+	/**
+	 * Big enough for the state of any game, see GameController.writeState.
+	 */
+	private static final int STATE_SIZE = 256;
+
+	private final GameRecord record;
+	private final int checkpointEvery;
+	private final GameController controller;
+
+	/**
+	 * The state of the game before action i * checkpointEvery.
+	 */
+	private final byte[][] checkpoints;
+
+	/**
+	 * The index of the first action of each turn, turn 1 first.
+	 */
+	private int[] turnStarts;
+	private int turns;
+
+	/**
+	 * The number of actions of the record applied to the controller.
+	 */
+	private int position;
+
+	private final ByteBuffer scratch = ByteBuffer.allocate(STATE_SIZE);
+
+	/**
+	 * Construct an engine for the given record, with a checkpoint every
+	 * DEFAULT_CHECKPOINT_EVERY actions.
+	 *
+	 * @param record
+	 */
+	public ReplayEngine(GameRecord record) {
+		this(record, DEFAULT_CHECKPOINT_EVERY);
+	}
+
+	/**
+	 * Construct an engine for the given record with a checkpoint every
+	 * checkpointEvery actions, and leave it at the start of the game.
+	 *
+	 * @param record
+	 * @param checkpointEvery
+	 */
+	public ReplayEngine(GameRecord record, int checkpointEvery) {
+		if (checkpointEvery < 1) {
+			throw new GameError("Invalid checkpoint interval: "
+					+ checkpointEvery);
+		}
+		this.record = record;
+		this.checkpointEvery = checkpointEvery;
+		this.controller = record.newGame(GameAdapter.NONE);
+		checkpoints = new byte[record.size() / checkpointEvery + 1][];
+		turnStarts = new int[64];
+		turnStarts[turns++] = 0;
+		for (int i = 0; i < record.size(); i++) {
+			if (i % checkpointEvery == 0) {
+				checkpoints[i / checkpointEvery] = save();
+			}
+			int turn = controller.getTurnNumber();
+			GameRecord.apply(controller, record.get(i));
+			if (controller.getTurnNumber() != turn) {
+				if (turns == turnStarts.length) {
+					turnStarts = Arrays.copyOf(turnStarts, turns * 2);
+				}
+				turnStarts[turns++] = i + 1;
+			}
+		}
+		if (record.size() % checkpointEvery == 0) {
+			checkpoints[record.size() / checkpointEvery] = save();
+		}
+		position = record.size();
+		seek(0);
+	}
+
+	/**
+	 * Return the controller of the game being replayed. Its state is that of
+	 * the recorded game after getPosition actions; it must not be played
+	 * directly.
+	 *
+	 * @return
+	 */
+	public GameController getController() {
+		return controller;
+	}
+
+	/**
+	 * Return the record being replayed.
+	 *
+	 * @return
+	 */
+	public GameRecord getRecord() {
+		return record;
+	}
+
+	/**
+	 * Return the number of actions applied so far.
+	 *
+	 * @return
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Return the number of turns in the game.
+	 *
+	 * @return
+	 */
+	public int getTurnCount() {
+		return turns;
+	}
+
+	/**
+	 * Apply the next action. Return false if the game is already at the end
+	 * of the record.
+	 *
+	 * @return
+	 */
+	public boolean step() {
+		if (position == record.size()) {
+			return false;
+		}
+		GameRecord.apply(controller, record.get(position++));
+		return true;
+	}
+
+	/**
+	 * Bring the game to the point after the given number of actions.
+	 *
+	 * @param action
+	 */
+	public void seek(int action) {
+		if (action < 0 || action > record.size()) {
+			throw new GameError("Cannot seek to action " + action
+					+ " of a record of " + record.size());
+		}
+		int checkpoint = action / checkpointEvery;
+		// play on from here if it is no further than the checkpoint would be
+		if (action < position || position < checkpoint * checkpointEvery) {
+			controller.readState(ByteBuffer.wrap(checkpoints[checkpoint]));
+			position = checkpoint * checkpointEvery;
+		}
+		while (position < action) {
+			GameRecord.apply(controller, record.get(position++));
+		}
+	}
+
+	/**
+	 * Bring the game to the start of the given turn, numbered from 1.
+	 *
+	 * @param turn
+	 */
+	public void seekTurn(int turn) {
+		if (turn < 1 || turn > turns) {
+			throw new GameError("No turn " + turn + " in a game of " + turns);
+		}
+		seek(turnStarts[turn - 1]);
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	private byte[] save() {
+		scratch.clear();
+		controller.writeState(scratch);
+		return Arrays.copyOf(scratch.array(), scratch.position());
+	}
+}
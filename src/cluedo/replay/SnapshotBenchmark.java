@@ -0,0 +1,70 @@
+package cluedo.replay;
+
+import java.nio.ByteBuffer;
+
+import cluedo.GameAdapter;
+import cluedo.GameController;
+import cluedo.GameRecord;
+import cluedo.GameSnapshot;
+
+/**
+ * Measures saving and restoring games: takes games part way through a
+ * recorded game and reports the size of a snapshot and how long writing one,
+ * reading one into an existing game and reading one into a new game take.
+ *
+ * Usage: java cluedo.replay.SnapshotBenchmark [rounds] [board.txt]
+ */
+public class SnapshotBenchmark {
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		String boardFile = args.length > 1 ? args[1] : "gameBoard.txt";
+
+		ReplayEngine engine = new ReplayEngine(ReplayBenchmark.record(
+				boardFile, 5000));
+		engine.seek(2500);
+		GameController source = engine.getController();
+		GameController target = new GameRecord(boardFile, 6, 1)
+				.newGame(GameAdapter.NONE);
+		ByteBuffer buffer = ByteBuffer.allocate(GameSnapshot.MAX_SIZE);
+
+		int size = 0;
+		for (int i = 0; i < rounds; i++) {
+			buffer.clear();
+			size = GameSnapshot.write(source, buffer);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			buffer.clear();
+			GameSnapshot.write(source, buffer);
+		}
+		double write = (System.nanoTime() - start) / (double) rounds;
+
+		for (int i = 0; i < rounds; i++) {
+			buffer.rewind();
+			GameSnapshot.read(target, buffer);
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			buffer.rewind();
+			GameSnapshot.read(target, buffer);
+		}
+		double readInto = (System.nanoTime() - start) / (double) rounds;
+
+		int fresh = Math.max(rounds / 100, 1);
+		for (int i = 0; i < fresh; i++) {
+			buffer.rewind();
+			GameSnapshot.read(buffer);
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < fresh; i++) {
+			buffer.rewind();
+			GameSnapshot.read(buffer);
+		}
+		double readNew = (System.nanoTime() - start) / (double) fresh;
+
+		System.out.printf("snapshot of %d bytes%n", size);
+		System.out.printf("write: %.0f ns, read into a game: %.0f ns, read as a new game: %.0f ns%n",
+				write, readInto, readNew);
+	}
+}
@@ -0,0 +1,199 @@
+package cluedo.session;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import cluedo.Action;
+import cluedo.Board;
+import cluedo.Card;
+import cluedo.GameCommand;
+import cluedo.GameController;
+import cluedo.GameError;
+import cluedo.Player;
+import cluedo.Position;
+import cluedo.TextClient;
+
+/**
+ * One table of Cluedo. The session runs the game loop on its own thread,
+ * blocking on the input channel of whichever player's turn it is, and
+ * reports what happens through a SessionOutput. Input is in the text
+ * commands of GameCommand.
+ *
+ * The current player is told the options after every command with a line
+ * starting with "OPTIONS", e.g. "OPTIONS north exit accuse hand guide".
+ */
+public class GameSession implements Runnable {
+
+	private final long id;
+	private final GameController controller;
+	private final PlayerChannel[] channels;
+	private final SessionOutput output;
+
+	/**
+	 * Construct a session for the given game. The session does nothing until
+	 * run.
+	 *
+	 * @param id
+	 * @param controller
+	 * @param output
+	 */
+	public GameSession(long id, GameController controller, SessionOutput output) {
+		this.id = id;
+		this.controller = controller;
+		this.output = output;
+		List<Player> players = controller.getBoard().getAlivePlayers();
+		channels = new PlayerChannel[players.size()];
+		for (int i = 0; i < channels.length; i++) {
+			channels[i] = new PlayerChannel();
+		}
+	}
+
+	/**
+	 * Return the id of the session.
+	 *
+	 * @return
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Return the controller of the game played at this table.
+	 *
+	 * @return
+	 */
+	public GameController getController() {
+		return controller;
+	}
+
+	/**
+	 * Return the input channel of the player with the given uid.
+	 *
+	 * @param uid
+	 * @return
+	 */
+	public PlayerChannel getChannel(int uid) {
+		if (uid < 1 || uid > channels.length) {
+			throw new GameError("Invalid uid: " + uid);
+		}
+		return channels[uid - 1];
+	}
+
+	@Override
+	public void run() {
+		try {
+			announceTurn();
+			while (!controller.isFinished()) {
+				Player player = controller.getCurrentPlayer();
+				String line = channels[player.getUid() - 1].take();
+				int turn = controller.getTurnNumber();
+				try {
+					execute(player, GameCommand.parse(line));
+				} catch (GameError e) {
+					output.send(this, player.getUid(), "ERROR " + e.getMessage());
+				}
+				if (controller.isFinished()) {
+					break;
+				}
+				if (controller.getTurnNumber() != turn) {
+					announceTurn();
+				} else {
+					sendOptions();
+				}
+			}
+			output.send(this, SessionOutput.EVERYONE, "WINNER "
+					+ controller.getWinner().getName());
+		} catch (InterruptedException e) {
+			// the table was closed by the host
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Carry out one command of the given player.
+	 */
+	private void execute(Player player, GameCommand command) {
+		Action action = command.getAction();
+		if (!controller.isLegal(action)) {
+			throw new GameError("You cannot " + action.keyword() + " now.");
+		}
+		Board board = controller.getBoard();
+		int uid = player.getUid();
+		switch (action) {
+		case NORTH:
+		case SOUTH:
+		case WEST:
+		case EAST:
+			controller.move(action.direction());
+			output.send(this, uid, board.toString());
+			break;
+		case EXIT:
+			controller.exitRoom(command.getExit());
+			output.send(this, uid, board.toString());
+			break;
+		case SUGGEST:
+			Card refuted = controller.suggest(command.getCards()[0],
+					command.getCards()[1]);
+			if (refuted == null) {
+				output.send(this, SessionOutput.EVERYONE, player.getName()
+						+ "'s suggestion could not be refuted.");
+			} else {
+				Player refuter = controller.getLastRefuter();
+				output.send(this, SessionOutput.EVERYONE, refuter.getName()
+						+ " refuted " + player.getName() + "'s suggestion.");
+				output.send(this, uid, refuter.getName() + " has the card "
+						+ refuted);
+			}
+			break;
+		case ACCUSE:
+			Card[] cards = command.getCards();
+			int result = controller.accuse(cards[0], cards[1], cards[2]);
+			if (result == Board.WRONG_ANSWER || result == Board.ONE_PLAYER_LEFT) {
+				output.send(this, SessionOutput.EVERYONE, player.getName()
+						+ " made a wrong accusation and is out.");
+			}
+			break;
+		case END:
+			controller.endTurn();
+			break;
+		case HAND:
+			output.send(this, uid, player.handToString());
+			break;
+		case GUIDE:
+			output.send(this, uid, TextClient.boardNotationGuide());
+			break;
+		case UNDO:
+			controller.undo();
+			output.send(this, uid, board.toString());
+			break;
+		case REDO:
+			controller.redo();
+			output.send(this, uid, board.toString());
+			break;
+		default:
+			throw new GameError("Invalid option: " + action);
+		}
+	}
+
+	private void announceTurn() {
+		Player player = controller.getCurrentPlayer();
+		output.send(this, SessionOutput.EVERYONE, player.getName() + "(uid: "
+				+ player.getUid() + ") rolls a " + controller.getRoll() + ".");
+		output.send(this, player.getUid(), controller.getBoard().toString());
+		sendOptions();
+	}
+
+	private void sendOptions() {
+		Player player = controller.getCurrentPlayer();
+		EnumSet<Action> actions = controller.legalActions();
+		StringBuilder sb = new StringBuilder("OPTIONS");
+		for (Action action : actions) {
+			sb.append(' ').append(action.keyword());
+		}
+		if (actions.contains(Action.EXIT)) {
+			List<Position> exits = controller.getExits();
+			sb.append(" (").append(exits.size()).append(" exits)");
+		}
+		output.send(this, player.getUid(), sb.toString());
+	}
+}
@@ -0,0 +1,42 @@
+package cluedo.session;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The input of one player at a table. Whoever receives the player's input (a
+ * socket, a test, a bot) offers lines to the channel; the session thread
+ * blocks on the channel of the player whose turn it is. The queue is small
+ * and bounded so an idle channel costs next to nothing.
+ */
+public class PlayerChannel {
+
+	/**
+	 * How many lines a player may send ahead of the game.
+	 */
+	public static final int CAPACITY = 4;
+
+	private final BlockingQueue<String> lines = new ArrayBlockingQueue<String>(
+			CAPACITY);
+
+	/**
+	 * Offer a line of input. Return false if the player has already sent
+	 * CAPACITY lines that have not been read yet.
+	 *
+	 * @param line
+	 * @return
+	 */
+	public boolean offer(String line) {
+		return lines.offer(line);
+	}
+
+	/**
+	 * Wait for the next line of input.
+	 *
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public String take() throws InterruptedException {
+		return lines.take();
+	}
+}
@@ -0,0 +1,213 @@
+package cluedo.session;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cluedo.CluedoGame;
+import cluedo.GameAdapter;
+import cluedo.GameController;
+
+/**
+ * Hosts many tables in one JVM, each GameSession on a thread of its own.
+ * Sessions spend nearly all their time waiting for a player, so on a JVM
+ * with virtual threads (Java 21 and later) each session gets a virtual
+ * thread, whose stack lives on the heap and shrinks to a few hundred bytes
+ * while parked. On older JVMs sessions get daemon platform threads with a
+ * small stack.
+ */
+public class SessionHost {
+
+	/**
+	 * Stack size requested for platform threads when virtual threads are not
+	 * available. The game loop needs very little.
+	 */
+	private static final long PLATFORM_STACK_SIZE = 128 * 1024;
+
+	private final String boardFile;
+	private final SessionOutput output;
+	private final ThreadFactory threads;
+	private final Map<Long, Thread> running = new ConcurrentHashMap<Long, Thread>();
+	private final Map<Long, GameSession> sessions = new ConcurrentHashMap<Long, GameSession>();
+	private final AtomicLong nextId = new AtomicLong(1);
+
+	/**
+	 * The seed every table's game is made from, with the table's id.
+	 */
+	private final long seed;
+
+	/**
+	 * Construct a host for tables on the given board, reporting to the given
+	 * output, with a random seed.
+	 *
+	 * @param boardFile
+	 * @param output
+	 */
+	public SessionHost(String boardFile, SessionOutput output) {
+		this(boardFile, output, new Random().nextLong());
+	}
+
+	/**
+	 * Construct a host for tables on the given board, reporting to the given
+	 * output. The game at each table is seeded from the given seed and the
+	 * table's id, so a table with the same id and the same input always
+	 * plays the same game, whatever order tables are opened in.
+	 *
+	 * @param boardFile
+	 * @param output
+	 * @param seed
+	 */
+	public SessionHost(String boardFile, SessionOutput output, long seed) {
+		this.boardFile = boardFile;
+		this.output = output;
+		this.seed = seed;
+		this.threads = sessionThreadFactory();
+	}
+
+	/**
+	 * Open a new table with the given number of players and start its
+	 * session.
+	 *
+	 * @param numPlayers
+	 * @return
+	 */
+	public GameSession open(int numPlayers) {
+		long id = nextId.getAndIncrement();
+		GameController controller = new GameController(new CluedoGame(
+				boardFile, numPlayers, GameAdapter.NONE, tableSeed(id)));
+		final GameSession session = new GameSession(id, controller, output);
+		Thread thread = threads.newThread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					session.run();
+				} finally {
+					sessions.remove(session.getId());
+					running.remove(session.getId());
+				}
+			}
+		});
+		sessions.put(id, session);
+		running.put(id, thread);
+		thread.start();
+		return session;
+	}
+
+	/**
+	 * Return the session with the given id, null if there is no such open
+	 * table.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public GameSession get(long id) {
+		return sessions.get(id);
+	}
+
+	/**
+	 * Pass a line of input from the given player to the given table. Return
+	 * false if the table does not exist or the player's channel is full.
+	 *
+	 * @param id
+	 * @param uid
+	 * @param line
+	 * @return
+	 */
+	public boolean submit(long id, int uid, String line) {
+		GameSession session = sessions.get(id);
+		return session != null && session.getChannel(uid).offer(line);
+	}
+
+	/**
+	 * Close the table with the given id, interrupting its session.
+	 *
+	 * @param id
+	 */
+	public void close(long id) {
+		Thread thread = running.get(id);
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Close every open table.
+	 */
+	public void closeAll() {
+		for (Thread thread : running.values()) {
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Return the number of open tables.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * true if sessions run on virtual threads.
+	 *
+	 * @return
+	 */
+	public boolean usesVirtualThreads() {
+		return !(threads instanceof PlatformThreads);
+	}
+
+	/**
+	 * Return a factory of virtual threads if the running JVM has them,
+	 * otherwise a factory of small daemon platform threads.
+	 *
+	 * @return
+	 */
+	public static ThreadFactory sessionThreadFactory() {
+		ThreadFactory virtual = virtualThreadFactory();
+		return virtual != null ? virtual : new PlatformThreads();
+	}
+
+	/**
+	 * Return a factory of virtual threads, null if the running JVM does not
+	 * have them. Reflection keeps the code compiling on older JDKs.
+	 *
+	 * @return
+	 */
+	public static ThreadFactory virtualThreadFactory() {
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Object builder = ofVirtual.invoke(null);
+			Method factory = Class.forName("java.lang.Thread$Builder")
+					.getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Return the seed of the game at the table with the given id.
+	 */
+	private long tableSeed(long id) {
+		return seed + id * 0x9E3779B97F4A7C15L;
+	}
+
+	/**
+	 * Creates daemon platform threads with a small stack.
+	 */
+	private static class PlatformThreads implements ThreadFactory {
+		private final AtomicLong count = new AtomicLong();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(null, r, "session-"
+					+ count.incrementAndGet(), PLATFORM_STACK_SIZE);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package cluedo.session;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Opens many tables on one SessionHost and reports how much heap an idle
+ * table costs, then lets a few of the tables play against simple bots while
+ * the rest stay idle and reports the latency of each command, from the bot
+ * offering it to the session answering with the next OPTIONS line.
+ *
+ * Usage: java cluedo.session.SessionLoadTest [sessions] [active] [seconds]
+ * [board.txt]
+ */
+public class SessionLoadTest implements SessionOutput {
+
+	private static final String[] MOVES = { "north", "south", "west", "east" };
+
+	private final int active;
+	private final AtomicLongArray sentAt;
+	private final long[] latencies = new long[1 << 20];
+	private final AtomicInteger latencyCount = new AtomicInteger();
+	private final ExecutorService bots = Executors.newFixedThreadPool(4);
+	private volatile SessionHost host;
+	private volatile boolean playing;
+
+	private SessionLoadTest(int sessions, int active) {
+		this.active = active;
+		this.sentAt = new AtomicLongArray(sessions + 1);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int active = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		String boardFile = args.length > 3 ? args[3] : "gameBoard.txt";
+		new SessionLoadTest(sessions, active).run(boardFile, sessions, seconds);
+	}
+
+	private void run(String boardFile, int sessions, int seconds)
+			throws InterruptedException {
+		host = new SessionHost(boardFile, this);
+		System.out.println("virtual threads: " + host.usesVirtualThreads());
+
+		long before = usedHeap();
+		int threadsBefore = Thread.activeCount();
+		for (int i = 0; i < sessions; i++) {
+			host.open(6);
+		}
+		// let every session reach its first blocking read
+		Thread.sleep(2000);
+		long after = usedHeap();
+		System.out.printf("%d idle sessions: %.1f KB heap per session, %d new platform threads%n",
+				sessions, (after - before) / 1024.0 / sessions,
+				Thread.activeCount() - threadsBefore);
+
+		playing = true;
+		for (long id = 1; id <= active; id++) {
+			GameSession session = host.get(id);
+			if (session != null) {
+				reply(session, session.getController().getCurrentPlayer()
+						.getUid(), "OPTIONS end");
+			}
+		}
+		Thread.sleep(seconds * 1000L);
+		playing = false;
+		bots.shutdown();
+		bots.awaitTermination(5, TimeUnit.SECONDS);
+		host.closeAll();
+
+		int n = Math.min(latencyCount.get(), latencies.length);
+		long[] sorted = Arrays.copyOf(latencies, n);
+		Arrays.sort(sorted);
+		System.out.printf("%d active sessions: %d commands, %.0f commands/s%n",
+				active, n, n / (double) seconds);
+		if (n > 0) {
+			System.out.printf("command latency p50 %.1f us, p99 %.1f us, max %.1f us%n",
+					sorted[n / 2] / 1e3, sorted[(int) (n * 0.99)] / 1e3,
+					sorted[n - 1] / 1e3);
+		}
+	}
+
+	@Override
+	public void send(GameSession session, int uid, String message) {
+		long id = session.getId();
+		if (!playing || id > active || !message.startsWith("OPTIONS")) {
+			return;
+		}
+		long sent = sentAt.getAndSet((int) id, 0);
+		if (sent != 0) {
+			int i = latencyCount.getAndIncrement();
+			if (i < latencies.length) {
+				latencies[i] = System.nanoTime() - sent;
+			}
+		}
+		reply(session, uid, message);
+	}
+
+	/**
+	 * Answer the given OPTIONS line from a bot thread: end the turn if
+	 * possible, otherwise walk randomly or leave the room.
+	 */
+	private void reply(final GameSession session, final int uid,
+			final String options) {
+		if (bots.isShutdown()) {
+			return;
+		}
+		bots.execute(new Runnable() {
+			@Override
+			public void run() {
+				String command;
+				if (options.contains(" end")) {
+					command = "end";
+				} else if (options.contains(" exit")) {
+					command = "exit 1";
+				} else {
+					Random random = new Random();
+					do {
+						command = MOVES[random.nextInt(MOVES.length)];
+					} while (!options.contains(" " + command));
+				}
+				sentAt.set((int) session.getId(), System.nanoTime());
+				session.getChannel(uid).offer(command);
+			}
+		});
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,24 @@
+package cluedo.session;
+
+/**
+ * Receives everything a GameSession has to say to its players. Called on the
+ * session's own thread, so implementations should hand the message over
+ * rather than block.
+ */
+public interface SessionOutput {
+
+	/**
+	 * The uid used to address every player at the table.
+	 */
+	public static final int EVERYONE = 0;
+
+	/**
+	 * Deliver a message of the given session to the player with the given uid,
+	 * or to everyone if the uid is EVERYONE.
+	 *
+	 * @param session
+	 * @param uid
+	 * @param message
+	 */
+	public void send(GameSession session, int uid, String message);
+}
@@ -0,0 +1,472 @@
+package cluedo.sim;
+
+import cluedo.BoardTopology;
+import cluedo.CluedoGame;
+import cluedo.GameError;
+
+/**
+ * Simulates many games of Cluedo in lockstep. Instead of one object graph per
+ * game, the state of every game lives in parallel primitive arrays over one
+ * shared BoardTopology, and each phase of a turn (roll, leave room, walk,
+ * suggest, refute, accuse) is applied to all running games before the next
+ * phase starts. Players follow the same policy as ObjectGameRunner.
+ *
+ * Hands, suggestions and knowledge are sets of cards stored as long bit
+ * masks (bit i is the card CluedoGame.cardAt(i)), so checking a suggestion
+ * against every hand is a straight loop of ANDs over a long array, which
+ * HotSpot compiles to vector instructions.
+ */
+public class BatchSimulator {
+
+	/**
+	 * Winner value of a game that is still being played.
+	 */
+	public static final int RUNNING = -1;
+
+	/**
+	 * Winner value of a game abandoned after ObjectGameRunner.MAX_TURNS.
+	 */
+	public static final int ABANDONED = 0;
+
+	private static final int DECK_SIZE = 18;
+
+	private final BoardTopology topology;
+	private final int numGames;
+	private final int numPlayers;
+
+	/**
+	 * Cell of each player, indexed by game * numPlayers + uid - 1.
+	 */
+	private final int[] positions;
+
+	/**
+	 * Hand of each player, same indexing as positions.
+	 */
+	private final long[] hands;
+
+	/**
+	 * Cards each player knows are not in the solution, same indexing as
+	 * positions.
+	 */
+	private final long[] known;
+
+	/**
+	 * The suggestion each player is asked to refute this round, same indexing
+	 * as positions.
+	 */
+	private final long[] asked;
+
+	/**
+	 * Scratch space for the refutation phase, same indexing as positions.
+	 */
+	private final long[] matches;
+
+	/**
+	 * Cell of each weapon, indexed by game * 6 + weapon.
+	 */
+	private final int[] weapons;
+
+	/**
+	 * Per game state.
+	 */
+	private final long[] solutions;
+	private final int[] alive;
+	private final int[] current;
+	private final int[] steps;
+	private final long[] suggestions;
+	private final int[] turns;
+	private final int[] winners;
+
+	/**
+	 * The number of games still running.
+	 */
+	private int running;
+
+	/**
+	 * State of the xorshift generator used for every random choice.
+	 */
+	private long seed;
+
+	/**
+	 * Construct a simulator for the given number of games of the given number
+	 * of players, all on the same board. Every game is dealt immediately.
+	 *
+	 * @param topology
+	 * @param numGames
+	 * @param numPlayers
+	 * @param seed
+	 */
+	public BatchSimulator(BoardTopology topology, int numGames,
+			int numPlayers, long seed) {
+		if (numPlayers < 3 || numPlayers > 6) {
+			throw new GameError("Invalid number of players: " + numPlayers);
+		}
+		this.topology = topology;
+		this.numGames = numGames;
+		this.numPlayers = numPlayers;
+		this.seed = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+		positions = new int[numGames * numPlayers];
+		hands = new long[numGames * numPlayers];
+		known = new long[numGames * numPlayers];
+		asked = new long[numGames * numPlayers];
+		matches = new long[numGames * numPlayers];
+		weapons = new int[numGames * 6];
+		solutions = new long[numGames];
+		alive = new int[numGames];
+		current = new int[numGames];
+		steps = new int[numGames];
+		suggestions = new long[numGames];
+		turns = new int[numGames];
+		winners = new int[numGames];
+		for (int g = 0; g < numGames; g++) {
+			deal(g);
+		}
+		running = numGames;
+	}
+
+	/**
+	 * Play every game to the end. Return the total number of turns played.
+	 *
+	 * @return
+	 */
+	public long run() {
+		while (running > 0) {
+			playRound();
+		}
+		long total = 0;
+		for (int g = 0; g < numGames; g++) {
+			total += turns[g];
+		}
+		return total;
+	}
+
+	/**
+	 * Play one turn in every running game, phase by phase.
+	 */
+	public void playRound() {
+		roll();
+		leaveRooms();
+		walk();
+		suggest();
+		refute();
+		accuse();
+		advance();
+	}
+
+	/**
+	 * Return the number of games still running.
+	 *
+	 * @return
+	 */
+	public int getRunning() {
+		return running;
+	}
+
+	/**
+	 * Return the uid of the winner of the given game, RUNNING or ABANDONED.
+	 *
+	 * @param game
+	 * @return
+	 */
+	public int getWinner(int game) {
+		return winners[game];
+	}
+
+	/**
+	 * Return the number of turns played in the given game.
+	 *
+	 * @param game
+	 * @return
+	 */
+	public int getTurns(int game) {
+		return turns[game];
+	}
+
+	/**
+	 * Return the hand dealt to the player with the given uid in the given
+	 * game, bit i for the card CluedoGame.cardAt(i).
+	 *
+	 * @param game
+	 * @param uid
+	 * @return
+	 */
+	public long getHand(int game, int uid) {
+		return hands[game * numPlayers + uid - 1];
+	}
+
+	/**
+	 * Return the solution of the given game, as a set of cards like getHand.
+	 *
+	 * @param game
+	 * @return
+	 */
+	public long getSolution(int game) {
+		return solutions[game];
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * the phases of a turn, each applied to all running games
+	 * ============================================================
+	 */
+
+	private void roll() {
+		for (int g = 0; g < numGames; g++) {
+			if (winners[g] == RUNNING) {
+				steps[g] = nextInt(6) + 1;
+				if (suggestions[g] != 0) {
+					suggestions[g] = 0;
+					int base = g * numPlayers;
+					for (int i = 0; i < numPlayers; i++) {
+						asked[base + i] = 0;
+					}
+				}
+			}
+		}
+	}
+
+	private void leaveRooms() {
+		for (int g = 0; g < numGames; g++) {
+			if (winners[g] != RUNNING) {
+				continue;
+			}
+			int p = g * numPlayers + current[g];
+			int room = topology.roomOf(positions[p]);
+			if (room == BoardTopology.NO_ROOM) {
+				continue;
+			}
+			int[] doors = topology.roomDoors(room);
+			int stairwell = topology.stairwellOf(room);
+			if (stairwell != BoardTopology.NO_ROOM
+					&& (doors.length == 0 || nextInt(2) == 0)) {
+				positions[p] = randomCell(stairwell);
+			} else if (doors.length > 0) {
+				positions[p] = doors[nextInt(doors.length)];
+			}
+		}
+	}
+
+	private void walk() {
+		// nobody rolls more than six, so six sweeps move every token as far
+		// as it can go
+		for (int sweep = 0; sweep < 6; sweep++) {
+			for (int g = 0; g < numGames; g++) {
+				if (winners[g] != RUNNING || steps[g] == 0) {
+					continue;
+				}
+				int p = g * numPlayers + current[g];
+				int mask = topology.moveMask(positions[p]);
+				if (mask == 0) {
+					// stuck, or already in a room
+					steps[g] = 0;
+					continue;
+				}
+				int cell = topology.step(positions[p], nthBit(mask,
+						nextInt(Integer.bitCount(mask))));
+				int door = topology.doorOf(cell);
+				if (door != BoardTopology.NO_ROOM) {
+					cell = randomCell(door);
+				}
+				positions[p] = cell;
+				steps[g]--;
+			}
+		}
+	}
+
+	private void suggest() {
+		for (int g = 0; g < numGames; g++) {
+			if (winners[g] != RUNNING) {
+				continue;
+			}
+			int p = g * numPlayers + current[g];
+			int room = topology.roomOf(positions[p]);
+			if (room == BoardTopology.NO_ROOM) {
+				continue;
+			}
+			int suspect = pickUnknown(known[p], 0, 6);
+			int weapon = pickUnknown(known[p], 6, 6);
+			long suggestion = 1L << suspect | 1L << weapon
+					| 1L << topology.roomCard(room);
+			suggestions[g] = suggestion;
+			int base = g * numPlayers;
+			for (int i = 0; i < numPlayers; i++) {
+				asked[base + i] = suggestion;
+			}
+
+			// drag the suspect, if playing, and the weapon into the room
+			if (suspect < numPlayers && (alive[g] & 1 << suspect) != 0) {
+				positions[g * numPlayers + suspect] = randomCell(room);
+			}
+			weapons[g * 6 + weapon - 6] = randomCell(room);
+		}
+	}
+
+	private void refute() {
+		// compare every hand with its game's suggestion in one flat loop
+		int n = numGames * numPlayers;
+		for (int i = 0; i < n; i++) {
+			matches[i] = hands[i] & asked[i];
+		}
+
+		// the first alive player clockwise from the suggester shows the
+		// lowest matching card
+		for (int g = 0; g < numGames; g++) {
+			long suggestion = suggestions[g];
+			if (suggestion == 0 || winners[g] != RUNNING) {
+				continue;
+			}
+			int base = g * numPlayers;
+			int p = base + current[g];
+			long shown = 0;
+			for (int i = 1; i < numPlayers; i++) {
+				int other = (current[g] + i) % numPlayers;
+				long match = matches[base + other];
+				if (match != 0 && (alive[g] & 1 << other) != 0) {
+					shown = Long.lowestOneBit(match);
+					break;
+				}
+			}
+			if (shown != 0) {
+				known[p] |= shown;
+			} else {
+				known[p] = ObjectGameRunner.unrefuted(known[p], suggestion);
+			}
+		}
+	}
+
+	private void accuse() {
+		for (int g = 0; g < numGames; g++) {
+			if (winners[g] != RUNNING) {
+				continue;
+			}
+			int p = g * numPlayers + current[g];
+			if (!CluedoGame.isSolved(known[p])) {
+				continue;
+			}
+			long accusation = ~known[p]
+					& (CluedoGame.CHARACTER_CARDS
+							| CluedoGame.WEAPON_CARDS | CluedoGame.ROOM_CARDS);
+			if (accusation == solutions[g]) {
+				finish(g, current[g] + 1);
+				continue;
+			}
+			alive[g] &= ~(1 << current[g]);
+			if (Integer.bitCount(alive[g]) == 1) {
+				finish(g, Integer.numberOfTrailingZeros(alive[g]) + 1);
+			}
+		}
+	}
+
+	private void advance() {
+		for (int g = 0; g < numGames; g++) {
+			if (winners[g] != RUNNING) {
+				continue;
+			}
+			if (++turns[g] >= ObjectGameRunner.MAX_TURNS) {
+				finish(g, ABANDONED);
+				continue;
+			}
+			int next = current[g];
+			do {
+				next = (next + 1) % numPlayers;
+			} while ((alive[g] & 1 << next) == 0);
+			current[g] = next;
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Set up the given game the same way CluedoGame does: a random solution,
+	 * the left-over cards put aside and the rest dealt evenly.
+	 */
+	private void deal(int g) {
+		long solution = 1L << nextInt(6) | 1L << 6 + nextInt(6)
+				| 1L << 12 + nextInt(9);
+		solutions[g] = solution;
+		winners[g] = RUNNING;
+		alive[g] = (1 << numPlayers) - 1;
+
+		int[] deck = new int[DECK_SIZE];
+		int size = 0;
+		for (int card = 0; card < DECK_SIZE + 3; card++) {
+			if ((solution & 1L << card) == 0) {
+				deck[size++] = card;
+			}
+		}
+		long unused = 0;
+		for (int i = 0; i < DECK_SIZE % numPlayers; i++) {
+			unused |= 1L << takeCard(deck, size--);
+		}
+		int base = g * numPlayers;
+		for (int uid = 1; uid <= numPlayers; uid++) {
+			long hand = 0;
+			for (int i = 0; i < DECK_SIZE / numPlayers; i++) {
+				hand |= 1L << takeCard(deck, size--);
+			}
+			hands[base + uid - 1] = hand;
+			known[base + uid - 1] = hand | unused;
+			positions[base + uid - 1] = topology.startCell(uid);
+		}
+	}
+
+	/**
+	 * Take a random card from the first size cards of the deck.
+	 */
+	private int takeCard(int[] deck, int size) {
+		int i = nextInt(size);
+		int card = deck[i];
+		deck[i] = deck[size - 1];
+		return card;
+	}
+
+	private void finish(int g, int winner) {
+		winners[g] = winner;
+		running--;
+	}
+
+	private int randomCell(int room) {
+		int[] cells = topology.roomCells(room);
+		return cells[nextInt(cells.length)];
+	}
+
+	private int pickUnknown(long known, int from, int count) {
+		long unknown = ~known & ((1L << count) - 1) << from;
+		if (unknown == 0) {
+			return from + nextInt(count);
+		}
+		return Long.numberOfTrailingZeros(nthBit(unknown,
+				nextInt(Long.bitCount(unknown))));
+	}
+
+	/**
+	 * Return the index of the n-th (from 0) set bit of the mask.
+	 */
+	private static int nthBit(int mask, int n) {
+		for (int i = 0; i < n; i++) {
+			mask &= mask - 1;
+		}
+		return Integer.numberOfTrailingZeros(mask);
+	}
+
+	/**
+	 * Return the n-th (from 0) set bit of the mask.
+	 */
+	private static long nthBit(long mask, int n) {
+		for (int i = 0; i < n; i++) {
+			mask &= mask - 1;
+		}
+		return Long.lowestOneBit(mask);
+	}
+
+	private int nextInt(int bound) {
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		seed ^= seed << 17;
+		return (int) (((seed >>> 33) * bound) >>> 31);
+	}
+}
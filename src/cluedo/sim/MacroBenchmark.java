@@ -0,0 +1,304 @@
+package cluedo.sim;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import cluedo.Action;
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.GameAdapter;
+import cluedo.GameController;
+import cluedo.GameError;
+import cluedo.Player;
+import cluedo.bench.BenchmarkRunner;
+import cluedo.metrics.LatencyHistogram;
+import cluedo.metrics.Metrics;
+
+/**
+ * Plays complete games headlessly through the GameController, as a game
+ * server does, and reports the throughput and the cost of a turn: games and
+ * turns per second, bytes allocated per turn and the percentiles of the time
+ * a turn takes. Each configuration is run with one thread and with several,
+ * each thread playing its own games, to show how the engine scales; games on
+ * the same board share its topology.
+ *
+ * Every player follows the ObjectGameRunner policy: leave a room, walk at
+ * random into the next one, suggest cards not yet seen there and accuse as
+ * soon as only one card of each type is left. Games are seeded, so each run
+ * plays the same games. Run with -Dcluedo.metrics=true to see the Metrics of
+ * every operation as well, and what they cost.
+ *
+ * Usage: java cluedo.sim.MacroBenchmark [games] [threads,threads...]
+ * [board,board...] [players]
+ */
+public class MacroBenchmark {
+
+	/**
+	 * A turn that takes more actions than this is stuck, see playTurn.
+	 */
+	private static final int MAX_ACTIONS = 10000;
+
+	public static void main(String[] args) throws InterruptedException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int cpus = Runtime.getRuntime().availableProcessors();
+		String[] threads = (args.length > 1 ? args[1] : cpus > 1 ? "1," + cpus
+				: "1").split(",");
+		String[] boards = (args.length > 2 ? args[2]
+				: "gameBoard.txt,gen:64,gen:256").split(",");
+		int numPlayers = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+
+		System.out.printf("%-14s %3s %9s %10s %9s %9s %9s %9s%n", "Board",
+				"Thr", "games/s", "turns/s", "B/turn", "p50 us", "p99 us",
+				"max us");
+		for (String board : boards) {
+			String boardFile = BenchmarkRunner.boardFile(board);
+			// warm up before measuring
+			run(boardFile, numPlayers, Math.max(1, games / 2), 1, 1);
+			for (String t : threads) {
+				int n = Integer.parseInt(t);
+				Result r = run(boardFile, numPlayers, games, n, 42);
+				LatencyHistogram h = r.latency;
+				System.out.printf(
+						"%-14s %3d %9.0f %10.0f %9s %9.1f %9.1f %9.1f%n",
+						board, n, games / r.seconds, h.getCount() / r.seconds,
+						r.allocated < 0 ? "n/a" : String.format("%.0f",
+								(double) r.allocated / h.getCount()),
+						h.percentile(50) / 1e3, h.percentile(99) / 1e3,
+						h.getMax() / 1e3);
+			}
+		}
+		if (Metrics.isOn()) {
+			System.out.print(Metrics.report());
+		}
+	}
+
+	/**
+	 * What a run measured: the time it took, the latency of every turn and
+	 * the bytes allocated by the threads playing, -1 if the JVM cannot tell.
+	 */
+	static class Result {
+		double seconds;
+		LatencyHistogram latency = new LatencyHistogram();
+		long allocated;
+	}
+
+	/**
+	 * Play the given number of games split between the given number of
+	 * threads.
+	 *
+	 * @param boardFile
+	 * @param numPlayers
+	 * @param games
+	 * @param threads
+	 * @param seed
+	 * @return
+	 * @throws InterruptedException
+	 */
+	static Result run(final String boardFile, final int numPlayers,
+			int games, int threads, long seed) throws InterruptedException {
+		final Result result = new Result();
+		final List<Worker> workers = new ArrayList<Worker>();
+		for (int i = 0; i < threads; i++) {
+			int share = games / threads + (i < games % threads ? 1 : 0);
+			workers.add(new Worker(boardFile, numPlayers, share, seed + i));
+		}
+		long start = System.nanoTime();
+		for (Worker w : workers) {
+			w.start();
+		}
+		result.allocated = 0;
+		for (Worker w : workers) {
+			w.join();
+			if (w.error != null) {
+				throw w.error;
+			}
+			result.latency.add(w.latency);
+			result.allocated = w.allocated < 0 || result.allocated < 0 ? -1
+					: result.allocated + w.allocated;
+		}
+		result.seconds = (System.nanoTime() - start) / 1e9;
+		return result;
+	}
+
+	/**
+	 * Plays its share of the games on its own thread.
+	 */
+	static class Worker extends Thread {
+		private final String boardFile;
+		private final int numPlayers;
+		private final int games;
+		private final Random random;
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private long allocated = -1;
+		private RuntimeException error;
+
+		Worker(String boardFile, int numPlayers, int games, long seed) {
+			this.boardFile = boardFile;
+			this.numPlayers = numPlayers;
+			this.games = games;
+			this.random = new Random(seed);
+		}
+
+		@Override
+		public void run() {
+			try {
+				long before = allocatedBytes();
+				for (int i = 0; i < games; i++) {
+					playGame(new GameController(new CluedoGame(boardFile,
+							numPlayers, GameAdapter.NONE, random.nextLong())),
+							random, latency);
+				}
+				long after = allocatedBytes();
+				allocated = before < 0 ? -1 : after - before;
+			} catch (RuntimeException e) {
+				error = e;
+			}
+		}
+	}
+
+	/**
+	 * Play the given game to the end, or for ObjectGameRunner.MAX_TURNS
+	 * turns, recording how long each turn takes.
+	 *
+	 * @param controller
+	 * @param random
+	 * @param latency
+	 */
+	static void playGame(GameController controller, Random random,
+			LatencyHistogram latency) {
+		CluedoGame game = controller.getGame();
+
+		// what each player knows is not part of the solution, by uid - 1
+		List<Player> players = game.getPlayers();
+		long[] known = new long[players.size()];
+		long unused = cardSet(game.getUnusedCards());
+		for (Player p : players) {
+			known[p.getUid() - 1] = cardSet(p.getHand()) | unused;
+		}
+		for (int turn = 0; turn < ObjectGameRunner.MAX_TURNS
+				&& !controller.isFinished(); turn++) {
+			long start = System.nanoTime();
+			playTurn(controller, random, known);
+			latency.record(System.nanoTime() - start);
+		}
+	}
+
+	/*
+	 * ============================================================ Below are
+	 * some useful helper methods
+	 * ============================================================
+	 */
+
+	/**
+	 * Play the current player's turn. The player must use up the roll
+	 * outside a room, so one who enters a room with steps left suggests and
+	 * then leaves it again.
+	 */
+	private static void playTurn(GameController controller, Random random,
+			long[] known) {
+		Player player = controller.getCurrentPlayer();
+		int uid = player.getUid();
+		int[] directions = new int[4];
+		for (int actions = 0;; actions++) {
+			if (actions == MAX_ACTIONS) {
+				throw new GameError(player.getName() + " is stuck.");
+			}
+			EnumSet<Action> legal = controller.legalActions();
+			if (legal.contains(Action.SUGGEST)) {
+				known[uid - 1] = suggest(controller, random, known[uid - 1]);
+			} else if (legal.contains(Action.END)) {
+				break;
+			} else if (legal.contains(Action.EXIT)) {
+				controller.exitRoom(1 + random.nextInt(controller.getExits()
+						.size()));
+			} else {
+				int count = 0;
+				for (Action a : legal) {
+					if (a.isMove()) {
+						directions[count++] = a.direction();
+					}
+				}
+				controller.move(directions[random.nextInt(count)]);
+			}
+		}
+		long k = known[uid - 1];
+		if (CluedoGame.isSolved(k)) {
+			controller.accuse(
+					CluedoGame.cardAt(Long.numberOfTrailingZeros(~k
+							& CluedoGame.CHARACTER_CARDS)),
+					CluedoGame.cardAt(Long.numberOfTrailingZeros(~k
+							& CluedoGame.WEAPON_CARDS)),
+					CluedoGame.cardAt(Long.numberOfTrailingZeros(~k
+							& CluedoGame.ROOM_CARDS)));
+		} else {
+			controller.endTurn();
+		}
+	}
+
+	private static long suggest(GameController controller, Random random,
+			long known) {
+		Card character = CluedoGame.cardAt(pickUnknown(random, known,
+				CluedoGame.CHARACTER_CARDS));
+		Card weapon = CluedoGame.cardAt(pickUnknown(random, known,
+				CluedoGame.WEAPON_CARDS));
+		Card refuted = controller.suggest(character, weapon);
+		if (refuted != null) {
+			return known | 1L << CluedoGame.indexOf(refuted);
+		}
+		return ObjectGameRunner.unrefuted(known,
+				cardSet(controller.getLastSuggestion()));
+	}
+
+	/**
+	 * Pick a random card index of the given type, see CluedoGame.ROOM_CARDS,
+	 * that is not known, or any of them if all are known.
+	 */
+	private static int pickUnknown(Random random, long known, long type) {
+		long cards = ~known & type;
+		if (cards == 0) {
+			cards = type;
+		}
+		int choice = random.nextInt(Long.bitCount(cards));
+		for (int i = 0; i < choice; i++) {
+			cards &= cards - 1;
+		}
+		return Long.numberOfTrailingZeros(cards);
+	}
+
+	private static long cardSet(Iterable<Card> cards) {
+		long set = 0;
+		for (Card card : cards) {
+			set |= 1L << CluedoGame.indexOf(card);
+		}
+		return set;
+	}
+
+	private static long cardSet(Card[] cards) {
+		long set = 0;
+		for (Card card : cards) {
+			set |= 1L << CluedoGame.indexOf(card);
+		}
+		return set;
+	}
+
+	/**
+	 * Return the bytes allocated by the current thread so far, -1 if the JVM
+	 * does not count them.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+			if (sun.isThreadAllocatedMemorySupported()
+					&& sun.isThreadAllocatedMemoryEnabled()) {
+				return sun.getThreadAllocatedBytes(Thread.currentThread()
+						.getId());
+			}
+		}
+		return -1;
+	}
+}
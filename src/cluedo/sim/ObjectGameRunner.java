@@ -0,0 +1,249 @@
+package cluedo.sim;
+
+import java.util.List;
+import java.util.Random;
+
+import cluedo.Board;
+import cluedo.Card;
+import cluedo.CluedoGame;
+import cluedo.GameAdapter;
+import cluedo.GameError;
+import cluedo.GameListener;
+import cluedo.Player;
+import cluedo.Position;
+import cluedo.Room;
+import cluedo.TurnOrder;
+
+/**
+ * Plays complete games of Cluedo headlessly on the ordinary object engine
+ * (CluedoGame and Board) with every player making random but sensible
+ * choices. This is the baseline the BatchSimulator is measured against, so
+ * both follow the same policy:
+ *
+ * - a player starting the turn in a room leaves it, by the stairwell half of
+ * the time if there is one, otherwise through a random door
+ *
+ * - then it walks randomly until it runs out of steps or enters a room
+ *
+ * - in a room it suggests a character and a weapon it has not seen yet
+ *
+ * - it accuses as soon as only one card of each type is unaccounted for
+ */
+public class ObjectGameRunner {
+
+	/**
+	 * Games that have not finished after this many turns are abandoned.
+	 */
+	public static final int MAX_TURNS = 1000;
+
+	private final String boardFile;
+	private final int numPlayers;
+	private final Random random;
+
+	/**
+	 * The number of turns played by the last game.
+	 */
+	private int turns;
+
+	/**
+	 * Told about everything that happens in the games played.
+	 */
+	private GameListener listener = GameAdapter.NONE;
+
+	/**
+	 * Construct a runner playing games with the given number of players on
+	 * the given board.
+	 *
+	 * @param boardFile
+	 * @param numPlayers
+	 * @param random
+	 */
+	public ObjectGameRunner(String boardFile, int numPlayers, Random random) {
+		this.boardFile = boardFile;
+		this.numPlayers = numPlayers;
+		this.random = random;
+	}
+
+	/**
+	 * Set the listener told about everything that happens in the games
+	 * played from now on.
+	 *
+	 * @param listener
+	 */
+	public void setListener(GameListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Play one complete game. Return the uid of the winner, or 0 if the game
+	 * was abandoned after MAX_TURNS.
+	 *
+	 * @return
+	 */
+	public int playGame() {
+		CluedoGame game = new CluedoGame(boardFile, numPlayers, listener,
+				random.nextLong());
+		Board board = game.getBoard();
+
+		// what each player knows is not part of the solution, by uid - 1
+		long[] known = new long[numPlayers];
+		long unused = cardSet(game.getUnusedCards());
+		for (Player p : board.getAlivePlayers()) {
+			known[p.getUid() - 1] = cardSet(p.getHand()) | unused;
+		}
+
+		TurnOrder order = board.getTurnOrder();
+		Player player = order.first();
+		for (turns = 0; turns < MAX_TURNS; turns++) {
+			int roll = random.nextInt(6) + 1;
+			player.setStepsRemain(roll);
+			listener.rolled(player, roll);
+
+			if (board.inRoom(player)) {
+				leaveRoom(board, player);
+			}
+			walk(board, player);
+
+			int uid = player.getUid();
+			if (board.inRoom(player) && !player.hasSuggested()) {
+				known[uid - 1] = suggest(board, player, known[uid - 1]);
+			}
+
+			if (CluedoGame.isSolved(known[uid - 1])) {
+				int result = board.makeAccusation(player,
+						accusation(known[uid - 1]));
+				if (result == Board.RIGHT_ANSWER) {
+					return uid;
+				}
+				if (result == Board.ONE_PLAYER_LEFT) {
+					return order.first().getUid();
+				}
+			}
+			player = order.next(player);
+		}
+		return 0;
+	}
+
+	/**
+	 * Return the number of turns played by the last game.
+	 *
+	 * @return
+	 */
+	public int getTurns() {
+		return turns;
+	}
+
+	/**
+	 * Given what a player knows, return what the player would learn when no
+	 * one could refute the suggestion: every suggested card the player does
+	 * not already know to be out of the solution, in his/her hand, face up or
+	 * shown earlier, is part of it, so all other cards of its type are not.
+	 *
+	 * @param known
+	 * @param suggestion
+	 * @return
+	 */
+	static long unrefuted(long known, long suggestion) {
+		long[] types = { CluedoGame.CHARACTER_CARDS, CluedoGame.WEAPON_CARDS,
+				CluedoGame.ROOM_CARDS };
+		for (long type : types) {
+			long card = suggestion & type & ~known;
+			if (card != 0) {
+				known |= type & ~card;
+			}
+		}
+		return known;
+	}
+
+	private void leaveRoom(Board board, Player player) {
+		Room room = board.inWhichRoom(player);
+		List<Position> exits = room.getEntrancesPositions();
+		if (room.getStairellTo() != null
+				&& (exits.isEmpty() || random.nextBoolean())) {
+			board.exitRoom(player, room.getStairellTo().getRandomPosition(
+					random));
+		} else if (!exits.isEmpty()) {
+			board.exitRoom(player, exits.get(random.nextInt(exits.size())));
+		}
+	}
+
+	private void walk(Board board, Player player) {
+		while (player.getStepsRemain() > 0 && !board.inRoom(player)) {
+			boolean north = board.canGoNorth(player);
+			boolean south = board.canGoSouth(player);
+			boolean west = board.canGoWest(player);
+			boolean east = board.canGoEast(player);
+			int options = (north ? 1 : 0) + (south ? 1 : 0) + (west ? 1 : 0)
+					+ (east ? 1 : 0);
+			if (options == 0) {
+				return;
+			}
+			int choice = random.nextInt(options);
+			if (north && choice-- == 0) {
+				board.moveNorth(player);
+			} else if (south && choice-- == 0) {
+				board.moveSouth(player);
+			} else if (west && choice-- == 0) {
+				board.moveWest(player);
+			} else {
+				board.moveEast(player);
+			}
+		}
+	}
+
+	private long suggest(Board board, Player player, long known) {
+		Card[] suggestion = new Card[3];
+		suggestion[0] = CluedoGame.cardAt(pickUnknown(known, 0, 6));
+		suggestion[1] = CluedoGame.cardAt(pickUnknown(known, 6, 6));
+		suggestion[2] = board.inWhichRoom(player).getRoomCard();
+		Card refuted = board.makeSuggestion(player, suggestion);
+		if (refuted != null) {
+			return known | 1L << CluedoGame.indexOf(refuted);
+		}
+		return unrefuted(known, cardSet(suggestion));
+	}
+
+	/**
+	 * Pick a random card index in [from, from + count) that is not known,
+	 * or any card in the range if all are known.
+	 */
+	private int pickUnknown(long known, int from, int count) {
+		int unknown = Long.bitCount(~known & ((1L << count) - 1) << from);
+		if (unknown == 0) {
+			return from + random.nextInt(count);
+		}
+		int choice = random.nextInt(unknown);
+		for (int i = from; i < from + count; i++) {
+			if ((known & 1L << i) == 0 && choice-- == 0) {
+				return i;
+			}
+		}
+		throw new GameError("No card left to pick.");
+	}
+
+	private static Card[] accusation(long known) {
+		return new Card[] {
+				CluedoGame.cardAt(Long.numberOfTrailingZeros(~known
+						& CluedoGame.CHARACTER_CARDS)),
+				CluedoGame.cardAt(Long.numberOfTrailingZeros(~known
+						& CluedoGame.WEAPON_CARDS)),
+				CluedoGame.cardAt(Long.numberOfTrailingZeros(~known
+						& CluedoGame.ROOM_CARDS)) };
+	}
+
+	private static long cardSet(Iterable<Card> cards) {
+		long set = 0;
+		for (Card card : cards) {
+			set |= 1L << CluedoGame.indexOf(card);
+		}
+		return set;
+	}
+
+	private static long cardSet(Card[] cards) {
+		long set = 0;
+		for (Card card : cards) {
+			set |= 1L << CluedoGame.indexOf(card);
+		}
+		return set;
+	}
+}
@@ -0,0 +1,74 @@
+package cluedo.sim;
+
+import java.util.Random;
+
+import cluedo.BoardTopology;
+
+/**
+ * Measures how many complete games per second the object-per-game engine
+ * (ObjectGameRunner) and the lockstep BatchSimulator can play on the same
+ * board with the same policy.
+ *
+ * Usage: java cluedo.sim.SimulatorBenchmark [board.txt] [players] [games]
+ * [batch size]
+ */
+public class SimulatorBenchmark {
+
+	public static void main(String[] args) {
+		String boardFile = args.length > 0 ? args[0] : "gameBoard.txt";
+		int numPlayers = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+		int numGames = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 4096;
+
+		BoardTopology topology = BoardTopology.load(boardFile);
+
+		// warm up both engines before measuring
+		runObjects(boardFile, numPlayers, numGames / 4);
+		runBatches(topology, numPlayers, numGames / 4, batchSize);
+
+		long start = System.nanoTime();
+		long objectTurns = runObjects(boardFile, numPlayers, numGames);
+		double objectSeconds = (System.nanoTime() - start) / 1e9;
+
+		start = System.nanoTime();
+		long batchTurns = runBatches(topology, numPlayers, numGames, batchSize);
+		double batchSeconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println("Board " + boardFile + ", " + numPlayers
+				+ " players, " + numGames + " games");
+		report("object engine", numGames, objectTurns, objectSeconds);
+		report("batch (K=" + batchSize + ")", numGames, batchTurns,
+				batchSeconds);
+		System.out.printf("speed-up: %.1fx%n", objectSeconds / batchSeconds);
+	}
+
+	private static long runObjects(String boardFile, int numPlayers,
+			int numGames) {
+		ObjectGameRunner runner = new ObjectGameRunner(boardFile, numPlayers,
+				new Random(42));
+		long turns = 0;
+		for (int i = 0; i < numGames; i++) {
+			runner.playGame();
+			turns += runner.getTurns();
+		}
+		return turns;
+	}
+
+	private static long runBatches(BoardTopology topology, int numPlayers,
+			int numGames, int batchSize) {
+		long turns = 0;
+		long seed = 42;
+		for (int done = 0; done < numGames; done += batchSize) {
+			int size = Math.min(batchSize, numGames - done);
+			turns += new BatchSimulator(topology, size, numPlayers, seed++)
+					.run();
+		}
+		return turns;
+	}
+
+	private static void report(String name, int games, long turns,
+			double seconds) {
+		System.out.printf("%-16s %10.0f games/s %12.0f turns/s %6.1f turns/game%n",
+				name, games / seconds, turns / seconds, (double) turns / games);
+	}
+}
@@ -1,17 +1,86 @@
 package cluedo.tests;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.*;
 
+import cluedo.Action;
 import cluedo.Board;
+import cluedo.BoardGenerator;
+import cluedo.BoardTopology;
+import cluedo.BoardValidator;
 import cluedo.Card;
 import cluedo.CluedoGame;
+import cluedo.GameAdapter;
+import cluedo.GameController;
+import cluedo.GameRandom;
+import cluedo.GameRecord;
+import cluedo.GameSnapshot;
 import cluedo.Position;
+import cluedo.Room;
+import cluedo.RefutationChooser;
+import cluedo.Screen;
+import cluedo.ScriptRunner;
+import cluedo.TurnEngine;
+import cluedo.TurnOrder;
 import cluedo.Weapon;
+import cluedo.agent.Agent;
+import cluedo.agent.AgentGame;
+import cluedo.agent.ConsoleAgent;
+import cluedo.agent.ConsoleInput;
+import cluedo.agent.GameView;
+import cluedo.agent.RandomAgent;
+import cluedo.agent.TimeoutAgent;
+import cluedo.http.StateHttpServer;
+import cluedo.bot.BotConnection;
+import cluedo.bot.BotMatch;
+import cluedo.bot.RandomBot;
+import cluedo.metrics.LatencyHistogram;
+import cluedo.metrics.Metrics;
 import static cluedo.CluedoGame.CharacterEnum.*;
 import static cluedo.CluedoGame.WeaponEnum.*;
 import static cluedo.CluedoGame.RoomEnum.*;
 import cluedo.GameError;
 import cluedo.Player;
+import cluedo.journal.AsyncGameLog;
+import cluedo.journal.GameJournal;
+import cluedo.journal.JournalReader;
+import cluedo.net.Protocol;
+import cluedo.net.GameRegistry;
+import cluedo.net.RemoteTable;
+import cluedo.net.Seats;
+import cluedo.net.Table;
+import cluedo.net.TableState;
+import cluedo.replay.ReplayEngine;
+import cluedo.session.GameSession;
+import cluedo.session.SessionHost;
+import cluedo.session.SessionOutput;
+import cluedo.sim.BatchSimulator;
+import cluedo.sim.ObjectGameRunner;
 import static org.junit.Assert.*;
 
 public class CluedoTests {
@@ -246,6 +315,18 @@ public class CluedoTests {
 		assertTrue(!board.getAlivePlayers().contains(player));
 	}
 
+	// accusing exactly the solution should win the game
+	@Test
+	public void accusationRight() {
+		String boardName = "gameBoard.txt";
+		CluedoGame game = new CluedoGame(boardName, 6);
+		Board board = game.getBoard();
+		Player player = board.getAlivePlayers().get(0);
+		Card[] accusation = game.getSolution().clone();
+		assertTrue(board.makeAccusation(player, accusation) == Board.RIGHT_ANSWER);
+		assertTrue(board.getAlivePlayers().contains(player));
+	}
+
 	// each player should have same number of cards in hand
 	@Test
 	public void evenNumOfCard() {
@@ -310,6 +391,1155 @@ public class CluedoTests {
 		assertTrue(game.getUnusedCards().size() == 3);
 	}
 
+	// a spectator's copy of the game should follow it through deltas alone
+	@Test
+	public void remoteTableFollowsDeltas() {
+		Table table = new Table(1, new GameController(new CluedoGame(
+				"gameBoard.txt", 6), new Random(1)));
+		GameController controller = table.getController();
+		RemoteTable remote = new RemoteTable(BoardTopology.load("gameBoard.txt"));
+		ByteBuffer frame = ByteBuffer.allocate(Protocol.MAX_RESPONSE);
+		TableState.capture(table).writeSnapshot(frame);
+		frame.flip().position(2);
+		assertTrue(remote.apply(frame));
+		Random random = new Random(2);
+		TableState last = TableState.capture(table);
+		for (int i = 0; i < 500; i++) {
+			playOneAction(controller, random);
+			TableState next = TableState.capture(table);
+			frame.clear();
+			next.writeDelta(last, frame);
+			frame.flip().position(2);
+			assertTrue(remote.apply(frame));
+			last = next;
+		}
+		assertEquals(controller.getBoard().toString(), remote.render());
+		assertEquals((int) controller.getVersion(), remote.getVersion());
+		assertEquals(controller.getCurrentPlayer().getUid(),
+				remote.getCurrentPlayer());
+	}
+
+	// tokens past cell 65535 should still reach the spectator's copy
+	@Test
+	public void remoteTableFollowsDeltasOnLargeBoards() throws IOException {
+		File file = File.createTempFile("board", ".txt");
+		try {
+			try (FileWriter out = new FileWriter(file)) {
+				new BoardGenerator(300, 300, 9, 4).write(out);
+			}
+			Table table = new Table(1, new GameController(new CluedoGame(
+					file.getPath(), 6, GameAdapter.NONE, 5)));
+			GameController controller = table.getController();
+			BoardTopology topology = BoardTopology.load(file.getPath());
+			RemoteTable remote = new RemoteTable(topology);
+			ByteBuffer frame = ByteBuffer.allocate(TableState.MAX_DELTA);
+			TableState last = TableState.capture(table);
+			last.writeSnapshot(frame);
+			frame.flip().position(2);
+			assertTrue(remote.apply(frame));
+			Random random = new Random(6);
+			int far = 0;
+			for (int i = 0; i < 300; i++) {
+				playOneAction(controller, random);
+				if (i == 150) {
+					// the players start on the first row, so put a weapon in
+					// the last room of the board
+					int cell = topology.getCellCount() - 1;
+					while (topology.roomOf(cell) == BoardTopology.NO_ROOM) {
+						cell--;
+					}
+					Weapon weapon = controller.getBoard().getWeapons().get(0);
+					weapon.setX(topology.xOf(cell));
+					weapon.setY(topology.yOf(cell));
+				}
+				TableState next = TableState.capture(table);
+				frame.clear();
+				next.writeDelta(last, frame);
+				frame.flip().position(2);
+				assertTrue(remote.apply(frame));
+				last = next;
+				for (int token = 0; token < TableState.TOKENS; token++) {
+					far = Math.max(far, remote.cellOf(token));
+				}
+			}
+			assertTrue(far > 0xFFFF);
+			assertEquals(controller.getBoard().toString(), remote.render());
+		} finally {
+			file.delete();
+		}
+	}
+
+	// a delta from a version the copy is not at should ask for a snapshot
+	@Test
+	public void remoteTableDetectsGap() {
+		Table table = new Table(1, new GameController(new CluedoGame(
+				"gameBoard.txt", 6), new Random(1)));
+		RemoteTable remote = new RemoteTable(BoardTopology.load("gameBoard.txt"));
+		ByteBuffer frame = ByteBuffer.allocate(Protocol.MAX_RESPONSE);
+		TableState.capture(table).writeSnapshot(frame);
+		frame.flip().position(2);
+		assertTrue(remote.apply(frame));
+		Random random = new Random(2);
+		TableState first = TableState.capture(table);
+		playOneAction(table.getController(), random);
+		TableState second = TableState.capture(table);
+		playOneAction(table.getController(), random);
+		TableState third = TableState.capture(table);
+		frame.clear();
+		third.writeDelta(second, frame);
+		frame.flip().position(2);
+		assertFalse(remote.apply(frame));
+		assertFalse(remote.isSynced());
+		frame.clear();
+		second.writeDelta(first, frame);
+		frame.flip().position(2);
+		assertFalse(remote.apply(frame));
+	}
+
+	// every event of a game should be read back from its journal in order
+	@Test
+	public void journalRecordsGame() throws IOException {
+		File file = File.createTempFile("cluedo", ".journal");
+		file.delete();
+		try {
+			try (GameJournal journal = new GameJournal(file)) {
+				CluedoGame game = new CluedoGame("gameBoard.txt", 6, journal);
+				Player player = game.getBoard().getAlivePlayers().get(0);
+				player.setStepsRemain(6);
+				game.getBoard().moveSouth(player);
+			}
+			try (JournalReader reader = new JournalReader(file)) {
+				assertEquals(1 + 1 + 18 + 1, reader.size());
+				assertTrue(reader.next());
+				assertEquals(GameJournal.STARTED, reader.getType());
+				assertEquals(6, reader.getArg(0));
+				assertTrue(reader.next());
+				assertEquals(GameJournal.SOLUTION, reader.getType());
+				for (int i = 0; i < 18; i++) {
+					assertTrue(reader.next());
+					assertEquals(GameJournal.DEALT, reader.getType());
+				}
+				assertTrue(reader.next());
+				assertEquals(GameJournal.STEPPED, reader.getType());
+				assertEquals(1, reader.getUid());
+				assertEquals(BoardTopology.SOUTH, reader.getArg(0));
+				assertEquals(21, reader.getSequence());
+				assertFalse(reader.next());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * helper method making the current player suggest if he/she can, else
+	 * take a random step, else leave the room, else end the turn
+	 */
+	@Test
+	public void replayReproducesGame() {
+		GameRecord record = new GameRecord("gameBoard.txt", 6, 2024);
+		GameController controller = record.newGame(GameAdapter.NONE);
+		controller.setRecord(record);
+		Random random = new Random(3);
+		String[] boards = new String[301];
+		boards[0] = controller.getBoard().toString();
+		for (int i = 1; i < boards.length; i++) {
+			playOneAction(controller, random);
+			boards[i] = controller.getBoard().toString();
+		}
+		assertEquals(300, record.size());
+
+		ReplayEngine engine = new ReplayEngine(record, 16);
+		assertEquals(controller.getTurnNumber(), engine.getTurnCount());
+		assertEquals(boards[0], engine.getController().getBoard().toString());
+		engine.seek(300);
+		assertEquals(boards[300], engine.getController().getBoard().toString());
+		assertEquals(controller.getCurrentPlayer().getUid(), engine
+				.getController().getCurrentPlayer().getUid());
+		assertEquals(controller.getRoll(), engine.getController().getRoll());
+		engine.seek(137);
+		assertEquals(boards[137], engine.getController().getBoard().toString());
+		engine.seek(20);
+		assertEquals(boards[20], engine.getController().getBoard().toString());
+		assertTrue(engine.step());
+		assertEquals(boards[21], engine.getController().getBoard().toString());
+		engine.seekTurn(1);
+		assertEquals(0, engine.getPosition());
+	}
+
+	@Test
+	public void snapshotRestoresGame() {
+		GameController controller = new GameController(new CluedoGame(
+				"gameBoard.txt", 4, GameAdapter.NONE, 99));
+		Random random = new Random(5);
+		for (int i = 0; i < 200; i++) {
+			playOneAction(controller, random);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(GameSnapshot.MAX_SIZE);
+		int size = GameSnapshot.write(controller, buffer);
+		assertEquals(size, buffer.position());
+		buffer.flip();
+		GameController copy = GameSnapshot.read(buffer);
+		assertEquals(size, buffer.position());
+		assertEquals(controller.getBoard().toString(), copy.getBoard()
+				.toString());
+		assertArrayEquals(controller.getGame().getSolution(), copy.getGame()
+				.getSolution());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(controller.getGame().getPlayers().get(i).getHand(),
+					copy.getGame().getPlayers().get(i).getHand());
+		}
+
+		// both games carry on the same way, random numbers included
+		Random r1 = new Random(6);
+		Random r2 = new Random(6);
+		for (int i = 0; i < 200; i++) {
+			playOneAction(controller, r1);
+			playOneAction(copy, r2);
+		}
+		assertEquals(controller.getBoard().toString(), copy.getBoard()
+				.toString());
+		assertEquals(controller.getRoll(), copy.getRoll());
+
+		buffer.put(20, (byte) (buffer.get(20) ^ 1));
+		buffer.rewind();
+		try {
+			GameSnapshot.read(copy, buffer);
+			fail("A corrupt snapshot should be rejected");
+		} catch (GameError e) {
+		}
+	}
+
+	@Test
+	public void undoAndRedoRestoreGame() {
+		GameController controller = new GameController(new CluedoGame(
+				"gameBoard.txt", 6, GameAdapter.NONE, 7));
+		controller.setUndoLimit(100);
+		Random random = new Random(8);
+		String[] states = new String[101];
+		states[0] = describe(controller);
+		for (int i = 1; i < states.length; i++) {
+			playOneAction(controller, random);
+			states[i] = describe(controller);
+		}
+		for (int i = 99; i >= 0; i--) {
+			assertTrue(controller.canUndo());
+			controller.undo();
+			assertEquals(states[i], describe(controller));
+		}
+		assertFalse(controller.canUndo());
+		for (int i = 1; i < states.length; i++) {
+			controller.redo();
+			assertEquals(states[i], describe(controller));
+		}
+		assertFalse(controller.canRedo());
+
+		// a new action after an undo forgets what could be redone
+		controller.undo();
+		playOneAction(controller, random);
+		assertFalse(controller.canRedo());
+
+		// a wrong accusation is taken back with the player put back in
+		String before = describe(controller);
+		Card[] solution = controller.getGame().getSolution();
+		Card wrong = solution[0] == MISS_SCARLETT ? MRS_WHITE : MISS_SCARLETT;
+		controller.accuse(wrong, solution[1], solution[2]);
+		assertEquals(5, controller.getBoard().getAlivePlayers().size());
+		controller.undo();
+		assertEquals(6, controller.getBoard().getAlivePlayers().size());
+		assertEquals(before, describe(controller));
+	}
+
+	// a die of its own is put back too, so a turn redone rolls the same
+	@Test
+	public void undoRestoresASeparateDie() {
+		GameController controller = new GameController(new CluedoGame(
+				"gameBoard.txt", 4, GameAdapter.NONE, 5), new GameRandom(6));
+		Random random = new Random(7);
+		int turns = 0;
+		for (int i = 0; i < 300; i++) {
+			int turn = controller.getTurnNumber();
+			playOneAction(controller, random);
+			if (controller.getTurnNumber() != turn) {
+				String after = describe(controller);
+				controller.undo();
+				controller.redo();
+				assertEquals(after, describe(controller));
+				turns++;
+			}
+		}
+		assertTrue(turns > 0);
+
+		GameController unseeded = new GameController(new CluedoGame(
+				"gameBoard.txt", 4, GameAdapter.NONE, 5), new Random(6));
+		playOneAction(unseeded, random);
+		try {
+			unseeded.undo();
+			fail("A die whose state cannot be restored should not be undone");
+		} catch (GameError e) {
+		}
+	}
+
+	/**
+	 * helper method describing everything an undo must put back
+	 * @return
+	 */
+	private String describe(GameController controller) {
+		StringBuilder sb = new StringBuilder(controller.getBoard().toString());
+		sb.append(controller.getCurrentPlayer().getUid()).append(' ')
+				.append(controller.getRoll()).append(' ')
+				.append(controller.getTurnNumber()).append(' ')
+				.append(controller.getSuggestionCount()).append(' ')
+				.append(controller.getGame().getRandom().getState());
+		for (Player p : controller.getGame().getPlayers()) {
+			sb.append(' ').append(p.getX()).append(',').append(p.getY())
+					.append(',').append(p.getStepsRemain()).append(',')
+					.append(p.hasSuggested());
+		}
+		for (Weapon w : controller.getBoard().getWeapons()) {
+			sb.append(' ').append(w.getX()).append(',').append(w.getY());
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void gamesShareTopology() {
+		Board a = new CluedoGame("gameBoard.txt", 3).getBoard();
+		Board b = new CluedoGame("gameBoard.txt", 6).getBoard();
+		assertSame(a.getTopology(), b.getTopology());
+		assertSame(BoardTopology.cached("gameBoard.txt"), a.getTopology());
+		assertEquals(a.getTopology().getWidth(), a.getWidth());
+		assertEquals(a.getTopology().getHeight(), a.getHeight());
+	}
+
+	// the rooms shared by every game cannot be changed through their lists
+	@Test
+	public void sharedRoomsAreReadOnly() {
+		Room room = BoardTopology.cached("gameBoard.txt").getRoom(0);
+		int size = room.getPositions().size();
+		try {
+			room.getPositions().clear();
+			fail("The positions of a shared room should not be modifiable");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			room.getEntrances().clear();
+			fail("The entrances of a shared room should not be modifiable");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			BoardTopology.cached("gameBoard.txt").getRows().set(0, "");
+			fail("The rows of a shared topology should not be modifiable");
+		} catch (UnsupportedOperationException e) {
+		}
+		assertEquals(size, room.getPositions().size());
+	}
+
+	@Test
+	public void reloadKeepsLastGoodBoard() throws IOException {
+		File file = File.createTempFile("board", ".txt");
+		try {
+			List<String> rows = BoardTopology.load("gameBoard.txt").getRows();
+			write(file, rows);
+			BoardTopology first = BoardTopology.cached(file.getPath());
+			Board running = new CluedoGame(file.getPath(), 3).getBoard();
+
+			// the same rows again are not compiled again
+			write(file, rows);
+			assertSame(first, BoardTopology.reload(file.getPath()));
+
+			List<String> broken = new ArrayList<String>(rows);
+			broken.set(3, broken.get(3) + "x");
+			write(file, broken);
+			try {
+				BoardTopology.reload(file.getPath());
+				fail("A board with uneven rows should be rejected");
+			} catch (GameError e) {
+			}
+			assertSame(first, BoardTopology.cached(file.getPath()));
+
+			List<String> changed = new ArrayList<String>(rows);
+			changed.set(1, changed.get(1).replaceFirst("   ", "x  "));
+			write(file, changed);
+			BoardTopology second = BoardTopology.reload(file.getPath());
+			assertNotSame(first, second);
+			assertSame(second, new CluedoGame(file.getPath(), 3).getBoard()
+					.getTopology());
+			assertSame(first, running.getTopology());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void validatorReportsEveryProblem() {
+		assertTrue(BoardValidator.validate("gameBoard.txt").isEmpty());
+
+		List<String> rows = new ArrayList<String>();
+		rows.add("123456  ");
+		rows.add("        ");
+		rows.add("  sxxxnx");
+		rows.add("xxKKxBBx");
+		rows.add("xxKKxBBQ");
+		List<BoardValidator.Problem> problems = BoardValidator.validate(rows);
+		assertEquals(4, problems.size());
+		assertEquals(2, problems.get(1).getX());
+		assertEquals(6, problems.get(1).getY());
+		assertTrue(problems.get(0).getMessage().contains("unknown"));
+		assertTrue(problems.get(1).getMessage().contains("does not point into"));
+		assertTrue(problems.get(2).getMessage().contains("cannot be stepped onto"));
+		assertTrue(problems.get(3).getMessage().contains("BALL ROOM"));
+
+		// a door beside its room that points north into the corridor
+		problems = BoardValidator.validate(Arrays.asList("KKKKK123456",
+				"KKKKKn     ", "           "));
+		assertEquals(1, problems.size());
+		assertEquals(1, problems.get(0).getX());
+		assertEquals(5, problems.get(0).getY());
+		assertTrue(problems.get(0).getMessage().contains(
+				"KITCHEN does not point into"));
+	}
+
+	@Test
+	public void generatorMakesValidBoards() throws IOException {
+		for (long seed = 0; seed < 20; seed++) {
+			List<String> rows = new BoardGenerator(40, 33, 9, seed).rows();
+			assertTrue(BoardValidator.validate(rows).isEmpty());
+			assertEquals(rows, new BoardGenerator(40, 33, 9, seed).rows());
+		}
+		assertFalse(new BoardGenerator(40, 33, 9, 1).rows().equals(
+				new BoardGenerator(40, 33, 9, 2).rows()));
+
+		File file = File.createTempFile("board", ".txt");
+		try {
+			try (FileWriter out = new FileWriter(file)) {
+				new BoardGenerator(64, 48, 6, 3).write(out);
+			}
+			assertTrue(BoardValidator.validate(file.getPath()).isEmpty());
+			CluedoGame game = new CluedoGame(file.getPath(), 6);
+			assertEquals(64, game.getBoard().getWidth());
+			assertEquals(48, game.getBoard().getHeight());
+			GameController controller = new GameController(game);
+			Random random = new Random(1);
+			for (int i = 0; i < 500; i++) {
+				playOneAction(controller, random);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void histogramKeepsPercentilesClose() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (long v = 1; v <= 100000; v++) {
+			h.record(v * 10);
+		}
+		assertEquals(100000, h.getCount());
+		assertEquals(1000000, h.getMax());
+		assertEquals(500000, h.percentile(50), 500000 * 0.04);
+		assertEquals(990000, h.percentile(99), 990000 * 0.04);
+		assertEquals(20, h.percentile(0.002), 1);
+
+		LatencyHistogram other = new LatencyHistogram();
+		other.record(5000000);
+		h.add(other);
+		assertEquals(100001, h.getCount());
+		assertEquals(5000000, h.getMax());
+	}
+
+	@Test
+	public void metricsCountOnlyWhileEnabled() {
+		boolean was = Metrics.isOn();
+		try {
+			Metrics.enable(false);
+			long moves = Metrics.MOVE.getCount();
+			long renders = Metrics.RENDER.getCount();
+			Board board = gameBoard();
+			Player player = board.getAlivePlayers().get(0);
+			player.setStepsRemain(2);
+			board.moveSouth(player);
+			board.toString();
+			assertEquals(moves, Metrics.MOVE.getCount());
+
+			Metrics.enable(true);
+			board.moveNorth(player);
+			board.toString();
+			assertEquals(moves + 1, Metrics.MOVE.getCount());
+			assertEquals(renders + 1, Metrics.RENDER.getCount());
+			assertTrue(Metrics.RENDER.snapshot().getMax() > 0);
+		} finally {
+			Metrics.enable(was);
+		}
+	}
+
+	@Test
+	public void asyncLogKeepsOrDropsByPolicy() throws IOException {
+		Player player = new Player(1);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		AsyncGameLog log = new AsyncGameLog(bytes, AsyncGameLog.Policy.BLOCK,
+				16, 1);
+		for (int i = 0; i < 1000; i++) {
+			log.rolled(player, i % 6 + 1);
+		}
+		log.close();
+		String[] lines = bytes.toString().split("\n");
+		assertEquals(1000, lines.length);
+		assertTrue(lines[999].endsWith("event=rolled player=1 roll=4"));
+		assertEquals(0, log.getDropped());
+
+		// a writer slower than the game loses records rather than blocking it
+		ByteArrayOutputStream slow = new ByteArrayOutputStream() {
+			@Override
+			public synchronized void write(byte[] b, int off, int len) {
+				try {
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+				}
+				super.write(b, off, len);
+			}
+		};
+		log = new AsyncGameLog(slow, AsyncGameLog.Policy.DROP, 16, 1);
+		for (int i = 0; i < 1000; i++) {
+			log.rolled(player, i % 6 + 1);
+		}
+		log.close();
+		int rolled = 0;
+		for (String line : slow.toString().split("\n")) {
+			if (line.contains("event=rolled")) {
+				rolled++;
+			}
+		}
+		assertTrue(log.getDropped() > 0);
+		assertEquals(1000, rolled + log.getDropped());
+		assertTrue(slow.toString().contains("event=dropped"));
+	}
+
+	@Test
+	public void screenWritesBoardInOneWrite() {
+		Board board = gameBoard();
+		Player player = board.getAlivePlayers().get(0);
+		player.setStepsRemain(6);
+		board.moveSouth(player);
+		final int[] writes = new int[1];
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream() {
+			@Override
+			public synchronized void write(byte[] b, int off, int len) {
+				writes[0]++;
+				super.write(b, off, len);
+			}
+		};
+		Screen screen = new Screen(bytes);
+		for (int i = 0; i < 2; i++) {
+			board.render(screen.text());
+			screen.print("Player ").print(1).println(" rolls.");
+			screen.flush();
+		}
+		String expected = board.toString() + "Player 1 rolls.\n";
+		assertEquals(expected + expected, bytes.toString());
+		assertEquals(2, writes[0]);
+	}
+
+	@Test
+	public void scriptPlaysNamedCommands() throws IOException {
+		Card[] solution = new CluedoGame("gameBoard.txt", 4, GameAdapter.NONE,
+				7).getSolution();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Screen screen = new Screen(bytes);
+		String script = "# a recorded session\nplayers 4\nseed 7\n"
+				+ "exit stairwell\nhand\naccuse "
+				+ ((Enum<?>) solution[0]).name() + " "
+				+ ((Enum<?>) solution[1]).name() + " "
+				+ ((Enum<?>) solution[2]).name() + "\n";
+		GameController controller = new ScriptRunner("gameBoard.txt", screen)
+				.run("a", new BufferedReader(new StringReader(script)));
+		screen.flush();
+		String[] lines = bytes.toString().split("\n");
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].startsWith("event=error script=a line=4 "));
+		assertEquals("event=accused script=a line=6 player=1 result=right",
+				lines[1]);
+		assertEquals("event=result script=a seed=7 players=4 commands=3 "
+				+ "errors=1 turns=1 finished=true winner=1", lines[2]);
+		assertTrue(controller.isFinished());
+	}
+
+	@Test
+	public void botMatchFallsBackForBrokenBots() throws Exception {
+		CluedoGame game = new CluedoGame("gameBoard.txt", 3, GameAdapter.NONE,
+				11);
+		BotConnection[] bots = new BotConnection[] { pipedBot(false),
+				pipedBot(false), pipedBot(true) };
+		BotMatch match = new BotMatch(game, bots, 5000);
+		Player winner = match.play();
+		for (BotConnection bot : bots) {
+			bot.close();
+		}
+		assertTrue(winner != null || match.getController().getTurnNumber() > 1000);
+		assertTrue(winner == null || winner.getUid() != 3);
+		assertTrue(match.getErrors() > 0);
+		assertEquals(0, match.getTimeouts());
+	}
+
+	// a person is shown the view, not the live board, and is not waited for
+	// past the deadline, nor does a late answer answer the next question
+	@Test
+	public void consoleAgentDrawsTheViewAndGivesUpAtTheDeadline()
+			throws Exception {
+		GameController controller = new GameController(new CluedoGame(
+				"gameBoard.txt", 3, GameAdapter.NONE, 6));
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++) {
+			GameView view = GameView.of(controller, controller
+					.getCurrentPlayer(), null);
+			StringBuilder sb = new StringBuilder();
+			view.render(sb);
+			assertEquals(controller.getBoard().toString(), sb.toString());
+			playOneAction(controller, random);
+		}
+
+		final PipedOutputStream typed = new PipedOutputStream();
+		ConsoleInput input = new ConsoleInput(new PipedInputStream(typed));
+		ByteArrayOutputStream shown = new ByteArrayOutputStream();
+		ConsoleAgent agent = new ConsoleAgent(input, new Screen(shown));
+		GameView view = GameView.of(controller, controller.getCurrentPlayer(),
+				null);
+		typed.write("9\n".getBytes());
+		typed.flush();
+		Thread.sleep(100);
+		long start = System.nanoTime();
+		assertTrue(agent.chooseAction(view, start + 200000000L) == null);
+		assertTrue(System.nanoTime() - start < 2000000000L);
+		StringBuilder board = new StringBuilder();
+		view.render(board);
+		assertTrue(shown.toString().startsWith(board.toString()));
+
+		Thread typist = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+					typed.write("1\n".getBytes());
+					typed.flush();
+				} catch (Exception e) {
+				}
+			}
+		});
+		typist.start();
+		List<Action> actions = new ArrayList<Action>(view.getLegalActions());
+		assertEquals(actions.get(0), agent.chooseAction(view, System
+				.nanoTime() + 5000000000L));
+		typist.join();
+	}
+
+	@Test
+	public void agentsAreHeldToTheirDeadlines() {
+		CluedoGame game = new CluedoGame("gameBoard.txt", 3, GameAdapter.NONE,
+				5);
+		// too slow for its first turns, then wants to walk into walls
+		Agent slow = new RandomAgent(new Random(1)) {
+			@Override
+			public Action chooseAction(GameView view, long deadline) {
+				if (view.getTurnNumber() < 6) {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						return null;
+					}
+				}
+				return Action.NORTH;
+			}
+		};
+		TimeoutAgent timed = new TimeoutAgent(slow, new RandomAgent(
+				new Random(2)));
+		AgentGame agentGame = new AgentGame(game, new Agent[] {
+				new RandomAgent(new Random(3)), timed,
+				new RandomAgent(new Random(4)) }, 20);
+		Player winner = agentGame.play();
+		timed.shutdown();
+		assertTrue(winner != null
+				|| agentGame.getController().getTurnNumber() > 1000);
+		assertTrue(timed.getTimeouts() > 0);
+		assertTrue(agentGame.getIllegal() > 0);
+	}
+
+	@Test
+	public void turnOrderGoesClockwisePastEliminatedPlayers() {
+		CluedoGame game = new CluedoGame("gameBoard.txt", 4, GameAdapter.NONE,
+				7);
+		Board board = game.getBoard();
+		TurnOrder order = board.getTurnOrder();
+		Player[] p = new Player[5];
+		for (int uid = 1; uid <= 4; uid++) {
+			p[uid] = order.get(uid);
+		}
+		assertEquals(p[1], order.first());
+		assertEquals(p[4], order.next(p[3]));
+		assertEquals(p[1], order.next(p[4]));
+
+		// player 3 suggests a card held by players 1 and 4: 4 refutes
+		final Player[] refuter = new Player[1];
+		board.setRefutationChooser(new RefutationChooser() {
+			@Override
+			public Card chooseCard(Player player, Player suggester,
+					Card[] suggestion) {
+				refuter[0] = player;
+				return MISS_SCARLETT;
+			}
+		});
+		p[1].addCard(MISS_SCARLETT);
+		p[4].addCard(MISS_SCARLETT);
+		p[3].setX(1);
+		p[3].setY(1);
+		Card[] suggestion = new Card[] { MISS_SCARLETT, DAGGER, HALL };
+		board.makeSuggestion(p[3], suggestion);
+		assertEquals(p[4], refuter[0]);
+
+		// once out of the game player 4 is passed over, even from himself
+		order.eliminate(p[4]);
+		assertEquals(p[1], order.next(p[4]));
+		assertEquals(3, board.getAlivePlayers().size());
+		p[3].resetSuggeted();
+		board.makeSuggestion(p[3], suggestion);
+		assertEquals(p[1], refuter[0]);
+
+		// a wrong accusation passes the turn on, and undo brings the
+		// accuser back
+		order.setAliveMask(0xF);
+		GameController controller = new GameController(game);
+		Player accuser = controller.getCurrentPlayer();
+		Card[] wrong = game.getSolution().clone();
+		wrong[0] = CluedoGame.cardAt((CluedoGame.indexOf(wrong[0]) + 1) % 6);
+		controller.accuse(wrong[0], wrong[1], wrong[2]);
+		assertFalse(order.isAlive(accuser));
+		assertEquals(order.next(accuser), controller.getCurrentPlayer());
+		controller.undo();
+		assertTrue(order.isAlive(accuser));
+		assertEquals(accuser, controller.getCurrentPlayer());
+	}
+
+	@Test
+	public void turnEngineStepsThroughItsStates() {
+		CluedoGame game = new CluedoGame("gameBoard.txt", 3, GameAdapter.NONE,
+				11);
+		Board board = game.getBoard();
+		Player player = board.getAlivePlayers().get(0);
+		player.setStepsRemain(3);
+		TurnEngine engine = new TurnEngine(board);
+		engine.startTurn(player, 3);
+		assertEquals(TurnEngine.State.ROLLED, engine.getState());
+		assertFalse(engine.isLegal(Action.END));
+		assertFalse(engine.isLegal(Action.SUGGEST));
+		assertEquals(engine.legalActions(), TurnEngine.actions(engine
+				.getLegalMask()));
+
+		Action step = null;
+		for (Action a : engine.legalActions()) {
+			if (a.isMove()) {
+				step = a;
+			}
+		}
+		engine.move(step);
+		assertEquals(TurnEngine.State.MOVING, engine.getState());
+		assertEquals(2, player.getStepsRemain());
+
+		// put the player in a room, as a suggestion of somebody else would
+		player.setX(1);
+		player.setY(1);
+		engine.update();
+		assertEquals(TurnEngine.State.IN_ROOM, engine.getState());
+		assertTrue(engine.isLegal(Action.EXIT));
+		engine.suggest(new Card[] { MISS_SCARLETT, DAGGER,
+				board.getRoomByToken(player).getRoomCard() });
+		assertEquals(TurnEngine.State.SUGGESTED, engine.getState());
+		assertFalse(engine.isLegal(Action.SUGGEST));
+		try {
+			engine.suggest(new Card[] { MISS_SCARLETT, DAGGER, HALL });
+			fail("Cannot suggest twice in a turn.");
+		} catch (GameError e) {
+		}
+
+		player.setStepsRemain(0);
+		engine.update();
+		assertTrue(engine.isLegal(Action.END));
+		engine.end();
+		assertEquals(TurnEngine.State.FINISHED, engine.getState());
+		assertEquals(0, engine.getLegalMask());
+	}
+
+	@Test
+	public void batchSimulatorDealsAndFinishesEveryGame() {
+		BoardTopology topology = BoardTopology.cached("gameBoard.txt");
+		long deck = (1L << 21) - 1;
+		int games = 200;
+		for (int players = 3; players <= 6; players++) {
+			BatchSimulator batch = new BatchSimulator(topology, games,
+					players, 42);
+			BatchSimulator again = new BatchSimulator(topology, games,
+					players, 42);
+			batch.run();
+			again.run();
+			int abandoned = 0;
+			for (int g = 0; g < games; g++) {
+				long solution = batch.getSolution(g);
+				assertEquals(3, Long.bitCount(solution));
+				long dealt = 0;
+				for (int uid = 1; uid <= players; uid++) {
+					long hand = batch.getHand(g, uid);
+					assertEquals(18 / players, Long.bitCount(hand));
+					assertEquals(0, dealt & hand);
+					assertEquals(0, solution & hand);
+					dealt |= hand;
+				}
+				// the cards that do not share out evenly are left face up
+				assertEquals(0, dealt & ~(deck & ~solution));
+				assertEquals(18 - 18 % players, Long.bitCount(dealt));
+
+				int winner = batch.getWinner(g);
+				assertTrue(winner >= 1 && winner <= players
+						|| winner == BatchSimulator.ABANDONED
+						&& batch.getTurns(g) == ObjectGameRunner.MAX_TURNS);
+				if (winner == BatchSimulator.ABANDONED) {
+					abandoned++;
+				}
+				assertEquals(winner, again.getWinner(g));
+				assertEquals(batch.getTurns(g), again.getTurns(g));
+				assertEquals(solution, again.getSolution(g));
+			}
+			// players who learn from the face-up cards hardly ever get stuck
+			assertTrue(players + " players abandoned " + abandoned,
+					abandoned < games / 10);
+		}
+	}
+
+	@Test
+	public void sessionPlaysCommandsFromPlayerChannels() throws Exception {
+		final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+		SessionOutput output = new SessionOutput() {
+			@Override
+			public void send(GameSession session, int uid, String message) {
+				messages.add(uid + " " + message);
+			}
+		};
+		SessionHost host = new SessionHost("gameBoard.txt", output, 99);
+		GameSession session = host.open(3);
+		GameController controller = session.getController();
+		String rolled = awaitMessage(messages, "0 ");
+		assertTrue(rolled.endsWith(") rolls a " + controller.getRoll() + "."));
+		awaitMessage(messages, "1 OPTIONS");
+
+		assertTrue(session.getChannel(1).offer("hand"));
+		assertEquals("1 " + controller.getCurrentPlayer().handToString(),
+				awaitMessage(messages, "1 "));
+		awaitMessage(messages, "1 OPTIONS");
+
+		// a command that is not allowed only earns an error
+		assertTrue(session.getChannel(1).offer("redo"));
+		assertTrue(awaitMessage(messages, "1 ").startsWith("1 ERROR"));
+		awaitMessage(messages, "1 OPTIONS");
+
+		// a wrong accusation puts player 1 out and passes the turn on
+		Card[] wrong = controller.getGame().getSolution().clone();
+		wrong[0] = CluedoGame.cardAt((CluedoGame.indexOf(wrong[0]) + 1) % 6);
+		assertTrue(host.submit(session.getId(), 1, "accuse "
+				+ ((Enum<?>) wrong[0]).name() + " "
+				+ ((Enum<?>) wrong[1]).name() + " "
+				+ ((Enum<?>) wrong[2]).name()));
+		assertTrue(awaitMessage(messages, "0 ").endsWith(
+				"made a wrong accusation and is out."));
+		assertTrue(awaitMessage(messages, "0 ").contains("(uid: 2) rolls a"));
+		awaitMessage(messages, "2 OPTIONS");
+		assertEquals(2, controller.getCurrentPlayer().getUid());
+
+		// the game is seeded by the host, so its state can be saved
+		controller.writeState(ByteBuffer.allocate(256));
+		SessionHost again = new SessionHost("gameBoard.txt", output, 99);
+		assertArrayEquals(controller.getGame().getSolution(), again.open(3)
+				.getController().getGame().getSolution());
+		again.closeAll();
+		host.closeAll();
+	}
+
+	@Test
+	public void registryFindsTablesByIdAsItGrows() throws IOException {
+		GameRegistry registry = new GameRegistry("gameBoard.txt");
+		for (int i = 0; i < 200; i++) {
+			registry.create(3);
+		}
+		for (int id = 1; id <= 200; id += 3) {
+			registry.remove(id);
+		}
+		registry.remove(1);
+		registry.remove(5000);
+		assertEquals(133, registry.size());
+		assertTrue(registry.get(0) == null);
+		assertTrue(registry.get(-1) == null);
+		assertTrue(registry.get(201) == null);
+		assertTrue(registry.get(100) == null);
+		assertEquals(200, registry.get(200).getId());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		registry.writeSnapshots(new DataOutputStream(bytes));
+		GameRegistry restored = new GameRegistry("gameBoard.txt");
+		restored.readSnapshots(new DataInputStream(new ByteArrayInputStream(
+				bytes.toByteArray())));
+		assertEquals(133, restored.size());
+		for (int id = 1; id <= 200; id++) {
+			assertEquals(registry.get(id) == null, restored.get(id) == null);
+		}
+		assertEquals(201, restored.create(3).getId());
+	}
+
+	@Test
+	public void protocolActsOnlyForTheJoinedSeat() {
+		GameRegistry registry = new GameRegistry("gameBoard.txt");
+		Seats alice = new Seats();
+		Seats bob = new Seats();
+		Seats stranger = new Seats();
+		ByteBuffer response = request(registry, alice, ByteBuffer.allocate(2)
+				.put(Protocol.CREATE).put((byte) 3), Protocol.OK);
+		int game = response.getInt();
+		GameController controller = registry.get(game).getController();
+		Board board = controller.getBoard();
+		Player first = controller.getCurrentPlayer();
+
+		// joining twice keeps the same seat
+		assertEquals(1, request(registry, alice, join(game), Protocol.OK).get());
+		assertEquals(1, request(registry, alice, join(game), Protocol.OK).get());
+		assertEquals(2, request(registry, bob, join(game), Protocol.OK).get());
+
+		// the uid sent is ignored: alice asking for player 2's hand gets her
+		// own, and a connection that has not joined gets nothing
+		response = request(registry, alice, seatRequest(Protocol.HAND, game, 2),
+				Protocol.OK);
+		assertEquals(first.getHand().size(), response.get());
+		for (Card card : first.getHand()) {
+			assertEquals(CluedoGame.indexOf(card), response.get());
+		}
+		request(registry, stranger, seatRequest(Protocol.HAND, game, 1),
+				Protocol.NOT_SEATED);
+
+		// bob cannot move for player 1 by naming him/her
+		Action step = null;
+		for (Action a : controller.legalActions()) {
+			if (a.isMove()) {
+				step = a;
+			}
+		}
+		request(registry, bob, seatRequest(Protocol.MOVE, game, 1).put(
+				(byte) step.direction()), Protocol.NOT_YOUR_TURN);
+		response = request(registry, alice, seatRequest(Protocol.MOVE, game, 2)
+				.put((byte) step.direction()), Protocol.OK);
+		assertEquals(first.getX(), response.getShort());
+		assertEquals(first.getY(), response.getShort());
+		assertEquals(first.getStepsRemain(), response.get());
+
+		// exits are unsigned, with 0xFF for the stairwell
+		first.setX(1);
+		first.setY(1);
+		first.setStepsRemain(6);
+		resync(controller);
+		Room room = board.inWhichRoom(first);
+		request(registry, alice, seatRequest(Protocol.EXIT, game, 1).put(
+				(byte) 0xFE), Protocol.ILLEGAL);
+		response = request(registry, alice, seatRequest(Protocol.EXIT, game, 1)
+				.put((byte) 1), Protocol.OK);
+		assertEquals(room.getEntrancesPositions().get(0).getX(), response
+				.getShort());
+		assertEquals(first.getX(), room.getEntrancesPositions().get(0).getX());
+		first.setX(1);
+		first.setY(1);
+		first.setStepsRemain(6);
+		resync(controller);
+		request(registry, alice, seatRequest(Protocol.EXIT, game, 1).put(
+				(byte) Protocol.STAIRWELL), Protocol.OK);
+		assertSame(room.getStairellTo(), board.inWhichRoom(first));
+	}
+
+	@Test
+	public void httpStateIsCachedAndCommandsNeedASeat() throws IOException {
+		StateHttpServer server = new StateHttpServer(new GameRegistry(
+				"gameBoard.txt"), new InetSocketAddress("127.0.0.1", 0));
+		server.start();
+		try {
+			String base = "http://127.0.0.1:" + server.getPort() + "/games";
+			HttpURLConnection c = http("POST", base + "?players=3", null);
+			assertEquals(201, c.getResponseCode());
+			String created = read(c);
+			String games = base + "/"
+					+ created.replaceAll("[^0-9]", "");
+
+			// an unchanged game is not sent again
+			c = http("GET", games + "/state", null);
+			assertEquals(200, c.getResponseCode());
+			String etag = c.getHeaderField("ETag");
+			read(c);
+			c = http("GET", games + "/state", etag);
+			assertEquals(304, c.getResponseCode());
+
+			// moves must be moves, and only a seated player may make them
+			c = http("POST", games + "/join", null);
+			assertEquals(201, c.getResponseCode());
+			String token = read(c).replaceAll(".*\"token\":\"([0-9a-f]+)\".*",
+					"$1");
+			c = http("POST", games + "/move?dir=accuse+MRS_WHITE+ROPE+KITCHEN"
+					+ "&token=" + token, null);
+			assertEquals(400, c.getResponseCode());
+			c = http("POST", games + "/move?dir=end&token=" + token, null);
+			assertEquals(400, c.getResponseCode());
+			c = http("POST", games + "/end?token=nobody", null);
+			assertEquals(403, c.getResponseCode());
+			c = http("GET", games + "/state", etag);
+			assertEquals(304, c.getResponseCode());
+		} finally {
+			server.stop();
+		}
+	}
+
+	private static HttpURLConnection http(String method, String url,
+			String ifNoneMatch) throws IOException {
+		HttpURLConnection c = (HttpURLConnection) new URL(url)
+				.openConnection();
+		c.setRequestMethod(method);
+		if (ifNoneMatch != null) {
+			c.setRequestProperty("If-None-Match", ifNoneMatch);
+		}
+		return c;
+	}
+
+	private static String read(HttpURLConnection c) throws IOException {
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(c
+				.getInputStream(), "UTF-8"))) {
+			StringBuilder sb = new StringBuilder();
+			for (String line = in.readLine(); line != null; line = in
+					.readLine()) {
+				sb.append(line);
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Handle the given request and check the status of the response. Return
+	 * the response positioned at its result.
+	 */
+	private static ByteBuffer request(GameRegistry registry, Seats seats,
+			ByteBuffer body, byte status) {
+		body.flip();
+		int opcode = body.get(0);
+		ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_RESPONSE);
+		Protocol.handle(registry, seats, body, out);
+		out.flip();
+		assertEquals(out.remaining() - 2, out.getShort() & 0xFFFF);
+		assertEquals(opcode, out.get());
+		assertEquals(status, out.get());
+		return out;
+	}
+
+	/**
+	 * Make the controller take in tokens moved by hand, by saving and
+	 * restoring its state.
+	 */
+	private static void resync(GameController controller) {
+		ByteBuffer state = ByteBuffer.allocate(256);
+		controller.writeState(state);
+		state.flip();
+		controller.readState(state);
+	}
+
+	private static ByteBuffer join(int game) {
+		return ByteBuffer.allocate(5).put(Protocol.JOIN).putInt(game);
+	}
+
+	private static ByteBuffer seatRequest(byte opcode, int game, int uid) {
+		return ByteBuffer.allocate(Protocol.MAX_RESPONSE).put(opcode).putInt(
+				game).put((byte) uid);
+	}
+
+	/**
+	 * Wait for the next message starting with the given prefix, skipping
+	 * the others.
+	 */
+	private static String awaitMessage(BlockingQueue<String> messages,
+			String prefix) throws InterruptedException {
+		while (true) {
+			String message = messages.poll(5, TimeUnit.SECONDS);
+			if (message == null) {
+				fail("No message " + prefix);
+			}
+			if (message.startsWith(prefix)) {
+				return message;
+			}
+		}
+	}
+
+	private void write(File file, List<String> rows) throws IOException {
+		try (PrintWriter out = new PrintWriter(file)) {
+			for (String row : rows) {
+				out.println(row);
+			}
+		}
+	}
+
+	/**
+	 * helper method connect to a RandomBot, or to a bot that only replies
+	 * nonsense, playing on a thread of its own
+	 * @param broken
+	 * @return
+	 * @throws IOException
+	 */
+	private BotConnection pipedBot(final boolean broken) throws IOException {
+		PipedOutputStream toBot = new PipedOutputStream();
+		final PipedInputStream botIn = new PipedInputStream(toBot, 1 << 16);
+		PipedInputStream fromBot = new PipedInputStream(1 << 16);
+		final PrintStream botOut = new PrintStream(new PipedOutputStream(
+				fromBot), true);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				BufferedReader in = new BufferedReader(new InputStreamReader(
+						botIn));
+				try {
+					if (!broken) {
+						new RandomBot(new Random(3)).play(in, botOut);
+					} else {
+						String line;
+						while ((line = in.readLine()) != null
+								&& !line.equals("quit")) {
+							if (line.startsWith("go")) {
+								botOut.println("fly");
+							}
+						}
+					}
+				} catch (IOException e) {
+				}
+				botOut.close();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+		return new BotConnection("piped", fromBot, toBot, null);
+	}
+
+	private void playOneAction(GameController controller, Random random) {
+		List<Action> moves = new ArrayList<Action>();
+		for (Action a : controller.legalActions()) {
+			if (a.isMove()) {
+				moves.add(a);
+			}
+		}
+		if (controller.legalActions().contains(Action.SUGGEST)) {
+			controller.suggest(MISS_SCARLETT, ROPE);
+		} else if (!moves.isEmpty()) {
+			controller.move(moves.get(random.nextInt(moves.size()))
+					.direction());
+		} else if (controller.legalActions().contains(Action.EXIT)) {
+			controller.exitRoom(1);
+		} else {
+			controller.endTurn();
+		}
+	}
+
 	/**
 	 * helper method build a board with 6 players
 	 * @return